@@ -1,3 +1,5 @@
+import net.ltgt.gradle.errorprone.errorprone
+
 plugins {
     id("com.android.library")
     id("splunk.android-library-conventions")
@@ -52,11 +54,52 @@ dependencies {
     implementation(libs.androidx.core)
     implementation(libs.androidx.navigation.fragment)
     api(libs.zipkin.sender.okhttp)
+    testImplementation(libs.mockwebserver)
 }
 
 tasks.withType<Test> {
     useJUnitPlatform()
 }
 
+// The JMH benchmarks live in src/jmh/java, in the packages of the classes they measure, so that
+// they can reach package-private classes. They are compiled against the unit test classpath by
+// their own task, so that the JMH annotation processor doesn't run on every unit test compile.
+// Run them with e.g. ./gradlew :splunk-otel-android:jmh -PjmhIncludes=CustomZipkinEncoder
+// Every run reports allocation rates through the GC profiler. Add -PjmhResults=<file> to keep the
+// results as JSON, for comparing them across releases.
+val jmhImplementation by configurations.creating
+val jmhAnnotationProcessor by configurations.creating
+
+dependencies {
+    jmhImplementation(libs.jmh.core)
+    jmhAnnotationProcessor(libs.jmh.generator.annprocess)
+}
+
+// resolved only when a jmh task runs, and without depending on the test task itself
+val unitTestClasspath = provider { tasks.getByName<Test>("testDebugUnitTest").classpath }
+
+val compileJmhJava by tasks.registering(JavaCompile::class) {
+    description = "Compiles the JMH benchmarks."
+    source("src/jmh/java")
+    classpath = files(unitTestClasspath, jmhImplementation)
+    options.annotationProcessorPath = jmhAnnotationProcessor
+    // error prone isn't on the annotation processor path of the benchmarks
+    options.errorprone.isEnabled.set(false)
+    sourceCompatibility = JavaVersion.VERSION_1_8.toString()
+    targetCompatibility = JavaVersion.VERSION_1_8.toString()
+    destinationDirectory.set(layout.buildDirectory.dir("classes/java/jmh"))
+    options.generatedSourceOutputDirectory.set(layout.buildDirectory.dir("generated/sources/jmh"))
+}
+
+tasks.register<JavaExec>("jmh") {
+    description = "Runs the JMH benchmarks."
+    group = "verification"
+    classpath(compileJmhJava, unitTestClasspath, jmhImplementation)
+    mainClass.set("org.openjdk.jmh.Main")
+    args(project.findProperty("jmhIncludes")?.toString() ?: ".*Benchmark.*")
+    args("-prof", "gc")
+    project.findProperty("jmhResults")?.let { args("-rf", "json", "-rff", it.toString()) }
+}
+
 extra["pomName"] = "Splunk Otel Android"
 description = "A library for instrumenting Android applications for Splunk RUM"
@@ -0,0 +1,102 @@
+/*
+ * Copyright Splunk Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.splunk.rum;
+
+import io.opentelemetry.api.trace.SpanId;
+import io.opentelemetry.api.trace.TraceId;
+import java.nio.charset.StandardCharsets;
+import java.util.Collections;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import zipkin2.Endpoint;
+import zipkin2.Span;
+import zipkin2.internal.JsonCodec;
+import zipkin2.internal.V2SpanWriter;
+
+/**
+ * Compares the single-pass encoder with the previous encode, decode and replace approach, and with
+ * an encoder that escapes the resource tags of every span again.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class CustomZipkinEncoderBenchmark {
+
+    private final CustomZipkinEncoder encoder = new CustomZipkinEncoder();
+    private final CustomZipkinEncoder uncachedEncoder =
+            new CustomZipkinEncoder(Collections.emptySet());
+    private final V2SpanWriter writer = new V2SpanWriter();
+    private final Span span =
+            Span.newBuilder()
+                    .traceId(TraceId.fromLongs(1, 2))
+                    .parentId(SpanId.fromLong(2))
+                    .id(SpanId.fromLong(3))
+                    .kind(Span.Kind.CLIENT)
+                    .name("HTTP GET")
+                    .timestamp(1_700_000_000_000_000L)
+                    .duration(123_456)
+                    .localEndpoint(Endpoint.newBuilder().serviceName("sample-app").build())
+                    .putTag(SplunkSpanDataModifier.SPLUNK_OPERATION_KEY.getKey(), "HTTP GET")
+                    .putTag("component", "http")
+                    .putTag("http.method", "GET")
+                    .putTag("http.status_code", "200")
+                    .putTag("http.url", "https://example.com/api/v1/items?page=2")
+                    .putTag("net.host.connection.type", "wifi")
+                    .putTag("os.name", "Android")
+                    .putTag("os.version", "14")
+                    .putTag("device.model.name", "Pixel 8")
+                    .putTag("screen.name", "MainActivity")
+                    .putTag("splunk.rumSessionId", "0123456789abcdef0123456789abcdef")
+                    .putTag("app", "sample-app")
+                    .putTag("splunk.rum.version", "1.10.0")
+                    .build();
+
+    @Benchmark
+    public byte[] singlePass() {
+        return encoder.encode(span);
+    }
+
+    @Benchmark
+    public byte[] singlePassWithoutConstantTags() {
+        return uncachedEncoder.encode(span);
+    }
+
+    /** The encoder as it was before the single-pass writer. */
+    @Benchmark
+    public byte[] encodeDecodeReplace() {
+        String properSpanName =
+                span.tags().get(SplunkSpanDataModifier.SPLUNK_OPERATION_KEY.getKey());
+        byte[] rawBytes = JsonCodec.write(writer, span);
+        String renamedResult =
+                new String(rawBytes, StandardCharsets.UTF_8)
+                        .replace(
+                                "\"name\":\"" + span.name() + "\"",
+                                "\"name\":\"" + properSpanName + "\"");
+        return renamedResult.getBytes(StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,98 @@
+/*
+ * Copyright Splunk Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.splunk.rum;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/** Writes and reads span segments of 100 encoded spans of about 600 bytes each. */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class FileUtilsBenchmark {
+
+    private final FileUtils fileUtils = new FileUtils();
+    private final List<byte[]> spans = new ArrayList<>();
+
+    private File directory;
+    private File writtenFile;
+    private File readFile;
+
+    @Setup
+    public void setup() throws IOException {
+        StringBuilder tags = new StringBuilder();
+        for (int i = 0; i < 20; i++) {
+            tags.append(",\"tag.number.").append(i).append("\":\"value of the tag\"");
+        }
+        for (int i = 0; i < 100; i++) {
+            String span =
+                    "{\"traceId\":\"0123456789abcdef0123456789abcdef\",\"id\":\""
+                            + String.format("%016x", i)
+                            + "\",\"name\":\"span\",\"tags\":{\"component\":\"ui\""
+                            + tags
+                            + "}}";
+            spans.add(span.getBytes(StandardCharsets.UTF_8));
+        }
+        directory = Files.createTempDirectory("spans").toFile();
+        writtenFile = new File(directory, "written.spans");
+        readFile = new File(directory, "read.spans");
+        fileUtils.appendAsLines(readFile, spans);
+    }
+
+    @TearDown
+    public void tearDown() {
+        fileUtils.safeDelete(writtenFile);
+        fileUtils.safeDelete(readFile);
+        fileUtils.safeDelete(directory);
+    }
+
+    @Benchmark
+    public long appendAsLines() throws IOException {
+        fileUtils.safeDelete(writtenFile);
+        return fileUtils.appendAsLines(writtenFile, spans);
+    }
+
+    @Benchmark
+    public long appendCompressed() throws IOException {
+        fileUtils.safeDelete(writtenFile);
+        return fileUtils.appendCompressed(writtenFile, spans);
+    }
+
+    @Benchmark
+    public List<byte[]> readFileCompletely() throws IOException {
+        return fileUtils.readFileCompletely(readFile);
+    }
+}
@@ -0,0 +1,106 @@
+/*
+ * Copyright Splunk Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.splunk.rum;
+
+import io.opentelemetry.api.trace.Span;
+import io.opentelemetry.sdk.common.CompletableResultCode;
+import io.opentelemetry.sdk.trace.ReadableSpan;
+import io.opentelemetry.sdk.trace.SdkTracerProvider;
+import io.opentelemetry.sdk.trace.SpanProcessor;
+import io.opentelemetry.sdk.trace.data.SpanData;
+import io.opentelemetry.sdk.trace.export.BatchSpanProcessor;
+import io.opentelemetry.sdk.trace.export.SpanExporter;
+import java.util.Collection;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Ends spans from 8 threads at once, and samples how long ending a span takes in the lock-free
+ * processor and in the upstream {@code BatchSpanProcessor}, both with their default queue size
+ * and batch size. The upstream processor uses its blocking queue unless JCTools is on the class
+ * path, which it isn't in this library. Spans are dropped when the worker falls behind, which is
+ * part of what is measured.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SampleTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Threads(8)
+@Fork(1)
+public class SpanProcessorBenchmark {
+
+    private SpanProcessor lockFreeProcessor;
+    private SpanProcessor batchSpanProcessor;
+    private ReadableSpan span;
+
+    @Setup
+    public void setup() {
+        lockFreeProcessor = SplunkBatchSpanProcessor.builder().exporter(new NoopExporter()).build();
+        batchSpanProcessor = BatchSpanProcessor.builder(new NoopExporter()).build();
+        try (SdkTracerProvider tracerProvider = SdkTracerProvider.builder().build()) {
+            Span created = tracerProvider.get("benchmark").spanBuilder("span").startSpan();
+            created.end();
+            span = (ReadableSpan) created;
+        }
+    }
+
+    @TearDown
+    public void tearDown() {
+        lockFreeProcessor.shutdown().join(10, TimeUnit.SECONDS);
+        batchSpanProcessor.shutdown().join(10, TimeUnit.SECONDS);
+    }
+
+    @Benchmark
+    public void lockFree() {
+        lockFreeProcessor.onEnd(span);
+    }
+
+    @Benchmark
+    public void batchSpanProcessor() {
+        batchSpanProcessor.onEnd(span);
+    }
+
+    private static class NoopExporter implements SpanExporter {
+
+        @Override
+        public CompletableResultCode export(Collection<SpanData> spans) {
+            return CompletableResultCode.ofSuccess();
+        }
+
+        @Override
+        public CompletableResultCode flush() {
+            return CompletableResultCode.ofSuccess();
+        }
+
+        @Override
+        public CompletableResultCode shutdown() {
+            return CompletableResultCode.ofSuccess();
+        }
+    }
+}
@@ -0,0 +1,270 @@
+/*
+ * Copyright Splunk Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.splunk.rum;
+
+import static io.opentelemetry.api.common.AttributeKey.stringKey;
+
+import io.opentelemetry.android.RumConstants;
+import io.opentelemetry.api.common.AttributeKey;
+import io.opentelemetry.api.common.Attributes;
+import io.opentelemetry.api.common.AttributesBuilder;
+import io.opentelemetry.api.trace.SpanKind;
+import io.opentelemetry.sdk.common.CompletableResultCode;
+import io.opentelemetry.sdk.resources.Resource;
+import io.opentelemetry.sdk.testing.trace.TestSpanData;
+import io.opentelemetry.sdk.trace.data.EventData;
+import io.opentelemetry.sdk.trace.data.SpanData;
+import io.opentelemetry.sdk.trace.data.StatusData;
+import io.opentelemetry.sdk.trace.export.SpanExporter;
+import io.opentelemetry.semconv.ResourceAttributes;
+import io.opentelemetry.semconv.SemanticAttributes;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * Compares the attribute view of {@link SplunkSpanDataModifier} with the previous approach, which
+ * copied the attributes of every span into a builder. Both variants read the attributes back the
+ * way an exporter does, since the view defers some of the work to that point. The iterate
+ * benchmarks isolate the cost of reading the view back, which grows with the number of span
+ * attributes times the overlay lookups for each of them. Run with {@code -prof gc} for the
+ * allocation rates.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class SplunkSpanDataModifierBenchmark {
+
+    private static final Resource RESOURCE =
+            Resource.getDefault()
+                    .merge(
+                            Resource.create(
+                                    Attributes.builder()
+                                            .put(ResourceAttributes.SERVICE_NAME, "sample-app")
+                                            .put(ResourceAttributes.DEPLOYMENT_ENVIRONMENT, "prod")
+                                            .put(ResourceAttributes.DEVICE_MODEL_NAME, "Pixel 8")
+                                            .put(
+                                                    ResourceAttributes.DEVICE_MODEL_IDENTIFIER,
+                                                    "Pixel 8")
+                                            .put(ResourceAttributes.OS_NAME, "Android")
+                                            .put(ResourceAttributes.OS_TYPE, "linux")
+                                            .put(ResourceAttributes.OS_VERSION, "14")
+                                            .put(RumConstants.RUM_SDK_VERSION, "1.10.0")
+                                            .put(SplunkRum.APP_NAME_KEY, "sample-app")
+                                            .put(SplunkRum.RUM_VERSION_KEY, "1.10.0")
+                                            .build()));
+
+    // custom attributes set by the app, e.g. global attributes, on top of the instrumentation ones
+    @Param({"0", "50"})
+    public int extraAttributes;
+
+    private SpanData span;
+    private List<SpanData> batch;
+    private final SplunkSpanDataModifier modifier =
+            new SplunkSpanDataModifier(new ReadingExporter(), false);
+
+    private final RewrittenAttributes.Rules rules =
+            SplunkSpanDataModifier.buildAttributeRules(false);
+    private Attributes addedAttributes;
+    private Attributes resourceAttributes;
+    private Attributes indexedResourceAttributes;
+
+    private Blackhole blackhole;
+
+    @Setup
+    public void setUp() {
+        AttributesBuilder attributes =
+                Attributes.builder()
+                        .put(RumConstants.SESSION_ID_KEY, "0123456789abcdef")
+                        .put(SplunkRum.COMPONENT_KEY, "http")
+                        .put(SemanticAttributes.HTTP_REQUEST_METHOD, "GET")
+                        .put(SemanticAttributes.HTTP_RESPONSE_STATUS_CODE, 200L)
+                        .put(SemanticAttributes.URL_FULL, "https://example.com/items")
+                        .put(SemanticAttributes.NETWORK_CONNECTION_TYPE, "cell")
+                        .put(SemanticAttributes.NETWORK_CONNECTION_SUBTYPE, "LTE")
+                        .put(SemanticAttributes.NETWORK_CARRIER_NAME, "carrier")
+                        .put(SemanticAttributes.NETWORK_CARRIER_MCC, "310")
+                        .put(SemanticAttributes.NETWORK_CARRIER_MNC, "260")
+                        .put(SemanticAttributes.NETWORK_CARRIER_ICC, "us")
+                        .put(stringKey("screen.name"), "MainActivity")
+                        .put(stringKey("last.screen.name"), "MainActivity");
+        for (int i = 0; i < extraAttributes; i++) {
+            attributes.put(stringKey("custom." + i), "value" + i);
+        }
+        span =
+                TestSpanData.builder()
+                        .setName("HTTP GET")
+                        .setKind(SpanKind.CLIENT)
+                        .setStatus(StatusData.unset())
+                        .setStartEpochNanos(1_000)
+                        .setEndEpochNanos(2_000)
+                        .setHasEnded(true)
+                        .setResource(RESOURCE)
+                        .setAttributes(attributes.build())
+                        .setEvents(
+                                Collections.singletonList(
+                                        EventData.create(
+                                                1_500, "responseStart", Attributes.empty())))
+                        .setTotalRecordedEvents(1)
+                        .build();
+        batch = Collections.singletonList(span);
+
+        addedAttributes =
+                Attributes.of(
+                        StandardAttributes.SESSION_ID_KEY,
+                        "0123456789abcdef",
+                        SplunkSpanDataModifier.SPLUNK_OPERATION_KEY,
+                        "HTTP GET");
+        AttributesBuilder copied = Attributes.builder();
+        for (AttributeKey<String> key : SplunkSpanDataModifier.resourceAttributesToCopy) {
+            String value = RESOURCE.getAttribute(key);
+            if (value != null) {
+                copied.put(key, value);
+            }
+        }
+        resourceAttributes = copied.build();
+        indexedResourceAttributes = RewrittenAttributes.indexed(resourceAttributes);
+    }
+
+    @Benchmark
+    public void attributeView(Blackhole blackhole) {
+        this.blackhole = blackhole;
+        modifier.export(batch);
+    }
+
+    @Benchmark
+    public void copyingBaseline(Blackhole blackhole) {
+        Attributes attributes = copyAttributes(span);
+        List<EventData> events = new ArrayList<>(span.getEvents());
+        blackhole.consume(events);
+        attributes.forEach((key, value) -> blackhole.consume(value));
+    }
+
+    /** Iterates a view whose shared resource overlay is scanned for every attribute. */
+    @Benchmark
+    public void iterateView(Blackhole blackhole) {
+        new RewrittenAttributes(span.getAttributes(), rules, addedAttributes, resourceAttributes)
+                .forEach((key, value) -> blackhole.consume(value));
+    }
+
+    /** Iterates a view whose shared resource overlay is hashed, like the modifier builds them. */
+    @Benchmark
+    public void iterateIndexedView(Blackhole blackhole) {
+        new RewrittenAttributes(
+                        span.getAttributes(), rules, addedAttributes, indexedResourceAttributes)
+                .forEach((key, value) -> blackhole.consume(value));
+    }
+
+    /** The attribute handling of the modifier as it was before the view. */
+    private static Attributes copyAttributes(SpanData original) {
+        Attributes originalAttributes = original.getAttributes();
+        AttributesBuilder attributes = originalAttributes.toBuilder();
+        attributes.put(
+                StandardAttributes.SESSION_ID_KEY,
+                originalAttributes.get(RumConstants.SESSION_ID_KEY));
+        rename(
+                originalAttributes,
+                attributes,
+                SemanticAttributes.NETWORK_CONNECTION_TYPE,
+                SemanticAttributes.NET_HOST_CONNECTION_TYPE);
+        rename(
+                originalAttributes,
+                attributes,
+                SemanticAttributes.NETWORK_CONNECTION_SUBTYPE,
+                SemanticAttributes.NET_HOST_CONNECTION_SUBTYPE);
+        rename(
+                originalAttributes,
+                attributes,
+                SemanticAttributes.NETWORK_CARRIER_ICC,
+                SemanticAttributes.NET_HOST_CARRIER_ICC);
+        rename(
+                originalAttributes,
+                attributes,
+                SemanticAttributes.NETWORK_CARRIER_MCC,
+                SemanticAttributes.NET_HOST_CARRIER_MCC);
+        rename(
+                originalAttributes,
+                attributes,
+                SemanticAttributes.NETWORK_CARRIER_MNC,
+                SemanticAttributes.NET_HOST_CARRIER_MNC);
+        rename(
+                originalAttributes,
+                attributes,
+                SemanticAttributes.NETWORK_CARRIER_NAME,
+                SemanticAttributes.NET_HOST_CARRIER_NAME);
+        attributes.put(SplunkSpanDataModifier.SPLUNK_OPERATION_KEY, original.getName());
+        for (AttributeKey<String> key : SplunkSpanDataModifier.resourceAttributesToCopy) {
+            String value = original.getResource().getAttribute(key);
+            if (value != null) {
+                attributes.put(key, value);
+            }
+        }
+        return attributes.build();
+    }
+
+    private static <T> void rename(
+            Attributes original,
+            AttributesBuilder attributes,
+            AttributeKey<T> from,
+            AttributeKey<T> to) {
+        T value = original.get(from);
+        if (value != null) {
+            attributes.remove(from);
+            attributes.put(to, value);
+        }
+    }
+
+    /** Reads the attributes of the exported spans, like the zipkin span transformer does. */
+    private class ReadingExporter implements SpanExporter {
+
+        @Override
+        public CompletableResultCode export(Collection<SpanData> spans) {
+            for (SpanData span : spans) {
+                blackhole.consume(span.getEvents());
+                span.getAttributes().forEach((key, value) -> blackhole.consume(value));
+            }
+            return CompletableResultCode.ofSuccess();
+        }
+
+        @Override
+        public CompletableResultCode flush() {
+            return CompletableResultCode.ofSuccess();
+        }
+
+        @Override
+        public CompletableResultCode shutdown() {
+            return CompletableResultCode.ofSuccess();
+        }
+    }
+}
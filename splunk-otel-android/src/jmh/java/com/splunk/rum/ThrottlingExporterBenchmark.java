@@ -0,0 +1,128 @@
+/*
+ * Copyright Splunk Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.splunk.rum;
+
+import static com.splunk.rum.SplunkRum.COMPONENT_KEY;
+
+import io.opentelemetry.api.common.Attributes;
+import io.opentelemetry.api.trace.SpanKind;
+import io.opentelemetry.sdk.common.CompletableResultCode;
+import io.opentelemetry.sdk.testing.trace.TestSpanData;
+import io.opentelemetry.sdk.trace.data.DelegatingSpanData;
+import io.opentelemetry.sdk.trace.data.SpanData;
+import io.opentelemetry.sdk.trace.data.StatusData;
+import io.opentelemetry.sdk.trace.export.SpanExporter;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Exports batches of 100 spans, spread over three components, through the throttling exporter with
+ * the configuration of the memory buffering path. Time moves on between batches, so that some
+ * spans are throttled and the windows keep sliding.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ThrottlingExporterBenchmark {
+
+    private static final int BATCH_SIZE = 100;
+    private static final long SPAN_INTERVAL_NANOS = TimeUnit.MILLISECONDS.toNanos(150);
+    private static final String[] COMPONENTS = {"ui", "http", "appstart"};
+
+    private final List<MovingSpan> batch = new ArrayList<>(BATCH_SIZE);
+    private ThrottlingExporter exporter;
+
+    @Setup
+    public void setup() {
+        exporter =
+                ThrottlingExporter.newBuilder(new NoopExporter())
+                        .categorizeByAttribute(COMPONENT_KEY)
+                        .maxSpansInWindow(100)
+                        .windowSize(Duration.ofSeconds(30))
+                        .build();
+        for (int i = 0; i < BATCH_SIZE; i++) {
+            SpanData span =
+                    TestSpanData.builder()
+                            .setName("span")
+                            .setKind(SpanKind.INTERNAL)
+                            .setStatus(StatusData.unset())
+                            .setStartEpochNanos(0)
+                            .setEndEpochNanos(1)
+                            .setHasEnded(true)
+                            .setAttributes(
+                                    Attributes.of(COMPONENT_KEY, COMPONENTS[i % COMPONENTS.length]))
+                            .build();
+            batch.add(new MovingSpan(span, i * SPAN_INTERVAL_NANOS));
+        }
+    }
+
+    @Benchmark
+    public CompletableResultCode export() {
+        for (MovingSpan span : batch) {
+            span.endEpochNanos += BATCH_SIZE * SPAN_INTERVAL_NANOS;
+        }
+        return exporter.export(new ArrayList<>(batch));
+    }
+
+    private static class MovingSpan extends DelegatingSpanData {
+        private long endEpochNanos;
+
+        private MovingSpan(SpanData delegate, long endEpochNanos) {
+            super(delegate);
+            this.endEpochNanos = endEpochNanos;
+        }
+
+        @Override
+        public long getEndEpochNanos() {
+            return endEpochNanos;
+        }
+    }
+
+    private static class NoopExporter implements SpanExporter {
+
+        @Override
+        public CompletableResultCode export(Collection<SpanData> spans) {
+            return CompletableResultCode.ofSuccess();
+        }
+
+        @Override
+        public CompletableResultCode flush() {
+            return CompletableResultCode.ofSuccess();
+        }
+
+        @Override
+        public CompletableResultCode shutdown() {
+            return CompletableResultCode.ofSuccess();
+        }
+    }
+}
@@ -0,0 +1,80 @@
+/*
+ * Copyright Splunk Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.splunk.rum.internal;
+
+import io.opentelemetry.api.common.Attributes;
+import io.opentelemetry.api.trace.Span;
+import io.opentelemetry.api.trace.SpanKind;
+import io.opentelemetry.context.Context;
+import io.opentelemetry.sdk.trace.samplers.Sampler;
+import io.opentelemetry.sdk.trace.samplers.SamplingResult;
+import java.util.Collections;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Samples spans within the same session, which hits the cached decision, and across alternating
+ * sessions, which converts the session id every time.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class UInt32QuadXorTraceIdRatioSamplerBenchmark {
+
+    private static final String TRACE_ID = "9499195c502eb217c448a68bfe0f967c";
+    private static final String[] SESSION_IDS = {
+        "4777abcd3f7777abcdefc6899bc11a3e", "9777abcd3f7777abcdefc6899bc11a3e"
+    };
+
+    private final Context parentContext = Context.root().with(Span.getInvalid());
+    private final Sampler sameSessionSampler =
+            UInt32QuadXorTraceIdRatioSampler.create(0.5, () -> SESSION_IDS[0]);
+    private int sessionIndex;
+    private final Sampler changingSessionSampler =
+            UInt32QuadXorTraceIdRatioSampler.create(0.5, () -> SESSION_IDS[sessionIndex++ & 1]);
+
+    @Benchmark
+    public SamplingResult sameSession() {
+        return shouldSample(sameSessionSampler);
+    }
+
+    @Benchmark
+    public SamplingResult changingSession() {
+        return shouldSample(changingSessionSampler);
+    }
+
+    private SamplingResult shouldSample(Sampler sampler) {
+        return sampler.shouldSample(
+                parentContext,
+                TRACE_ID,
+                "span",
+                SpanKind.INTERNAL,
+                Attributes.empty(),
+                Collections.emptyList());
+    }
+}
@@ -0,0 +1,120 @@
+/*
+ * Copyright Splunk Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.splunk.rum;
+
+import androidx.annotation.Nullable;
+import io.opentelemetry.android.instrumentation.activity.VisibleScreenTracker;
+import io.opentelemetry.android.instrumentation.network.CurrentNetwork;
+import io.opentelemetry.android.instrumentation.network.CurrentNetworkProvider;
+import io.opentelemetry.android.instrumentation.network.NetworkState;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Picks how often and in how large batches spans are exported, based on the state of the app, the
+ * network and the battery. While the user is active on an unmetered network spans are exported
+ * promptly; in the background, on a slow cellular network or when offline they are collected into
+ * larger, less frequent batches, so that the radio wakes up less often. A constrained battery
+ * doubles the delay.
+ */
+class AdaptiveExportSchedule {
+
+    static final Settings FOREGROUND_UNMETERED = new Settings(TimeUnit.SECONDS.toNanos(1), 128);
+    static final Settings FOREGROUND_METERED = new Settings(TimeUnit.SECONDS.toNanos(5), 256);
+    static final Settings BACKGROUND = new Settings(TimeUnit.SECONDS.toNanos(30), 512);
+    static final Settings OFFLINE = new Settings(TimeUnit.SECONDS.toNanos(60), 512);
+
+    // the subtypes of 2G cellular networks, where every wake-up of the radio is expensive
+    private static final Set<String> SLOW_CELLULAR_SUBTYPES =
+            Collections.unmodifiableSet(
+                    new HashSet<>(Arrays.asList("GPRS", "EDGE", "CDMA", "1xRTT", "IDEN", "GSM")));
+
+    private final VisibleScreenTracker visibleScreenTracker;
+    private final CurrentNetworkProvider currentNetworkProvider;
+    private final BatteryMonitor batteryMonitor;
+
+    AdaptiveExportSchedule(
+            VisibleScreenTracker visibleScreenTracker,
+            CurrentNetworkProvider currentNetworkProvider,
+            BatteryMonitor batteryMonitor) {
+        this.visibleScreenTracker = visibleScreenTracker;
+        this.currentNetworkProvider = currentNetworkProvider;
+        this.batteryMonitor = batteryMonitor;
+    }
+
+    /** Returns whether a screen of the app is visible. This is cheap enough to call per span. */
+    boolean isForeground() {
+        String screen = visibleScreenTracker.getCurrentlyVisibleScreen();
+        return screen != null && !screen.equals("unknown");
+    }
+
+    /**
+     * Returns the settings for the current state of the network and the battery, and the given
+     * state of the app. The network state is the one last reported to the network listener, so
+     * this doesn't call into the system.
+     */
+    Settings current(boolean foreground) {
+        CurrentNetwork network = currentNetworkProvider.getCurrentNetwork();
+        return settingsFor(
+                foreground,
+                network.isOnline(),
+                network.getState(),
+                network.getSubType(),
+                batteryMonitor.isConstrained());
+    }
+
+    // Visible for testing
+    static Settings settingsFor(
+            boolean foreground,
+            boolean online,
+            NetworkState networkState,
+            @Nullable String subType,
+            boolean batteryConstrained) {
+        Settings settings;
+        if (!online) {
+            settings = OFFLINE;
+        } else if (!foreground) {
+            settings = BACKGROUND;
+        } else if (networkState == NetworkState.TRANSPORT_WIFI
+                || networkState == NetworkState.TRANSPORT_WIRED) {
+            settings = FOREGROUND_UNMETERED;
+        } else if (subType != null && SLOW_CELLULAR_SUBTYPES.contains(subType)) {
+            settings = BACKGROUND;
+        } else {
+            settings = FOREGROUND_METERED;
+        }
+        return batteryConstrained ? settings.withDoubledDelay() : settings;
+    }
+
+    /** The delay between exports and the maximum number of spans exported at once. */
+    static final class Settings {
+        final long delayNanos;
+        final int maxBatchSize;
+
+        Settings(long delayNanos, int maxBatchSize) {
+            this.delayNanos = delayNanos;
+            this.maxBatchSize = maxBatchSize;
+        }
+
+        Settings withDoubledDelay() {
+            return new Settings(delayNanos * 2, maxBatchSize);
+        }
+    }
+}
@@ -0,0 +1,132 @@
+/*
+ * Copyright Splunk Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.splunk.rum;
+
+import androidx.annotation.Nullable;
+import io.opentelemetry.exporter.zipkin.ZipkinSpanExporter;
+import io.opentelemetry.exporter.zipkin.ZipkinSpanExporterBuilder;
+import io.opentelemetry.sdk.common.CompletableResultCode;
+import io.opentelemetry.sdk.trace.data.SpanData;
+import io.opentelemetry.sdk.trace.export.SpanExporter;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import zipkin2.reporter.BytesMessageSender;
+import zipkin2.reporter.Encoding;
+
+/**
+ * Exports zipkin spans without waiting for the backend. The {@link ZipkinSpanExporter} only
+ * converts and encodes the spans: its sender captures the encoded spans instead of sending them.
+ * They are then posted by a {@link StreamingZipkinSender}, and the returned result is completed
+ * from the http client's callback. Flushing and shutting down complete once the requests sent so
+ * far have.
+ */
+class AsyncZipkinSpanExporter implements SpanExporter {
+
+    private final ZipkinSpanExporter encoder;
+    private final CapturingSender capturingSender = new CapturingSender();
+    private final StreamingZipkinSender sender;
+    // the results of the requests in flight, guarded by this
+    private final Set<CompletableResultCode> pendingResults = new HashSet<>();
+
+    AsyncZipkinSpanExporter(
+            ZipkinSpanExporterBuilder encoderBuilder, StreamingZipkinSender sender) {
+        this.encoder = encoderBuilder.setSender(capturingSender).build();
+        this.sender = sender;
+    }
+
+    @Override
+    public CompletableResultCode export(Collection<SpanData> spans) {
+        List<byte[]> encodedSpans;
+        // the zipkin exporter calls the sender on the calling thread
+        synchronized (capturingSender) {
+            CompletableResultCode encoded = encoder.export(spans);
+            encodedSpans = capturingSender.take();
+            if (!encoded.isSuccess() || encodedSpans == null) {
+                return encoded;
+            }
+        }
+        CompletableResultCode result = sender.sendAsync(encodedSpans);
+        synchronized (this) {
+            pendingResults.add(result);
+        }
+        result.whenComplete(
+                () -> {
+                    synchronized (this) {
+                        pendingResults.remove(result);
+                    }
+                });
+        return result;
+    }
+
+    @Override
+    public CompletableResultCode flush() {
+        return CompletableResultCode.ofAll(pendingResults());
+    }
+
+    @Override
+    public CompletableResultCode shutdown() {
+        List<CompletableResultCode> results = pendingResults();
+        results.add(encoder.shutdown());
+        return CompletableResultCode.ofAll(results);
+    }
+
+    private synchronized List<CompletableResultCode> pendingResults() {
+        return new ArrayList<>(pendingResults);
+    }
+
+    private static final class CapturingSender implements BytesMessageSender {
+        @Nullable private List<byte[]> encodedSpans;
+
+        @Override
+        public Encoding encoding() {
+            return Encoding.JSON;
+        }
+
+        @Override
+        public int messageMaxBytes() {
+            return Integer.MAX_VALUE;
+        }
+
+        @Override
+        public int messageSizeInBytes(List<byte[]> encodedSpans) {
+            return Encoding.JSON.listSizeInBytes(encodedSpans);
+        }
+
+        @Override
+        public int messageSizeInBytes(int encodedSizeInBytes) {
+            return Encoding.JSON.listSizeInBytes(encodedSizeInBytes);
+        }
+
+        @Override
+        public void send(List<byte[]> encodedSpans) {
+            this.encodedSpans = encodedSpans;
+        }
+
+        @Override
+        public void close() {}
+
+        @Nullable
+        private List<byte[]> take() {
+            List<byte[]> taken = encodedSpans;
+            encodedSpans = null;
+            return taken;
+        }
+    }
+}
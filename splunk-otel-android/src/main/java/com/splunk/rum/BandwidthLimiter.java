@@ -0,0 +1,141 @@
+/*
+ * Copyright Splunk Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.splunk.rum;
+
+import io.opentelemetry.android.instrumentation.network.NetworkState;
+import io.opentelemetry.sdk.common.Clock;
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Token bucket that limits the bandwidth used to upload span data. It counts the bytes of the
+ * request bodies that are sent, i.e. compressed segments at their compressed size and everything
+ * else at its encoded size. Compression applied by the http sender itself and protocol overhead
+ * are not counted.
+ *
+ * <p>The bucket refills at the rate of the budget for the current network type, up to the burst
+ * size of that budget. An upload may take more bytes than are available, which leaves the bucket
+ * in debt until it is paid back by the refill.
+ */
+class BandwidthLimiter {
+
+    /** Budget for metered, or possibly metered, networks. */
+    static final Budget DEFAULT_BUDGET = new Budget(15 * 1024, 128 * 1024);
+
+    /** Budget for Wi-Fi and wired networks. */
+    static final Budget UNMETERED_BUDGET = new Budget(128 * 1024, 1024 * 1024);
+
+    private final Map<NetworkState, Budget> budgets;
+    private final Clock clock;
+
+    private Budget budget;
+    private double availableBytes;
+    private long lastRefillNanos;
+
+    private BandwidthLimiter(Builder builder) {
+        this.budgets = new EnumMap<>(builder.budgets);
+        this.clock = builder.clock;
+        this.budget = DEFAULT_BUDGET;
+        this.availableBytes = budget.burstBytes;
+        this.lastRefillNanos = clock.nanoTime();
+    }
+
+    /**
+     * Switches to the budget of the given network type. The bytes available are capped to the burst
+     * size of the new budget, so switching to a metered network does not carry over a large
+     * allowance.
+     */
+    synchronized void setNetworkState(NetworkState networkState) {
+        refill();
+        Budget newBudget = budgets.get(networkState);
+        budget = newBudget == null ? DEFAULT_BUDGET : newBudget;
+        availableBytes = Math.min(availableBytes, budget.burstBytes);
+    }
+
+    /** Returns true if there are bytes available for another upload. */
+    synchronized boolean hasCapacity() {
+        refill();
+        return availableBytes > 0;
+    }
+
+    /** Takes the bytes of an upload out of the bucket. */
+    synchronized void consume(long bytes) {
+        refill();
+        availableBytes -= bytes;
+    }
+
+    /** Returns the time until there are bytes available again, or 0 if there are some already. */
+    synchronized long getMillisUntilCapacity() {
+        refill();
+        if (availableBytes > 0) {
+            return 0;
+        }
+        // rounded up, so that the bucket is no longer empty by then
+        return (long) Math.floor(-availableBytes * 1000 / budget.bytesPerSecond) + 1;
+    }
+
+    private void refill() {
+        long now = clock.nanoTime();
+        double elapsedSeconds = (now - lastRefillNanos) / (double) TimeUnit.SECONDS.toNanos(1);
+        lastRefillNanos = now;
+        availableBytes =
+                Math.min(
+                        availableBytes + budget.bytesPerSecond * elapsedSeconds,
+                        budget.burstBytes);
+    }
+
+    static Builder builder() {
+        return new Builder();
+    }
+
+    /** The sustained rate and the burst size allowed on a network type. */
+    static final class Budget {
+        final long bytesPerSecond;
+        final long burstBytes;
+
+        Budget(long bytesPerSecond, long burstBytes) {
+            this.bytesPerSecond = bytesPerSecond;
+            this.burstBytes = burstBytes;
+        }
+    }
+
+    static class Builder {
+        private final Map<NetworkState, Budget> budgets = new EnumMap<>(NetworkState.class);
+        private Clock clock = Clock.getDefault();
+
+        Builder() {
+            budgets.put(NetworkState.TRANSPORT_WIFI, UNMETERED_BUDGET);
+            budgets.put(NetworkState.TRANSPORT_WIRED, UNMETERED_BUDGET);
+        }
+
+        /** Sets the budget of a network type. Network types without a budget get the default. */
+        Builder budget(NetworkState networkState, Budget budget) {
+            budgets.put(networkState, budget);
+            return this;
+        }
+
+        Builder clock(Clock clock) {
+            this.clock = clock;
+            return this;
+        }
+
+        BandwidthLimiter build() {
+            return new BandwidthLimiter(this);
+        }
+    }
+}
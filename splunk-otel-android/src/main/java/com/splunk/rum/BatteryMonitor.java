@@ -0,0 +1,94 @@
+/*
+ * Copyright Splunk Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.splunk.rum;
+
+import static com.splunk.rum.SplunkRum.LOG_TAG;
+
+import android.content.Context;
+import android.content.Intent;
+import android.content.IntentFilter;
+import android.os.BatteryManager;
+import android.os.PowerManager;
+import android.util.Log;
+import io.opentelemetry.sdk.common.Clock;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Tells whether the battery is constrained: battery saver is on, or the battery is low and not
+ * charging. The battery state is read from the sticky battery broadcast, which takes a call into
+ * the system, so it is refreshed at most once a minute.
+ */
+class BatteryMonitor {
+
+    static final int LOW_BATTERY_PERCENT = 15;
+    private static final long REFRESH_INTERVAL_NANOS = TimeUnit.MINUTES.toNanos(1);
+
+    private final Context context;
+    private final Clock clock;
+
+    private boolean constrained;
+    private long refreshedAtNanos;
+    private boolean refreshed;
+
+    BatteryMonitor(Context context) {
+        this(context, Clock.getDefault());
+    }
+
+    // Visible for testing
+    BatteryMonitor(Context context, Clock clock) {
+        this.context = context;
+        this.clock = clock;
+    }
+
+    synchronized boolean isConstrained() {
+        long now = clock.nanoTime();
+        if (!refreshed || now - refreshedAtNanos >= REFRESH_INTERVAL_NANOS) {
+            constrained = readConstrained();
+            refreshedAtNanos = now;
+            refreshed = true;
+        }
+        return constrained;
+    }
+
+    private boolean readConstrained() {
+        try {
+            PowerManager powerManager =
+                    (PowerManager) context.getSystemService(Context.POWER_SERVICE);
+            if (powerManager != null && powerManager.isPowerSaveMode()) {
+                return true;
+            }
+            Intent battery =
+                    context.registerReceiver(
+                            null, new IntentFilter(Intent.ACTION_BATTERY_CHANGED));
+            if (battery == null) {
+                return false;
+            }
+            int status = battery.getIntExtra(BatteryManager.EXTRA_STATUS, -1);
+            if (status == BatteryManager.BATTERY_STATUS_CHARGING
+                    || status == BatteryManager.BATTERY_STATUS_FULL) {
+                return false;
+            }
+            int level = battery.getIntExtra(BatteryManager.EXTRA_LEVEL, -1);
+            int scale = battery.getIntExtra(BatteryManager.EXTRA_SCALE, -1);
+            return level >= 0 && scale > 0 && level * 100 / scale <= LOW_BATTERY_PERCENT;
+        } catch (RuntimeException e) {
+            // e.g. when called from a broadcast receiver's context
+            Log.w(LOG_TAG, "Unable to read the battery state", e);
+            return false;
+        }
+    }
+}
@@ -0,0 +1,169 @@
+/*
+ * Copyright Splunk Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.splunk.rum;
+
+import androidx.annotation.Nullable;
+import io.opentelemetry.sdk.trace.data.SpanData;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * A queue of spans that is bounded by the {@linkplain SpanSizeEstimator estimated heap} the spans
+ * retain. When a new span does not fit, spans are evicted according to the {@link
+ * MemoryBufferEvictionPolicy} and counted as dropped.
+ *
+ * <p>Each {@linkplain SpanPriority priority class} has its own ring, so that evicting the oldest
+ * span of a class is as cheap as evicting the oldest span overall. The spans are numbered as they
+ * are added, which keeps their order when they are drained from the rings.
+ *
+ * <p>Not thread-safe.
+ */
+final class BoundedSpanQueue {
+
+    static final long DEFAULT_MAX_BYTES = 2 * 1024 * 1024;
+
+    private final long maxBytes;
+    private final MemoryBufferEvictionPolicy evictionPolicy;
+    private final DroppedSpanCounter droppedSpanCounter;
+    private final List<ArrayDeque<Entry>> rings = new ArrayList<>();
+
+    private long nextSequence;
+    private long estimatedBytes;
+    private int size;
+
+    BoundedSpanQueue(
+            long maxBytes,
+            MemoryBufferEvictionPolicy evictionPolicy,
+            DroppedSpanCounter droppedSpanCounter) {
+        this.maxBytes = maxBytes;
+        this.evictionPolicy = evictionPolicy;
+        this.droppedSpanCounter = droppedSpanCounter;
+        for (int i = 0; i < SpanPriority.values().length; i++) {
+            rings.add(new ArrayDeque<>());
+        }
+    }
+
+    void add(SpanData span) {
+        SpanPriority priority = SpanPriority.of(span);
+        long bytes = SpanSizeEstimator.estimateRetainedBytes(span);
+        if (bytes > maxBytes) {
+            droppedSpanCounter.add(priority, 1);
+            return;
+        }
+        rings.get(priority.ordinal()).addLast(new Entry(span, nextSequence++, bytes));
+        estimatedBytes += bytes;
+        size++;
+        while (estimatedBytes > maxBytes) {
+            evict();
+        }
+    }
+
+    void addAll(Collection<SpanData> spans) {
+        for (SpanData span : spans) {
+            add(span);
+        }
+    }
+
+    /** Removes all spans from the queue, and returns them in the order they were added. */
+    List<SpanData> drain() {
+        List<SpanData> spans = new ArrayList<>(size);
+        while (size > 0) {
+            spans.add(removeFirst(oldestRing()).span);
+        }
+        return spans;
+    }
+
+    boolean isEmpty() {
+        return size == 0;
+    }
+
+    int size() {
+        return size;
+    }
+
+    long estimatedBytes() {
+        return estimatedBytes;
+    }
+
+    void clear() {
+        for (ArrayDeque<Entry> ring : rings) {
+            ring.clear();
+        }
+        estimatedBytes = 0;
+        size = 0;
+    }
+
+    private void evict() {
+        ArrayDeque<Entry> ring =
+                evictionPolicy == MemoryBufferEvictionPolicy.LOWEST_PRIORITY_FIRST
+                        ? lowestPriorityRing()
+                        : oldestRing();
+        removeFirst(ring);
+        droppedSpanCounter.add(SpanPriority.values()[rings.indexOf(ring)], 1);
+    }
+
+    private Entry removeFirst(ArrayDeque<Entry> ring) {
+        Entry entry = ring.removeFirst();
+        estimatedBytes -= entry.bytes;
+        size--;
+        return entry;
+    }
+
+    // only called when the queue is not empty
+    private ArrayDeque<Entry> oldestRing() {
+        ArrayDeque<Entry> oldest = null;
+        for (ArrayDeque<Entry> ring : rings) {
+            Entry first = ring.peekFirst();
+            if (first != null && (oldest == null || first.sequence < oldest.getFirst().sequence)) {
+                oldest = ring;
+            }
+        }
+        return requireNonEmpty(oldest);
+    }
+
+    private ArrayDeque<Entry> lowestPriorityRing() {
+        ArrayDeque<Entry> lowest = null;
+        for (ArrayDeque<Entry> ring : rings) {
+            if (!ring.isEmpty()) {
+                lowest = ring;
+                break;
+            }
+        }
+        return requireNonEmpty(lowest);
+    }
+
+    private static ArrayDeque<Entry> requireNonEmpty(@Nullable ArrayDeque<Entry> ring) {
+        if (ring == null) {
+            throw new IllegalStateException("the queue is empty");
+        }
+        return ring;
+    }
+
+    private static final class Entry {
+        private final SpanData span;
+        private final long sequence;
+        private final long bytes;
+
+        private Entry(SpanData span, long sequence, long bytes) {
+            this.span = span;
+            this.sequence = sequence;
+            this.bytes = bytes;
+        }
+    }
+}
@@ -21,11 +21,18 @@ import androidx.annotation.NonNull;
 class ConfigFlags {
     private boolean debugEnabled = false;
     private boolean diskBufferingEnabled = false;
+    private boolean diskBufferingCompressionEnabled = false;
+    private boolean diskBufferingBinaryFormatEnabled = false;
+    private boolean diskBufferingSpilloverEnabled = false;
     private boolean reactNativeSupportEnabled = false;
     private boolean crashReportingEnabled = true;
     private boolean networkMonitorEnabled = true;
     private boolean anrDetectionEnabled = true;
     private boolean slowRenderingDetectionEnabled = true;
+    private boolean stackTraceDeduplicationEnabled = true;
+    private boolean throttledSpanSummaryEnabled = false;
+    private boolean adaptiveBatchingEnabled = false;
+    private boolean lockFreeSpanProcessorEnabled = false;
     private boolean subprocessInstrumentationEnabled = true;
     private boolean backgroundInstrumentationDeferredUntilForeground = false;
     private boolean exportUsingOtlp = false;
@@ -38,6 +45,18 @@ class ConfigFlags {
         diskBufferingEnabled = true;
     }
 
+    void enableDiskBufferingCompression() {
+        diskBufferingCompressionEnabled = true;
+    }
+
+    void enableDiskBufferingBinaryFormat() {
+        diskBufferingBinaryFormatEnabled = true;
+    }
+
+    void enableDiskBufferingSpillover() {
+        diskBufferingSpilloverEnabled = true;
+    }
+
     void enableReactNativeSupport() {
         reactNativeSupportEnabled = true;
     }
@@ -58,6 +77,22 @@ class ConfigFlags {
         slowRenderingDetectionEnabled = false;
     }
 
+    void disableStackTraceDeduplication() {
+        stackTraceDeduplicationEnabled = false;
+    }
+
+    void enableThrottledSpanSummary() {
+        throttledSpanSummaryEnabled = true;
+    }
+
+    void enableAdaptiveBatching() {
+        adaptiveBatchingEnabled = true;
+    }
+
+    void enableLockFreeSpanProcessor() {
+        lockFreeSpanProcessorEnabled = true;
+    }
+
     public void disableSubprocessInstrumentation() {
         subprocessInstrumentationEnabled = false;
     }
@@ -90,6 +125,22 @@ class ConfigFlags {
         return slowRenderingDetectionEnabled;
     }
 
+    boolean isStackTraceDeduplicationEnabled() {
+        return stackTraceDeduplicationEnabled;
+    }
+
+    boolean isThrottledSpanSummaryEnabled() {
+        return throttledSpanSummaryEnabled;
+    }
+
+    boolean isAdaptiveBatchingEnabled() {
+        return adaptiveBatchingEnabled;
+    }
+
+    boolean isLockFreeSpanProcessorEnabled() {
+        return lockFreeSpanProcessorEnabled;
+    }
+
     boolean isCrashReportingEnabled() {
         return crashReportingEnabled;
     }
@@ -98,6 +149,18 @@ class ConfigFlags {
         return diskBufferingEnabled;
     }
 
+    boolean isDiskBufferingCompressionEnabled() {
+        return diskBufferingCompressionEnabled;
+    }
+
+    boolean isDiskBufferingBinaryFormatEnabled() {
+        return diskBufferingBinaryFormatEnabled;
+    }
+
+    boolean isDiskBufferingSpilloverEnabled() {
+        return diskBufferingSpilloverEnabled;
+    }
+
     boolean isReactNativeSupportEnabled() {
         return reactNativeSupportEnabled;
     }
@@ -106,10 +169,6 @@ class ConfigFlags {
         exportUsingOtlp = true;
     }
 
-    void disableOtlpExporter() {
-        exportUsingOtlp = false;
-    }
-
     boolean shouldUseOtlpExporter() {
         return exportUsingOtlp;
     }
@@ -131,6 +190,33 @@ class ConfigFlags {
                 + ","
                 + "networkMonitor:"
                 + networkMonitorEnabled
+                + ","
+                + "diskBuffering:"
+                + diskBufferingEnabled
+                + ","
+                + "diskBufferingCompression:"
+                + diskBufferingCompressionEnabled
+                + ","
+                + "diskBufferingBinaryFormat:"
+                + diskBufferingBinaryFormatEnabled
+                + ","
+                + "diskBufferingSpillover:"
+                + diskBufferingSpilloverEnabled
+                + ","
+                + "otlpExporter:"
+                + exportUsingOtlp
+                + ","
+                + "stackTraceDeduplication:"
+                + stackTraceDeduplicationEnabled
+                + ","
+                + "throttledSpanSummary:"
+                + throttledSpanSummaryEnabled
+                + ","
+                + "adaptiveBatching:"
+                + adaptiveBatchingEnabled
+                + ","
+                + "lockFreeSpanProcessor:"
+                + lockFreeSpanProcessorEnabled
                 + "]";
     }
 }
@@ -16,11 +16,16 @@
 
 package com.splunk.rum;
 
-import java.nio.charset.StandardCharsets;
+import androidx.annotation.Nullable;
+import io.opentelemetry.api.common.AttributeKey;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import zipkin2.Annotation;
+import zipkin2.Endpoint;
 import zipkin2.Span;
-import zipkin2.internal.JsonCodec;
-import zipkin2.internal.V2SpanWriter;
-import zipkin2.internal.WriteBuffer;
 import zipkin2.reporter.BytesEncoder;
 import zipkin2.reporter.Encoding;
 
@@ -28,12 +33,42 @@ import zipkin2.reporter.Encoding;
  * We need a custom encoder to correct for the fact that the zipkin Span.Builder lowercases all Span
  * names.
  *
- * <p>SplunkSpanDataModifier#SPLUNK_OPERATION_KEY}) with the span name properly cased, then
- * correcting the span name here at encoding time.
+ * <p>The properly cased name is carried in a tag ({@link
+ * SplunkSpanDataModifier#SPLUNK_OPERATION_KEY}). This encoder writes the zipkin v2 JSON itself,
+ * using that name instead of the lowercased one and leaving the tag out, so that each span is
+ * encoded in a single pass straight into its final byte array. Sizing runs the same code without
+ * storing the bytes, so the size always matches the encoded span.
+ *
+ * <p>The resource attributes that {@link SplunkSpanDataModifier} copies into every span have the
+ * same values for the whole process. Their encoded tags are kept and copied into each span, instead
+ * of being escaped again every time.
  */
 class CustomZipkinEncoder implements BytesEncoder<Span> {
 
-    private final WriteBuffer.Writer<Span> writer = new V2SpanWriter();
+    private static final String SPLUNK_OPERATION_TAG =
+            SplunkSpanDataModifier.SPLUNK_OPERATION_KEY.getKey();
+    private static final char[] HEX_DIGITS = "0123456789abcdef".toCharArray();
+
+    private final Set<String> constantTagKeys;
+    // by tag key, only ever holds the constant tags
+    private final Map<String, EncodedTag> encodedTags = new ConcurrentHashMap<>();
+
+    CustomZipkinEncoder() {
+        this(resourceTagKeys());
+    }
+
+    // visible for testing
+    CustomZipkinEncoder(Set<String> constantTagKeys) {
+        this.constantTagKeys = constantTagKeys;
+    }
+
+    private static Set<String> resourceTagKeys() {
+        Set<String> keys = new HashSet<>();
+        for (AttributeKey<String> key : SplunkSpanDataModifier.resourceAttributesToCopy) {
+            keys.add(key.getKey());
+        }
+        return keys;
+    }
 
     @Override
     public Encoding encoding() {
@@ -42,21 +77,301 @@ class CustomZipkinEncoder implements BytesEncoder<Span> {
 
     @Override
     public int sizeInBytes(Span span) {
-        return this.writer.sizeInBytes(span);
+        JsonOutput out = new JsonOutput(null);
+        writeSpan(span, out);
+        return out.position;
     }
 
     @Override
     public byte[] encode(Span span) {
-        String properSpanName =
-                span.tags().get(SplunkSpanDataModifier.SPLUNK_OPERATION_KEY.getKey());
-
-        // note: this can be optimized, if necessary. Let's keep it simple for now.
-        byte[] rawBytes = JsonCodec.write(this.writer, span);
-        String renamedResult =
-                new String(rawBytes, StandardCharsets.UTF_8)
-                        .replace(
-                                "\"name\":\"" + span.name() + "\"",
-                                "\"name\":\"" + properSpanName + "\"");
-        return renamedResult.getBytes(StandardCharsets.UTF_8);
+        byte[] bytes = new byte[sizeInBytes(span)];
+        writeSpan(span, new JsonOutput(bytes));
+        return bytes;
+    }
+
+    private void writeSpan(Span span, JsonOutput out) {
+        out.writeAscii("{\"traceId\":\"");
+        out.writeAscii(span.traceId());
+        String parentId = span.parentId();
+        if (parentId != null) {
+            out.writeAscii("\",\"parentId\":\"");
+            out.writeAscii(parentId);
+        }
+        out.writeAscii("\",\"id\":\"");
+        out.writeAscii(span.id());
+        out.writeByte('"');
+        Span.Kind kind = span.kind();
+        if (kind != null) {
+            out.writeAscii(",\"kind\":\"");
+            out.writeAscii(kind.name());
+            out.writeByte('"');
+        }
+        String name = span.tags().get(SPLUNK_OPERATION_TAG);
+        if (name == null) {
+            name = span.name();
+        }
+        if (name != null) {
+            out.writeAscii(",\"name\":\"");
+            out.writeEscaped(name);
+            out.writeByte('"');
+        }
+        if (span.timestampAsLong() != 0L) {
+            out.writeAscii(",\"timestamp\":");
+            out.writeLong(span.timestampAsLong());
+        }
+        if (span.durationAsLong() != 0L) {
+            out.writeAscii(",\"duration\":");
+            out.writeLong(span.durationAsLong());
+        }
+        Endpoint localEndpoint = span.localEndpoint();
+        if (localEndpoint != null) {
+            out.writeAscii(",\"localEndpoint\":");
+            writeEndpoint(localEndpoint, out);
+        }
+        Endpoint remoteEndpoint = span.remoteEndpoint();
+        if (remoteEndpoint != null) {
+            out.writeAscii(",\"remoteEndpoint\":");
+            writeEndpoint(remoteEndpoint, out);
+        }
+        writeAnnotations(span.annotations(), out);
+        writeTags(span.tags(), out);
+        if (Boolean.TRUE.equals(span.debug())) {
+            out.writeAscii(",\"debug\":true");
+        }
+        if (Boolean.TRUE.equals(span.shared())) {
+            out.writeAscii(",\"shared\":true");
+        }
+        out.writeByte('}');
+    }
+
+    private static void writeEndpoint(Endpoint endpoint, JsonOutput out) {
+        out.writeByte('{');
+        int start = out.position;
+        String serviceName = endpoint.serviceName();
+        if (serviceName != null) {
+            out.writeAscii("\"serviceName\":\"");
+            out.writeEscaped(serviceName);
+            out.writeByte('"');
+        }
+        String ipv4 = endpoint.ipv4();
+        if (ipv4 != null) {
+            out.writeAscii(out.position == start ? "\"ipv4\":\"" : ",\"ipv4\":\"");
+            out.writeAscii(ipv4);
+            out.writeByte('"');
+        }
+        String ipv6 = endpoint.ipv6();
+        if (ipv6 != null) {
+            out.writeAscii(out.position == start ? "\"ipv6\":\"" : ",\"ipv6\":\"");
+            out.writeAscii(ipv6);
+            out.writeByte('"');
+        }
+        int port = endpoint.portAsInt();
+        if (port != 0) {
+            out.writeAscii(out.position == start ? "\"port\":" : ",\"port\":");
+            out.writeLong(port);
+        }
+        out.writeByte('}');
+    }
+
+    private static void writeAnnotations(List<Annotation> annotations, JsonOutput out) {
+        if (annotations.isEmpty()) {
+            return;
+        }
+        out.writeAscii(",\"annotations\":[");
+        for (int i = 0; i < annotations.size(); i++) {
+            Annotation annotation = annotations.get(i);
+            out.writeAscii(i == 0 ? "{\"timestamp\":" : ",{\"timestamp\":");
+            out.writeLong(annotation.timestamp());
+            out.writeAscii(",\"value\":\"");
+            out.writeEscaped(annotation.value());
+            out.writeAscii("\"}");
+        }
+        out.writeByte(']');
+    }
+
+    private void writeTags(Map<String, String> tags, JsonOutput out) {
+        boolean first = true;
+        for (Map.Entry<String, String> tag : tags.entrySet()) {
+            // the proper span name is already in the name field
+            if (SPLUNK_OPERATION_TAG.equals(tag.getKey())) {
+                continue;
+            }
+            out.writeAscii(first ? ",\"tags\":{" : ",");
+            first = false;
+            EncodedTag encodedTag = getEncodedTag(tag.getKey(), tag.getValue());
+            if (encodedTag != null) {
+                out.writeBytes(encodedTag.bytes);
+            } else {
+                writeTag(tag.getKey(), tag.getValue(), out);
+            }
+        }
+        if (!first) {
+            out.writeByte('}');
+        }
+    }
+
+    private static void writeTag(String key, String value, JsonOutput out) {
+        out.writeByte('"');
+        out.writeEscaped(key);
+        out.writeAscii("\":\"");
+        out.writeEscaped(value);
+        out.writeByte('"');
+    }
+
+    @Nullable
+    private EncodedTag getEncodedTag(String key, String value) {
+        if (!constantTagKeys.contains(key)) {
+            return null;
+        }
+        EncodedTag encodedTag = encodedTags.get(key);
+        // the value is normally the very same string, unless the resource was replaced
+        if (encodedTag == null || !encodedTag.value.equals(value)) {
+            JsonOutput size = new JsonOutput(null);
+            writeTag(key, value, size);
+            byte[] bytes = new byte[size.position];
+            writeTag(key, value, new JsonOutput(bytes));
+            encodedTag = new EncodedTag(value, bytes);
+            encodedTags.put(key, encodedTag);
+        }
+        return encodedTag;
+    }
+
+    private static final class EncodedTag {
+        private final String value;
+        // the "key":"value" pair, as it appears in the tags object
+        private final byte[] bytes;
+
+        private EncodedTag(String value, byte[] bytes) {
+            this.value = value;
+            this.bytes = bytes;
+        }
+    }
+
+    /** Writes UTF-8 into a byte array, or only counts the bytes when there is no array. */
+    private static final class JsonOutput {
+        @Nullable private final byte[] bytes;
+        private int position;
+
+        private JsonOutput(@Nullable byte[] bytes) {
+            this.bytes = bytes;
+        }
+
+        private void writeByte(int b) {
+            if (bytes != null) {
+                bytes[position] = (byte) b;
+            }
+            position++;
+        }
+
+        private void writeAscii(String value) {
+            if (bytes == null) {
+                position += value.length();
+                return;
+            }
+            for (int i = 0; i < value.length(); i++) {
+                bytes[position++] = (byte) value.charAt(i);
+            }
+        }
+
+        private void writeBytes(byte[] value) {
+            if (bytes != null) {
+                System.arraycopy(value, 0, bytes, position, value.length);
+            }
+            position += value.length;
+        }
+
+        private void writeLong(long value) {
+            if (value < 0) {
+                writeAscii(Long.toString(value));
+                return;
+            }
+            int digits = 1;
+            for (long remaining = value; remaining >= 10; remaining /= 10) {
+                digits++;
+            }
+            if (bytes != null) {
+                long remaining = value;
+                for (int i = position + digits - 1; i >= position; i--) {
+                    bytes[i] = (byte) ('0' + remaining % 10);
+                    remaining /= 10;
+                }
+            }
+            position += digits;
+        }
+
+        /** Writes a JSON string value, escaped the same way as zipkin's own JSON encoder. */
+        private void writeEscaped(String value) {
+            for (int i = 0, length = value.length(); i < length; i++) {
+                char c = value.charAt(i);
+                if (c < 0x80) {
+                    writeEscapedAscii(c);
+                } else if (c == '\u2028' || c == '\u2029') {
+                    writeUnicodeEscape(c);
+                } else if (c < 0x800) {
+                    writeByte(0xc0 | (c >> 6));
+                    writeByte(0x80 | (c & 0x3f));
+                } else if (Character.isHighSurrogate(c)
+                        && i + 1 < length
+                        && Character.isLowSurrogate(value.charAt(i + 1))) {
+                    int codePoint = Character.toCodePoint(c, value.charAt(++i));
+                    writeByte(0xf0 | (codePoint >> 18));
+                    writeByte(0x80 | ((codePoint >> 12) & 0x3f));
+                    writeByte(0x80 | ((codePoint >> 6) & 0x3f));
+                    writeByte(0x80 | (codePoint & 0x3f));
+                } else if (Character.isSurrogate(c)) {
+                    // malformed surrogate pair
+                    writeByte('?');
+                } else {
+                    writeByte(0xe0 | (c >> 12));
+                    writeByte(0x80 | ((c >> 6) & 0x3f));
+                    writeByte(0x80 | (c & 0x3f));
+                }
+            }
+        }
+
+        private void writeEscapedAscii(char c) {
+            switch (c) {
+                case '"':
+                case '\\':
+                    writeByte('\\');
+                    writeByte(c);
+                    break;
+                case '\t':
+                    writeByte('\\');
+                    writeByte('t');
+                    break;
+                case '\b':
+                    writeByte('\\');
+                    writeByte('b');
+                    break;
+                case '\n':
+                    writeByte('\\');
+                    writeByte('n');
+                    break;
+                case '\r':
+                    writeByte('\\');
+                    writeByte('r');
+                    break;
+                case '\f':
+                    writeByte('\\');
+                    writeByte('f');
+                    break;
+                default:
+                    if (c < 0x20) {
+                        writeUnicodeEscape(c);
+                    } else {
+                        writeByte(c);
+                    }
+            }
+        }
+
+        private void writeUnicodeEscape(char c) {
+            writeByte('\\');
+            writeByte('u');
+            writeByte(HEX_DIGITS[(c >> 12) & 0xf]);
+            writeByte(HEX_DIGITS[(c >> 8) & 0xf]);
+            writeByte(HEX_DIGITS[(c >> 4) & 0xf]);
+            writeByte(HEX_DIGITS[c & 0xf]);
+        }
     }
 }
@@ -0,0 +1,274 @@
+/*
+ * Copyright Splunk Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.splunk.rum;
+
+import static com.splunk.rum.ProtoOutput.WIRETYPE_FIXED64;
+import static com.splunk.rum.ProtoOutput.WIRETYPE_LENGTH_DELIMITED;
+import static com.splunk.rum.ProtoOutput.WIRETYPE_VARINT;
+import static com.splunk.rum.ProtoOutput.key;
+import static com.splunk.rum.ProtoOutput.lengthDelimitedFieldSize;
+import static com.splunk.rum.ProtoOutput.utf8Size;
+import static com.splunk.rum.ProtoOutput.varintSize;
+
+import java.util.List;
+import java.util.Map;
+import zipkin2.Annotation;
+import zipkin2.Endpoint;
+import zipkin2.Span;
+import zipkin2.reporter.BytesEncoder;
+import zipkin2.reporter.Encoding;
+
+/**
+ * The protobuf counterpart of {@link CustomZipkinEncoder}: writes the zipkin {@code proto3}
+ * encoding of a span, with the properly cased span name and without the tag carrying it.
+ *
+ * <p>Each span is encoded as a {@code ListOfSpans.spans} field, i.e. a field key followed by the
+ * varint length of the span. Encoded spans are therefore length-prefixed records, and any number of
+ * them written back to back form a complete {@code ListOfSpans} message.
+ */
+class CustomZipkinProto3Encoder implements BytesEncoder<Span> {
+
+    private static final String SPLUNK_OPERATION_TAG =
+            SplunkSpanDataModifier.SPLUNK_OPERATION_KEY.getKey();
+
+    // ListOfSpans
+    private static final int SPANS = key(1, WIRETYPE_LENGTH_DELIMITED);
+    // Span
+    private static final int TRACE_ID = key(1, WIRETYPE_LENGTH_DELIMITED);
+    private static final int PARENT_ID = key(2, WIRETYPE_LENGTH_DELIMITED);
+    private static final int ID = key(3, WIRETYPE_LENGTH_DELIMITED);
+    private static final int KIND = key(4, WIRETYPE_VARINT);
+    private static final int NAME = key(5, WIRETYPE_LENGTH_DELIMITED);
+    private static final int TIMESTAMP = key(6, WIRETYPE_FIXED64);
+    private static final int DURATION = key(7, WIRETYPE_VARINT);
+    private static final int LOCAL_ENDPOINT = key(8, WIRETYPE_LENGTH_DELIMITED);
+    private static final int REMOTE_ENDPOINT = key(9, WIRETYPE_LENGTH_DELIMITED);
+    private static final int ANNOTATIONS = key(10, WIRETYPE_LENGTH_DELIMITED);
+    private static final int TAGS = key(11, WIRETYPE_LENGTH_DELIMITED);
+    private static final int DEBUG = key(12, WIRETYPE_VARINT);
+    private static final int SHARED = key(13, WIRETYPE_VARINT);
+    // Endpoint
+    private static final int SERVICE_NAME = key(1, WIRETYPE_LENGTH_DELIMITED);
+    private static final int IPV4 = key(2, WIRETYPE_LENGTH_DELIMITED);
+    private static final int IPV6 = key(3, WIRETYPE_LENGTH_DELIMITED);
+    private static final int PORT = key(4, WIRETYPE_VARINT);
+    // Annotation
+    private static final int ANNOTATION_TIMESTAMP = key(1, WIRETYPE_FIXED64);
+    private static final int ANNOTATION_VALUE = key(2, WIRETYPE_LENGTH_DELIMITED);
+    // map entry
+    private static final int MAP_KEY = key(1, WIRETYPE_LENGTH_DELIMITED);
+    private static final int MAP_VALUE = key(2, WIRETYPE_LENGTH_DELIMITED);
+
+    @Override
+    public Encoding encoding() {
+        return Encoding.PROTO3;
+    }
+
+    @Override
+    public int sizeInBytes(Span span) {
+        return lengthDelimitedFieldSize(spanSize(span));
+    }
+
+    @Override
+    public byte[] encode(Span span) {
+        int spanSize = spanSize(span);
+        ProtoOutput out = new ProtoOutput(new byte[lengthDelimitedFieldSize(spanSize)]);
+        out.writeByte(SPANS);
+        out.writeVarint(spanSize);
+        writeSpan(span, out);
+        return out.bytes;
+    }
+
+    private static String name(Span span) {
+        String name = span.tags().get(SPLUNK_OPERATION_TAG);
+        return name == null ? span.name() : name;
+    }
+
+    private static int spanSize(Span span) {
+        int size = hexFieldSize(span.traceId());
+        String parentId = span.parentId();
+        if (parentId != null) {
+            size += hexFieldSize(parentId);
+        }
+        size += hexFieldSize(span.id());
+        if (span.kind() != null) {
+            size += 2;
+        }
+        String name = name(span);
+        if (name != null && !name.isEmpty()) {
+            size += lengthDelimitedFieldSize(utf8Size(name));
+        }
+        if (span.timestampAsLong() != 0L) {
+            size += 1 + 8;
+        }
+        if (span.durationAsLong() != 0L) {
+            size += 1 + varintSize(span.durationAsLong());
+        }
+        Endpoint localEndpoint = span.localEndpoint();
+        if (localEndpoint != null) {
+            size += lengthDelimitedFieldSize(endpointSize(localEndpoint));
+        }
+        Endpoint remoteEndpoint = span.remoteEndpoint();
+        if (remoteEndpoint != null) {
+            size += lengthDelimitedFieldSize(endpointSize(remoteEndpoint));
+        }
+        for (Annotation annotation : span.annotations()) {
+            size += lengthDelimitedFieldSize(annotationSize(annotation));
+        }
+        for (Map.Entry<String, String> tag : span.tags().entrySet()) {
+            if (!SPLUNK_OPERATION_TAG.equals(tag.getKey())) {
+                size += lengthDelimitedFieldSize(tagSize(tag));
+            }
+        }
+        if (Boolean.TRUE.equals(span.debug())) {
+            size += 2;
+        }
+        if (Boolean.TRUE.equals(span.shared())) {
+            size += 2;
+        }
+        return size;
+    }
+
+    private static void writeSpan(Span span, ProtoOutput out) {
+        writeHexField(TRACE_ID, span.traceId(), out);
+        String parentId = span.parentId();
+        if (parentId != null) {
+            writeHexField(PARENT_ID, parentId, out);
+        }
+        writeHexField(ID, span.id(), out);
+        Span.Kind kind = span.kind();
+        if (kind != null) {
+            out.writeByte(KIND);
+            // the proto enum reserves 0 for an unspecified kind
+            out.writeByte(kind.ordinal() + 1);
+        }
+        String name = name(span);
+        if (name != null && !name.isEmpty()) {
+            out.writeStringField(NAME, name);
+        }
+        if (span.timestampAsLong() != 0L) {
+            out.writeByte(TIMESTAMP);
+            out.writeFixed64(span.timestampAsLong());
+        }
+        if (span.durationAsLong() != 0L) {
+            out.writeByte(DURATION);
+            out.writeVarint(span.durationAsLong());
+        }
+        Endpoint localEndpoint = span.localEndpoint();
+        if (localEndpoint != null) {
+            writeEndpointField(LOCAL_ENDPOINT, localEndpoint, out);
+        }
+        Endpoint remoteEndpoint = span.remoteEndpoint();
+        if (remoteEndpoint != null) {
+            writeEndpointField(REMOTE_ENDPOINT, remoteEndpoint, out);
+        }
+        writeAnnotations(span.annotations(), out);
+        for (Map.Entry<String, String> tag : span.tags().entrySet()) {
+            // the proper span name is already in the name field
+            if (!SPLUNK_OPERATION_TAG.equals(tag.getKey())) {
+                out.writeByte(TAGS);
+                out.writeVarint(tagSize(tag));
+                out.writeStringField(MAP_KEY, tag.getKey());
+                out.writeStringField(MAP_VALUE, tag.getValue());
+            }
+        }
+        if (Boolean.TRUE.equals(span.debug())) {
+            out.writeByte(DEBUG);
+            out.writeByte(1);
+        }
+        if (Boolean.TRUE.equals(span.shared())) {
+            out.writeByte(SHARED);
+            out.writeByte(1);
+        }
+    }
+
+    private static int endpointSize(Endpoint endpoint) {
+        int size = 0;
+        String serviceName = endpoint.serviceName();
+        if (serviceName != null) {
+            size += lengthDelimitedFieldSize(utf8Size(serviceName));
+        }
+        byte[] ipv4 = endpoint.ipv4Bytes();
+        if (ipv4 != null) {
+            size += lengthDelimitedFieldSize(ipv4.length);
+        }
+        byte[] ipv6 = endpoint.ipv6Bytes();
+        if (ipv6 != null) {
+            size += lengthDelimitedFieldSize(ipv6.length);
+        }
+        if (endpoint.portAsInt() != 0) {
+            size += 1 + varintSize(endpoint.portAsInt());
+        }
+        return size;
+    }
+
+    private static void writeEndpointField(int key, Endpoint endpoint, ProtoOutput out) {
+        out.writeByte(key);
+        out.writeVarint(endpointSize(endpoint));
+        String serviceName = endpoint.serviceName();
+        if (serviceName != null) {
+            out.writeStringField(SERVICE_NAME, serviceName);
+        }
+        byte[] ipv4 = endpoint.ipv4Bytes();
+        if (ipv4 != null) {
+            out.writeBytesField(IPV4, ipv4);
+        }
+        byte[] ipv6 = endpoint.ipv6Bytes();
+        if (ipv6 != null) {
+            out.writeBytesField(IPV6, ipv6);
+        }
+        if (endpoint.portAsInt() != 0) {
+            out.writeByte(PORT);
+            out.writeVarint(endpoint.portAsInt());
+        }
+    }
+
+    private static int annotationSize(Annotation annotation) {
+        return 1 + 8 + lengthDelimitedFieldSize(utf8Size(annotation.value()));
+    }
+
+    private static void writeAnnotations(List<Annotation> annotations, ProtoOutput out) {
+        for (int i = 0; i < annotations.size(); i++) {
+            Annotation annotation = annotations.get(i);
+            out.writeByte(ANNOTATIONS);
+            out.writeVarint(annotationSize(annotation));
+            out.writeByte(ANNOTATION_TIMESTAMP);
+            out.writeFixed64(annotation.timestamp());
+            out.writeStringField(ANNOTATION_VALUE, annotation.value());
+        }
+    }
+
+    private static int tagSize(Map.Entry<String, String> tag) {
+        return lengthDelimitedFieldSize(utf8Size(tag.getKey()))
+                + lengthDelimitedFieldSize(utf8Size(tag.getValue()));
+    }
+
+    /** Ids are kept as lowercase hex strings, and encoded as the bytes they represent. */
+    private static int hexFieldSize(String hex) {
+        return lengthDelimitedFieldSize(hex.length() / 2);
+    }
+
+    private static void writeHexField(int key, String hex, ProtoOutput out) {
+        out.writeByte(key);
+        out.writeVarint(hex.length() / 2);
+        for (int i = 0; i < hex.length(); i += 2) {
+            int high = Character.digit(hex.charAt(i), 16);
+            int low = Character.digit(hex.charAt(i + 1), 16);
+            out.writeByte((high << 4) | low);
+        }
+    }
+}
@@ -17,17 +17,28 @@
 package com.splunk.rum;
 
 import io.opentelemetry.sdk.trace.data.SpanData;
-import java.util.ArrayDeque;
-import java.util.ArrayList;
 import java.util.Collection;
 import java.util.List;
-import java.util.Queue;
 
 public class DefaultMemorySpanBuffer implements MemorySpanBuffer {
 
-    // note: no need to make this queue thread-safe since it will only ever be called from the
-    // BatchSpanProcessor worker thread.
-    private final Queue<SpanData> backlog = new ArrayDeque<>();
+    // note: no need to make this queue thread-safe since MemoryBufferingExporter guards all calls
+    // to the buffer.
+    private final BoundedSpanQueue backlog;
+
+    public DefaultMemorySpanBuffer() {
+        this(
+                BoundedSpanQueue.DEFAULT_MAX_BYTES,
+                MemoryBufferEvictionPolicy.OLDEST_FIRST,
+                new DroppedSpanCounter());
+    }
+
+    DefaultMemorySpanBuffer(
+            long maxBytes,
+            MemoryBufferEvictionPolicy evictionPolicy,
+            DroppedSpanCounter droppedSpanCounter) {
+        backlog = new BoundedSpanQueue(maxBytes, evictionPolicy, droppedSpanCounter);
+    }
 
     @Override
     public void addAll(Collection<SpanData> spans) {
@@ -41,9 +52,7 @@ public class DefaultMemorySpanBuffer implements MemorySpanBuffer {
 
     @Override
     public List<SpanData> drain() {
-        List<SpanData> retries = new ArrayList<>(backlog);
-        backlog.clear();
-        return retries;
+        return backlog.drain();
     }
 
     @Override
@@ -24,10 +24,12 @@ public class DefaultSpanStorage implements SpanStorage {
 
     private final FileUtils fileUtils;
     private final File rootDir;
+    private final SpanFileManifest manifest;
 
     public DefaultSpanStorage(FileUtils fileUtils, File rootDir) {
         this.fileUtils = fileUtils;
         this.rootDir = rootDir;
+        this.manifest = new SpanFileManifest(fileUtils, fileUtils.getSpansDirectory(rootDir));
     }
 
     @Override
@@ -45,16 +47,33 @@ public class DefaultSpanStorage implements SpanStorage {
 
     @Override
     public Stream<File> getAllSpanFiles() {
-        return fileUtils.listSpanFiles(provideSpansDirectory());
+        return manifest.getFiles().stream();
     }
 
     @Override
     public long getTotalFileSizeInBytes() {
-        return fileUtils.getTotalFileSizeInBytes(provideSpansDirectory());
+        return manifest.getTotalSizeInBytes();
     }
 
     @Override
     public Stream<File> getPendingFiles() {
-        return fileUtils.listSpanFiles(provideSpansDirectory());
+        return getAllSpanFiles()
+                .filter(file -> file.getName().endsWith(SpanJournal.SEGMENT_SUFFIX));
+    }
+
+    @Override
+    public void recordWrite(File file, long bytesWritten) {
+        manifest.recordWrite(file, bytesWritten);
+    }
+
+    @Override
+    public void recordRename(File from, File to) {
+        manifest.recordRename(from, to);
+    }
+
+    @Override
+    public long delete(File file) {
+        fileUtils.safeDelete(file);
+        return manifest.remove(file);
     }
 }
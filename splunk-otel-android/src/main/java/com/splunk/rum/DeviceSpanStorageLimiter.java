@@ -17,12 +17,12 @@
 package com.splunk.rum;
 
 import static com.splunk.rum.SplunkRum.LOG_TAG;
-import static java.util.Comparator.comparingLong;
 import static java.util.Objects.requireNonNull;
 
 import android.util.Log;
 import androidx.annotation.Nullable;
 import java.io.File;
+import java.util.Comparator;
 import java.util.List;
 import java.util.stream.Collectors;
 
@@ -30,17 +30,16 @@ class DeviceSpanStorageLimiter {
     static final int DEFAULT_MAX_STORAGE_USE_MB = 25;
     private final SpanStorage fileProvider;
     private final int maxStorageUseMb;
-    private final FileUtils fileUtils;
 
     private DeviceSpanStorageLimiter(Builder builder) {
         this.fileProvider = requireNonNull(builder.fileProvider);
         this.maxStorageUseMb = builder.maxStorageUseMb;
-        this.fileUtils = builder.fileUtils;
     }
 
     /**
      * Ensures that the storage currently used by spans has not exceeded the limit. If it does, it
-     * will delete older files until the limit is no longer exceeded.
+     * will delete files until the limit is no longer exceeded: the files of the lowest {@linkplain
+     * SpanPriority priority class} go first, oldest first within a class.
      *
      * <p>This method also looks at the free space on the device and will return false if the
      * available free space is less than our max storage.
@@ -60,16 +59,19 @@ class DeviceSpanStorageLimiter {
         if (underLimit(currentUsageInBytes)) {
             return; // nothing to do
         }
+        // files are listed oldest first, and the sort is stable
         List<File> files =
                 fileProvider
                         .getAllSpanFiles()
-                        .sorted(comparingLong(fileUtils::getModificationTime))
+                        // the journal is still appending to active segments
+                        .filter(file -> !file.getName().endsWith(SpanJournal.ACTIVE_SEGMENT_SUFFIX))
+                        .sorted(
+                                Comparator.comparing(
+                                        (File file) -> SpanPriority.fromFileName(file.getName())))
                         .collect(Collectors.toList());
         for (File file : files) {
             Log.w(LOG_TAG, "Too much data buffered, dropping file " + file);
-            long fileSize = fileUtils.getFileSize(file);
-            fileUtils.safeDelete(file);
-            currentUsageInBytes -= fileSize;
+            currentUsageInBytes -= fileProvider.delete(file);
             if (underLimit(currentUsageInBytes)) {
                 return;
             }
@@ -91,7 +93,6 @@ class DeviceSpanStorageLimiter {
     static class Builder {
         public @Nullable SpanStorage fileProvider;
         private int maxStorageUseMb = DEFAULT_MAX_STORAGE_USE_MB;
-        private FileUtils fileUtils = new FileUtils();
 
         Builder fileProvider(SpanStorage fileProvider) {
             this.fileProvider = fileProvider;
@@ -103,11 +104,6 @@ class DeviceSpanStorageLimiter {
             return this;
         }
 
-        Builder fileUtils(FileUtils fileUtils) {
-            this.fileUtils = fileUtils;
-            return this;
-        }
-
         DeviceSpanStorageLimiter build() {
             return new DeviceSpanStorageLimiter(this);
         }
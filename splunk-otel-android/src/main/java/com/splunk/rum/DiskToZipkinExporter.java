@@ -17,97 +17,228 @@
 package com.splunk.rum;
 
 import static com.splunk.rum.SplunkRum.LOG_TAG;
-import static java.util.Collections.emptyList;
 import static java.util.Objects.requireNonNull;
+import static java.util.concurrent.TimeUnit.MILLISECONDS;
 
 import android.util.Log;
 import androidx.annotation.Nullable;
+import io.opentelemetry.android.instrumentation.network.CurrentNetwork;
 import io.opentelemetry.android.instrumentation.network.CurrentNetworkProvider;
+import io.opentelemetry.sdk.common.CompletableResultCode;
 import java.io.File;
-import java.util.Comparator;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
 import java.util.List;
 import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
 import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.Semaphore;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.stream.Collectors;
 
 /**
  * An exporter that pulls pre-encoded zipkin spans from storage and sends them via a sender. It is
- * bandwidth sensitive and will throttle back if the limit is exceeded.
+ * bandwidth sensitive and will throttle back once the budget of the current network type is used
+ * up. When OTLP export is enabled, the stored spans are OTLP requests, which are sent the same way.
+ *
+ * <p>Several requests can be in flight at the same time. They are enqueued on the dispatcher of the
+ * sender's OkHttp client, which multiplexes them over a single connection when the endpoint
+ * supports HTTP/2.
  */
-class DiskToZipkinExporter {
+class DiskToZipkinExporter implements SpanJournal.Listener {
 
-    static final double DEFAULT_MAX_UNCOMPRESSED_BANDWIDTH = 15.0 * 1024;
+    static final long POLLING_INTERVAL_MILLIS = TimeUnit.SECONDS.toMillis(5);
+    static final long MAX_IDLE_INTERVAL_MILLIS = TimeUnit.MINUTES.toMillis(10);
+    static final int DEFAULT_MAX_IN_FLIGHT_UPLOADS = 4;
+    // well beyond the timeouts of the http client, which complete every request before that
+    private static final long UPLOAD_TIMEOUT_MILLIS = TimeUnit.MINUTES.toMillis(5);
 
     private final ScheduledExecutorService threadPool;
+    private final int maxInFlightUploads;
     private final CurrentNetworkProvider currentNetworkProvider;
     private final FileSender fileSender;
     private final SpanStorage spanStorage;
-    private final BandwidthTracker bandwidthTracker;
-    private final double bandwidthLimit;
+    private final SpanJournal journal;
+    private final RetrySchedule retrySchedule;
+    private final BandwidthLimiter bandwidthLimiter;
+
+    @Nullable private ScheduledFuture<?> nextCycle;
+    private long nextCycleAtNanos;
+    private long idleDelayMillis = POLLING_INTERVAL_MILLIS;
 
     DiskToZipkinExporter(Builder builder) {
         this.threadPool = builder.threadPool;
+        this.maxInFlightUploads = builder.maxInFlightUploads;
         this.currentNetworkProvider = requireNonNull(builder.currentNetworkProvider);
         this.fileSender = requireNonNull(builder.fileSender);
         this.spanStorage = requireNonNull(builder.spanStorage);
-        this.bandwidthTracker = requireNonNull(builder.bandwidthTracker);
-        this.bandwidthLimit = builder.bandwidthLimit;
+        this.journal = requireNonNull(builder.journal);
+        this.retrySchedule = requireNonNull(builder.retrySchedule);
+        this.bandwidthLimiter = requireNonNull(builder.bandwidthLimiter);
+    }
+
+    /**
+     * Starts exporting. Instead of polling the storage at a fixed rate, export cycles are scheduled
+     * when there is work to do: when a segment is sealed or is due to be sealed, when the network
+     * comes back online, or when a failed file is due for a retry. While there is nothing to do,
+     * the exporter only checks in occasionally, less and less often.
+     */
+    void start() {
+        journal.setListener(this);
+        currentNetworkProvider.addNetworkChangeListener(
+                currentNetwork -> {
+                    if (currentNetwork.isOnline()) {
+                        scheduleExportCycle(0);
+                    }
+                });
+        scheduleExportCycle(POLLING_INTERVAL_MILLIS);
+    }
+
+    @Override
+    public void onSegmentStarted(long maxAgeMillis) {
+        scheduleExportCycle(maxAgeMillis);
+    }
+
+    @Override
+    public void onSegmentSealed() {
+        scheduleExportCycle(0);
+    }
+
+    /** Schedules an export cycle, unless one is already scheduled to run sooner. */
+    private synchronized void scheduleExportCycle(long delayMillis) {
+        long runAtNanos = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(delayMillis);
+        ScheduledFuture<?> scheduled = nextCycle;
+        if (scheduled != null) {
+            if (nextCycleAtNanos - runAtNanos <= 0) {
+                return;
+            }
+            scheduled.cancel(false);
+        }
+        try {
+            nextCycle = threadPool.schedule(this::runExportCycle, delayMillis, MILLISECONDS);
+            nextCycleAtNanos = runAtNanos;
+        } catch (RejectedExecutionException e) {
+            // the exporter has been stopped
+        }
     }
 
-    // the returned future is very unlikely to fail
-    @SuppressWarnings("FutureReturnValueIgnored")
-    void startPolling() {
-        threadPool.scheduleWithFixedDelay(this::doExportCycle, 5, 5, TimeUnit.SECONDS);
+    private void runExportCycle() {
+        synchronized (this) {
+            // anything scheduled from now on needs a new cycle
+            nextCycle = null;
+        }
+        scheduleExportCycle(doExportCycle());
     }
 
+    /**
+     * Runs a single export cycle, and returns the delay until the next one. The delay is shortened
+     * when a file is due for a retry, or the active segment is due to be sealed, before the regular
+     * interval elapses.
+     */
     // Visible for testing
-    void doExportCycle() {
+    long doExportCycle() {
         try {
-            exportPendingFiles();
+            return exportPendingFiles();
         } catch (Exception e) {
             Log.w(LOG_TAG, "Error processing on-disk files", e);
+            return POLLING_INTERVAL_MILLIS;
         }
     }
 
-    private void exportPendingFiles() {
-        if (!currentNetworkProvider.refreshNetworkStatus().isOnline()) {
+    private long exportPendingFiles() {
+        // segments are also sealed while offline, so they never outgrow their age limit
+        journal.sealIfExpired();
+        long nextCycleDelayMillis =
+                Math.min(MAX_IDLE_INTERVAL_MILLIS, journal.getMillisUntilActiveSegmentExpires());
+
+        CurrentNetwork currentNetwork = currentNetworkProvider.refreshNetworkStatus();
+        bandwidthLimiter.setNetworkState(currentNetwork.getState());
+        if (!currentNetwork.isOnline()) {
             Log.i(
                     SplunkRum.LOG_TAG,
                     "Network offline, leaving spans on disk for for eventual export.");
-            return;
+            // the network change listener triggers a new cycle once back online
+            return Math.min(nextCycleDelayMillis, nextIdleDelayMillis());
+        }
+
+        Deque<File> dueFiles = new ArrayDeque<>();
+        for (File file : getPendingFiles()) {
+            // files waiting for a retry don't hold back the ones after them
+            long millisUntilRetry = retrySchedule.getMillisUntilNextAttempt(file);
+            if (millisUntilRetry > 0) {
+                nextCycleDelayMillis = Math.min(nextCycleDelayMillis, millisUntilRetry);
+            } else {
+                dueFiles.add(file);
+            }
+        }
+        if (dueFiles.isEmpty()) {
+            return Math.min(nextCycleDelayMillis, nextIdleDelayMillis());
         }
+        idleDelayMillis = POLLING_INTERVAL_MILLIS;
 
-        List<File> pendingFiles = getPendingFiles();
-        boolean sentAnything = false;
-        for (File file : pendingFiles) {
+        uploadFiles(dueFiles);
+        if (!dueFiles.isEmpty()) {
+            // held back by the bandwidth budget, or by a failed upload
+            long millisUntilCapacity = bandwidthLimiter.getMillisUntilCapacity();
+            long retryDelayMillis =
+                    millisUntilCapacity > 0 ? millisUntilCapacity : POLLING_INTERVAL_MILLIS;
+            nextCycleDelayMillis = Math.min(nextCycleDelayMillis, retryDelayMillis);
+        }
+        return nextCycleDelayMillis;
+    }
 
-            double sustainedRate = bandwidthTracker.totalSustainedRate();
-            if (sustainedRate > bandwidthLimit) {
-                Log.i(
-                        SplunkRum.LOG_TAG,
-                        String.format(
-                                "Export rate %.2f exceeds limit of %.2f, backing off",
-                                sustainedRate, bandwidthLimit));
+    private long nextIdleDelayMillis() {
+        long delay = idleDelayMillis;
+        idleDelayMillis = Math.min(MAX_IDLE_INTERVAL_MILLIS, idleDelayMillis * 2);
+        return delay;
+    }
+
+    /**
+     * Uploads the files, with up to {@code maxInFlightUploads} requests in flight at the same time.
+     * The next batch is read while earlier ones are still being sent. No new uploads are started
+     * once one of them has failed. Returns once all the started uploads have completed.
+     */
+    private void uploadFiles(Deque<File> files) {
+        Semaphore uploadPermits = new Semaphore(maxInFlightUploads);
+        AtomicBoolean failed = new AtomicBoolean();
+        List<CompletableResultCode> uploads = new ArrayList<>();
+        while (!files.isEmpty()) {
+            if (!bandwidthLimiter.hasCapacity()) {
+                Log.i(SplunkRum.LOG_TAG, "Bandwidth budget used up, backing off");
                 break;
             }
 
-            boolean dataWasSent = fileSender.handleFileOnDisk(file);
-            sentAnything |= dataWasSent;
-            if (!dataWasSent) { // Don't bother trying any remaining files if this one failed.
+            uploadPermits.acquireUninterruptibly();
+            if (failed.get()) { // Don't bother trying any remaining files if one failed.
+                break;
+            }
+            // several small files are sent together in one request
+            FileSender.Batch batch = fileSender.nextBatch(files);
+            if (batch == null) {
                 break;
             }
+            CompletableResultCode upload = fileSender.sendAsync(batch);
+            upload.whenComplete(
+                    () -> {
+                        if (!upload.isSuccess()) {
+                            failed.set(true);
+                        }
+                        uploadPermits.release();
+                    });
+            uploads.add(upload);
         }
-        if (!sentAnything) {
-            bandwidthTracker.tick(emptyList());
+        CompletableResultCode allUploads = CompletableResultCode.ofAll(uploads);
+        // the files of an upload that is still in flight would be picked up again by the next cycle
+        if (!allUploads.join(UPLOAD_TIMEOUT_MILLIS, MILLISECONDS).isDone()) {
+            Log.w(LOG_TAG, "Timed out waiting for on-disk files to be uploaded");
         }
     }
 
     private List<File> getPendingFiles() {
-        return spanStorage
-                .getPendingFiles()
-                .sorted(Comparator.comparing(File::getName))
-                .collect(Collectors.toList());
+        return spanStorage.getPendingFiles().collect(Collectors.toList());
     }
 
     void stop() {
@@ -120,24 +251,31 @@ class DiskToZipkinExporter {
 
     static class Builder {
         @Nullable private FileSender fileSender;
-        @Nullable private BandwidthTracker bandwidthTracker;
+        @Nullable private BandwidthLimiter bandwidthLimiter;
         private ScheduledExecutorService threadPool = Executors.newSingleThreadScheduledExecutor();
         @Nullable private CurrentNetworkProvider currentNetworkProvider;
         @Nullable private SpanStorage spanStorage;
-        private double bandwidthLimit = DEFAULT_MAX_UNCOMPRESSED_BANDWIDTH;
+        @Nullable private SpanJournal journal;
+        @Nullable private RetrySchedule retrySchedule;
+        private int maxInFlightUploads = DEFAULT_MAX_IN_FLIGHT_UPLOADS;
 
         Builder threadPool(ScheduledExecutorService threadPool) {
             this.threadPool = threadPool;
             return this;
         }
 
+        Builder maxInFlightUploads(int maxInFlightUploads) {
+            this.maxInFlightUploads = maxInFlightUploads;
+            return this;
+        }
+
         Builder connectionUtil(CurrentNetworkProvider currentNetworkProvider) {
             this.currentNetworkProvider = currentNetworkProvider;
             return this;
         }
 
-        Builder bandwidthTracker(BandwidthTracker bandwidthTracker) {
-            this.bandwidthTracker = bandwidthTracker;
+        Builder bandwidthLimiter(BandwidthLimiter bandwidthLimiter) {
+            this.bandwidthLimiter = bandwidthLimiter;
             return this;
         }
 
@@ -146,13 +284,18 @@ class DiskToZipkinExporter {
             return this;
         }
 
-        Builder bandwidthLimit(double limit) {
-            this.bandwidthLimit = limit;
+        Builder spanFileProvider(SpanStorage spanStorage) {
+            this.spanStorage = spanStorage;
             return this;
         }
 
-        Builder spanFileProvider(SpanStorage spanStorage) {
-            this.spanStorage = spanStorage;
+        Builder journal(SpanJournal journal) {
+            this.journal = journal;
+            return this;
+        }
+
+        Builder retrySchedule(RetrySchedule retrySchedule) {
+            this.retrySchedule = retrySchedule;
             return this;
         }
 
@@ -0,0 +1,48 @@
+/*
+ * Copyright Splunk Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.splunk.rum;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Counts the spans that were dropped before they could be exported. Where the dropped span is at
+ * hand, it is also counted under its {@linkplain SpanPriority priority class}.
+ */
+final class DroppedSpanCounter {
+
+    private final AtomicLong droppedSpans = new AtomicLong();
+    private final AtomicLongArray droppedSpansByPriority =
+            new AtomicLongArray(SpanPriority.values().length);
+
+    void add(long spans) {
+        droppedSpans.addAndGet(spans);
+    }
+
+    void add(SpanPriority priority, long spans) {
+        droppedSpansByPriority.addAndGet(priority.ordinal(), spans);
+        add(spans);
+    }
+
+    long get() {
+        return droppedSpans.get();
+    }
+
+    long get(SpanPriority priority) {
+        return droppedSpansByPriority.get(priority.ordinal());
+    }
+}
@@ -0,0 +1,93 @@
+/*
+ * Copyright Splunk Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.splunk.rum;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Tracks the depth of the export queue and the latency of the exported batches, and the spans
+ * dropped by and the high-watermark of the span queue of the {@link SplunkBatchSpanProcessor}.
+ */
+final class ExportMetrics {
+
+    private final AtomicInteger queuedBatches = new AtomicInteger();
+    private final AtomicInteger inFlightBatches = new AtomicInteger();
+    private final AtomicLong exportedBatches = new AtomicLong();
+    private final AtomicLong totalLatencyNanos = new AtomicLong();
+    private final AtomicLong maxLatencyNanos = new AtomicLong();
+    private final AtomicInteger spanQueueHighWatermark = new AtomicInteger();
+    private final AtomicLong spanQueueDrops = new AtomicLong();
+
+    void setQueueDepth(int queued, int inFlight) {
+        queuedBatches.set(queued);
+        inFlightBatches.set(inFlight);
+    }
+
+    void recordExport(long latencyNanos) {
+        exportedBatches.incrementAndGet();
+        totalLatencyNanos.addAndGet(latencyNanos);
+        long max;
+        do {
+            max = maxLatencyNanos.get();
+        } while (latencyNanos > max && !maxLatencyNanos.compareAndSet(max, latencyNanos));
+    }
+
+    void recordSpanQueueDepth(int depth) {
+        // read before writing, so that the span-ending threads don't contend on the new maximum
+        int max;
+        do {
+            max = spanQueueHighWatermark.get();
+        } while (depth > max && !spanQueueHighWatermark.compareAndSet(max, depth));
+    }
+
+    void recordSpanQueueDrop() {
+        spanQueueDrops.incrementAndGet();
+    }
+
+    /** Returns the number of batches waiting for export. */
+    int getQueuedBatches() {
+        return queuedBatches.get();
+    }
+
+    /** Returns the number of batches being exported. */
+    int getInFlightBatches() {
+        return inFlightBatches.get();
+    }
+
+    long getExportedBatches() {
+        return exportedBatches.get();
+    }
+
+    long getAverageLatencyNanos() {
+        long exported = exportedBatches.get();
+        return exported == 0 ? 0 : totalLatencyNanos.get() / exported;
+    }
+
+    long getMaxLatencyNanos() {
+        return maxLatencyNanos.get();
+    }
+
+    /** Returns the largest number of ended spans that waited in the span queue at once. */
+    int getSpanQueueHighWatermark() {
+        return spanQueueHighWatermark.get();
+    }
+
+    long getSpanQueueDrops() {
+        return spanQueueDrops.get();
+    }
+}
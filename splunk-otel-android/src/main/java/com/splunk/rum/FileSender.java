@@ -18,67 +18,263 @@ package com.splunk.rum;
 
 import static com.splunk.rum.SplunkRum.LOG_TAG;
 import static java.util.Collections.emptyList;
+import static java.util.Collections.singletonList;
 import static java.util.Objects.requireNonNull;
 
 import android.util.Log;
 import androidx.annotation.Nullable;
+import io.opentelemetry.sdk.common.CompletableResultCode;
 import java.io.File;
 import java.io.IOException;
-import java.util.HashMap;
+import java.util.ArrayList;
+import java.util.Deque;
 import java.util.List;
-import java.util.Map;
-import java.util.concurrent.TimeUnit;
-import java.util.function.Consumer;
+import okhttp3.MediaType;
+import okhttp3.RequestBody;
 import zipkin2.reporter.BytesMessageSender;
+import zipkin2.reporter.Encoding;
 
 class FileSender {
 
-    private static final int DEFAULT_MAX_RETRIES = 20;
-
     private final BytesMessageSender sender;
+    private final PayloadSender payloadSender;
     private final FileUtils fileUtils;
-    private final BandwidthTracker bandwidthTracker;
-    private final RetryTracker retryTracker;
+    private final SpanStorage spanStorage;
+    private final BandwidthLimiter bandwidthLimiter;
+    private final RetrySchedule retrySchedule;
+    private final boolean otlp;
 
     private FileSender(Builder builder) {
         this.sender = requireNonNull(builder.sender);
+        this.payloadSender = requireNonNull(builder.payloadSender);
         this.fileUtils = builder.fileUtils;
-        this.bandwidthTracker = requireNonNull(builder.bandwidthTracker);
-        this.retryTracker = builder.buildRetryTracker();
+        this.spanStorage = requireNonNull(builder.spanStorage);
+        this.bandwidthLimiter = requireNonNull(builder.bandwidthLimiter);
+        this.retrySchedule = requireNonNull(builder.retrySchedule);
+        this.otlp = builder.otlp;
     }
 
     /**
-     * Reads a file on disk and attempts to send it. Updates the bandwidthTracker with the bytes
-     * read, and return true if the file was sent. It will keep track of how many attempts the file
-     * has had, and if it exceedes the max retries, the file will be deleted.
+     * Takes files from the head of the queue and attempts to send them in a single request. Returns
+     * true if the files were sent, in which case they are all deleted. When the request fails, each
+     * of the files is handed to the retry schedule, which decides when to try them again, or
+     * deletes them if they exceeded the max retries.
      *
-     * @param file File to handle
+     * @param files Files to handle, oldest first; the ones that were handled are removed
      * @return true if the file content was sent successfully
+     * @see #nextBatch(Deque)
      */
-    boolean handleFileOnDisk(File file) {
-        Log.d(LOG_TAG, "Reading file content for ingest: " + file);
-        List<byte[]> encodedSpans = readFileCompletely(file);
-        if (encodedSpans.isEmpty()) {
-            fileUtils.safeDelete(file);
-            return false;
+    boolean handleFilesOnDisk(Deque<File> files) {
+        Batch batch = nextBatch(files);
+        return batch != null && send(batch);
+    }
+
+    /**
+     * Takes files from the head of the queue and reads them into a batch that is sent in a single
+     * request. Uncompressed files are packed together for as long as their content fits within the
+     * sender's message size limit. Takes the size of the request body out of the bandwidth budget.
+     *
+     * <p>Compressed segments already contain a complete gzip-encoded request body, which is sent
+     * as-is and on its own. Binary segments contain protobuf records, so the content of several
+     * segments of the same format is sent back to back as a single protobuf request body.
+     *
+     * <p>Files that can't be sent to the configured endpoint, i.e. OTLP files for a zipkin endpoint
+     * or the other way around, were left by an earlier configuration and are deleted.
+     *
+     * @param files Files to read, oldest first; the ones that were read are removed
+     * @return the batch to send, or null if there was nothing to send
+     */
+    @Nullable
+    Batch nextBatch(Deque<File> files) {
+        File first = files.poll();
+        while (first != null && !isForEndpoint(first)) {
+            Log.w(LOG_TAG, "Dropping span file written for a different exporter: " + first);
+            spanStorage.delete(first);
+            first = files.poll();
+        }
+        if (first == null) {
+            return null;
+        }
+        if (isCompressed(first)) {
+            return readCompressedBatch(first);
+        }
+        SpanFormat format = SpanFormat.fromFileName(first.getName());
+        if (format.isBinary()) {
+            return readBinaryBatch(first, format, files);
         }
 
-        boolean sentOk = attemptSend(file, encodedSpans);
-        if (!sentOk) {
-            retryTracker.trackFailure(file);
+        List<File> batchFiles = new ArrayList<>();
+        List<byte[]> encodedSpans = new ArrayList<>();
+        // the file size equals the size of its records in a list, minus the opening bracket
+        long batchSizeInBytes = 1 + fileUtils.getFileSize(first);
+        addToBatch(first, batchFiles, encodedSpans);
+        for (File next = files.peek();
+                next != null && isUncompressed(next, SpanFormat.ZIPKIN_JSON);
+                next = files.peek()) {
+            long fileSizeInBytes = fileUtils.getFileSize(next);
+            if (!batchFiles.isEmpty()
+                    && batchSizeInBytes + fileSizeInBytes > sender.messageMaxBytes()) {
+                break;
+            }
+            files.poll();
+            batchSizeInBytes += fileSizeInBytes;
+            addToBatch(next, batchFiles, encodedSpans);
         }
-        if (sentOk || retryTracker.exceededRetries(file)) {
-            retryTracker.clear(file);
-            fileUtils.safeDelete(file);
+        if (batchFiles.isEmpty()) {
+            return null;
         }
+
+        bandwidthLimiter.consume(Encoding.JSON.listSizeInBytes(encodedSpans));
+        return new Batch(batchFiles, encodedSpans);
+    }
+
+    /**
+     * Sends a batch and deletes or reschedules its files depending on the outcome. Unlike {@link
+     * #nextBatch(Deque)}, this method may be called for several batches concurrently.
+     *
+     * @return true if the batch was sent successfully
+     */
+    boolean send(Batch batch) {
+        byte[] payload = batch.payload;
+        boolean sentOk =
+                payload == null
+                        ? attemptSend(batch.files, batch.encodedSpans)
+                        : attemptSendPayload(
+                                batch.files, payload, batch.contentType, batch.gzipped);
+        handleSentFiles(batch.files, sentOk);
         return sentOk;
     }
 
-    private boolean attemptSend(File file, List<byte[]> encodedSpans) {
+    /**
+     * Sends a batch without blocking, and deletes or reschedules its files once the request has
+     * completed, like {@link #send(Batch)} does. The request is enqueued on the dispatcher of the
+     * http client, which runs several of them at once. Only a {@link StreamingZipkinSender} can
+     * send zipkin spans that way: a customized zipkin sender sends them on the calling thread.
+     *
+     * @return the result of the request, completed once its files have been handled
+     */
+    CompletableResultCode sendAsync(Batch batch) {
+        byte[] payload = batch.payload;
+        CompletableResultCode sent;
+        if (payload != null) {
+            RequestBody body = RequestBody.create(batch.contentType, payload);
+            sent = payloadSender.sendAsync(body, batch.gzipped);
+        } else if (sender instanceof StreamingZipkinSender) {
+            sent = ((StreamingZipkinSender) sender).sendAsync(batch.encodedSpans);
+        } else {
+            boolean sentOk = send(batch);
+            return sentOk ? CompletableResultCode.ofSuccess() : CompletableResultCode.ofFailure();
+        }
+        CompletableResultCode result = new CompletableResultCode();
+        sent.whenComplete(
+                () -> {
+                    // the sender has already logged a failure
+                    if (sent.isSuccess()) {
+                        Log.d(LOG_TAG, "File content " + batch.files + " successfully uploaded");
+                    }
+                    handleSentFiles(batch.files, sent.isSuccess());
+                    if (sent.isSuccess()) {
+                        result.succeed();
+                    } else {
+                        result.fail();
+                    }
+                });
+        return result;
+    }
+
+    private void handleSentFiles(List<File> files, boolean sentOk) {
+        for (File file : files) {
+            if (sentOk) {
+                spanStorage.delete(file);
+            } else {
+                retrySchedule.trackFailure(file);
+            }
+        }
+    }
+
+    private void addToBatch(File file, List<File> batchFiles, List<byte[]> encodedSpans) {
+        Log.d(LOG_TAG, "Reading file content for ingest: " + file);
+        List<byte[]> fileSpans = readFileCompletely(file);
+        if (fileSpans.isEmpty()) {
+            spanStorage.delete(file);
+            return;
+        }
+        batchFiles.add(file);
+        encodedSpans.addAll(fileSpans);
+    }
+
+    private static boolean isCompressed(File file) {
+        return file.getName().endsWith(SpanJournal.COMPRESSED_SEGMENT_SUFFIX);
+    }
+
+    private static boolean isUncompressed(File file, SpanFormat format) {
+        return !isCompressed(file) && SpanFormat.fromFileName(file.getName()) == format;
+    }
+
+    private boolean isForEndpoint(File file) {
+        return (SpanFormat.fromFileName(file.getName()) == SpanFormat.OTLP) == otlp;
+    }
+
+    @Nullable
+    private Batch readCompressedBatch(File file) {
+        Log.d(LOG_TAG, "Reading file content for ingest: " + file);
+        byte[] payload = readFileBytes(file);
+        if (payload.length == 0) {
+            spanStorage.delete(file);
+            return null;
+        }
+
+        bandwidthLimiter.consume(payload.length);
+        MediaType contentType =
+                SpanFormat.fromFileName(file.getName()).isBinary()
+                        ? PayloadSender.PROTOBUF
+                        : PayloadSender.JSON;
+        return new Batch(singletonList(file), emptyList(), payload, contentType, true);
+    }
+
+    @Nullable
+    private Batch readBinaryBatch(File first, SpanFormat format, Deque<File> files) {
+        List<File> batchFiles = new ArrayList<>();
+        List<byte[]> contents = new ArrayList<>();
+        int batchSizeInBytes = 0;
+        for (File next = first; next != null; next = files.poll()) {
+            Log.d(LOG_TAG, "Reading file content for ingest: " + next);
+            byte[] content = readFileBytes(next);
+            if (content.length == 0) {
+                spanStorage.delete(next);
+            } else {
+                batchFiles.add(next);
+                contents.add(content);
+                batchSizeInBytes += content.length;
+            }
+            File peeked = files.peek();
+            if (peeked == null
+                    || !isUncompressed(peeked, format)
+                    || (!batchFiles.isEmpty()
+                            && batchSizeInBytes + fileUtils.getFileSize(peeked)
+                                    > sender.messageMaxBytes())) {
+                break;
+            }
+        }
+        if (batchFiles.isEmpty()) {
+            return null;
+        }
+
+        // concatenated protobuf messages parse as a single, merged message
+        byte[] payload = new byte[batchSizeInBytes];
+        int position = 0;
+        for (byte[] content : contents) {
+            System.arraycopy(content, 0, payload, position, content.length);
+            position += content.length;
+        }
+        bandwidthLimiter.consume(payload.length);
+        return new Batch(batchFiles, emptyList(), payload, PayloadSender.PROTOBUF, false);
+    }
+
+    private boolean attemptSend(List<File> files, List<byte[]> encodedSpans) {
         try {
-            bandwidthTracker.tick(encodedSpans);
             sender.send(encodedSpans);
-            Log.d(LOG_TAG, "File content " + file + " successfully uploaded");
+            Log.d(LOG_TAG, "File content " + files + " successfully uploaded");
             return true;
         } catch (IOException e) {
             Log.w(LOG_TAG, "Error sending file content", e);
@@ -86,6 +282,27 @@ class FileSender {
         }
     }
 
+    private boolean attemptSendPayload(
+            List<File> files, byte[] payload, MediaType contentType, boolean gzipped) {
+        try {
+            payloadSender.send(payload, contentType, gzipped);
+            Log.d(LOG_TAG, "File content " + files + " successfully uploaded");
+            return true;
+        } catch (IOException e) {
+            Log.w(LOG_TAG, "Error sending file content", e);
+            return false;
+        }
+    }
+
+    private byte[] readFileBytes(File file) {
+        try {
+            return fileUtils.readFileBytes(file);
+        } catch (IOException e) {
+            Log.w(LOG_TAG, "Error reading span data from file " + file, e);
+            return new byte[0];
+        }
+    }
+
     private List<byte[]> readFileCompletely(File file) {
         try {
             return fileUtils.readFileCompletely(file);
@@ -99,97 +316,81 @@ class FileSender {
         return new Builder();
     }
 
-    private static class RetryTracker {
-        private final Map<File, Integer> attempts = new HashMap<>();
-        private final int maxRetries;
-        private final Consumer<Integer> backoff;
-
-        private RetryTracker(int maxRetries, Consumer<Integer> backoff) {
-            this.maxRetries = maxRetries;
-            this.backoff = backoff;
-        }
-
-        void clear(File file) {
-            attempts.remove(file);
-        }
-
-        /**
-         * Updates the count of tracked failures for this file. If the retry count has not been
-         * exceeded, it will perform a backoff step.
-         *
-         * @param file - the file for which an attempt was unsuccessful
-         */
-        void trackFailure(File file) {
-            Integer retryCount = attempts.merge(file, 1, (cur, x) -> cur + 1);
-            boolean exceededRetries = retryCount >= maxRetries;
-            if (exceededRetries) {
-                Log.w(
-                        LOG_TAG,
-                        "Dropping data in " + file + " (max retries exceeded " + maxRetries + ")");
-            } else {
-                backoff.accept(retryCount);
-            }
-        }
+    /** Span data read from one or more files, to be sent in a single request. */
+    static final class Batch {
+        private final List<File> files;
+        private final List<byte[]> encodedSpans;
+        // a request body that is sent as-is, instead of the encoded spans
+        @Nullable private final byte[] payload;
+        private final MediaType contentType;
+        private final boolean gzipped;
 
-        boolean exceededRetries(File file) {
-            return attempts.getOrDefault(file, 0) >= maxRetries;
+        private Batch(List<File> files, List<byte[]> encodedSpans) {
+            this(files, encodedSpans, null, PayloadSender.JSON, false);
         }
-    }
-
-    static class DefaultBackoff implements Consumer<Integer> {
 
-        @Override
-        public void accept(Integer attempts) {
-            long seconds = Math.min(60, attempts * 5);
-            try {
-                TimeUnit.SECONDS.sleep(seconds);
-            } catch (InterruptedException e) {
-                Log.w(LOG_TAG, "Error during backoff", e);
-                Thread.currentThread().interrupt();
-            }
+        private Batch(
+                List<File> files,
+                List<byte[]> encodedSpans,
+                @Nullable byte[] payload,
+                MediaType contentType,
+                boolean gzipped) {
+            this.files = files;
+            this.encodedSpans = encodedSpans;
+            this.payload = payload;
+            this.contentType = contentType;
+            this.gzipped = gzipped;
         }
     }
 
     static class Builder {
 
         @Nullable private BytesMessageSender sender;
+        @Nullable private PayloadSender payloadSender;
         private FileUtils fileUtils = new FileUtils();
-        @Nullable private BandwidthTracker bandwidthTracker;
-        private int maxRetries = DEFAULT_MAX_RETRIES;
-        private Consumer<Integer> backoff = new DefaultBackoff();
+        @Nullable private SpanStorage spanStorage;
+        @Nullable private BandwidthLimiter bandwidthLimiter;
+        @Nullable private RetrySchedule retrySchedule;
+        private boolean otlp = false;
 
         Builder sender(BytesMessageSender sender) {
             this.sender = sender;
             return this;
         }
 
+        Builder payloadSender(PayloadSender payloadSender) {
+            this.payloadSender = payloadSender;
+            return this;
+        }
+
         Builder fileUtils(FileUtils fileUtils) {
             this.fileUtils = fileUtils;
             return this;
         }
 
-        Builder maxRetries(int maxRetries) {
-            this.maxRetries = maxRetries;
+        Builder spanStorage(SpanStorage spanStorage) {
+            this.spanStorage = spanStorage;
             return this;
         }
 
-        Builder bandwidthTracker(BandwidthTracker bandwidthTracker) {
-            this.bandwidthTracker = bandwidthTracker;
+        Builder bandwidthLimiter(BandwidthLimiter bandwidthLimiter) {
+            this.bandwidthLimiter = bandwidthLimiter;
             return this;
         }
 
-        // Exists for testing
-        Builder backoff(Consumer<Integer> backoff) {
-            this.backoff = backoff;
+        Builder retrySchedule(RetrySchedule retrySchedule) {
+            this.retrySchedule = retrySchedule;
             return this;
         }
 
-        FileSender build() {
-            return new FileSender(this);
+        /** Sets whether the payload sender posts to an OTLP endpoint instead of a zipkin one. */
+        Builder otlp(boolean otlp) {
+            this.otlp = otlp;
+            return this;
         }
 
-        private RetryTracker buildRetryTracker() {
-            return new RetryTracker(maxRetries, backoff);
+        FileSender build() {
+            return new FileSender(this);
         }
     }
 }
@@ -22,20 +22,21 @@ import android.app.Application;
 import android.system.ErrnoException;
 import android.system.Os;
 import android.system.StructStat;
-import android.util.AtomicFile;
 import android.util.Log;
-import java.io.BufferedReader;
+import java.io.BufferedOutputStream;
 import java.io.File;
 import java.io.FileInputStream;
 import java.io.FileOutputStream;
 import java.io.IOException;
-import java.io.InputStreamReader;
-import java.io.Reader;
-import java.nio.charset.StandardCharsets;
+import java.io.OutputStream;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
 import java.util.stream.Stream;
+import java.util.zip.GZIPOutputStream;
 
 // Basic wrapper around filesystem operations, primarily for testing
 class FileUtils {
@@ -49,30 +50,94 @@ class FileUtils {
         return new File(rootDir, "spans");
     }
 
-    void writeAsLines(File file, List<byte[]> blocksOfData) throws IOException {
-        AtomicFile outfile = new AtomicFile(file);
-        try (FileOutputStream out = outfile.startWrite()) {
+    /** Appends the blocks to the file, one per line, and returns the number of bytes written. */
+    long appendAsLines(File file, List<byte[]> blocksOfData) throws IOException {
+        long bytesWritten = 0;
+        try (OutputStream out = new BufferedOutputStream(new FileOutputStream(file, true))) {
             for (byte[] encodedSpan : blocksOfData) {
                 out.write(encodedSpan);
                 out.write('\n');
+                bytesWritten += encodedSpan.length + 1;
             }
-            outfile.finishWrite(out);
         }
+        return bytesWritten;
     }
 
+    /**
+     * Appends the blocks to the file back to back, without any separator, and returns the number of
+     * bytes written. The blocks need to carry their own framing.
+     */
+    long appendBytes(File file, List<byte[]> blocksOfData) throws IOException {
+        long bytesWritten = 0;
+        try (OutputStream out = new BufferedOutputStream(new FileOutputStream(file, true))) {
+            for (byte[] block : blocksOfData) {
+                out.write(block);
+                bytesWritten += block.length;
+            }
+        }
+        return bytesWritten;
+    }
+
+    /**
+     * Appends the blocks to the file as a single gzip member, and returns the number of compressed
+     * bytes written.
+     */
+    long appendCompressed(File file, List<byte[]> blocksOfData) throws IOException {
+        long sizeBefore = file.length();
+        try (OutputStream out =
+                new GZIPOutputStream(new BufferedOutputStream(new FileOutputStream(file, true)))) {
+            for (byte[] block : blocksOfData) {
+                out.write(block);
+            }
+        }
+        return file.length() - sizeBefore;
+    }
+
+    /**
+     * Reads the newline-separated records in the file as raw bytes. There is no charset decoding
+     * involved: the file is read into a single buffer, and each record is copied out of it once,
+     * because the zipkin sender takes an array per span.
+     */
     List<byte[]> readFileCompletely(File file) throws IOException {
+        byte[] content = readFileBytes(file);
         List<byte[]> result = new ArrayList<>();
-        try (Reader fileReader =
-                        new InputStreamReader(new FileInputStream(file), StandardCharsets.UTF_8);
-                BufferedReader buff = new BufferedReader(fileReader)) {
-            String line;
-            while ((line = buff.readLine()) != null) {
-                result.add(line.getBytes(StandardCharsets.UTF_8));
+        int start = 0;
+        for (int i = 0; i <= content.length; i++) {
+            if (i == content.length || content[i] == '\n') {
+                if (i > start) {
+                    result.add(Arrays.copyOfRange(content, start, i));
+                }
+                start = i + 1;
             }
         }
         return result;
     }
 
+    byte[] readFileBytes(File file) throws IOException {
+        try (FileInputStream in = new FileInputStream(file);
+                FileChannel channel = in.getChannel()) {
+            long size = channel.size();
+            if (size > Integer.MAX_VALUE) {
+                throw new IOException("File too large to read: " + file);
+            }
+            ByteBuffer buffer = ByteBuffer.allocate((int) size);
+            while (buffer.hasRemaining()) {
+                if (channel.read(buffer) < 0) {
+                    // the file was truncated while we were reading it
+                    return Arrays.copyOf(buffer.array(), buffer.position());
+                }
+            }
+            return buffer.array();
+        }
+    }
+
+    /** Cuts the file off after the given number of bytes. */
+    void truncate(File file, long size) throws IOException {
+        try (RandomAccessFile randomAccessFile = new RandomAccessFile(file, "rw")) {
+            randomAccessFile.setLength(size);
+        }
+    }
+
     Stream<File> listFiles(File dir) {
         File[] files = dir.listFiles();
         if (files == null) {
@@ -102,21 +167,6 @@ class FileUtils {
         return Stream.of(files).filter(File::isDirectory);
     }
 
-    Stream<File> listSpanFiles(File dir) {
-        return listFiles(dir)
-                .filter(this::isRegularFile)
-                .filter(file -> file.toString().endsWith(".spans"));
-    }
-
-    long getTotalFileSizeInBytes(File dir) {
-        return listFiles(dir).reduce(0L, (acc, file) -> acc + getFileSize(file), Long::sum);
-    }
-
-    long getTotalFileSizeInBytesRecursively(File dir) {
-        return listFilesRecursively(dir)
-                .reduce(0L, (acc, file) -> acc + getFileSize(file), Long::sum);
-    }
-
     long getFileSize(File file) {
         try {
             StructStat structStat = Os.stat(file.getCanonicalPath());
@@ -127,18 +177,8 @@ class FileUtils {
         }
     }
 
-    long getModificationTime(File file) {
-        try {
-            StructStat structStat = Os.stat(file.getCanonicalPath());
-            return structStat.st_mtime;
-        } catch (ErrnoException | IOException e) {
-            Log.w(LOG_TAG, "Error getting file size for " + file, e);
-            return 0L;
-        }
-    }
-
-    boolean isRegularFile(File file) {
-        return file.isFile();
+    boolean rename(File from, File to) {
+        return from.renameTo(to);
     }
 
     void safeDelete(File file) {
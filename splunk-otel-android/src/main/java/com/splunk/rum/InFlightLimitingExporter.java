@@ -0,0 +1,302 @@
+/*
+ * Copyright Splunk Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.splunk.rum;
+
+import static com.splunk.rum.SplunkRum.LOG_TAG;
+import static java.util.Objects.requireNonNull;
+
+import android.util.Log;
+import androidx.annotation.Nullable;
+import io.opentelemetry.sdk.common.Clock;
+import io.opentelemetry.sdk.common.CompletableResultCode;
+import io.opentelemetry.sdk.trace.data.SpanData;
+import io.opentelemetry.sdk.trace.export.SpanExporter;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Deque;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+
+/**
+ * Decouples the span processor from the export chain. {@link #export(Collection)} only copies the
+ * spans into a queued batch and returns right away, so neither a slow backend nor the encoding and
+ * disk writes of the chain hold up the processor thread. The delegate is called from a single
+ * export thread. At most a fixed number of batches are exported at once; the next queued batch is
+ * handed to the export thread when one of them completes. When the queue is full, the oldest
+ * queued batch is dropped.
+ *
+ * <p>The delegate is never called concurrently, so the exporters in the chain don't need to be
+ * thread-safe, but batches may reach it out of order.
+ */
+class InFlightLimitingExporter implements SpanExporter {
+
+    static final int DEFAULT_MAX_IN_FLIGHT_BATCHES = 2;
+    static final int DEFAULT_MAX_QUEUED_BATCHES = 32;
+
+    private final SpanExporter delegate;
+    private final int maxInFlightBatches;
+    private final int maxQueuedBatches;
+    private final Clock clock;
+    private final DroppedSpanCounter droppedSpanCounter;
+    private final ExportMetrics metrics;
+    private final ExecutorService exportExecutor;
+    // held while calling the delegate
+    private final Object delegateLock = new Object();
+
+    // guarded by this
+    private final Deque<Batch> queue = new ArrayDeque<>();
+    // the results of the queued and in-flight batches, guarded by this
+    private final Set<CompletableResultCode> pendingResults = new HashSet<>();
+    private int inFlightBatches;
+    private boolean shutdown;
+
+    private InFlightLimitingExporter(Builder builder) {
+        this.delegate = requireNonNull(builder.delegate);
+        this.maxInFlightBatches = builder.maxInFlightBatches;
+        this.maxQueuedBatches = builder.maxQueuedBatches;
+        this.clock = builder.clock;
+        this.droppedSpanCounter = builder.droppedSpanCounter;
+        this.metrics = builder.metrics;
+        this.exportExecutor = builder.exportExecutor;
+    }
+
+    @Override
+    public CompletableResultCode export(Collection<SpanData> spans) {
+        Batch dropped = null;
+        synchronized (this) {
+            if (shutdown) {
+                return CompletableResultCode.ofFailure();
+            }
+            // the span processor may reuse its collection once this returns
+            Batch batch = new Batch(new ArrayList<>(spans));
+            queue.addLast(batch);
+            pendingResults.add(batch.result);
+            if (queue.size() > maxQueuedBatches) {
+                dropped = queue.removeFirst();
+                pendingResults.remove(dropped.result);
+            }
+            updateQueueDepth();
+        }
+        if (dropped != null) {
+            Log.w(LOG_TAG, "Export queue is full, dropping " + dropped.spans.size() + " spans");
+            droppedSpanCounter.add(dropped.spans.size());
+            dropped.result.fail();
+        }
+        dispatch();
+        return CompletableResultCode.ofSuccess();
+    }
+
+    private void dispatch() {
+        while (true) {
+            Batch batch;
+            synchronized (this) {
+                if (inFlightBatches >= maxInFlightBatches || queue.isEmpty()) {
+                    return;
+                }
+                batch = queue.removeFirst();
+                inFlightBatches++;
+                updateQueueDepth();
+            }
+            long startNanos = clock.nanoTime();
+            CompletableResultCode exportResult = new CompletableResultCode();
+            exportResult.whenComplete(
+                    () -> {
+                        metrics.recordExport(clock.nanoTime() - startNanos);
+                        synchronized (this) {
+                            inFlightBatches--;
+                            pendingResults.remove(batch.result);
+                            updateQueueDepth();
+                        }
+                        if (exportResult.isSuccess()) {
+                            batch.result.succeed();
+                        } else {
+                            batch.result.fail();
+                        }
+                        dispatch();
+                    });
+            runOnExportThread(
+                    () -> {
+                        CompletableResultCode result;
+                        synchronized (delegateLock) {
+                            result = exportSafely(batch.spans);
+                        }
+                        propagate(result, exportResult);
+                    },
+                    exportResult);
+        }
+    }
+
+    private void runOnExportThread(Runnable action, CompletableResultCode result) {
+        try {
+            exportExecutor.execute(action);
+        } catch (RejectedExecutionException e) {
+            Log.w(LOG_TAG, "Export thread has been shut down", e);
+            result.fail();
+        }
+    }
+
+    private CompletableResultCode exportSafely(Collection<SpanData> spans) {
+        try {
+            return delegate.export(spans);
+        } catch (RuntimeException e) {
+            Log.w(LOG_TAG, "Error exporting spans", e);
+            return CompletableResultCode.ofFailure();
+        }
+    }
+
+    private void updateQueueDepth() {
+        metrics.setQueueDepth(queue.size(), inFlightBatches);
+    }
+
+    /**
+     * Completes once the batches queued or in flight so far have been exported and the delegate is
+     * flushed. Fails if any of those batches failed.
+     */
+    @Override
+    public CompletableResultCode flush() {
+        CompletableResultCode result = new CompletableResultCode();
+        return whenPendingComplete(
+                result,
+                () ->
+                        runOnExportThread(
+                                () -> {
+                                    CompletableResultCode flushed;
+                                    synchronized (delegateLock) {
+                                        flushed = delegate.flush();
+                                    }
+                                    propagate(flushed, result);
+                                },
+                                result));
+    }
+
+    @Override
+    public CompletableResultCode shutdown() {
+        synchronized (this) {
+            shutdown = true;
+        }
+        CompletableResultCode result = new CompletableResultCode();
+        return whenPendingComplete(
+                result,
+                () ->
+                        runOnExportThread(
+                                () -> {
+                                    CompletableResultCode shutDown;
+                                    synchronized (delegateLock) {
+                                        shutDown = delegate.shutdown();
+                                    }
+                                    exportExecutor.shutdown();
+                                    propagate(shutDown, result);
+                                },
+                                result));
+    }
+
+    /**
+     * Runs the action once the pending batches have completed. Returns a result that completes with
+     * the given one, and fails if it or any of the pending batches failed.
+     */
+    private CompletableResultCode whenPendingComplete(
+            CompletableResultCode result, Runnable action) {
+        List<CompletableResultCode> pending;
+        synchronized (this) {
+            pending = new ArrayList<>(pendingResults);
+        }
+        CompletableResultCode.ofAll(pending).whenComplete(action);
+        pending.add(result);
+        return CompletableResultCode.ofAll(pending);
+    }
+
+    private static void propagate(CompletableResultCode from, CompletableResultCode to) {
+        from.whenComplete(
+                () -> {
+                    if (from.isSuccess()) {
+                        to.succeed();
+                    } else {
+                        to.fail();
+                    }
+                });
+    }
+
+    static Builder builder() {
+        return new Builder();
+    }
+
+    private static final class Batch {
+        private final Collection<SpanData> spans;
+        private final CompletableResultCode result = new CompletableResultCode();
+
+        private Batch(Collection<SpanData> spans) {
+            this.spans = spans;
+        }
+    }
+
+    static class Builder {
+        @Nullable private SpanExporter delegate;
+        private int maxInFlightBatches = DEFAULT_MAX_IN_FLIGHT_BATCHES;
+        private int maxQueuedBatches = DEFAULT_MAX_QUEUED_BATCHES;
+        private Clock clock = Clock.getDefault();
+        private DroppedSpanCounter droppedSpanCounter = new DroppedSpanCounter();
+        private ExportMetrics metrics = new ExportMetrics();
+        private ExecutorService exportExecutor = Executors.newSingleThreadExecutor();
+
+        Builder delegate(SpanExporter delegate) {
+            this.delegate = delegate;
+            return this;
+        }
+
+        /** Sets the number of batches that may be exported at once. */
+        Builder maxInFlightBatches(int maxInFlightBatches) {
+            this.maxInFlightBatches = maxInFlightBatches;
+            return this;
+        }
+
+        /** Sets the number of batches that may wait for export before the oldest is dropped. */
+        Builder maxQueuedBatches(int maxQueuedBatches) {
+            this.maxQueuedBatches = maxQueuedBatches;
+            return this;
+        }
+
+        Builder clock(Clock clock) {
+            this.clock = clock;
+            return this;
+        }
+
+        Builder droppedSpanCounter(DroppedSpanCounter droppedSpanCounter) {
+            this.droppedSpanCounter = droppedSpanCounter;
+            return this;
+        }
+
+        Builder metrics(ExportMetrics metrics) {
+            this.metrics = metrics;
+            return this;
+        }
+
+        // Exists for testing
+        Builder exportExecutor(ExecutorService exportExecutor) {
+            this.exportExecutor = exportExecutor;
+            return this;
+        }
+
+        InFlightLimitingExporter build() {
+            return new InFlightLimitingExporter(this);
+        }
+    }
+}
@@ -0,0 +1,33 @@
+/*
+ * Copyright Splunk Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.splunk.rum;
+
+/**
+ * Decides which spans are dropped when the in-memory buffer of spans waiting for export is full.
+ *
+ * @see SplunkRumBuilder#setMemoryBufferEvictionPolicy(MemoryBufferEvictionPolicy)
+ */
+public enum MemoryBufferEvictionPolicy {
+    /** Drops the oldest spans first. */
+    OLDEST_FIRST,
+    /**
+     * Drops the spans of the lowest priority first, and the oldest ones among them. UI spans have
+     * the lowest priority, followed by network requests, app starts, and finally errors and
+     * crashes.
+     */
+    LOWEST_PRIORITY_FIRST
+}
@@ -23,6 +23,7 @@ import io.opentelemetry.sdk.common.CompletableResultCode;
 import io.opentelemetry.sdk.trace.data.SpanData;
 import io.opentelemetry.sdk.trace.export.SpanExporter;
 import java.util.Collection;
+import java.util.Collections;
 import java.util.List;
 
 class MemoryBufferingExporter implements SpanExporter {
@@ -30,28 +31,37 @@ class MemoryBufferingExporter implements SpanExporter {
     private static final int MAX_BACKLOG_SIZE = 100;
     private final CurrentNetworkProvider currentNetworkProvider;
     private final SpanExporter delegate;
+    private final DroppedSpanCounter droppedSpanCounter;
 
+    // guarded by this, since failed exports may be completed on the http client's threads
     private final MemorySpanBuffer backlogProvider;
 
     MemoryBufferingExporter(
             CurrentNetworkProvider currentNetworkProvider,
             SpanExporter delegate,
-            MemorySpanBuffer backlogProvider) {
+            MemorySpanBuffer backlogProvider,
+            DroppedSpanCounter droppedSpanCounter) {
         this.currentNetworkProvider = currentNetworkProvider;
         this.delegate = delegate;
         this.backlogProvider = backlogProvider;
+        this.droppedSpanCounter = droppedSpanCounter;
     }
 
     @Override
     public CompletableResultCode export(Collection<SpanData> spans) {
-        backlogProvider.addAll(spans);
-        if (!currentNetworkProvider.refreshNetworkStatus().isOnline()) {
-            Log.i(
-                    SplunkRum.LOG_TAG,
-                    "Network offline, buffering " + spans.size() + " spans for eventual export.");
-            return CompletableResultCode.ofSuccess();
+        List<SpanData> toExport;
+        synchronized (this) {
+            backlogProvider.addAll(spans);
+            if (!currentNetworkProvider.refreshNetworkStatus().isOnline()) {
+                Log.i(
+                        SplunkRum.LOG_TAG,
+                        "Network offline, buffering "
+                                + spans.size()
+                                + " spans for eventual export.");
+                return CompletableResultCode.ofSuccess();
+            }
+            toExport = fillFromBacklog();
         }
-        List<SpanData> toExport = fillFromBacklog();
         Log.d(SplunkRum.LOG_TAG, "Sending " + toExport.size() + " spans for export");
         CompletableResultCode exportResult = delegate.export(toExport);
         exportResult.whenComplete(
@@ -68,10 +78,12 @@ class MemoryBufferingExporter implements SpanExporter {
     }
 
     // todo Should we favor saving certain kinds of span if we're out of space? Or favor recency?
-    private void addFailedSpansToBacklog(List<SpanData> toExport) {
+    private synchronized void addFailedSpansToBacklog(List<SpanData> toExport) {
         for (SpanData spanData : toExport) {
             if (backlogProvider.size() < MAX_BACKLOG_SIZE) {
                 backlogProvider.addFailedSpansToBacklog(spanData);
+            } else {
+                droppedSpanCounter.add(SpanPriority.of(spanData), 1);
             }
         }
     }
@@ -83,17 +95,23 @@ class MemoryBufferingExporter implements SpanExporter {
 
     @Override
     public CompletableResultCode flush() {
-        if (!backlogProvider.isEmpty()) {
+        List<SpanData> backlog;
+        synchronized (this) {
+            backlog = backlogProvider.isEmpty() ? Collections.emptyList() : fillFromBacklog();
+        }
+        if (!backlog.isEmpty()) {
             // note: the zipkin exporter has a no-op flush() method, so no need to call it after
             // this.
-            return export(fillFromBacklog());
+            return export(backlog);
         }
         return delegate.flush();
     }
 
     @Override
     public CompletableResultCode shutdown() {
-        backlogProvider.clear();
+        synchronized (this) {
+            backlogProvider.clear();
+        }
         return delegate.shutdown();
     }
 }
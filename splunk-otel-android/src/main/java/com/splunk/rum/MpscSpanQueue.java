@@ -0,0 +1,112 @@
+/*
+ * Copyright Splunk Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.splunk.rum;
+
+import androidx.annotation.Nullable;
+import io.opentelemetry.sdk.trace.ReadableSpan;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * Bounded lock-free queue of ended spans, for many threads ending spans and a single thread taking
+ * them out. The slots are allocated up front, so adding a span allocates nothing.
+ *
+ * <p>A producer claims a slot by advancing the producer index with a compare-and-set, and then
+ * writes the span into it. The consumer takes the span out of the next slot, clears it and then
+ * advances the consumer index, which frees the slot for the producers. A slot that has been
+ * claimed but not written yet is empty, so the consumer waits for the producer to finish the
+ * write.
+ */
+final class MpscSpanQueue {
+
+    private final AtomicReferenceArray<ReadableSpan> slots;
+    private final int mask;
+    private final int capacity;
+    private final AtomicLong producerIndex = new AtomicLong();
+    // only written by the consumer
+    private final AtomicLong consumerIndex = new AtomicLong();
+
+    MpscSpanQueue(int capacity) {
+        if (capacity < 1) {
+            throw new IllegalArgumentException("capacity must be positive: " + capacity);
+        }
+        // a power of two, so that indexes map to slots with a mask
+        int slotCount = Integer.highestOneBit(capacity);
+        if (slotCount < capacity) {
+            slotCount <<= 1;
+        }
+        this.slots = new AtomicReferenceArray<>(slotCount);
+        this.mask = slotCount - 1;
+        this.capacity = capacity;
+    }
+
+    /**
+     * Adds the span to the queue, unless it is full. May be called from any thread.
+     *
+     * @return the number of spans in the queue after adding this one, or 0 if the queue was full.
+     */
+    int offer(ReadableSpan span) {
+        long index;
+        long consumed;
+        do {
+            index = producerIndex.get();
+            consumed = consumerIndex.get();
+            if (index - consumed >= capacity) {
+                return 0;
+            }
+        } while (!producerIndex.compareAndSet(index, index + 1));
+        // the consumer can't get past this slot before it's written, so the depth is at least 1
+        int depth = (int) (index + 1 - consumed);
+        slots.lazySet((int) index & mask, span);
+        return depth;
+    }
+
+    /**
+     * Takes the oldest span out of the queue, or returns {@code null} if it is empty. Must only be
+     * called from the consumer thread.
+     */
+    @Nullable
+    ReadableSpan poll() {
+        long index = consumerIndex.get();
+        int offset = (int) index & mask;
+        ReadableSpan span = slots.get(offset);
+        if (span == null) {
+            if (index == producerIndex.get()) {
+                return null;
+            }
+            // a producer claimed the slot, and is about to write it
+            do {
+                Thread.yield();
+                span = slots.get(offset);
+            } while (span == null);
+        }
+        slots.lazySet(offset, null);
+        consumerIndex.lazySet(index + 1);
+        return span;
+    }
+
+    /** Returns the number of spans in the queue. May be called from any thread. */
+    int size() {
+        long consumed = consumerIndex.get();
+        long produced = producerIndex.get();
+        return (int) Math.max(0, Math.min(capacity, produced - consumed));
+    }
+
+    int capacity() {
+        return capacity;
+    }
+}
@@ -0,0 +1,473 @@
+/*
+ * Copyright Splunk Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.splunk.rum;
+
+import static com.splunk.rum.ProtoOutput.WIRETYPE_FIXED64;
+import static com.splunk.rum.ProtoOutput.WIRETYPE_LENGTH_DELIMITED;
+import static com.splunk.rum.ProtoOutput.WIRETYPE_VARINT;
+import static com.splunk.rum.ProtoOutput.key;
+import static com.splunk.rum.ProtoOutput.lengthDelimitedFieldSize;
+import static com.splunk.rum.ProtoOutput.stringFieldSize;
+import static com.splunk.rum.ProtoOutput.varintSize;
+
+import androidx.annotation.Nullable;
+import io.opentelemetry.api.common.Attributes;
+import io.opentelemetry.api.trace.SpanContext;
+import io.opentelemetry.api.trace.TraceState;
+import io.opentelemetry.sdk.common.InstrumentationScopeInfo;
+import io.opentelemetry.sdk.resources.Resource;
+import io.opentelemetry.sdk.trace.data.EventData;
+import io.opentelemetry.sdk.trace.data.LinkData;
+import io.opentelemetry.sdk.trace.data.SpanData;
+import io.opentelemetry.sdk.trace.data.StatusData;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Writes spans as a serialized OTLP {@code ExportTraceServiceRequest}, the protobuf request body
+ * that the OTLP http exporter sends. The spans are grouped by resource and instrumentation scope,
+ * as the exporter does it. Trace flags are not written; the backend doesn't use them.
+ *
+ * <p>Since the request only consists of repeated fields, several encoded requests written back to
+ * back form a single, merged request.
+ */
+final class OtlpProtoEncoder {
+
+    private static final int TRACE_ID_BYTES = 16;
+    private static final int SPAN_ID_BYTES = 8;
+
+    // ExportTraceServiceRequest
+    private static final int RESOURCE_SPANS = key(1, WIRETYPE_LENGTH_DELIMITED);
+    // ResourceSpans
+    private static final int RESOURCE = key(1, WIRETYPE_LENGTH_DELIMITED);
+    private static final int SCOPE_SPANS = key(2, WIRETYPE_LENGTH_DELIMITED);
+    private static final int RESOURCE_SCHEMA_URL = key(3, WIRETYPE_LENGTH_DELIMITED);
+    // Resource
+    private static final int RESOURCE_ATTRIBUTES = key(1, WIRETYPE_LENGTH_DELIMITED);
+    // ScopeSpans
+    private static final int SCOPE = key(1, WIRETYPE_LENGTH_DELIMITED);
+    private static final int SPANS = key(2, WIRETYPE_LENGTH_DELIMITED);
+    private static final int SCOPE_SCHEMA_URL = key(3, WIRETYPE_LENGTH_DELIMITED);
+    // InstrumentationScope
+    private static final int SCOPE_NAME = key(1, WIRETYPE_LENGTH_DELIMITED);
+    private static final int SCOPE_VERSION = key(2, WIRETYPE_LENGTH_DELIMITED);
+    private static final int SCOPE_ATTRIBUTES = key(3, WIRETYPE_LENGTH_DELIMITED);
+    // Span
+    private static final int TRACE_ID = key(1, WIRETYPE_LENGTH_DELIMITED);
+    private static final int SPAN_ID = key(2, WIRETYPE_LENGTH_DELIMITED);
+    private static final int TRACE_STATE = key(3, WIRETYPE_LENGTH_DELIMITED);
+    private static final int PARENT_SPAN_ID = key(4, WIRETYPE_LENGTH_DELIMITED);
+    private static final int NAME = key(5, WIRETYPE_LENGTH_DELIMITED);
+    private static final int KIND = key(6, WIRETYPE_VARINT);
+    private static final int START_TIME = key(7, WIRETYPE_FIXED64);
+    private static final int END_TIME = key(8, WIRETYPE_FIXED64);
+    private static final int ATTRIBUTES = key(9, WIRETYPE_LENGTH_DELIMITED);
+    private static final int DROPPED_ATTRIBUTES_COUNT = key(10, WIRETYPE_VARINT);
+    private static final int EVENTS = key(11, WIRETYPE_LENGTH_DELIMITED);
+    private static final int DROPPED_EVENTS_COUNT = key(12, WIRETYPE_VARINT);
+    private static final int LINKS = key(13, WIRETYPE_LENGTH_DELIMITED);
+    private static final int DROPPED_LINKS_COUNT = key(14, WIRETYPE_VARINT);
+    private static final int STATUS = key(15, WIRETYPE_LENGTH_DELIMITED);
+    // Span.Event
+    private static final int EVENT_TIME = key(1, WIRETYPE_FIXED64);
+    private static final int EVENT_NAME = key(2, WIRETYPE_LENGTH_DELIMITED);
+    private static final int EVENT_ATTRIBUTES = key(3, WIRETYPE_LENGTH_DELIMITED);
+    private static final int EVENT_DROPPED_ATTRIBUTES_COUNT = key(4, WIRETYPE_VARINT);
+    // Span.Link
+    private static final int LINK_TRACE_ID = key(1, WIRETYPE_LENGTH_DELIMITED);
+    private static final int LINK_SPAN_ID = key(2, WIRETYPE_LENGTH_DELIMITED);
+    private static final int LINK_TRACE_STATE = key(3, WIRETYPE_LENGTH_DELIMITED);
+    private static final int LINK_ATTRIBUTES = key(4, WIRETYPE_LENGTH_DELIMITED);
+    private static final int LINK_DROPPED_ATTRIBUTES_COUNT = key(5, WIRETYPE_VARINT);
+    // Status
+    private static final int STATUS_MESSAGE = key(2, WIRETYPE_LENGTH_DELIMITED);
+    private static final int STATUS_CODE = key(3, WIRETYPE_VARINT);
+    // KeyValue
+    private static final int KEY = key(1, WIRETYPE_LENGTH_DELIMITED);
+    private static final int VALUE = key(2, WIRETYPE_LENGTH_DELIMITED);
+    // AnyValue
+    private static final int STRING_VALUE = key(1, WIRETYPE_LENGTH_DELIMITED);
+    private static final int BOOL_VALUE = key(2, WIRETYPE_VARINT);
+    private static final int INT_VALUE = key(3, WIRETYPE_VARINT);
+    private static final int DOUBLE_VALUE = key(4, WIRETYPE_FIXED64);
+    private static final int ARRAY_VALUE = key(5, WIRETYPE_LENGTH_DELIMITED);
+    // ArrayValue
+    private static final int ARRAY_VALUES = key(1, WIRETYPE_LENGTH_DELIMITED);
+
+    private OtlpProtoEncoder() {}
+
+    static byte[] encode(Collection<SpanData> spans) {
+        Collection<ResourceGroup> resourceGroups = groupByResourceAndScope(spans);
+        int size = 0;
+        for (ResourceGroup resourceGroup : resourceGroups) {
+            size += lengthDelimitedFieldSize(resourceGroup.size);
+        }
+        ProtoOutput out = new ProtoOutput(new byte[size]);
+        for (ResourceGroup resourceGroup : resourceGroups) {
+            writeResourceSpans(resourceGroup, out);
+        }
+        return out.bytes;
+    }
+
+    private static Collection<ResourceGroup> groupByResourceAndScope(Collection<SpanData> spans) {
+        // the spans of an sdk share their resource and scope instances
+        Map<Resource, ResourceGroup> resourceGroups = new IdentityHashMap<>();
+        for (SpanData span : spans) {
+            ResourceGroup resourceGroup = resourceGroups.get(span.getResource());
+            if (resourceGroup == null) {
+                resourceGroup = new ResourceGroup(span.getResource());
+                resourceGroups.put(span.getResource(), resourceGroup);
+            }
+            resourceGroup.add(span);
+        }
+        for (ResourceGroup resourceGroup : resourceGroups.values()) {
+            resourceGroup.computeSize();
+        }
+        return resourceGroups.values();
+    }
+
+    private static void writeResourceSpans(ResourceGroup resourceGroup, ProtoOutput out) {
+        out.writeByte(RESOURCE_SPANS);
+        out.writeVarint(resourceGroup.size);
+        Attributes resourceAttributes = resourceGroup.resource.getAttributes();
+        out.writeByte(RESOURCE);
+        out.writeVarint(attributesSize(resourceAttributes));
+        writeAttributes(RESOURCE_ATTRIBUTES, resourceAttributes, out);
+        for (ScopeGroup scopeGroup : resourceGroup.scopeGroups.values()) {
+            writeScopeSpans(scopeGroup, out);
+        }
+        writeOptionalStringField(RESOURCE_SCHEMA_URL, resourceGroup.resource.getSchemaUrl(), out);
+    }
+
+    private static int scopeSize(InstrumentationScopeInfo scope) {
+        return optionalStringFieldSize(scope.getName())
+                + optionalStringFieldSize(scope.getVersion())
+                + attributesSize(scope.getAttributes());
+    }
+
+    private static void writeScopeSpans(ScopeGroup scopeGroup, ProtoOutput out) {
+        out.writeByte(SCOPE_SPANS);
+        out.writeVarint(scopeGroup.size);
+        InstrumentationScopeInfo scope = scopeGroup.scope;
+        out.writeByte(SCOPE);
+        out.writeVarint(scopeSize(scope));
+        writeOptionalStringField(SCOPE_NAME, scope.getName(), out);
+        writeOptionalStringField(SCOPE_VERSION, scope.getVersion(), out);
+        writeAttributes(SCOPE_ATTRIBUTES, scope.getAttributes(), out);
+        for (int i = 0; i < scopeGroup.spans.size(); i++) {
+            out.writeByte(SPANS);
+            out.writeVarint(scopeGroup.spanSizes[i]);
+            writeSpan(scopeGroup.spans.get(i), out);
+        }
+        writeOptionalStringField(SCOPE_SCHEMA_URL, scope.getSchemaUrl(), out);
+    }
+
+    private static int spanSize(SpanData span) {
+        SpanContext spanContext = span.getSpanContext();
+        int size = lengthDelimitedFieldSize(TRACE_ID_BYTES);
+        size += lengthDelimitedFieldSize(SPAN_ID_BYTES);
+        size += optionalStringFieldSize(traceState(spanContext.getTraceState()));
+        if (span.getParentSpanContext().isValid()) {
+            size += lengthDelimitedFieldSize(SPAN_ID_BYTES);
+        }
+        size += optionalStringFieldSize(span.getName());
+        // kind, start and end time
+        size += 2 + 2 * (1 + 8);
+        Attributes attributes = span.getAttributes();
+        size += attributesSize(attributes);
+        size += countFieldSize(span.getTotalAttributeCount() - attributes.size());
+        List<EventData> events = span.getEvents();
+        for (int i = 0; i < events.size(); i++) {
+            size += lengthDelimitedFieldSize(eventSize(events.get(i)));
+        }
+        size += countFieldSize(span.getTotalRecordedEvents() - events.size());
+        List<LinkData> links = span.getLinks();
+        for (int i = 0; i < links.size(); i++) {
+            size += lengthDelimitedFieldSize(linkSize(links.get(i)));
+        }
+        size += countFieldSize(span.getTotalRecordedLinks() - links.size());
+        size += lengthDelimitedFieldSize(statusSize(span.getStatus()));
+        return size;
+    }
+
+    private static void writeSpan(SpanData span, ProtoOutput out) {
+        SpanContext spanContext = span.getSpanContext();
+        out.writeBytesField(TRACE_ID, spanContext.getTraceIdBytes());
+        out.writeBytesField(SPAN_ID, spanContext.getSpanIdBytes());
+        writeOptionalStringField(TRACE_STATE, traceState(spanContext.getTraceState()), out);
+        SpanContext parentSpanContext = span.getParentSpanContext();
+        if (parentSpanContext.isValid()) {
+            out.writeBytesField(PARENT_SPAN_ID, parentSpanContext.getSpanIdBytes());
+        }
+        writeOptionalStringField(NAME, span.getName(), out);
+        out.writeByte(KIND);
+        // the proto enum reserves 0 for an unspecified kind
+        out.writeByte(span.getKind().ordinal() + 1);
+        out.writeByte(START_TIME);
+        out.writeFixed64(span.getStartEpochNanos());
+        out.writeByte(END_TIME);
+        out.writeFixed64(span.getEndEpochNanos());
+        Attributes attributes = span.getAttributes();
+        writeAttributes(ATTRIBUTES, attributes, out);
+        writeCountField(
+                DROPPED_ATTRIBUTES_COUNT, span.getTotalAttributeCount() - attributes.size(), out);
+        List<EventData> events = span.getEvents();
+        for (int i = 0; i < events.size(); i++) {
+            writeEvent(events.get(i), out);
+        }
+        writeCountField(DROPPED_EVENTS_COUNT, span.getTotalRecordedEvents() - events.size(), out);
+        List<LinkData> links = span.getLinks();
+        for (int i = 0; i < links.size(); i++) {
+            writeLink(links.get(i), out);
+        }
+        writeCountField(DROPPED_LINKS_COUNT, span.getTotalRecordedLinks() - links.size(), out);
+        writeStatus(span.getStatus(), out);
+    }
+
+    private static int eventSize(EventData event) {
+        Attributes attributes = event.getAttributes();
+        return 1
+                + 8
+                + optionalStringFieldSize(event.getName())
+                + attributesSize(attributes)
+                + countFieldSize(event.getTotalAttributeCount() - attributes.size());
+    }
+
+    private static void writeEvent(EventData event, ProtoOutput out) {
+        out.writeByte(EVENTS);
+        out.writeVarint(eventSize(event));
+        out.writeByte(EVENT_TIME);
+        out.writeFixed64(event.getEpochNanos());
+        writeOptionalStringField(EVENT_NAME, event.getName(), out);
+        Attributes attributes = event.getAttributes();
+        writeAttributes(EVENT_ATTRIBUTES, attributes, out);
+        writeCountField(
+                EVENT_DROPPED_ATTRIBUTES_COUNT,
+                event.getTotalAttributeCount() - attributes.size(),
+                out);
+    }
+
+    private static int linkSize(LinkData link) {
+        Attributes attributes = link.getAttributes();
+        return lengthDelimitedFieldSize(TRACE_ID_BYTES)
+                + lengthDelimitedFieldSize(SPAN_ID_BYTES)
+                + optionalStringFieldSize(traceState(link.getSpanContext().getTraceState()))
+                + attributesSize(attributes)
+                + countFieldSize(link.getTotalAttributeCount() - attributes.size());
+    }
+
+    private static void writeLink(LinkData link, ProtoOutput out) {
+        out.writeByte(LINKS);
+        out.writeVarint(linkSize(link));
+        SpanContext spanContext = link.getSpanContext();
+        out.writeBytesField(LINK_TRACE_ID, spanContext.getTraceIdBytes());
+        out.writeBytesField(LINK_SPAN_ID, spanContext.getSpanIdBytes());
+        writeOptionalStringField(LINK_TRACE_STATE, traceState(spanContext.getTraceState()), out);
+        Attributes attributes = link.getAttributes();
+        writeAttributes(LINK_ATTRIBUTES, attributes, out);
+        writeCountField(
+                LINK_DROPPED_ATTRIBUTES_COUNT,
+                link.getTotalAttributeCount() - attributes.size(),
+                out);
+    }
+
+    private static int statusSize(StatusData status) {
+        int size = optionalStringFieldSize(status.getDescription());
+        // the proto enum has the same order, with 0 for unset
+        if (status.getStatusCode().ordinal() != 0) {
+            size += 2;
+        }
+        return size;
+    }
+
+    private static void writeStatus(StatusData status, ProtoOutput out) {
+        out.writeByte(STATUS);
+        out.writeVarint(statusSize(status));
+        writeOptionalStringField(STATUS_MESSAGE, status.getDescription(), out);
+        if (status.getStatusCode().ordinal() != 0) {
+            out.writeByte(STATUS_CODE);
+            out.writeByte(status.getStatusCode().ordinal());
+        }
+    }
+
+    private static int attributesSize(Attributes attributes) {
+        int[] size = {0};
+        attributes.forEach(
+                (key, value) -> {
+                    size[0] += lengthDelimitedFieldSize(keyValueSize(key.getKey(), value));
+                });
+        return size[0];
+    }
+
+    private static void writeAttributes(int key, Attributes attributes, ProtoOutput out) {
+        attributes.forEach(
+                (attributeKey, value) -> {
+                    out.writeByte(key);
+                    out.writeVarint(keyValueSize(attributeKey.getKey(), value));
+                    out.writeStringField(KEY, attributeKey.getKey());
+                    out.writeByte(VALUE);
+                    out.writeVarint(anyValueSize(value));
+                    writeAnyValue(value, out);
+                });
+    }
+
+    private static int keyValueSize(String key, Object value) {
+        return stringFieldSize(key) + lengthDelimitedFieldSize(anyValueSize(value));
+    }
+
+    // attribute values are strings, booleans, longs, doubles or lists of them
+    private static int anyValueSize(Object value) {
+        if (value instanceof String) {
+            return stringFieldSize((String) value);
+        } else if (value instanceof Boolean) {
+            return 2;
+        } else if (value instanceof Long) {
+            return 1 + varintSize((Long) value);
+        } else if (value instanceof Double) {
+            return 1 + 8;
+        } else if (value instanceof List) {
+            return lengthDelimitedFieldSize(arrayValueSize((List<?>) value));
+        }
+        return 0;
+    }
+
+    private static void writeAnyValue(Object value, ProtoOutput out) {
+        if (value instanceof String) {
+            out.writeStringField(STRING_VALUE, (String) value);
+        } else if (value instanceof Boolean) {
+            out.writeByte(BOOL_VALUE);
+            out.writeByte((Boolean) value ? 1 : 0);
+        } else if (value instanceof Long) {
+            out.writeByte(INT_VALUE);
+            out.writeVarint((Long) value);
+        } else if (value instanceof Double) {
+            out.writeByte(DOUBLE_VALUE);
+            out.writeFixed64(Double.doubleToRawLongBits((Double) value));
+        } else if (value instanceof List) {
+            List<?> values = (List<?>) value;
+            out.writeByte(ARRAY_VALUE);
+            out.writeVarint(arrayValueSize(values));
+            for (Object element : values) {
+                out.writeByte(ARRAY_VALUES);
+                out.writeVarint(anyValueSize(element));
+                writeAnyValue(element, out);
+            }
+        }
+    }
+
+    private static int arrayValueSize(List<?> values) {
+        int size = 0;
+        for (Object element : values) {
+            size += lengthDelimitedFieldSize(anyValueSize(element));
+        }
+        return size;
+    }
+
+    /** Returns the W3C {@code tracestate} header value of the trace state. */
+    private static String traceState(TraceState traceState) {
+        if (traceState.isEmpty()) {
+            return "";
+        }
+        StringBuilder header = new StringBuilder();
+        traceState.forEach(
+                (key, value) -> {
+                    if (header.length() > 0) {
+                        header.append(',');
+                    }
+                    header.append(key).append('=').append(value);
+                });
+        return header.toString();
+    }
+
+    // proto3 doesn't write fields that have their default value
+    private static int optionalStringFieldSize(@Nullable String value) {
+        return value == null || value.isEmpty() ? 0 : stringFieldSize(value);
+    }
+
+    private static void writeOptionalStringField(int key, @Nullable String value, ProtoOutput out) {
+        if (value != null && !value.isEmpty()) {
+            out.writeStringField(key, value);
+        }
+    }
+
+    private static int countFieldSize(int count) {
+        return count > 0 ? 1 + varintSize(count) : 0;
+    }
+
+    private static void writeCountField(int key, int count, ProtoOutput out) {
+        if (count > 0) {
+            out.writeByte(key);
+            out.writeVarint(count);
+        }
+    }
+
+    private static final class ResourceGroup {
+        private final Resource resource;
+        private final Map<InstrumentationScopeInfo, ScopeGroup> scopeGroups =
+                new IdentityHashMap<>();
+        private int size;
+
+        private ResourceGroup(Resource resource) {
+            this.resource = resource;
+        }
+
+        private void add(SpanData span) {
+            InstrumentationScopeInfo scope = span.getInstrumentationScopeInfo();
+            ScopeGroup scopeGroup = scopeGroups.get(scope);
+            if (scopeGroup == null) {
+                scopeGroup = new ScopeGroup(scope);
+                scopeGroups.put(scope, scopeGroup);
+            }
+            scopeGroup.spans.add(span);
+        }
+
+        private void computeSize() {
+            size =
+                    lengthDelimitedFieldSize(attributesSize(resource.getAttributes()))
+                            + optionalStringFieldSize(resource.getSchemaUrl());
+            for (ScopeGroup scopeGroup : scopeGroups.values()) {
+                scopeGroup.computeSize();
+                size += lengthDelimitedFieldSize(scopeGroup.size);
+            }
+        }
+    }
+
+    private static final class ScopeGroup {
+        private final InstrumentationScopeInfo scope;
+        private final List<SpanData> spans = new ArrayList<>();
+        private int[] spanSizes = new int[0];
+        private int size;
+
+        private ScopeGroup(InstrumentationScopeInfo scope) {
+            this.scope = scope;
+        }
+
+        private void computeSize() {
+            spanSizes = new int[spans.size()];
+            size =
+                    lengthDelimitedFieldSize(scopeSize(scope))
+                            + optionalStringFieldSize(scope.getSchemaUrl());
+            for (int i = 0; i < spans.size(); i++) {
+                spanSizes[i] = spanSize(spans.get(i));
+                size += lengthDelimitedFieldSize(spanSizes[i]);
+            }
+        }
+    }
+}
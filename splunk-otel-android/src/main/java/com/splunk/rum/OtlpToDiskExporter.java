@@ -0,0 +1,113 @@
+/*
+ * Copyright Splunk Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.splunk.rum;
+
+import static java.util.Objects.requireNonNull;
+
+import android.util.Log;
+import androidx.annotation.Nullable;
+import io.opentelemetry.sdk.common.CompletableResultCode;
+import io.opentelemetry.sdk.trace.data.SpanData;
+import io.opentelemetry.sdk.trace.export.SpanExporter;
+import java.io.IOException;
+import java.util.Collection;
+import java.util.Collections;
+
+/**
+ * Writes each exported batch to the journal as a serialized OTLP {@code ExportTraceServiceRequest},
+ * encoded by {@link OtlpProtoEncoder}. The records of a segment merge into a single request, which
+ * is later uploaded as-is.
+ *
+ * <p>Like {@link ZipkinToDiskSender}, the export fails when the spans can't be stored, so that they
+ * are not considered exported.
+ */
+class OtlpToDiskExporter implements SpanExporter {
+
+    private final SpanJournal journal;
+    private final DeviceSpanStorageLimiter storageLimiter;
+    private final SpanPriority priority;
+
+    private OtlpToDiskExporter(Builder builder) {
+        this.journal = requireNonNull(builder.journal);
+        this.storageLimiter = requireNonNull(builder.storageLimiter);
+        this.priority = builder.priority;
+    }
+
+    @Override
+    public CompletableResultCode export(Collection<SpanData> spans) {
+        if (spans.isEmpty()) {
+            return CompletableResultCode.ofSuccess();
+        }
+        if (!storageLimiter.ensureFreeSpace()) {
+            Log.e(
+                    SplunkRum.LOG_TAG,
+                    "Dropping "
+                            + spans.size()
+                            + " spans: Too much telemetry has been buffered or not enough space"
+                            + " on device.");
+            return CompletableResultCode.ofFailure();
+        }
+        try {
+            journal.append(priority, Collections.singletonList(OtlpProtoEncoder.encode(spans)));
+            return CompletableResultCode.ofSuccess();
+        } catch (IOException e) {
+            Log.e(SplunkRum.LOG_TAG, "Error writing spans to storage", e);
+            return CompletableResultCode.ofFailure();
+        }
+    }
+
+    @Override
+    public CompletableResultCode flush() {
+        return CompletableResultCode.ofSuccess();
+    }
+
+    @Override
+    public CompletableResultCode shutdown() {
+        journal.seal();
+        return CompletableResultCode.ofSuccess();
+    }
+
+    static Builder builder() {
+        return new Builder();
+    }
+
+    static class Builder {
+        @Nullable private SpanJournal journal;
+        @Nullable private DeviceSpanStorageLimiter storageLimiter;
+        private SpanPriority priority = SpanPriority.UI;
+
+        Builder journal(SpanJournal journal) {
+            this.journal = journal;
+            return this;
+        }
+
+        Builder storageLimiter(DeviceSpanStorageLimiter limiter) {
+            this.storageLimiter = limiter;
+            return this;
+        }
+
+        /** Sets the priority class of the spans exported through this exporter. */
+        Builder priority(SpanPriority priority) {
+            this.priority = priority;
+            return this;
+        }
+
+        OtlpToDiskExporter build() {
+            return new OtlpToDiskExporter(this);
+        }
+    }
+}
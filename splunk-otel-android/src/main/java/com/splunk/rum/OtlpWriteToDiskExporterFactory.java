@@ -0,0 +1,44 @@
+/*
+ * Copyright Splunk Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.splunk.rum;
+
+import io.opentelemetry.sdk.trace.export.SpanExporter;
+
+/**
+ * Creates an exporter that writes telemetry to disk as OTLP requests. Spans are split by priority
+ * class, and each class gets its own OtlpToDiskExporter.
+ */
+class OtlpWriteToDiskExporterFactory {
+
+    private OtlpWriteToDiskExporterFactory() {}
+
+    static SpanExporter create(
+            int maxUsageMegabytes, SpanStorage spanStorage, SpanJournal journal) {
+        DeviceSpanStorageLimiter limiter =
+                DeviceSpanStorageLimiter.builder()
+                        .fileProvider(spanStorage)
+                        .maxStorageUseMb(maxUsageMegabytes)
+                        .build();
+        return new PriorityPartitioningExporter(
+                priority ->
+                        OtlpToDiskExporter.builder()
+                                .journal(journal)
+                                .storageLimiter(limiter)
+                                .priority(priority)
+                                .build());
+    }
+}
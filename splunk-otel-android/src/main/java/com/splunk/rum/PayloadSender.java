@@ -0,0 +1,110 @@
+/*
+ * Copyright Splunk Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.splunk.rum;
+
+import static com.splunk.rum.SplunkRum.LOG_TAG;
+
+import android.util.Log;
+import io.opentelemetry.sdk.common.CompletableResultCode;
+import java.io.IOException;
+import java.util.Collections;
+import java.util.Map;
+import okhttp3.Call;
+import okhttp3.Callback;
+import okhttp3.MediaType;
+import okhttp3.Request;
+import okhttp3.RequestBody;
+import okhttp3.Response;
+
+/**
+ * Posts request bodies that were already fully encoded, and possibly compressed, when they were
+ * written to storage. The bytes are sent exactly as they were read from disk. Bodies that are
+ * encoded while they are sent can be posted as well, also without blocking the calling thread.
+ */
+class PayloadSender {
+
+    static final MediaType JSON = MediaType.get("application/json");
+    static final MediaType PROTOBUF = MediaType.get("application/x-protobuf");
+
+    private final Call.Factory callFactory;
+    private final String endpoint;
+    private final Map<String, String> headers;
+
+    PayloadSender(Call.Factory callFactory, String endpoint) {
+        this(callFactory, endpoint, Collections.emptyMap());
+    }
+
+    PayloadSender(Call.Factory callFactory, String endpoint, Map<String, String> headers) {
+        this.callFactory = callFactory;
+        this.endpoint = endpoint;
+        this.headers = headers;
+    }
+
+    void send(byte[] payload, MediaType contentType, boolean gzipped) throws IOException {
+        send(RequestBody.create(contentType, payload), gzipped);
+    }
+
+    /** Posts a body that writes its content when the request is sent, e.g. while encoding it. */
+    void send(RequestBody body, boolean gzipped) throws IOException {
+        try (Response response = callFactory.newCall(buildRequest(body, gzipped)).execute()) {
+            if (!response.isSuccessful()) {
+                // the endpoint contains the access token, so don't include it in the message
+                throw new IOException("Unexpected response code: " + response.code());
+            }
+        }
+    }
+
+    /**
+     * Posts a body without blocking. The returned result is completed from the http client's
+     * callback, once the response has arrived or the request has failed.
+     */
+    CompletableResultCode sendAsync(RequestBody body, boolean gzipped) {
+        CompletableResultCode result = new CompletableResultCode();
+        callFactory
+                .newCall(buildRequest(body, gzipped))
+                .enqueue(
+                        new Callback() {
+                            @Override
+                            public void onFailure(Call call, IOException e) {
+                                Log.w(LOG_TAG, "Error sending spans", e);
+                                result.fail();
+                            }
+
+                            @Override
+                            public void onResponse(Call call, Response response) {
+                                try (Response r = response) {
+                                    if (r.isSuccessful()) {
+                                        result.succeed();
+                                    } else {
+                                        Log.w(LOG_TAG, "Unexpected response code: " + r.code());
+                                        result.fail();
+                                    }
+                                }
+                            }
+                        });
+        return result;
+    }
+
+    private Request buildRequest(RequestBody body, boolean gzipped) {
+        Request.Builder request = new Request.Builder().url(endpoint).post(body);
+        headers.forEach(request::header);
+        if (gzipped) {
+            request.header("Content-Encoding", "gzip");
+        }
+        return request.build();
+    }
+}
@@ -0,0 +1,79 @@
+/*
+ * Copyright Splunk Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.splunk.rum;
+
+import io.opentelemetry.sdk.common.CompletableResultCode;
+import io.opentelemetry.sdk.trace.data.SpanData;
+import io.opentelemetry.sdk.trace.export.SpanExporter;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+
+/**
+ * Splits the spans by their {@link SpanPriority} and hands each class to its own delegate, so that
+ * spans of different classes end up in different files.
+ */
+class PriorityPartitioningExporter implements SpanExporter {
+
+    // indexed by priority ordinal
+    private final SpanExporter[] delegates = new SpanExporter[SpanPriority.values().length];
+
+    PriorityPartitioningExporter(Function<SpanPriority, SpanExporter> exporterFactory) {
+        for (SpanPriority priority : SpanPriority.values()) {
+            delegates[priority.ordinal()] = exporterFactory.apply(priority);
+        }
+    }
+
+    @Override
+    public CompletableResultCode export(Collection<SpanData> spans) {
+        Map<SpanPriority, List<SpanData>> partitions = new EnumMap<>(SpanPriority.class);
+        for (SpanData span : spans) {
+            partitions.computeIfAbsent(SpanPriority.of(span), k -> new ArrayList<>()).add(span);
+        }
+        List<CompletableResultCode> results = new ArrayList<>(partitions.size());
+        // the most valuable spans are written first, while there is still room for them
+        SpanPriority[] priorities = SpanPriority.values();
+        for (int i = priorities.length - 1; i >= 0; i--) {
+            List<SpanData> partition = partitions.get(priorities[i]);
+            if (partition != null) {
+                results.add(delegates[i].export(partition));
+            }
+        }
+        return CompletableResultCode.ofAll(results);
+    }
+
+    @Override
+    public CompletableResultCode flush() {
+        List<CompletableResultCode> results = new ArrayList<>(delegates.length);
+        for (SpanExporter delegate : delegates) {
+            results.add(delegate.flush());
+        }
+        return CompletableResultCode.ofAll(results);
+    }
+
+    @Override
+    public CompletableResultCode shutdown() {
+        List<CompletableResultCode> results = new ArrayList<>(delegates.length);
+        for (SpanExporter delegate : delegates) {
+            results.add(delegate.shutdown());
+        }
+        return CompletableResultCode.ofAll(results);
+    }
+}
@@ -0,0 +1,139 @@
+/*
+ * Copyright Splunk Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.splunk.rum;
+
+/**
+ * Writes protobuf fields into a byte array that was sized up front. The encoders compute the size
+ * of every message before writing it, so that each message is written in a single pass, straight
+ * into the final array, without intermediate buffers.
+ *
+ * <p>All the field keys used by the encoders fit into a single byte.
+ */
+final class ProtoOutput {
+
+    static final int WIRETYPE_VARINT = 0;
+    static final int WIRETYPE_FIXED64 = 1;
+    static final int WIRETYPE_LENGTH_DELIMITED = 2;
+
+    final byte[] bytes;
+    private int position;
+
+    ProtoOutput(byte[] bytes) {
+        this.bytes = bytes;
+    }
+
+    static int key(int fieldNumber, int wireType) {
+        return (fieldNumber << 3) | wireType;
+    }
+
+    static int lengthDelimitedFieldSize(int contentSize) {
+        return 1 + varintSize(contentSize) + contentSize;
+    }
+
+    static int stringFieldSize(String value) {
+        return lengthDelimitedFieldSize(utf8Size(value));
+    }
+
+    static int varintSize(long value) {
+        int size = 1;
+        for (long remaining = value >>> 7; remaining != 0; remaining >>>= 7) {
+            size++;
+        }
+        return size;
+    }
+
+    static int utf8Size(String value) {
+        int size = 0;
+        for (int i = 0, length = value.length(); i < length; i++) {
+            char c = value.charAt(i);
+            if (c < 0x80) {
+                size++;
+            } else if (c < 0x800) {
+                size += 2;
+            } else if (Character.isHighSurrogate(c)
+                    && i + 1 < length
+                    && Character.isLowSurrogate(value.charAt(i + 1))) {
+                size += 4;
+                i++;
+            } else if (Character.isSurrogate(c)) {
+                // malformed surrogate pair, written as '?'
+                size++;
+            } else {
+                size += 3;
+            }
+        }
+        return size;
+    }
+
+    void writeStringField(int key, String value) {
+        writeByte(key);
+        writeVarint(utf8Size(value));
+        writeUtf8(value);
+    }
+
+    void writeBytesField(int key, byte[] value) {
+        writeByte(key);
+        writeVarint(value.length);
+        System.arraycopy(value, 0, bytes, position, value.length);
+        position += value.length;
+    }
+
+    void writeByte(int b) {
+        bytes[position++] = (byte) b;
+    }
+
+    void writeVarint(long value) {
+        long remaining = value;
+        while ((remaining & ~0x7fL) != 0) {
+            writeByte((int) ((remaining & 0x7f) | 0x80));
+            remaining >>>= 7;
+        }
+        writeByte((int) remaining);
+    }
+
+    void writeFixed64(long value) {
+        for (int i = 0; i < 8; i++) {
+            writeByte((int) (value >>> (i * 8)));
+        }
+    }
+
+    void writeUtf8(String value) {
+        for (int i = 0, length = value.length(); i < length; i++) {
+            char c = value.charAt(i);
+            if (c < 0x80) {
+                writeByte(c);
+            } else if (c < 0x800) {
+                writeByte(0xc0 | (c >> 6));
+                writeByte(0x80 | (c & 0x3f));
+            } else if (Character.isHighSurrogate(c)
+                    && i + 1 < length
+                    && Character.isLowSurrogate(value.charAt(i + 1))) {
+                int codePoint = Character.toCodePoint(c, value.charAt(++i));
+                writeByte(0xf0 | (codePoint >> 18));
+                writeByte(0x80 | ((codePoint >> 12) & 0x3f));
+                writeByte(0x80 | ((codePoint >> 6) & 0x3f));
+                writeByte(0x80 | (codePoint & 0x3f));
+            } else if (Character.isSurrogate(c)) {
+                writeByte('?');
+            } else {
+                writeByte(0xe0 | (c >> 12));
+                writeByte(0x80 | ((c >> 6) & 0x3f));
+                writeByte(0x80 | (c & 0x3f));
+            }
+        }
+    }
+}
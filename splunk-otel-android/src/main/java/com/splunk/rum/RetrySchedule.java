@@ -0,0 +1,162 @@
+/*
+ * Copyright Splunk Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.splunk.rum;
+
+import static com.splunk.rum.SplunkRum.LOG_TAG;
+import static java.util.Objects.requireNonNull;
+
+import android.util.Log;
+import androidx.annotation.Nullable;
+import io.opentelemetry.sdk.common.Clock;
+import java.io.File;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.function.IntToLongFunction;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Schedules upload retries of span files. Instead of blocking until the next attempt, a failed
+ * file is given a time before which it should not be retried, and the uploader skips it until
+ * then.
+ *
+ * <p>The attempt count and the time of the next attempt are kept in the file name, e.g. {@code
+ * 1700000000000.spans} becomes {@code 1700000000000.r2-1700000012000.spans}. This way they survive
+ * process restarts, and they go away together with the file.
+ */
+class RetrySchedule {
+
+    static final int DEFAULT_MAX_RETRIES = 20;
+
+    // <creation timestamp>[.r<attempts>-<next attempt millis>]<suffix>
+    private static final Pattern FILE_NAME =
+            Pattern.compile("^([^.]+)(?:\\.r(\\d+)-(\\d+))?(\\..*)?$");
+
+    private final SpanStorage spanStorage;
+    private final FileUtils fileUtils;
+    private final Clock clock;
+    private final int maxRetries;
+    private final IntToLongFunction retryDelayMillis;
+
+    private RetrySchedule(Builder builder) {
+        this.spanStorage = requireNonNull(builder.spanStorage);
+        this.fileUtils = builder.fileUtils;
+        this.clock = builder.clock;
+        this.maxRetries = builder.maxRetries;
+        this.retryDelayMillis = builder.retryDelayMillis;
+    }
+
+    /**
+     * Returns the time to wait until the file can be attempted again, or a non-positive value if it
+     * can be sent right away.
+     */
+    long getMillisUntilNextAttempt(File file) {
+        Matcher matcher = FILE_NAME.matcher(file.getName());
+        if (!matcher.matches() || matcher.group(3) == null) {
+            return 0;
+        }
+        return Long.parseLong(matcher.group(3)) - nowMillis();
+    }
+
+    /**
+     * Records a failed attempt to send the file. The file is renamed to carry its next attempt
+     * time, or deleted if it has run out of retries.
+     */
+    void trackFailure(File file) {
+        Matcher matcher = FILE_NAME.matcher(file.getName());
+        if (!matcher.matches()) {
+            Log.w(LOG_TAG, "Unexpected span file name " + file + ", not retrying it");
+            spanStorage.delete(file);
+            return;
+        }
+        String previousAttempts = matcher.group(2);
+        int attempts = previousAttempts == null ? 1 : Integer.parseInt(previousAttempts) + 1;
+        if (attempts >= maxRetries) {
+            Log.w(
+                    LOG_TAG,
+                    "Dropping data in " + file + " (max retries exceeded " + maxRetries + ")");
+            spanStorage.delete(file);
+            return;
+        }
+
+        long nextAttempt = nowMillis() + retryDelayMillis.applyAsLong(attempts);
+        String suffix = matcher.group(4) == null ? "" : matcher.group(4);
+        String name = matcher.group(1) + ".r" + attempts + "-" + nextAttempt + suffix;
+        File renamed = new File(file.getParentFile(), name);
+        if (fileUtils.rename(file, renamed)) {
+            spanStorage.recordRename(file, renamed);
+        } else {
+            Log.w(LOG_TAG, "Error scheduling retry of " + file);
+        }
+    }
+
+    private long nowMillis() {
+        return TimeUnit.NANOSECONDS.toMillis(clock.now());
+    }
+
+    static Builder builder() {
+        return new Builder();
+    }
+
+    /** Waits 5 seconds more after each attempt, up to a minute, with up to half of it jittered. */
+    static class DefaultRetryDelay implements IntToLongFunction {
+
+        @Override
+        public long applyAsLong(int attempts) {
+            long delay = TimeUnit.SECONDS.toMillis(Math.min(60, attempts * 5));
+            return delay / 2 + ThreadLocalRandom.current().nextLong(delay / 2 + 1);
+        }
+    }
+
+    static class Builder {
+        @Nullable private SpanStorage spanStorage;
+        private FileUtils fileUtils = new FileUtils();
+        private Clock clock = Clock.getDefault();
+        private int maxRetries = DEFAULT_MAX_RETRIES;
+        private IntToLongFunction retryDelayMillis = new DefaultRetryDelay();
+
+        Builder spanStorage(SpanStorage spanStorage) {
+            this.spanStorage = spanStorage;
+            return this;
+        }
+
+        Builder fileUtils(FileUtils fileUtils) {
+            this.fileUtils = fileUtils;
+            return this;
+        }
+
+        Builder clock(Clock clock) {
+            this.clock = clock;
+            return this;
+        }
+
+        Builder maxRetries(int maxRetries) {
+            this.maxRetries = maxRetries;
+            return this;
+        }
+
+        // Exists for testing
+        Builder retryDelayMillis(IntToLongFunction retryDelayMillis) {
+            this.retryDelayMillis = retryDelayMillis;
+            return this;
+        }
+
+        RetrySchedule build() {
+            return new RetrySchedule(this);
+        }
+    }
+}
@@ -0,0 +1,276 @@
+/*
+ * Copyright Splunk Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.splunk.rum;
+
+import androidx.annotation.Nullable;
+import io.opentelemetry.api.common.AttributeKey;
+import io.opentelemetry.api.common.Attributes;
+import io.opentelemetry.api.common.AttributesBuilder;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.BiConsumer;
+
+/**
+ * A read-only view of span attributes, with some keys renamed or removed by precomputed {@link
+ * Rules}, and other attributes layered over them. Nothing is copied: lookups and iteration go
+ * through to the original attributes.
+ *
+ * <p>The overlays take precedence over the original attributes, and later overlays over earlier
+ * ones. A renamed attribute replaces any attribute that already had the new name, just like
+ * removing it and putting it back under the new name would.
+ *
+ * <p>Iterating the view looks up every original attribute in the overlays, so an overlay that is
+ * shared by many views and holds more than a few attributes should be wrapped with {@link
+ * #indexed(Attributes)} once, rather than scanned for each attribute of each view.
+ */
+final class RewrittenAttributes implements Attributes {
+
+    private final Attributes original;
+    private final Rules rules;
+    private final Attributes[] overlays;
+
+    // computed on first use, the view never changes
+    private int size = -1;
+
+    RewrittenAttributes(Attributes original, Rules rules, Attributes... overlays) {
+        this.original = original;
+        this.rules = rules;
+        this.overlays = overlays;
+    }
+
+    /**
+     * Returns the same attributes with hashed lookups, in place of the linear scan of the standard
+     * implementation.
+     */
+    static Attributes indexed(Attributes attributes) {
+        return new IndexedAttributes(attributes);
+    }
+
+    @Nullable
+    @Override
+    public <T> T get(AttributeKey<T> key) {
+        for (int i = overlays.length - 1; i >= 0; i--) {
+            T value = overlays[i].get(key);
+            if (value != null) {
+                return value;
+            }
+        }
+        if (rules.removed.contains(key) || rules.renames.containsKey(key)) {
+            return null;
+        }
+        @SuppressWarnings("unchecked")
+        AttributeKey<T> source = (AttributeKey<T>) rules.sources.get(key);
+        if (source != null) {
+            T value = original.get(source);
+            if (value != null) {
+                return value;
+            }
+        }
+        return original.get(key);
+    }
+
+    @Override
+    public void forEach(BiConsumer<? super AttributeKey<?>, ? super Object> consumer) {
+        for (int i = overlays.length - 1; i >= 0; i--) {
+            int layer = i;
+            overlays[i].forEach(
+                    (key, value) -> {
+                        if (!isOverlaid(key, layer + 1)) {
+                            consumer.accept(key, value);
+                        }
+                    });
+        }
+        original.forEach(
+                (key, value) -> {
+                    AttributeKey<?> rewrittenKey = rewriteKey(key);
+                    if (rewrittenKey != null && !isOverlaid(rewrittenKey, 0)) {
+                        consumer.accept(rewrittenKey, value);
+                    }
+                });
+    }
+
+    /** Returns the key the original attribute is visible under, or null if it is hidden. */
+    @Nullable
+    private AttributeKey<?> rewriteKey(AttributeKey<?> key) {
+        if (rules.removed.contains(key)) {
+            return null;
+        }
+        AttributeKey<?> renamed = rules.renames.get(key);
+        if (renamed != null) {
+            return renamed;
+        }
+        AttributeKey<?> source = rules.sources.get(key);
+        if (source != null && original.get(source) != null) {
+            // replaced by the renamed attribute
+            return null;
+        }
+        return key;
+    }
+
+    private boolean isOverlaid(AttributeKey<?> key, int fromLayer) {
+        for (int i = fromLayer; i < overlays.length; i++) {
+            if (overlays[i].get(key) != null) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    @Override
+    public int size() {
+        if (size < 0) {
+            int[] count = {0};
+            forEach((key, value) -> count[0]++);
+            size = count[0];
+        }
+        return size;
+    }
+
+    @Override
+    public boolean isEmpty() {
+        return size() == 0;
+    }
+
+    @Override
+    public Map<AttributeKey<?>, Object> asMap() {
+        Map<AttributeKey<?>, Object> map = new LinkedHashMap<>();
+        forEach(map::put);
+        return Collections.unmodifiableMap(map);
+    }
+
+    @Override
+    public AttributesBuilder toBuilder() {
+        return Attributes.builder().putAll(this);
+    }
+
+    @Override
+    public boolean equals(@Nullable Object o) {
+        return o instanceof Attributes && asMap().equals(((Attributes) o).asMap());
+    }
+
+    @Override
+    public int hashCode() {
+        return asMap().hashCode();
+    }
+
+    @Override
+    public String toString() {
+        return asMap().toString();
+    }
+
+    /** Attributes with their keys hashed, iterated in the order of the wrapped ones. */
+    private static final class IndexedAttributes implements Attributes {
+
+        private final Attributes attributes;
+        private final Map<AttributeKey<?>, Object> values;
+
+        private IndexedAttributes(Attributes attributes) {
+            this.attributes = attributes;
+            this.values = new HashMap<>(attributes.asMap());
+        }
+
+        @Nullable
+        @Override
+        @SuppressWarnings("unchecked")
+        public <T> T get(AttributeKey<T> key) {
+            return (T) values.get(key);
+        }
+
+        @Override
+        public void forEach(BiConsumer<? super AttributeKey<?>, ? super Object> consumer) {
+            attributes.forEach(consumer);
+        }
+
+        @Override
+        public int size() {
+            return values.size();
+        }
+
+        @Override
+        public boolean isEmpty() {
+            return values.isEmpty();
+        }
+
+        @Override
+        public Map<AttributeKey<?>, Object> asMap() {
+            return attributes.asMap();
+        }
+
+        @Override
+        public AttributesBuilder toBuilder() {
+            return attributes.toBuilder();
+        }
+
+        @Override
+        public boolean equals(@Nullable Object o) {
+            return o instanceof Attributes && asMap().equals(((Attributes) o).asMap());
+        }
+
+        @Override
+        public int hashCode() {
+            return asMap().hashCode();
+        }
+
+        @Override
+        public String toString() {
+            return attributes.toString();
+        }
+    }
+
+    /** Renames and removals of attribute keys, prepared once and shared by all the views. */
+    static final class Rules {
+        // from the original key to the new one
+        private final Map<AttributeKey<?>, AttributeKey<?>> renames;
+        // from the new key to the original one
+        private final Map<AttributeKey<?>, AttributeKey<?>> sources;
+        private final Set<AttributeKey<?>> removed;
+
+        private Rules(Builder builder) {
+            this.renames = new HashMap<>(builder.renames);
+            this.sources = new HashMap<>();
+            renames.forEach((from, to) -> sources.put(to, from));
+            this.removed = new HashSet<>(builder.removed);
+        }
+
+        static Builder builder() {
+            return new Builder();
+        }
+
+        static class Builder {
+            private final Map<AttributeKey<?>, AttributeKey<?>> renames = new HashMap<>();
+            private final Set<AttributeKey<?>> removed = new HashSet<>();
+
+            <T> Builder rename(AttributeKey<T> from, AttributeKey<T> to) {
+                renames.put(from, to);
+                return this;
+            }
+
+            Builder remove(AttributeKey<?> key) {
+                removed.add(key);
+                return this;
+            }
+
+            Rules build() {
+                return new Rules(this);
+            }
+        }
+    }
+}
@@ -23,6 +23,7 @@ import static com.splunk.rum.SplunkRum.COMPONENT_APPSTART;
 import static com.splunk.rum.SplunkRum.COMPONENT_ERROR;
 import static com.splunk.rum.SplunkRum.COMPONENT_KEY;
 import static com.splunk.rum.SplunkRum.COMPONENT_UI;
+import static com.splunk.rum.SplunkRum.LOG_TAG;
 import static com.splunk.rum.SplunkRum.RUM_TRACER_NAME;
 import static com.splunk.rum.SplunkRum.SPLUNK_BUILD_ID;
 import static io.opentelemetry.android.RumConstants.APP_START_SPAN_NAME;
@@ -32,8 +33,10 @@ import static java.util.Objects.requireNonNull;
 
 import android.app.Application;
 import android.os.Looper;
+import android.util.Log;
 import androidx.annotation.NonNull;
 import androidx.annotation.Nullable;
+import com.splunk.rum.incubating.HttpSenderCustomizer;
 import com.splunk.rum.internal.GlobalAttributesSupplier;
 import com.splunk.rum.internal.NoOpSpanExporter;
 import com.splunk.rum.internal.UInt32QuadXorTraceIdRatioSampler;
@@ -58,6 +61,7 @@ import io.opentelemetry.sdk.common.CompletableResultCode;
 import io.opentelemetry.sdk.resources.Resource;
 import io.opentelemetry.sdk.resources.ResourceBuilder;
 import io.opentelemetry.sdk.trace.SpanLimits;
+import io.opentelemetry.sdk.trace.SpanProcessor;
 import io.opentelemetry.sdk.trace.data.SpanData;
 import io.opentelemetry.sdk.trace.export.BatchSpanProcessor;
 import io.opentelemetry.sdk.trace.export.SimpleSpanProcessor;
@@ -65,11 +69,14 @@ import io.opentelemetry.sdk.trace.export.SpanExporter;
 import io.opentelemetry.sdk.trace.samplers.Sampler;
 import java.time.Duration;
 import java.util.Collection;
+import java.util.Collections;
 import java.util.concurrent.atomic.AtomicReference;
 import java.util.function.Function;
 import java.util.function.Supplier;
 import java.util.logging.Level;
-import zipkin2.reporter.Sender;
+import okhttp3.Dispatcher;
+import okhttp3.OkHttpClient;
+import zipkin2.reporter.BytesMessageSender;
 import zipkin2.reporter.okhttp3.OkHttpSender;
 
 class RumInitializer {
@@ -82,6 +89,9 @@ class RumInitializer {
     private final Application application;
     private final AppStartupTimer startupTimer;
     private final InitializationEvents initializationEvents;
+    private final DroppedSpanCounter droppedSpanCounter = new DroppedSpanCounter();
+    private final ExportMetrics exportMetrics = new ExportMetrics();
+    @Nullable private final StackTraceDeduplicator stackTraceDeduplicator;
 
     RumInitializer(
             SplunkRumBuilder builder, Application application, AppStartupTimer startupTimer) {
@@ -89,6 +99,8 @@ class RumInitializer {
         this.application = application;
         this.startupTimer = startupTimer;
         this.initializationEvents = new InitializationEvents(startupTimer);
+        this.stackTraceDeduplicator =
+                builder.isStackTraceDeduplicationEnabled() ? new StackTraceDeduplicator() : null;
     }
 
     SplunkRum initialize(Looper mainLooper) {
@@ -130,8 +142,10 @@ class RumInitializer {
                             buildFilteringExporter(currentNetworkProvider, visibleScreenTracker);
                     initializationEvents.emit("exporterInitialized");
 
-                    BatchSpanProcessor batchSpanProcessor =
-                            BatchSpanProcessor.builder(zipkinExporter).build();
+                    SpanExporter handOffExporter = buildInFlightLimitingExporter(zipkinExporter);
+                    SpanProcessor batchSpanProcessor =
+                            buildBatchSpanProcessor(
+                                    handOffExporter, currentNetworkProvider, visibleScreenTracker);
                     initializationEvents.emit("batchSpanProcessorInitialized");
                     return tracerProviderBuilder.addSpanProcessor(batchSpanProcessor);
                 });
@@ -225,15 +239,27 @@ class RumInitializer {
                 builder.getConfigFlags(),
                 openTelemetryRum.getOpenTelemetry().getTracer(RUM_TRACER_NAME));
 
-        return new SplunkRum(openTelemetryRum, globalAttributeSupplier, screenAttributesAppender);
+        return new SplunkRum(
+                openTelemetryRum,
+                globalAttributeSupplier,
+                screenAttributesAppender,
+                droppedSpanCounter,
+                exportMetrics);
     }
 
     @NonNull
     private MemorySpanBuffer constructBacklogProvider(VisibleScreenTracker visibleScreenTracker) {
         if (builder.isBackgroundInstrumentationDeferredUntilForeground()) {
-            return new StartTypeAwareMemorySpanBuffer(visibleScreenTracker);
+            return new StartTypeAwareMemorySpanBuffer(
+                    visibleScreenTracker,
+                    builder.memoryBufferMaxBytes,
+                    builder.memoryBufferEvictionPolicy,
+                    droppedSpanCounter);
         } else {
-            return new DefaultMemorySpanBuffer();
+            return new DefaultMemorySpanBuffer(
+                    builder.memoryBufferMaxBytes,
+                    builder.memoryBufferEvictionPolicy,
+                    droppedSpanCounter);
         }
     }
 
@@ -360,6 +386,42 @@ class RumInitializer {
                 });
     }
 
+    private SpanProcessor buildBatchSpanProcessor(
+            SpanExporter exporter,
+            CurrentNetworkProvider currentNetworkProvider,
+            VisibleScreenTracker visibleScreenTracker) {
+        if (builder.isAdaptiveBatchingEnabled()) {
+            AdaptiveExportSchedule schedule =
+                    new AdaptiveExportSchedule(
+                            visibleScreenTracker,
+                            currentNetworkProvider,
+                            new BatteryMonitor(application));
+            return splunkBatchSpanProcessorBuilder(exporter).schedule(schedule).build();
+        }
+        if (builder.isLockFreeSpanProcessorEnabled()) {
+            return splunkBatchSpanProcessorBuilder(exporter).build();
+        }
+        return BatchSpanProcessor.builder(exporter).build();
+    }
+
+    private SplunkBatchSpanProcessor.Builder splunkBatchSpanProcessorBuilder(
+            SpanExporter exporter) {
+        return SplunkBatchSpanProcessor.builder()
+                .exporter(exporter)
+                .droppedSpanCounter(droppedSpanCounter)
+                .metrics(exportMetrics);
+    }
+
+    // The span processor only hands the batches off, so a slow backend doesn't hold it up.
+    private SpanExporter buildInFlightLimitingExporter(SpanExporter exporter) {
+        return InFlightLimitingExporter.builder()
+                .delegate(exporter)
+                .maxInFlightBatches(builder.maxInFlightExportBatches)
+                .droppedSpanCounter(droppedSpanCounter)
+                .metrics(exportMetrics)
+                .build();
+    }
+
     // visible for testing
     SpanExporter buildFilteringExporter(
             CurrentNetworkProvider currentNetworkProvider,
@@ -369,7 +431,8 @@ class RumInitializer {
                 new SplunkSpanDataModifier(
                         exporter,
                         builder.isReactNativeSupportEnabled(),
-                        builder.shouldUseOtlpExporter());
+                        builder.shouldUseOtlpExporter(),
+                        stackTraceDeduplicator);
         SpanExporter filteredExporter = builder.decorateWithSpanFilter(splunkTranslatedExporter);
         initializationEvents.emit("zipkin exporter initialized");
         return filteredExporter;
@@ -386,8 +449,15 @@ class RumInitializer {
         }
 
         if (builder.isDiskBufferingEnabled()) {
-            return buildStorageBufferingExporter(
-                    currentNetworkProvider, constructSpanFileProvider(visibleScreenTracker));
+            SpanStorage spanStorage = constructSpanFileProvider(visibleScreenTracker);
+            SpanExporter toDiskExporter =
+                    buildStorageBufferingExporter(currentNetworkProvider, spanStorage);
+            // the memory backlog would send the deferred background spans right away
+            if (builder.isDiskBufferingSpilloverEnabled()
+                    && !builder.isBackgroundInstrumentationDeferredUntilForeground()) {
+                return buildSpilloverExporter(currentNetworkProvider, toDiskExporter);
+            }
+            return toDiskExporter;
         }
 
         return buildMemoryBufferingThrottledExporter(
@@ -396,30 +466,106 @@ class RumInitializer {
 
     private SpanExporter buildStorageBufferingExporter(
             CurrentNetworkProvider currentNetworkProvider, SpanStorage spanStorage) {
-        Sender sender = buildCustomizedZipkinSender();
+        OkHttpSender.Builder okBuilder = buildCustomizedZipkinSenderBuilder();
+        boolean otlp = builder.shouldUseOtlpExporter();
+        if (!otlp
+                && isHttpSenderCustomized()
+                && (builder.isDiskBufferingCompressionEnabled()
+                        || builder.isDiskBufferingBinaryFormatEnabled())) {
+            Log.w(
+                    LOG_TAG,
+                    "Disk buffering compression and binary format are disabled, "
+                            + "because the http sender is customized");
+        }
+        // the uploads are enqueued on the dispatcher, which limits the requests per host as well
+        OkHttpClient client = okBuilder.clientBuilder().build();
+        Dispatcher dispatcher = client.dispatcher();
+        dispatcher.setMaxRequestsPerHost(
+                Math.max(
+                        dispatcher.getMaxRequestsPerHost(),
+                        builder.maxInFlightDiskBufferingUploads));
+        PayloadSender payloadSender =
+                new PayloadSender(
+                        client,
+                        getEndpointWithAuthTokenQueryParam(),
+                        otlp
+                                ? Collections.singletonMap("X-SF-Token", builder.rumAccessToken)
+                                : Collections.emptyMap());
+        // only the OkHttpSender applies all the settings of its customized builder, but it can't
+        // send without blocking
+        BytesMessageSender sender =
+                isHttpSenderCustomized()
+                        ? okBuilder.build()
+                        : new StreamingZipkinSender(payloadSender, true);
+
+        BandwidthLimiter.Builder bandwidthLimiterBuilder = BandwidthLimiter.builder();
+        builder.diskBufferingBandwidthBudgets.forEach(bandwidthLimiterBuilder::budget);
+        BandwidthLimiter bandwidthLimiter = bandwidthLimiterBuilder.build();
+        SpanJournal journal =
+                SpanJournal.builder()
+                        .spanStorage(spanStorage)
+                        .compressed(isDiskBufferingCompressionUsed())
+                        .format(getDiskBufferingFormat())
+                        .build();
 
-        BandwidthTracker bandwidthTracker = new BandwidthTracker();
+        RetrySchedule retrySchedule = RetrySchedule.builder().spanStorage(spanStorage).build();
 
         FileSender fileSender =
-                FileSender.builder().sender(sender).bandwidthTracker(bandwidthTracker).build();
+                FileSender.builder()
+                        .sender(sender)
+                        .payloadSender(payloadSender)
+                        .spanStorage(spanStorage)
+                        .bandwidthLimiter(bandwidthLimiter)
+                        .retrySchedule(retrySchedule)
+                        .otlp(otlp)
+                        .build();
         DiskToZipkinExporter diskToZipkinExporter =
                 DiskToZipkinExporter.builder()
                         .connectionUtil(currentNetworkProvider)
                         .fileSender(fileSender)
-                        .bandwidthTracker(bandwidthTracker)
+                        .bandwidthLimiter(bandwidthLimiter)
                         .spanFileProvider(spanStorage)
+                        .journal(journal)
+                        .retrySchedule(retrySchedule)
+                        .maxInFlightUploads(builder.maxInFlightDiskBufferingUploads)
                         .build();
-        diskToZipkinExporter.startPolling();
+        diskToZipkinExporter.start();
+
+        return deduplicateStackTraces(getToDiskExporter(spanStorage, journal));
+    }
 
-        return getToDiskExporter(spanStorage);
+    private SpanExporter buildSpilloverExporter(
+            CurrentNetworkProvider currentNetworkProvider, SpanExporter toDiskExporter) {
+        SpilloverExporter spilloverExporter =
+                SpilloverExporter.builder()
+                        .currentNetworkProvider(currentNetworkProvider)
+                        .delegate(deduplicateStackTraces(getCoreSpanExporter()))
+                        .diskExporter(toDiskExporter)
+                        .maxBacklogBytes(builder.memoryBufferMaxBytes)
+                        .evictionPolicy(builder.memoryBufferEvictionPolicy)
+                        .droppedSpanCounter(droppedSpanCounter)
+                        .build();
+        application.registerComponentCallbacks(spilloverExporter.componentCallbacks());
+        return spilloverExporter;
     }
 
+    // The spans are streamed into the request instead of being concatenated by the OkHttpSender.
+    // Only the http client of the default OkHttpSender.Builder is used.
     @NonNull
-    private Sender buildCustomizedZipkinSender() {
+    private StreamingZipkinSender buildStreamingZipkinSender() {
+        OkHttpSender.Builder okBuilder = buildCustomizedZipkinSenderBuilder();
+        PayloadSender payloadSender =
+                new PayloadSender(
+                        okBuilder.clientBuilder().build(), getEndpointWithAuthTokenQueryParam());
+        return new StreamingZipkinSender(payloadSender, true);
+    }
+
+    @NonNull
+    private OkHttpSender.Builder buildCustomizedZipkinSenderBuilder() {
         OkHttpSender.Builder okBuilder =
                 OkHttpSender.newBuilder().endpoint(getEndpointWithAuthTokenQueryParam());
         builder.httpSenderCustomizer.customize(okBuilder);
-        return okBuilder.build();
+        return okBuilder;
     }
 
     @NonNull
@@ -429,27 +575,69 @@ class RumInitializer {
 
     private SpanExporter buildMemoryBufferingThrottledExporter(
             CurrentNetworkProvider currentNetworkProvider, MemorySpanBuffer backlogProvider) {
-        SpanExporter zipkinSpanExporter = getCoreSpanExporter();
+        SpanExporter zipkinSpanExporter = deduplicateStackTraces(getCoreSpanExporter());
         MemoryBufferingExporter memoryBufferingExporter =
                 new MemoryBufferingExporter(
-                        currentNetworkProvider, zipkinSpanExporter, backlogProvider);
+                        currentNetworkProvider,
+                        zipkinSpanExporter,
+                        backlogProvider,
+                        droppedSpanCounter);
         return buildThrottlingExporter(memoryBufferingExporter);
     }
 
-    private static ThrottlingExporter buildThrottlingExporter(
+    private ThrottlingExporter buildThrottlingExporter(
             MemoryBufferingExporter memoryBufferingExporter) {
         return ThrottlingExporter.newBuilder(memoryBufferingExporter)
                 .categorizeByAttribute(COMPONENT_KEY)
                 .maxSpansInWindow(100)
                 .windowSize(Duration.ofSeconds(30))
+                .budgets(builder.throttlingBudgets)
+                .summarizeDroppedSpans(builder.isThrottledSpanSummaryEnabled())
                 .build();
     }
 
-    SpanExporter getToDiskExporter(SpanStorage spanStorage) {
+    private SpanFormat getDiskBufferingFormat() {
+        if (builder.shouldUseOtlpExporter()) {
+            return SpanFormat.OTLP;
+        }
+        return builder.isDiskBufferingBinaryFormatEnabled() && !isHttpSenderCustomized()
+                ? SpanFormat.ZIPKIN_PROTO3
+                : SpanFormat.ZIPKIN_JSON;
+    }
+
+    // Compressed and binary zipkin segments are uploaded as they were stored, bypassing the
+    // OkHttpSender. Its customized compression, encoding and endpoint would then be ignored, so
+    // such segments are only written when it isn't customized.
+    private boolean isDiskBufferingCompressionUsed() {
+        return builder.isDiskBufferingCompressionEnabled()
+                && (builder.shouldUseOtlpExporter() || !isHttpSenderCustomized());
+    }
+
+    private boolean isHttpSenderCustomized() {
+        return builder.httpSenderCustomizer != HttpSenderCustomizer.DEFAULT;
+    }
+
+    SpanExporter getToDiskExporter(SpanStorage spanStorage, SpanJournal journal) {
+        if (builder.shouldUseOtlpExporter()) {
+            return new LazyInitSpanExporter(
+                    () ->
+                            OtlpWriteToDiskExporterFactory.create(
+                                    builder.maxUsageMegabytes, spanStorage, journal));
+        }
         return new LazyInitSpanExporter(
                 () ->
                         ZipkinWriteToDiskExporterFactory.create(
-                                builder.maxUsageMegabytes, spanStorage));
+                                builder.maxUsageMegabytes,
+                                spanStorage,
+                                journal,
+                                getDiskBufferingFormat() == SpanFormat.ZIPKIN_PROTO3));
+    }
+
+    // Only the stack traces that reach the exporters at the end of the chain count as exported.
+    private SpanExporter deduplicateStackTraces(SpanExporter exporter) {
+        return stackTraceDeduplicator == null
+                ? exporter
+                : new StackTraceDeduplicatingExporter(exporter, stackTraceDeduplicator);
     }
 
     // visible for testing
@@ -475,14 +663,24 @@ class RumInitializer {
     @NonNull
     private Supplier<SpanExporter> supplyZipkinExporter() {
         String endpoint = getEndpointWithAuthTokenQueryParam();
+        if (isHttpSenderCustomized()) {
+            // only the OkHttpSender applies all the settings of its customized builder
+            return () ->
+                    ZipkinSpanExporter.builder()
+                            .setEncoder(new CustomZipkinEncoder())
+                            .setEndpoint(endpoint)
+                            .setLocalIpAddressSupplier(() -> null)
+                            .setSender(buildCustomizedZipkinSenderBuilder().build())
+                            .build();
+        }
         return () ->
-                ZipkinSpanExporter.builder()
-                        .setEncoder(new CustomZipkinEncoder())
-                        .setEndpoint(endpoint)
-                        // remove the local IP address
-                        .setLocalIpAddressSupplier(() -> null)
-                        .setSender(buildCustomizedZipkinSender())
-                        .build();
+                new AsyncZipkinSpanExporter(
+                        ZipkinSpanExporter.builder()
+                                .setEncoder(new CustomZipkinEncoder())
+                                .setEndpoint(endpoint)
+                                // remove the local IP address
+                                .setLocalIpAddressSupplier(() -> null),
+                        buildStreamingZipkinSender());
     }
 
     private static class LazyInitSpanExporter implements SpanExporter {
@@ -0,0 +1,169 @@
+/*
+ * Copyright Splunk Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.splunk.rum;
+
+import java.util.zip.CRC32;
+import java.util.zip.DataFormatException;
+import java.util.zip.Inflater;
+
+/**
+ * Finds where the complete records of a segment end. Appends are not synced to storage, so a
+ * segment left by a process that was killed may end in a partially written record. Such a segment
+ * is truncated to its complete records before it is sealed, because the backend would reject the
+ * whole upload otherwise.
+ *
+ * <p>The framing depends on the segment format: uncompressed JSON records end with a newline,
+ * compressed segments consist of gzip members, and uncompressed binary records are sequences of
+ * length-delimited protobuf fields.
+ */
+final class SegmentRecovery {
+
+    // GZIPOutputStream writes a fixed header without any of the optional fields
+    private static final int GZIP_HEADER_BYTES = 10;
+    private static final int GZIP_TRAILER_BYTES = 8;
+    private static final int PROTOBUF_LENGTH_DELIMITED = 2;
+    private static final int MAX_VARINT_BYTES = 10;
+
+    private SegmentRecovery() {}
+
+    /** Returns the number of bytes at the start of the content that form complete records. */
+    static int completeRecordsLength(String segmentName, byte[] content) {
+        if (segmentName.contains(SpanJournal.COMPRESSED_SEGMENT_SUFFIX)) {
+            return completeGzipMembersLength(content);
+        }
+        if (SpanFormat.fromFileName(segmentName).isBinary()) {
+            return completeProtobufFieldsLength(content);
+        }
+        return completeLinesLength(content);
+    }
+
+    private static int completeLinesLength(byte[] content) {
+        for (int i = content.length - 1; i >= 0; i--) {
+            if (content[i] == '\n') {
+                return i + 1;
+            }
+        }
+        return 0;
+    }
+
+    private static int completeGzipMembersLength(byte[] content) {
+        Inflater inflater = new Inflater(true);
+        try {
+            int complete = 0;
+            while (complete < content.length) {
+                int end = gzipMemberEnd(content, complete, inflater);
+                if (end < 0) {
+                    break;
+                }
+                complete = end;
+            }
+            return complete;
+        } finally {
+            inflater.end();
+        }
+    }
+
+    // returns -1 if the member is incomplete or corrupt
+    private static int gzipMemberEnd(byte[] content, int offset, Inflater inflater) {
+        if (content.length - offset < GZIP_HEADER_BYTES
+                || content[offset] != (byte) 0x1f
+                || content[offset + 1] != (byte) 0x8b
+                || content[offset + 3] != 0) {
+            return -1;
+        }
+        int dataOffset = offset + GZIP_HEADER_BYTES;
+        inflater.reset();
+        inflater.setInput(content, dataOffset, content.length - dataOffset);
+        CRC32 crc = new CRC32();
+        byte[] buffer = new byte[8192];
+        try {
+            while (!inflater.finished()) {
+                int inflated = inflater.inflate(buffer);
+                if (inflated == 0 && (inflater.needsInput() || inflater.needsDictionary())) {
+                    return -1;
+                }
+                crc.update(buffer, 0, inflated);
+            }
+        } catch (DataFormatException e) {
+            return -1;
+        }
+        int trailerOffset = content.length - inflater.getRemaining();
+        if (content.length - trailerOffset < GZIP_TRAILER_BYTES
+                || readIntLittleEndian(content, trailerOffset) != (int) crc.getValue()) {
+            return -1;
+        }
+        return trailerOffset + GZIP_TRAILER_BYTES;
+    }
+
+    private static int readIntLittleEndian(byte[] content, int offset) {
+        return (content[offset] & 0xff)
+                | (content[offset + 1] & 0xff) << 8
+                | (content[offset + 2] & 0xff) << 16
+                | (content[offset + 3] & 0xff) << 24;
+    }
+
+    // the records of both binary formats only consist of length-delimited fields
+    private static int completeProtobufFieldsLength(byte[] content) {
+        int complete = 0;
+        while (complete < content.length) {
+            int end = lengthDelimitedFieldEnd(content, complete);
+            if (end < 0) {
+                break;
+            }
+            complete = end;
+        }
+        return complete;
+    }
+
+    // returns -1 if the field is incomplete or not length-delimited
+    private static int lengthDelimitedFieldEnd(byte[] content, int offset) {
+        int lengthOffset = varintEnd(content, offset);
+        if (lengthOffset < 0 || (content[offset] & 0x7) != PROTOBUF_LENGTH_DELIMITED) {
+            return -1;
+        }
+        int valueOffset = varintEnd(content, lengthOffset);
+        if (valueOffset < 0) {
+            return -1;
+        }
+        long length = readVarint(content, lengthOffset);
+        if (length < 0 || length > content.length - valueOffset) {
+            return -1;
+        }
+        return valueOffset + (int) length;
+    }
+
+    private static int varintEnd(byte[] content, int offset) {
+        int limit = Math.min(content.length, offset + MAX_VARINT_BYTES);
+        for (int i = offset; i < limit; i++) {
+            if ((content[i] & 0x80) == 0) {
+                return i + 1;
+            }
+        }
+        return -1;
+    }
+
+    private static long readVarint(byte[] content, int offset) {
+        long value = 0;
+        for (int shift = 0; ; shift += 7) {
+            byte b = content[offset++];
+            value |= (long) (b & 0x7f) << shift;
+            if ((b & 0x80) == 0) {
+                return value;
+            }
+        }
+    }
+}
@@ -0,0 +1,113 @@
+/*
+ * Copyright Splunk Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.splunk.rum;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.TreeMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * In-memory index of the files in span storage, with a running total of their size. The index is
+ * built by scanning the storage directory once, when the manifest is created. After that, it is
+ * kept up to date by the code that writes, renames and deletes span files, so checking the storage
+ * usage or listing the pending files does not touch the file system.
+ *
+ * <p>Files are ordered by the creation timestamp their names start with. Earlier versions used
+ * milliseconds and the {@link SpanJournal} uses nanoseconds, so the timestamps are compared as
+ * numbers in the same unit rather than as strings.
+ */
+class SpanFileManifest {
+
+    // in nanoseconds, this would be the second day of 1970; in milliseconds, it is year 5138
+    private static final long MAX_MILLIS_TIMESTAMP = 100_000_000_000_000L;
+    private static final int MAX_TIMESTAMP_DIGITS = 19;
+
+    private static final Comparator<File> OLDEST_FIRST =
+            Comparator.comparingLong(SpanFileManifest::getCreationTimeNanos)
+                    .thenComparing(File::getName)
+                    .thenComparing(File::getPath);
+
+    private final TreeMap<File, Long> fileSizes = new TreeMap<>(OLDEST_FIRST);
+    private long totalSizeInBytes;
+
+    SpanFileManifest(FileUtils fileUtils, File directory) {
+        fileUtils
+                .listFilesRecursively(directory)
+                .forEach(
+                        file -> {
+                            long size = fileUtils.getFileSize(file);
+                            fileSizes.put(file, size);
+                            totalSizeInBytes += size;
+                        });
+    }
+
+    synchronized void recordWrite(File file, long bytesWritten) {
+        Long size = fileSizes.get(file);
+        fileSizes.put(file, size == null ? bytesWritten : size + bytesWritten);
+        totalSizeInBytes += bytesWritten;
+    }
+
+    synchronized void recordRename(File from, File to) {
+        Long size = fileSizes.remove(from);
+        if (size != null) {
+            fileSizes.put(to, size);
+        }
+    }
+
+    /** Removes the file from the index, and returns the size it had. */
+    synchronized long remove(File file) {
+        Long size = fileSizes.remove(file);
+        if (size == null) {
+            return 0;
+        }
+        totalSizeInBytes -= size;
+        return size;
+    }
+
+    synchronized long getTotalSizeInBytes() {
+        return totalSizeInBytes;
+    }
+
+    /** Returns a snapshot of all the indexed files, oldest first. */
+    synchronized List<File> getFiles() {
+        return new ArrayList<>(fileSizes.keySet());
+    }
+
+    /**
+     * Returns the creation timestamp at the start of the file name in nanoseconds, or 0 if the name
+     * does not start with one.
+     */
+    static long getCreationTimeNanos(File file) {
+        String name = file.getName();
+        long timestamp = 0;
+        int digits = 0;
+        while (digits < name.length() && digits < MAX_TIMESTAMP_DIGITS) {
+            char c = name.charAt(digits);
+            if (c < '0' || c > '9') {
+                break;
+            }
+            timestamp = timestamp * 10 + (c - '0');
+            digits++;
+        }
+        return timestamp < MAX_MILLIS_TIMESTAMP
+                ? TimeUnit.MILLISECONDS.toNanos(timestamp)
+                : timestamp;
+    }
+}
@@ -0,0 +1,61 @@
+/*
+ * Copyright Splunk Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.splunk.rum;
+
+/**
+ * Record formats of buffered spans. The format of a file is kept in its name, e.g. {@code
+ * 1700000000000.p0.otlp.spans}. Files without a format marker hold zipkin JSON.
+ */
+enum SpanFormat {
+    /** Zipkin JSON spans, one per line, or a JSON list when compressed. */
+    ZIPKIN_JSON(""),
+    /**
+     * Zipkin {@code proto3} spans. Each span is a length-prefixed {@code ListOfSpans.spans} field,
+     * so the records of a file form a complete {@code ListOfSpans} message.
+     */
+    ZIPKIN_PROTO3(".pb"),
+    /**
+     * Serialized OTLP {@code ExportTraceServiceRequest} messages. A request only holds repeated
+     * fields, so the records of a file merge into a single request when parsed together.
+     */
+    OTLP(".otlp");
+
+    private final String fileNameMarker;
+
+    SpanFormat(String fileNameMarker) {
+        this.fileNameMarker = fileNameMarker;
+    }
+
+    /** Returns the marker that is added to the names of the files of this format. */
+    String fileNameMarker() {
+        return fileNameMarker;
+    }
+
+    /** Returns true if the records are protobuf messages, which are written back to back. */
+    boolean isBinary() {
+        return this != ZIPKIN_JSON;
+    }
+
+    static SpanFormat fromFileName(String fileName) {
+        for (SpanFormat format : values()) {
+            if (format.isBinary() && fileName.contains(format.fileNameMarker + ".")) {
+                return format;
+            }
+        }
+        return ZIPKIN_JSON;
+    }
+}
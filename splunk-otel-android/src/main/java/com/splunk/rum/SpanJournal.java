@@ -0,0 +1,377 @@
+/*
+ * Copyright Splunk Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.splunk.rum;
+
+import static com.splunk.rum.SplunkRum.LOG_TAG;
+import static java.util.Objects.requireNonNull;
+
+import android.util.Log;
+import androidx.annotation.Nullable;
+import io.opentelemetry.sdk.common.Clock;
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Append-only journal for encoded spans. Records are appended to an active segment file, which is
+ * sealed once it grows past a size limit or gets older than an age limit. Sealing renames the
+ * segment to a regular {@code .spans} file, so the uploader only ever sees complete segments. Each
+ * {@linkplain SpanPriority priority class} has its own active segment.
+ *
+ * <p>In compressed mode every append is written as its own gzip member, and the members together
+ * decompress to a JSON list of spans. A sealed compressed segment is therefore a complete,
+ * gzip-encoded request body that can be uploaded as-is.
+ *
+ * <p>In the {@linkplain SpanFormat#isBinary() binary formats} the records are protobuf messages.
+ * They are written back to back, and a segment is a complete request body, also when compressed.
+ * The format of a segment is marked in its name.
+ *
+ * <p>Active segments left behind by a previous process are sealed the first time the journal
+ * touches the spans directory. A record that was only partially written when the process died is
+ * cut off first, see {@link SegmentRecovery}.
+ */
+class SpanJournal {
+
+    static final String SEGMENT_SUFFIX = ".spans";
+    static final String COMPRESSED_SEGMENT_SUFFIX = ".gz" + SEGMENT_SUFFIX;
+    static final String ACTIVE_SEGMENT_SUFFIX = ".part";
+    static final long DEFAULT_MAX_SEGMENT_SIZE_BYTES = 256 * 1024;
+    static final long DEFAULT_MAX_SEGMENT_AGE_NANOS = TimeUnit.SECONDS.toNanos(15);
+
+    private static final byte[] LIST_START = {'['};
+    private static final byte[] LIST_SEPARATOR = {','};
+    private static final byte[] LIST_END = {']'};
+
+    private final SpanStorage spanStorage;
+    private final FileUtils fileUtils;
+    private final Clock clock;
+    private final long maxSegmentSizeBytes;
+    private final long maxSegmentAgeNanos;
+    private final boolean compressed;
+    private final SpanFormat format;
+
+    private final Segment[] activeSegments = new Segment[SpanPriority.values().length];
+
+    @Nullable private Listener listener;
+    private boolean orphansRecovered;
+
+    private SpanJournal(Builder builder) {
+        this.spanStorage = requireNonNull(builder.spanStorage);
+        this.fileUtils = builder.fileUtils;
+        this.clock = builder.clock;
+        this.maxSegmentSizeBytes = builder.maxSegmentSizeBytes;
+        this.maxSegmentAgeNanos = builder.maxSegmentAgeNanos;
+        this.compressed = builder.compressed;
+        this.format = builder.format;
+    }
+
+    /**
+     * Appends the records to the active segment of their priority class, starting a new segment if
+     * there is none. The segment is sealed after the write if it has reached the size limit. If
+     * the write fails, whatever part of it reached the segment is cut off again.
+     */
+    synchronized void append(SpanPriority priority, List<byte[]> records) throws IOException {
+        long now = clock.now();
+        File directory = spanStorage.provideSpansDirectory();
+        recoverOrphanedSegments(directory);
+
+        Segment segment = activeSegments[priority.ordinal()];
+        if (segment != null
+                && (isExpired(segment, now) || !directory.equals(segment.file.getParentFile()))) {
+            sealActiveSegment(priority);
+            segment = null;
+        }
+        boolean newSegment = segment == null;
+        if (segment == null) {
+            String suffix = compressed ? COMPRESSED_SEGMENT_SUFFIX : SEGMENT_SUFFIX;
+            String name =
+                    now
+                            + priority.fileNameMarker()
+                            + format.fileNameMarker()
+                            + suffix
+                            + ACTIVE_SEGMENT_SUFFIX;
+            segment = new Segment(new File(directory, name), now);
+            activeSegments[priority.ordinal()] = segment;
+        }
+
+        long bytesWritten;
+        try {
+            bytesWritten = write(segment.file, records, newSegment);
+        } catch (IOException e) {
+            discardPartialWrite(priority, segment);
+            throw e;
+        }
+        spanStorage.recordWrite(segment.file, bytesWritten);
+        segment.fileBytes += bytesWritten;
+        // the limit applies to the uncompressed size, which bounds the size of the request body
+        for (byte[] record : records) {
+            segment.sizeBytes += format.isBinary() ? record.length : record.length + 1;
+        }
+        if (segment.sizeBytes >= maxSegmentSizeBytes) {
+            sealActiveSegment(priority);
+        } else if (newSegment && listener != null) {
+            listener.onSegmentStarted(TimeUnit.NANOSECONDS.toMillis(maxSegmentAgeNanos));
+        }
+    }
+
+    /** Seals the active segments that are older than the age limit. */
+    synchronized void sealIfExpired() {
+        recoverOrphanedSegments(spanStorage.provideSpansDirectory());
+        long now = clock.now();
+        for (SpanPriority priority : SpanPriority.values()) {
+            Segment segment = activeSegments[priority.ordinal()];
+            if (segment != null && isExpired(segment, now)) {
+                sealActiveSegment(priority);
+            }
+        }
+    }
+
+    /** Seals the active segments, regardless of their size or age. */
+    synchronized void seal() {
+        for (SpanPriority priority : SpanPriority.values()) {
+            sealActiveSegment(priority);
+        }
+    }
+
+    /**
+     * Returns the time until the first active segment is sealed due to its age, or {@link
+     * Long#MAX_VALUE} if there is no active segment.
+     */
+    synchronized long getMillisUntilActiveSegmentExpires() {
+        long oldestCreatedAt = Long.MAX_VALUE;
+        for (Segment segment : activeSegments) {
+            if (segment != null) {
+                oldestCreatedAt = Math.min(oldestCreatedAt, segment.createdAt);
+            }
+        }
+        if (oldestCreatedAt == Long.MAX_VALUE) {
+            return Long.MAX_VALUE;
+        }
+        long nanos = oldestCreatedAt + maxSegmentAgeNanos - clock.now();
+        return Math.max(0, TimeUnit.NANOSECONDS.toMillis(nanos));
+    }
+
+    /** Sets the listener that is notified about segments being started and sealed. */
+    synchronized void setListener(Listener listener) {
+        this.listener = listener;
+    }
+
+    private long write(File file, List<byte[]> records, boolean newSegment) throws IOException {
+        if (format.isBinary()) {
+            // protobuf records need no separators
+            return compressed
+                    ? fileUtils.appendCompressed(file, records)
+                    : fileUtils.appendBytes(file, records);
+        }
+        return compressed
+                ? fileUtils.appendCompressed(file, asListChunk(records, newSegment))
+                : fileUtils.appendAsLines(file, records);
+    }
+
+    /**
+     * Truncates the segment to the bytes written before a failed write. A segment that had nothing
+     * written to it yet, or that can't be truncated, is dropped.
+     */
+    private void discardPartialWrite(SpanPriority priority, Segment segment) {
+        if (segment.fileBytes > 0) {
+            try {
+                fileUtils.truncate(segment.file, segment.fileBytes);
+                return;
+            } catch (IOException e) {
+                Log.w(
+                        LOG_TAG,
+                        "Error truncating span segment " + segment.file + ", dropping it",
+                        e);
+            }
+        }
+        activeSegments[priority.ordinal()] = null;
+        spanStorage.delete(segment.file);
+    }
+
+    private static List<byte[]> asListChunk(List<byte[]> records, boolean startOfList) {
+        List<byte[]> chunk = new ArrayList<>(records.size() * 2);
+        for (byte[] record : records) {
+            chunk.add(startOfList && chunk.isEmpty() ? LIST_START : LIST_SEPARATOR);
+            chunk.add(record);
+        }
+        return chunk;
+    }
+
+    private boolean isExpired(Segment segment, long now) {
+        return now - segment.createdAt >= maxSegmentAgeNanos;
+    }
+
+    private void sealActiveSegment(SpanPriority priority) {
+        Segment segment = activeSegments[priority.ordinal()];
+        if (segment == null) {
+            return;
+        }
+        activeSegments[priority.ordinal()] = null;
+        sealSegment(segment.file);
+    }
+
+    private void sealSegment(File segment) {
+        String name = segment.getName();
+        // a compressed JSON segment needs the closing bracket of its list
+        if (name.endsWith(COMPRESSED_SEGMENT_SUFFIX + ACTIVE_SEGMENT_SUFFIX)
+                && !SpanFormat.fromFileName(name).isBinary()) {
+            try {
+                long bytesWritten =
+                        fileUtils.appendCompressed(segment, Collections.singletonList(LIST_END));
+                spanStorage.recordWrite(segment, bytesWritten);
+            } catch (IOException e) {
+                // without the closing bracket the segment can never be accepted by the backend
+                Log.w(LOG_TAG, "Error sealing span segment " + segment + ", dropping it", e);
+                spanStorage.delete(segment);
+                return;
+            }
+        }
+        String sealedName = name.substring(0, name.length() - ACTIVE_SEGMENT_SUFFIX.length());
+        File sealed = new File(segment.getParentFile(), sealedName);
+        if (fileUtils.rename(segment, sealed)) {
+            spanStorage.recordRename(segment, sealed);
+            if (listener != null) {
+                listener.onSegmentSealed();
+            }
+        } else {
+            Log.w(LOG_TAG, "Error sealing span segment " + segment);
+        }
+    }
+
+    private void recoverOrphanedSegments(File directory) {
+        if (orphansRecovered) {
+            return;
+        }
+        orphansRecovered = true;
+        fileUtils
+                .listFiles(directory)
+                .filter(file -> file.getName().endsWith(ACTIVE_SEGMENT_SUFFIX))
+                .forEach(
+                        file -> {
+                            Log.d(LOG_TAG, "Sealing span segment left by a previous run " + file);
+                            if (truncateToCompleteRecords(file)) {
+                                sealSegment(file);
+                            }
+                        });
+    }
+
+    /**
+     * Cuts off a partially written record at the end of the segment. Returns false if the segment
+     * was dropped, because it holds no complete record or could not be repaired.
+     */
+    private boolean truncateToCompleteRecords(File segment) {
+        try {
+            byte[] content = fileUtils.readFileBytes(segment);
+            int completeLength = SegmentRecovery.completeRecordsLength(segment.getName(), content);
+            if (completeLength == 0) {
+                Log.w(LOG_TAG, "No complete records in span segment " + segment + ", dropping it");
+                spanStorage.delete(segment);
+                return false;
+            }
+            if (completeLength < content.length) {
+                Log.w(LOG_TAG, "Truncating partially written record in span segment " + segment);
+                fileUtils.truncate(segment, completeLength);
+                spanStorage.recordWrite(segment, completeLength - content.length);
+            }
+            return true;
+        } catch (IOException e) {
+            Log.w(LOG_TAG, "Error recovering span segment " + segment + ", dropping it", e);
+            spanStorage.delete(segment);
+            return false;
+        }
+    }
+
+    static Builder builder() {
+        return new Builder();
+    }
+
+    private static final class Segment {
+        private final File file;
+        private final long createdAt;
+        // the uncompressed size of the records, which the size limit applies to
+        private long sizeBytes;
+        // the size of the file, as recorded in the span storage
+        private long fileBytes;
+
+        private Segment(File file, long createdAt) {
+            this.file = file;
+            this.createdAt = createdAt;
+        }
+    }
+
+    /** Listener for segment changes. It is called while the journal is locked. */
+    interface Listener {
+
+        /** Called when a new segment is started, with the time until it expires. */
+        void onSegmentStarted(long maxAgeMillis);
+
+        /** Called when a segment is sealed, which makes it available for upload. */
+        void onSegmentSealed();
+    }
+
+    static class Builder {
+        @Nullable private SpanStorage spanStorage;
+        private FileUtils fileUtils = new FileUtils();
+        private Clock clock = Clock.getDefault();
+        private long maxSegmentSizeBytes = DEFAULT_MAX_SEGMENT_SIZE_BYTES;
+        private long maxSegmentAgeNanos = DEFAULT_MAX_SEGMENT_AGE_NANOS;
+        private boolean compressed = false;
+        private SpanFormat format = SpanFormat.ZIPKIN_JSON;
+
+        Builder spanStorage(SpanStorage spanStorage) {
+            this.spanStorage = spanStorage;
+            return this;
+        }
+
+        Builder fileUtils(FileUtils fileUtils) {
+            this.fileUtils = fileUtils;
+            return this;
+        }
+
+        Builder clock(Clock clock) {
+            this.clock = clock;
+            return this;
+        }
+
+        Builder maxSegmentSizeBytes(long maxSegmentSizeBytes) {
+            this.maxSegmentSizeBytes = maxSegmentSizeBytes;
+            return this;
+        }
+
+        Builder maxSegmentAgeNanos(long maxSegmentAgeNanos) {
+            this.maxSegmentAgeNanos = maxSegmentAgeNanos;
+            return this;
+        }
+
+        Builder compressed(boolean compressed) {
+            this.compressed = compressed;
+            return this;
+        }
+
+        Builder format(SpanFormat format) {
+            this.format = format;
+            return this;
+        }
+
+        SpanJournal build() {
+            return new SpanJournal(this);
+        }
+    }
+}
@@ -0,0 +1,73 @@
+/*
+ * Copyright Splunk Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.splunk.rum;
+
+import static com.splunk.rum.SplunkRum.COMPONENT_APPSTART;
+import static com.splunk.rum.SplunkRum.COMPONENT_CRASH;
+import static com.splunk.rum.SplunkRum.COMPONENT_ERROR;
+import static com.splunk.rum.SplunkRum.COMPONENT_KEY;
+
+import io.opentelemetry.sdk.trace.data.SpanData;
+
+/**
+ * Priority classes of buffered spans, from the lowest to the highest. Spans of different classes
+ * are stored in separate files, and the files of the lowest class are evicted first when the
+ * storage limit is exceeded.
+ *
+ * <p>The class of a file is kept in its name, e.g. {@code 1700000000000.p3.spans}. Files without a
+ * class, written by earlier versions, belong to the lowest one.
+ */
+enum SpanPriority {
+    /** UI and lifecycle spans, and any span without a recognized component. */
+    UI,
+    HTTP,
+    APPSTART,
+    /** Crashes, ANRs and reported errors. */
+    ERROR;
+
+    /** Returns the marker that is added to the names of the files of this class. */
+    String fileNameMarker() {
+        return ".p" + ordinal();
+    }
+
+    static SpanPriority of(SpanData span) {
+        String component = span.getAttributes().get(COMPONENT_KEY);
+        if (component == null) {
+            return UI;
+        }
+        switch (component) {
+            case COMPONENT_CRASH:
+            case COMPONENT_ERROR:
+                return ERROR;
+            case COMPONENT_APPSTART:
+                return APPSTART;
+            case "http":
+                return HTTP;
+            default:
+                return UI;
+        }
+    }
+
+    static SpanPriority fromFileName(String fileName) {
+        for (SpanPriority priority : values()) {
+            if (fileName.contains(priority.fileNameMarker() + ".")) {
+                return priority;
+            }
+        }
+        return UI;
+    }
+}
@@ -0,0 +1,80 @@
+/*
+ * Copyright Splunk Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.splunk.rum;
+
+import io.opentelemetry.api.common.Attributes;
+import io.opentelemetry.sdk.trace.data.EventData;
+import io.opentelemetry.sdk.trace.data.LinkData;
+import io.opentelemetry.sdk.trace.data.SpanData;
+import java.util.List;
+
+/**
+ * Estimates the heap retained by a span. The estimate is rough: it counts the span's own objects,
+ * its name and its attributes, events and links, but not the resource and instrumentation scope,
+ * which are shared by all spans. Strings are counted at two bytes per character.
+ */
+final class SpanSizeEstimator {
+
+    // the span itself, its context with the hex ids, status and timestamps
+    private static final long SPAN_BYTES = 256;
+    private static final long EVENT_BYTES = 48;
+    private static final long LINK_BYTES = 96;
+    // the map entry and the key object; the key names are mostly constants shared by all spans
+    private static final long ATTRIBUTE_BYTES = 32;
+    private static final long STRING_BYTES = 40;
+    private static final long BOXED_VALUE_BYTES = 16;
+    private static final long LIST_BYTES = 32;
+
+    private SpanSizeEstimator() {}
+
+    static long estimateRetainedBytes(SpanData span) {
+        long bytes = SPAN_BYTES + stringBytes(span.getName());
+        bytes += attributesBytes(span.getAttributes());
+        for (EventData event : span.getEvents()) {
+            bytes += EVENT_BYTES + stringBytes(event.getName());
+            bytes += attributesBytes(event.getAttributes());
+        }
+        for (LinkData link : span.getLinks()) {
+            bytes += LINK_BYTES + attributesBytes(link.getAttributes());
+        }
+        return bytes;
+    }
+
+    private static long attributesBytes(Attributes attributes) {
+        long[] bytes = {0};
+        attributes.forEach((key, value) -> bytes[0] += ATTRIBUTE_BYTES + valueBytes(value));
+        return bytes[0];
+    }
+
+    private static long valueBytes(Object value) {
+        if (value instanceof String) {
+            return stringBytes((String) value);
+        }
+        if (value instanceof List) {
+            long bytes = LIST_BYTES;
+            for (Object element : (List<?>) value) {
+                bytes += valueBytes(element);
+            }
+            return bytes;
+        }
+        return BOXED_VALUE_BYTES;
+    }
+
+    private static long stringBytes(String value) {
+        return STRING_BYTES + 2L * value.length();
+    }
+}
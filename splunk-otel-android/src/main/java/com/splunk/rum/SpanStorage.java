@@ -31,7 +31,7 @@ interface SpanStorage {
     File provideSpansDirectory();
 
     /***
-     * Returns a stream containing all spans, including those that can be sent or not.
+     * Returns a stream containing all spans, including those that can be sent or not, oldest first.
      */
     Stream<File> getAllSpanFiles();
 
@@ -41,7 +41,22 @@ interface SpanStorage {
     long getTotalFileSizeInBytes();
 
     /***
-     * Returns all spans that can be sent.
+     * Returns all spans that can be sent, oldest first.
      */
     Stream<File> getPendingFiles();
+
+    /***
+     * Records that bytes were appended to a span file, creating it if needed.
+     */
+    void recordWrite(File file, long bytesWritten);
+
+    /***
+     * Records that a span file has been renamed.
+     */
+    void recordRename(File from, File to);
+
+    /***
+     * Deletes a span file, returning the number of bytes freed.
+     */
+    long delete(File file);
 }
@@ -0,0 +1,290 @@
+/*
+ * Copyright Splunk Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.splunk.rum;
+
+import static com.splunk.rum.SplunkRum.LOG_TAG;
+import static java.util.Objects.requireNonNull;
+
+import android.content.ComponentCallbacks2;
+import android.content.res.Configuration;
+import android.util.Log;
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+import io.opentelemetry.android.instrumentation.network.CurrentNetworkProvider;
+import io.opentelemetry.sdk.common.Clock;
+import io.opentelemetry.sdk.common.CompletableResultCode;
+import io.opentelemetry.sdk.trace.data.SpanData;
+import io.opentelemetry.sdk.trace.export.SpanExporter;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Exports spans straight from memory while the device is online and the backend accepts them, and
+ * spills them to disk otherwise. Spans that can't be exported right away wait in a memory backlog,
+ * which is written to disk when:
+ *
+ * <ul>
+ *   <li>an export fails, after which new spans go straight to disk for a while,
+ *   <li>the backlog grows past a threshold,
+ *   <li>the app goes to the background, or the system asks the app to trim its memory.
+ * </ul>
+ *
+ * <p>On the happy path spans never touch the disk. Everything that was spilled is uploaded by the
+ * disk pipeline, which owns the retries.
+ */
+class SpilloverExporter implements SpanExporter {
+
+    static final long DEFAULT_SPILL_THRESHOLD_BYTES = 256 * 1024;
+    static final long DEFAULT_BACKEND_RETRY_DELAY_NANOS = TimeUnit.SECONDS.toNanos(30);
+
+    private final CurrentNetworkProvider currentNetworkProvider;
+    private final SpanExporter delegate;
+    private final SpanExporter diskExporter;
+    private final ExecutorService spillExecutor;
+    private final Clock clock;
+    private final long spillThresholdBytes;
+    private final long backendRetryDelayNanos;
+
+    // guarded by this
+    private final BoundedSpanQueue backlog;
+    // spans go straight to disk until then, after an export has failed
+    private volatile long spillUntilNanos;
+    private volatile boolean spillingAfterFailure;
+
+    private SpilloverExporter(Builder builder) {
+        this.currentNetworkProvider = requireNonNull(builder.currentNetworkProvider);
+        this.delegate = requireNonNull(builder.delegate);
+        this.diskExporter = requireNonNull(builder.diskExporter);
+        this.spillExecutor = builder.spillExecutor;
+        this.clock = builder.clock;
+        this.spillThresholdBytes = builder.spillThresholdBytes;
+        this.backendRetryDelayNanos = builder.backendRetryDelayNanos;
+        this.backlog =
+                new BoundedSpanQueue(
+                        builder.maxBacklogBytes,
+                        builder.evictionPolicy,
+                        builder.droppedSpanCounter);
+    }
+
+    @Override
+    public CompletableResultCode export(Collection<SpanData> spans) {
+        List<SpanData> drained;
+        boolean toDisk;
+        synchronized (this) {
+            backlog.addAll(spans);
+            if (isSpillingAfterFailure()) {
+                toDisk = true;
+            } else if (currentNetworkProvider.refreshNetworkStatus().isOnline()) {
+                toDisk = false;
+            } else if (backlog.estimatedBytes() >= spillThresholdBytes) {
+                Log.d(LOG_TAG, "The span backlog is over its threshold, spilling it to disk");
+                toDisk = true;
+            } else {
+                return CompletableResultCode.ofSuccess();
+            }
+            drained = backlog.drain();
+        }
+        if (toDisk) {
+            return spill(drained);
+        }
+        if (drained.isEmpty()) {
+            return CompletableResultCode.ofSuccess();
+        }
+        CompletableResultCode exportResult = delegate.export(drained);
+        CompletableResultCode result = new CompletableResultCode();
+        exportResult.whenComplete(
+                () -> {
+                    if (exportResult.isSuccess()) {
+                        result.succeed();
+                        return;
+                    }
+                    Log.i(LOG_TAG, "Export failed, spilling " + drained.size() + " spans to disk");
+                    spillUntilNanos = clock.nanoTime() + backendRetryDelayNanos;
+                    spillingAfterFailure = true;
+                    propagate(spill(drained), result);
+                });
+        return result;
+    }
+
+    /**
+     * Writes the backlog to disk in the background. Called when the app goes to the background or
+     * when the system is low on memory.
+     */
+    void spillBacklogAsync() {
+        try {
+            spillExecutor.execute(this::spillBacklog);
+        } catch (RuntimeException e) {
+            // the executor has been shut down
+            Log.w(LOG_TAG, "Unable to spill the span backlog to disk", e);
+        }
+    }
+
+    // visible for testing
+    CompletableResultCode spillBacklog() {
+        List<SpanData> spans;
+        synchronized (this) {
+            spans = backlog.drain();
+        }
+        if (spans.isEmpty()) {
+            return CompletableResultCode.ofSuccess();
+        }
+        Log.d(LOG_TAG, "Spilling " + spans.size() + " spans from the backlog to disk");
+        return spill(spans);
+    }
+
+    /** Returns callbacks that spill the backlog when the app is hidden or memory runs low. */
+    ComponentCallbacks2 componentCallbacks() {
+        return new ComponentCallbacks2() {
+            @Override
+            public void onTrimMemory(int level) {
+                // every level means that the app is in the background or memory is getting low
+                spillBacklogAsync();
+            }
+
+            @Override
+            public void onLowMemory() {
+                spillBacklogAsync();
+            }
+
+            @Override
+            public void onConfigurationChanged(@NonNull Configuration newConfig) {}
+        };
+    }
+
+    private boolean isSpillingAfterFailure() {
+        if (spillingAfterFailure && clock.nanoTime() - spillUntilNanos >= 0) {
+            spillingAfterFailure = false;
+        }
+        return spillingAfterFailure;
+    }
+
+    private CompletableResultCode spill(List<SpanData> spans) {
+        if (spans.isEmpty()) {
+            return CompletableResultCode.ofSuccess();
+        }
+        return diskExporter.export(spans);
+    }
+
+    private static void propagate(CompletableResultCode from, CompletableResultCode to) {
+        from.whenComplete(
+                () -> {
+                    if (from.isSuccess()) {
+                        to.succeed();
+                    } else {
+                        to.fail();
+                    }
+                });
+    }
+
+    @Override
+    public CompletableResultCode flush() {
+        CompletableResultCode exported = export(Collections.emptyList());
+        return CompletableResultCode.ofAll(
+                Arrays.asList(exported, delegate.flush(), diskExporter.flush()));
+    }
+
+    @Override
+    public CompletableResultCode shutdown() {
+        spillExecutor.shutdown();
+        // nothing that is still in memory may get lost
+        CompletableResultCode spilled = spillBacklog();
+        return CompletableResultCode.ofAll(
+                Arrays.asList(spilled, delegate.shutdown(), diskExporter.shutdown()));
+    }
+
+    static Builder builder() {
+        return new Builder();
+    }
+
+    static class Builder {
+        @Nullable private CurrentNetworkProvider currentNetworkProvider;
+        @Nullable private SpanExporter delegate;
+        @Nullable private SpanExporter diskExporter;
+        private ExecutorService spillExecutor = Executors.newSingleThreadExecutor();
+        private Clock clock = Clock.getDefault();
+        private long spillThresholdBytes = DEFAULT_SPILL_THRESHOLD_BYTES;
+        private long maxBacklogBytes = BoundedSpanQueue.DEFAULT_MAX_BYTES;
+        private MemoryBufferEvictionPolicy evictionPolicy = MemoryBufferEvictionPolicy.OLDEST_FIRST;
+        private DroppedSpanCounter droppedSpanCounter = new DroppedSpanCounter();
+        private long backendRetryDelayNanos = DEFAULT_BACKEND_RETRY_DELAY_NANOS;
+
+        Builder currentNetworkProvider(CurrentNetworkProvider currentNetworkProvider) {
+            this.currentNetworkProvider = currentNetworkProvider;
+            return this;
+        }
+
+        /** Sets the exporter that sends spans straight to the backend. */
+        Builder delegate(SpanExporter delegate) {
+            this.delegate = delegate;
+            return this;
+        }
+
+        /** Sets the exporter that writes spans to disk, for the disk pipeline to upload. */
+        Builder diskExporter(SpanExporter diskExporter) {
+            this.diskExporter = diskExporter;
+            return this;
+        }
+
+        // Exists for testing
+        Builder spillExecutor(ExecutorService spillExecutor) {
+            this.spillExecutor = spillExecutor;
+            return this;
+        }
+
+        Builder clock(Clock clock) {
+            this.clock = clock;
+            return this;
+        }
+
+        /** Sets the estimated size of the backlog above which it is spilled to disk. */
+        Builder spillThresholdBytes(long spillThresholdBytes) {
+            this.spillThresholdBytes = spillThresholdBytes;
+            return this;
+        }
+
+        /** Sets the limit of the backlog, for when spilling it to disk doesn't keep up. */
+        Builder maxBacklogBytes(long maxBacklogBytes) {
+            this.maxBacklogBytes = maxBacklogBytes;
+            return this;
+        }
+
+        Builder evictionPolicy(MemoryBufferEvictionPolicy evictionPolicy) {
+            this.evictionPolicy = evictionPolicy;
+            return this;
+        }
+
+        Builder droppedSpanCounter(DroppedSpanCounter droppedSpanCounter) {
+            this.droppedSpanCounter = droppedSpanCounter;
+            return this;
+        }
+
+        /** Sets how long spans go straight to disk after an export has failed. */
+        Builder backendRetryDelayNanos(long backendRetryDelayNanos) {
+            this.backendRetryDelayNanos = backendRetryDelayNanos;
+            return this;
+        }
+
+        SpilloverExporter build() {
+            return new SpilloverExporter(this);
+        }
+    }
+}
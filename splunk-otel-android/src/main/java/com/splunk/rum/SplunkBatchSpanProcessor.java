@@ -0,0 +1,293 @@
+/*
+ * Copyright Splunk Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.splunk.rum;
+
+import static com.splunk.rum.SplunkRum.LOG_TAG;
+import static java.util.Objects.requireNonNull;
+
+import android.util.Log;
+import androidx.annotation.Nullable;
+import io.opentelemetry.context.Context;
+import io.opentelemetry.sdk.common.Clock;
+import io.opentelemetry.sdk.common.CompletableResultCode;
+import io.opentelemetry.sdk.trace.ReadWriteSpan;
+import io.opentelemetry.sdk.trace.ReadableSpan;
+import io.opentelemetry.sdk.trace.SpanProcessor;
+import io.opentelemetry.sdk.trace.data.SpanData;
+import io.opentelemetry.sdk.trace.export.SpanExporter;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Batches ended spans and exports them from a worker thread. Ending a span adds it to a lock-free
+ * {@link MpscSpanQueue}, so threads ending spans at the same time never block each other or the
+ * worker.
+ *
+ * <p>Without an {@link AdaptiveExportSchedule} spans are exported every 5 seconds in batches of up
+ * to 512, like the upstream {@code BatchSpanProcessor} does. With one, the schedule adapts to the
+ * state of the app, the network and the battery. It is consulted again every time the worker
+ * thread wakes up, which it does when the export delay has passed or a full batch is waiting.
+ * While the queue is empty the worker thread doesn't wake up at all; the first span that ends
+ * wakes it, and the export delay starts from there. When a span ends in the foreground while the
+ * schedule was picked for the background, the worker is woken up right away, so that an active
+ * user's spans are exported promptly.
+ *
+ * <p>Spans are dropped when the queue is full, and counted in the {@link DroppedSpanCounter} and
+ * the {@link ExportMetrics}, which also track the high-watermark of the queue.
+ */
+final class SplunkBatchSpanProcessor implements SpanProcessor {
+
+    static final int DEFAULT_MAX_QUEUE_SIZE = 2048;
+    static final AdaptiveExportSchedule.Settings DEFAULT_SETTINGS =
+            new AdaptiveExportSchedule.Settings(TimeUnit.SECONDS.toNanos(5), 512);
+    private static final long EXPORT_TIMEOUT_NANOS = TimeUnit.SECONDS.toNanos(30);
+    private static final String WORKER_THREAD_NAME = "splunk-rum-span-processor";
+
+    private final SpanExporter exporter;
+    @Nullable private final AdaptiveExportSchedule schedule;
+    private final Clock clock;
+    private final DroppedSpanCounter droppedSpanCounter;
+    private final ExportMetrics metrics;
+    private final MpscSpanQueue queue;
+    private final Thread worker;
+
+    private final AtomicBoolean wakeUpPending = new AtomicBoolean();
+    private final AtomicReference<CompletableResultCode> flushRequest = new AtomicReference<>();
+    private final CompletableResultCode shutdownResult = new CompletableResultCode();
+    private final AtomicBoolean shutdown = new AtomicBoolean();
+
+    // written by the worker thread, read by the threads that end spans
+    private volatile int maxBatchSize = DEFAULT_SETTINGS.maxBatchSize;
+    private volatile boolean scheduledForForeground;
+    private volatile boolean idle;
+
+    private SplunkBatchSpanProcessor(Builder builder) {
+        this.exporter = requireNonNull(builder.exporter);
+        this.schedule = builder.schedule;
+        this.clock = builder.clock;
+        this.droppedSpanCounter = builder.droppedSpanCounter;
+        this.metrics = builder.metrics;
+        this.queue = new MpscSpanQueue(builder.maxQueueSize);
+        this.worker = new Thread(this::run, WORKER_THREAD_NAME);
+        this.worker.setDaemon(true);
+    }
+
+    @Override
+    public void onStart(Context parentContext, ReadWriteSpan span) {}
+
+    @Override
+    public boolean isStartRequired() {
+        return false;
+    }
+
+    @Override
+    public void onEnd(ReadableSpan span) {
+        if (!span.getSpanContext().isSampled()) {
+            return;
+        }
+        int depth = queue.offer(span);
+        if (depth == 0) {
+            droppedSpanCounter.add(1);
+            metrics.recordSpanQueueDrop();
+            return;
+        }
+        metrics.recordSpanQueueDepth(depth);
+        if (idle || depth >= maxBatchSize || cameToForeground()) {
+            wakeUp();
+        }
+    }
+
+    @Override
+    public boolean isEndRequired() {
+        return true;
+    }
+
+    @Override
+    public CompletableResultCode forceFlush() {
+        if (shutdown.get()) {
+            return shutdownResult;
+        }
+        CompletableResultCode result = new CompletableResultCode();
+        while (true) {
+            CompletableResultCode pending = flushRequest.get();
+            if (pending != null) {
+                result = pending;
+                break;
+            }
+            if (flushRequest.compareAndSet(null, result)) {
+                break;
+            }
+        }
+        wakeUp();
+        return result;
+    }
+
+    @Override
+    public CompletableResultCode shutdown() {
+        if (shutdown.compareAndSet(false, true)) {
+            wakeUp();
+        }
+        return shutdownResult;
+    }
+
+    private boolean cameToForeground() {
+        return schedule != null && !scheduledForForeground && schedule.isForeground();
+    }
+
+    private void wakeUp() {
+        if (wakeUpPending.compareAndSet(false, true)) {
+            LockSupport.unpark(worker);
+        }
+    }
+
+    private void run() {
+        long lastExportNanos = clock.nanoTime();
+        while (!shutdown.get()) {
+            wakeUpPending.set(false);
+            boolean foreground = schedule != null && schedule.isForeground();
+            AdaptiveExportSchedule.Settings settings =
+                    schedule != null ? schedule.current(foreground) : DEFAULT_SETTINGS;
+            maxBatchSize = settings.maxBatchSize;
+            scheduledForForeground = foreground;
+
+            CompletableResultCode flush = flushRequest.getAndSet(null);
+            if (flush != null) {
+                exportAll(settings.maxBatchSize);
+                lastExportNanos = clock.nanoTime();
+                propagate(exporter.flush(), flush);
+                continue;
+            }
+            if (queue.size() == 0) {
+                awaitFirstSpan();
+                lastExportNanos = clock.nanoTime();
+                continue;
+            }
+            long waitNanos = lastExportNanos + settings.delayNanos - clock.nanoTime();
+            if (waitNanos <= 0 || queue.size() >= settings.maxBatchSize) {
+                exportAll(settings.maxBatchSize);
+                lastExportNanos = clock.nanoTime();
+                continue;
+            }
+            LockSupport.parkNanos(this, waitNanos);
+        }
+        exportAll(maxBatchSize);
+        CompletableResultCode flush = flushRequest.getAndSet(null);
+        if (flush != null) {
+            flush.succeed();
+        }
+        propagate(exporter.shutdown(), shutdownResult);
+    }
+
+    private void awaitFirstSpan() {
+        idle = true;
+        // a span that ended before idle was set didn't wake us up, so check again
+        if (queue.size() == 0 && flushRequest.get() == null && !shutdown.get()) {
+            LockSupport.park(this);
+        }
+        idle = false;
+    }
+
+    private void exportAll(int batchSize) {
+        List<SpanData> batch = new ArrayList<>(Math.min(batchSize, queue.size()));
+        ReadableSpan span;
+        while ((span = queue.poll()) != null) {
+            batch.add(span.toSpanData());
+            if (batch.size() >= batchSize) {
+                export(batch);
+                batch = new ArrayList<>(Math.min(batchSize, queue.size()));
+            }
+        }
+        if (!batch.isEmpty()) {
+            export(batch);
+        }
+    }
+
+    private void export(List<SpanData> batch) {
+        try {
+            exporter.export(batch).join(EXPORT_TIMEOUT_NANOS, TimeUnit.NANOSECONDS);
+        } catch (RuntimeException e) {
+            Log.w(LOG_TAG, "Error exporting spans", e);
+        }
+    }
+
+    private static void propagate(CompletableResultCode from, CompletableResultCode to) {
+        from.whenComplete(
+                () -> {
+                    if (from.isSuccess()) {
+                        to.succeed();
+                    } else {
+                        to.fail();
+                    }
+                });
+    }
+
+    static Builder builder() {
+        return new Builder();
+    }
+
+    static class Builder {
+        @Nullable private SpanExporter exporter;
+        @Nullable private AdaptiveExportSchedule schedule;
+        private Clock clock = Clock.getDefault();
+        private DroppedSpanCounter droppedSpanCounter = new DroppedSpanCounter();
+        private ExportMetrics metrics = new ExportMetrics();
+        private int maxQueueSize = DEFAULT_MAX_QUEUE_SIZE;
+
+        Builder exporter(SpanExporter exporter) {
+            this.exporter = exporter;
+            return this;
+        }
+
+        /** Sets the schedule to export on. Without one, the schedule is fixed. */
+        Builder schedule(AdaptiveExportSchedule schedule) {
+            this.schedule = schedule;
+            return this;
+        }
+
+        Builder clock(Clock clock) {
+            this.clock = clock;
+            return this;
+        }
+
+        Builder droppedSpanCounter(DroppedSpanCounter droppedSpanCounter) {
+            this.droppedSpanCounter = droppedSpanCounter;
+            return this;
+        }
+
+        Builder metrics(ExportMetrics metrics) {
+            this.metrics = metrics;
+            return this;
+        }
+
+        /** Sets the number of ended spans that may wait for export before spans are dropped. */
+        Builder maxQueueSize(int maxQueueSize) {
+            this.maxQueueSize = maxQueueSize;
+            return this;
+        }
+
+        /** Builds the processor and starts its worker thread. */
+        SplunkBatchSpanProcessor build() {
+            SplunkBatchSpanProcessor processor = new SplunkBatchSpanProcessor(this);
+            processor.worker.start();
+            return processor;
+        }
+    }
+}
@@ -76,6 +76,8 @@ public class SplunkRum {
     private final OpenTelemetryRum openTelemetryRum;
     private final GlobalAttributesSupplier globalAttributes;
     private final SettableScreenAttributesAppender screenAttributesAppender;
+    private final DroppedSpanCounter droppedSpanCounter;
+    private final ExportMetrics exportMetrics;
 
     static {
         Handler handler = new Handler(Looper.getMainLooper());
@@ -86,9 +88,37 @@ public class SplunkRum {
             OpenTelemetryRum openTelemetryRum,
             GlobalAttributesSupplier globalAttributes,
             SettableScreenAttributesAppender screenAttributesAppender) {
+        this(
+                openTelemetryRum,
+                globalAttributes,
+                screenAttributesAppender,
+                new DroppedSpanCounter());
+    }
+
+    SplunkRum(
+            OpenTelemetryRum openTelemetryRum,
+            GlobalAttributesSupplier globalAttributes,
+            SettableScreenAttributesAppender screenAttributesAppender,
+            DroppedSpanCounter droppedSpanCounter) {
+        this(
+                openTelemetryRum,
+                globalAttributes,
+                screenAttributesAppender,
+                droppedSpanCounter,
+                new ExportMetrics());
+    }
+
+    SplunkRum(
+            OpenTelemetryRum openTelemetryRum,
+            GlobalAttributesSupplier globalAttributes,
+            SettableScreenAttributesAppender screenAttributesAppender,
+            DroppedSpanCounter droppedSpanCounter,
+            ExportMetrics exportMetrics) {
         this.openTelemetryRum = openTelemetryRum;
         this.globalAttributes = globalAttributes;
         this.screenAttributesAppender = screenAttributesAppender;
+        this.droppedSpanCounter = droppedSpanCounter;
+        this.exportMetrics = exportMetrics;
     }
 
     /** Creates a new {@link SplunkRumBuilder}, used to set up a {@link SplunkRum} instance. */
@@ -212,6 +242,65 @@ public class SplunkRum {
         return openTelemetryRum.getRumSessionId();
     }
 
+    /**
+     * Get the number of spans that were dropped before they could be exported, since this instance
+     * was created, because the span queue, the memory buffer of spans waiting for export or the
+     * export queue was full.
+     *
+     * @see SplunkRumBuilder#limitMemoryBufferBytes(long)
+     * @see SplunkRumBuilder#limitInFlightExportBatches(int)
+     * @see #getSpanQueueDroppedSpanCount()
+     */
+    public long getDroppedSpanCount() {
+        return droppedSpanCounter.get();
+    }
+
+    /**
+     * Get the number of span batches that are waiting for export or being exported.
+     *
+     * @see SplunkRumBuilder#limitInFlightExportBatches(int)
+     */
+    public int getExportQueueDepth() {
+        return exportMetrics.getQueuedBatches() + exportMetrics.getInFlightBatches();
+    }
+
+    /**
+     * Get the average time it took to export a batch of spans, from handing it to the exporter
+     * until the export completed, in milliseconds. Returns 0 if no batch has been exported yet.
+     */
+    public long getAverageExportLatencyMillis() {
+        return TimeUnit.NANOSECONDS.toMillis(exportMetrics.getAverageLatencyNanos());
+    }
+
+    /**
+     * Get the longest time it took to export a batch of spans, in milliseconds. Returns 0 if no
+     * batch has been exported yet.
+     */
+    public long getMaxExportLatencyMillis() {
+        return TimeUnit.NANOSECONDS.toMillis(exportMetrics.getMaxLatencyNanos());
+    }
+
+    /**
+     * Get the largest number of ended spans that waited in the span queue at once. Returns 0 unless
+     * the lock-free span processor or adaptive batching is enabled.
+     *
+     * @see SplunkRumBuilder#enableLockFreeSpanProcessor()
+     */
+    public int getSpanQueueHighWatermark() {
+        return exportMetrics.getSpanQueueHighWatermark();
+    }
+
+    /**
+     * Get the number of spans that were dropped because the span queue was full. These spans are
+     * also counted in {@link #getDroppedSpanCount()}. Returns 0 unless the lock-free span processor
+     * or adaptive batching is enabled.
+     *
+     * @see SplunkRumBuilder#enableLockFreeSpanProcessor()
+     */
+    public long getSpanQueueDroppedSpanCount() {
+        return exportMetrics.getSpanQueueDrops();
+    }
+
     /**
      * Add a custom event to RUM monitoring. This can be useful to capture business events, or
      * simply add instrumentation to your application.
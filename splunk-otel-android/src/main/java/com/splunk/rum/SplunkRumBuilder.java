@@ -22,9 +22,13 @@ import android.app.Application;
 import android.util.Log;
 import androidx.annotation.Nullable;
 import com.splunk.rum.incubating.HttpSenderCustomizer;
+import io.opentelemetry.android.instrumentation.network.NetworkState;
 import io.opentelemetry.api.common.Attributes;
 import io.opentelemetry.sdk.trace.export.SpanExporter;
 import java.time.Duration;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.Map;
 import java.util.function.Consumer;
 
 /** A builder of {@link SplunkRum}. */
@@ -46,6 +50,13 @@ public final class SplunkRumBuilder {
     HttpSenderCustomizer httpSenderCustomizer = HttpSenderCustomizer.DEFAULT;
     private Consumer<SpanFilterBuilder> spanFilterConfigurer = x -> {};
     int maxUsageMegabytes = DEFAULT_MAX_STORAGE_USE_MB;
+    final Map<NetworkState, BandwidthLimiter.Budget> diskBufferingBandwidthBudgets =
+            new EnumMap<>(NetworkState.class);
+    long memoryBufferMaxBytes = BoundedSpanQueue.DEFAULT_MAX_BYTES;
+    MemoryBufferEvictionPolicy memoryBufferEvictionPolicy = MemoryBufferEvictionPolicy.OLDEST_FIRST;
+    final Map<String, ThrottlingExporter.Budget> throttlingBudgets = new HashMap<>();
+    int maxInFlightExportBatches = InFlightLimitingExporter.DEFAULT_MAX_IN_FLIGHT_BATCHES;
+    int maxInFlightDiskBufferingUploads = DiskToZipkinExporter.DEFAULT_MAX_IN_FLIGHT_UPLOADS;
     boolean sessionBasedSamplerEnabled = false;
     double sessionBasedSamplerRatio = 1.0;
     boolean isSubprocess = false;
@@ -86,6 +97,10 @@ public final class SplunkRumBuilder {
      * custom headers or to modify compression settings. This is a pretty large hammer and should be
      * used with caution.
      *
+     * <p>All settings of the customized builder are applied, because spans are then sent with the
+     * {@code OkHttpSender} it builds. Spans are no longer streamed into the request, and disk
+     * buffering stores them uncompressed and JSON-encoded.
+     *
      * <p>This API is considered incubating and is subject to change.
      *
      * @param customizer that can make changes to the OkHttpSender.Builder
@@ -152,23 +167,68 @@ public final class SplunkRumBuilder {
      * buffered in the local storage until it is exported; otherwise, it is buffered in memory and
      * throttled.
      *
+     * <p>When {@linkplain #enableExperimentalOtlpExporter() OTLP export is enabled}, the telemetry
+     * is buffered as OTLP requests and uploaded to the OTLP endpoint.
+     *
      * <p>This feature is disabled by default. You can enable it by calling this method.
      *
      * @return {@code this}
      */
     public SplunkRumBuilder enableDiskBuffering() {
-        if (shouldUseOtlpExporter()) {
-            Log.w(SplunkRum.LOG_TAG, "OTLP export is not yet compatible with disk buffering!");
-            Log.w(
-                    SplunkRum.LOG_TAG,
-                    "Because disk buffering is enabled, OTLP export is now disabled!");
-            configFlags.disableOtlpExporter();
-        }
-
         configFlags.enableDiskBuffering();
         return this;
     }
 
+    /**
+     * Enables gzip compression of the telemetry buffered in the local storage. Compressed telemetry
+     * takes considerably less space, so more of it fits within the {@linkplain
+     * #limitDiskUsageMegabytes(int) disk usage limit}, and it is uploaded without being compressed
+     * again.
+     *
+     * <p>This setting only applies when {@linkplain #enableDiskBuffering() disk buffering is
+     * enabled}. This feature is disabled by default. You can enable it by calling this method.
+     *
+     * @return {@code this}
+     */
+    public SplunkRumBuilder enableDiskBufferingCompression() {
+        configFlags.enableDiskBufferingCompression();
+        return this;
+    }
+
+    /**
+     * Enables the binary (protobuf) format for the telemetry buffered in the local storage. Binary
+     * telemetry is smaller and cheaper to write than JSON, and it is uploaded without being decoded
+     * again.
+     *
+     * <p>This setting only applies when {@linkplain #enableDiskBuffering() disk buffering is
+     * enabled}. This feature is disabled by default. You can enable it by calling this method.
+     *
+     * @return {@code this}
+     */
+    public SplunkRumBuilder enableDiskBufferingBinaryFormat() {
+        configFlags.enableDiskBufferingBinaryFormat();
+        return this;
+    }
+
+    /**
+     * Enables the spillover mode of disk buffering. Telemetry is exported straight from memory
+     * while the device is online and the ingest accepts it, and only written to the local storage
+     * when an export fails, when too much telemetry is waiting for the network, when the app goes
+     * to the background, or when the system is low on memory. This gives the durability of disk
+     * buffering without its file I/O on the happy path.
+     *
+     * <p>This setting only applies when {@linkplain #enableDiskBuffering() disk buffering is
+     * enabled}, and not when {@linkplain #enableBackgroundInstrumentationDeferredUntilForeground()
+     * background instrumentation is deferred}. This feature is disabled by default. You can enable
+     * it by calling this method.
+     *
+     * @return {@code this}
+     */
+    public SplunkRumBuilder enableDiskBufferingSpillover() {
+        configFlags.enableDiskBufferingSpillover();
+        return this;
+    }
+
     /**
      * Enables support for the React Native instrumentation.
      *
@@ -233,6 +293,20 @@ public final class SplunkRumBuilder {
         return this;
     }
 
+    /**
+     * Disables the deduplication of exception stack traces.
+     *
+     * <p>By default, a stack trace is only exported in full the first time it occurs in a session.
+     * Later occurrences carry the {@code exception.fingerprint} of the stack trace and its {@code
+     * exception.occurrence} count instead. Call this method to export every stack trace in full.
+     *
+     * @return {@code this}
+     */
+    public SplunkRumBuilder disableStackTraceDeduplication() {
+        configFlags.disableStackTraceDeduplication();
+        return this;
+    }
+
     /**
      * Configures the rate at which frame render durations are polled.
      *
@@ -300,6 +374,202 @@ public final class SplunkRumBuilder {
         return this;
     }
 
+    /**
+     * Sets the bandwidth budget for uploading the telemetry buffered in storage while on the given
+     * type of network. Uploads are paced to {@code bytesPerSecond} on average, and may use up to
+     * {@code burstBytes} at once after a quiet period. Sizes refer to the request bodies sent, so
+     * {@linkplain #enableDiskBufferingCompression() compressed} telemetry is counted at its
+     * compressed size.
+     *
+     * <p>By default, Wi-Fi and wired networks allow 128 KiB per second with bursts of 1 MiB, and
+     * all other networks allow 15 KiB per second with bursts of 128 KiB.
+     *
+     * <p>This setting only applies when {@linkplain #enableDiskBuffering() disk buffering is
+     * enabled}.
+     *
+     * @param networkState The type of network the budget applies to.
+     * @param bytesPerSecond The sustained upload rate, in bytes per second.
+     * @param burstBytes The number of bytes that can be uploaded at once.
+     * @return {@code this}
+     */
+    public SplunkRumBuilder setDiskBufferingBandwidthBudget(
+            NetworkState networkState, long bytesPerSecond, long burstBytes) {
+        if (bytesPerSecond <= 0 || burstBytes <= 0) {
+            Log.e(
+                    SplunkRum.LOG_TAG,
+                    "invalid bandwidth budget for "
+                            + networkState
+                            + ": the rate and the burst size must be positive");
+            return this;
+        }
+        diskBufferingBandwidthBudgets.put(
+                networkState, new BandwidthLimiter.Budget(bytesPerSecond, burstBytes));
+        return this;
+    }
+
+    /**
+     * Sets the maximum number of requests that upload the telemetry buffered in storage at the same
+     * time. The next batch is read from storage while earlier ones are still being sent.
+     *
+     * <p>The default is 4. This setting only applies when {@linkplain #enableDiskBuffering() disk
+     * buffering is enabled}.
+     *
+     * @param maxUploads The maximum number of uploads in flight at once.
+     * @return {@code this}
+     */
+    public SplunkRumBuilder limitInFlightDiskBufferingUploads(int maxUploads) {
+        if (maxUploads <= 0) {
+            Log.e(
+                    SplunkRum.LOG_TAG,
+                    "invalid in-flight upload limit: " + maxUploads + " must be positive");
+            return this;
+        }
+        this.maxInFlightDiskBufferingUploads = maxUploads;
+        return this;
+    }
+
+    /**
+     * Sets the maximum amount of memory used to keep spans while they can't be exported, e.g.
+     * while the device is offline. The amount is estimated from the contents of the spans. When
+     * it is exceeded, spans are dropped according to the {@linkplain
+     * #setMemoryBufferEvictionPolicy(MemoryBufferEvictionPolicy) eviction policy}, and counted in
+     * {@link SplunkRum#getDroppedSpanCount()}.
+     *
+     * <p>The default is 2 MiB. When {@linkplain #enableDiskBuffering() disk buffering is enabled},
+     * this setting only applies to the backlog of the {@linkplain #enableDiskBufferingSpillover()
+     * spillover mode}.
+     *
+     * @param maxBytes The maximum memory buffer size, in bytes.
+     * @return {@code this}
+     */
+    public SplunkRumBuilder limitMemoryBufferBytes(long maxBytes) {
+        if (maxBytes <= 0) {
+            Log.e(
+                    SplunkRum.LOG_TAG,
+                    "invalid memory buffer limit: " + maxBytes + " must be positive");
+            return this;
+        }
+        this.memoryBufferMaxBytes = maxBytes;
+        return this;
+    }
+
+    /**
+     * Sets which spans are dropped when the memory buffer is full. By default, the oldest spans are
+     * dropped first.
+     *
+     * <p>When {@linkplain #enableDiskBuffering() disk buffering is enabled}, this setting only
+     * applies to the backlog of the {@linkplain #enableDiskBufferingSpillover() spillover mode}.
+     *
+     * @return {@code this}
+     */
+    public SplunkRumBuilder setMemoryBufferEvictionPolicy(MemoryBufferEvictionPolicy policy) {
+        this.memoryBufferEvictionPolicy = policy;
+        return this;
+    }
+
+    /**
+     * Sets the throttling budget of a component, i.e. the maximum number of spans with the given
+     * {@code component} attribute that may end within a sliding time window. Spans over the budget
+     * are dropped. The window has a resolution of one second.
+     *
+     * <p>By default, every component may produce 100 spans per 30 seconds. Spans are only
+     * throttled when {@linkplain #enableDiskBuffering() disk buffering} is not enabled.
+     *
+     * @param component The value of the {@code component} attribute the budget applies to.
+     * @param maxSpans The maximum number of spans within the window.
+     * @param window The length of the sliding window.
+     * @return {@code this}
+     */
+    public SplunkRumBuilder setComponentThrottlingBudget(
+            String component, int maxSpans, Duration window) {
+        if (maxSpans < 0 || window.compareTo(Duration.ofSeconds(1)) < 0) {
+            Log.e(
+                    SplunkRum.LOG_TAG,
+                    "invalid throttling budget for "
+                            + component
+                            + ": the span limit must not be negative and the window must be at"
+                            + " least one second");
+            return this;
+        }
+        throttlingBudgets.put(component, new ThrottlingExporter.Budget(maxSpans, window));
+        return this;
+    }
+
+    /**
+     * Enables summaries of the spans dropped by throttling. Instead of being lost without a trace,
+     * the dropped spans are counted by component and span name, and a summary span is exported for
+     * each of them with the first export after a throttling window has passed. A summary span
+     * carries the number of spans it stands for, their minimum, maximum and total duration, and the
+     * attributes they all share. It is marked with the {@code splunk.synthetic=true} attribute.
+     *
+     * <p>This feature is disabled by default. You can enable it by calling this method.
+     *
+     * @return {@code this}
+     * @see #setComponentThrottlingBudget(String, int, Duration)
+     */
+    public SplunkRumBuilder enableThrottledSpanSummary() {
+        configFlags.enableThrottledSpanSummary();
+        return this;
+    }
+
+    /**
+     * Sets the maximum number of span batches that are exported at once. Batches are handed off to
+     * the export pipeline without waiting for the backend; while this many batches are being
+     * exported, later batches wait in a queue. When the queue is full, the oldest waiting batch is
+     * dropped and counted in {@link SplunkRum#getDroppedSpanCount()}.
+     *
+     * <p>The default is 2.
+     *
+     * @param maxBatches The maximum number of batches being exported at once.
+     * @return {@code this}
+     * @see SplunkRum#getExportQueueDepth()
+     */
+    public SplunkRumBuilder limitInFlightExportBatches(int maxBatches) {
+        if (maxBatches <= 0) {
+            Log.e(
+                    SplunkRum.LOG_TAG,
+                    "invalid in-flight export limit: " + maxBatches + " must be positive");
+            return this;
+        }
+        this.maxInFlightExportBatches = maxBatches;
+        return this;
+    }
+
+    /**
+     * Enables adaptive batching of spans. Instead of exporting up to 512 spans every 5 seconds,
+     * spans are exported every second while the app is in the foreground on Wi-Fi or a wired
+     * network, and every 5 seconds on other networks. They are collected into larger batches that
+     * are exported every 30 seconds while the app is in the background or on a 2G network, and
+     * every minute while offline. When the battery is low or battery saver is on, the export delay
+     * is doubled. Ending a span while the user is active triggers a prompt export.
+     *
+     * <p>This feature is disabled by default. You can enable it by calling this method.
+     *
+     * @return {@code this}
+     */
+    public SplunkRumBuilder enableAdaptiveBatching() {
+        configFlags.enableAdaptiveBatching();
+        return this;
+    }
+
+    /**
+     * Enables the lock-free span processor. Ended spans are added to a preallocated lock-free
+     * queue instead of the blocking queue of the upstream {@code BatchSpanProcessor}, so that
+     * threads ending spans at the same time don't wait for each other. Spans are still exported
+     * in batches of up to 512 every 5 seconds, and dropped when more than 2048 are waiting. The
+     * processor is always used with {@link #enableAdaptiveBatching()}.
+     *
+     * <p>This feature is disabled by default. You can enable it by calling this method.
+     *
+     * @return {@code this}
+     * @see SplunkRum#getSpanQueueHighWatermark()
+     * @see SplunkRum#getSpanQueueDroppedSpanCount()
+     */
+    public SplunkRumBuilder enableLockFreeSpanProcessor() {
+        configFlags.enableLockFreeSpanProcessor();
+        return this;
+    }
+
     /**
      * Sets the ratio of sessions that get sampled. Valid values range from 0.0 to 1.0, where 0
      * means no sessions are sampled, and 1 means all sessions are sampled.
@@ -387,12 +657,6 @@ public final class SplunkRumBuilder {
      */
     @Deprecated
     public SplunkRumBuilder enableExperimentalOtlpExporter() {
-        if (isDiskBufferingEnabled()) {
-            Log.w(SplunkRum.LOG_TAG, "OTLP export is not yet compatible with disk buffering!");
-            Log.w(SplunkRum.LOG_TAG, "Please disable disk buffering in order to use OTLP export.");
-            Log.w(SplunkRum.LOG_TAG, "OTLP is not enabled.");
-            return this;
-        }
         configFlags.enableOtlpExporter();
         if (this.realm != null) {
             configureBeaconForOtlp();
@@ -427,6 +691,22 @@ public final class SplunkRumBuilder {
         return configFlags.isSlowRenderingDetectionEnabled();
     }
 
+    boolean isStackTraceDeduplicationEnabled() {
+        return configFlags.isStackTraceDeduplicationEnabled();
+    }
+
+    boolean isThrottledSpanSummaryEnabled() {
+        return configFlags.isThrottledSpanSummaryEnabled();
+    }
+
+    boolean isAdaptiveBatchingEnabled() {
+        return configFlags.isAdaptiveBatchingEnabled();
+    }
+
+    boolean isLockFreeSpanProcessorEnabled() {
+        return configFlags.isLockFreeSpanProcessorEnabled();
+    }
+
     boolean isCrashReportingEnabled() {
         return configFlags.isCrashReportingEnabled();
     }
@@ -435,6 +715,18 @@ public final class SplunkRumBuilder {
         return configFlags.isDiskBufferingEnabled();
     }
 
+    boolean isDiskBufferingCompressionEnabled() {
+        return configFlags.isDiskBufferingCompressionEnabled();
+    }
+
+    boolean isDiskBufferingBinaryFormatEnabled() {
+        return configFlags.isDiskBufferingBinaryFormatEnabled();
+    }
+
+    boolean isDiskBufferingSpilloverEnabled() {
+        return configFlags.isDiskBufferingSpilloverEnabled();
+    }
+
     boolean shouldUseOtlpExporter() {
         return configFlags.shouldUseOtlpExporter();
     }
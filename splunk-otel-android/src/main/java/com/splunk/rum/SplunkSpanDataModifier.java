@@ -37,12 +37,14 @@ import static io.opentelemetry.semconv.SemanticAttributes.NET_HOST_CONNECTION_TY
 import static java.util.Arrays.asList;
 import static java.util.Collections.unmodifiableSet;
 
+import androidx.annotation.Nullable;
 import io.opentelemetry.android.RumConstants;
 import io.opentelemetry.api.common.AttributeKey;
 import io.opentelemetry.api.common.Attributes;
 import io.opentelemetry.api.common.AttributesBuilder;
 import io.opentelemetry.api.trace.SpanContext;
 import io.opentelemetry.sdk.common.CompletableResultCode;
+import io.opentelemetry.sdk.resources.Resource;
 import io.opentelemetry.sdk.trace.data.DelegatingSpanData;
 import io.opentelemetry.sdk.trace.data.EventData;
 import io.opentelemetry.sdk.trace.data.SpanData;
@@ -64,7 +66,8 @@ final class SplunkSpanDataModifier implements SpanExporter {
     static final AttributeKey<String> REACT_NATIVE_SPAN_ID_KEY =
             AttributeKey.stringKey("_reactnative_spanId");
 
-    private static final Set<AttributeKey<String>> resourceAttributesToCopy =
+    // zipkin has no resource, so these are copied into every span
+    static final Set<AttributeKey<String>> resourceAttributesToCopy =
             unmodifiableSet(
                     new HashSet<>(
                             asList(
@@ -81,6 +84,11 @@ final class SplunkSpanDataModifier implements SpanExporter {
     private final SpanExporter delegate;
     private final boolean reactNativeEnabled;
     private final boolean otlpExportIsEnabled;
+    private final RewrittenAttributes.Rules attributeRules;
+    @Nullable private final StackTraceDeduplicator stackTraceDeduplicator;
+
+    // the attributes copied from the resource of the last exported span, which rarely changes
+    @Nullable private volatile CopiedResourceAttributes copiedResourceAttributes;
 
     SplunkSpanDataModifier(SpanExporter delegate, boolean reactNativeEnabled) {
         this(delegate, reactNativeEnabled, false);
@@ -88,9 +96,35 @@ final class SplunkSpanDataModifier implements SpanExporter {
 
     SplunkSpanDataModifier(
             SpanExporter delegate, boolean reactNativeEnabled, boolean otlpExportIsEnabled) {
+        this(delegate, reactNativeEnabled, otlpExportIsEnabled, null);
+    }
+
+    SplunkSpanDataModifier(
+            SpanExporter delegate,
+            boolean reactNativeEnabled,
+            boolean otlpExportIsEnabled,
+            @Nullable StackTraceDeduplicator stackTraceDeduplicator) {
         this.delegate = delegate;
         this.reactNativeEnabled = reactNativeEnabled;
         this.otlpExportIsEnabled = otlpExportIsEnabled;
+        this.attributeRules = buildAttributeRules(reactNativeEnabled);
+        this.stackTraceDeduplicator = stackTraceDeduplicator;
+    }
+
+    static RewrittenAttributes.Rules buildAttributeRules(boolean reactNativeEnabled) {
+        // Convert new net semconv to old, at least until we can leverage the new names...
+        RewrittenAttributes.Rules.Builder rules =
+                RewrittenAttributes.Rules.builder()
+                        .rename(NETWORK_CONNECTION_TYPE, NET_HOST_CONNECTION_TYPE)
+                        .rename(NETWORK_CONNECTION_SUBTYPE, NET_HOST_CONNECTION_SUBTYPE)
+                        .rename(NETWORK_CARRIER_ICC, NET_HOST_CARRIER_ICC)
+                        .rename(NETWORK_CARRIER_MCC, NET_HOST_CARRIER_MCC)
+                        .rename(NETWORK_CARRIER_MNC, NET_HOST_CARRIER_MNC)
+                        .rename(NETWORK_CARRIER_NAME, NET_HOST_CARRIER_NAME);
+        if (reactNativeEnabled) {
+            rules.remove(REACT_NATIVE_TRACE_ID_KEY).remove(REACT_NATIVE_SPAN_ID_KEY);
+        }
+        return rules.build();
     }
 
     @Override
@@ -98,76 +132,140 @@ final class SplunkSpanDataModifier implements SpanExporter {
         return delegate.export(spans.stream().map(this::modify).collect(Collectors.toList()));
     }
 
+    // The original attributes are not copied: the renames and removals are applied by a view, and
+    // the added attributes are layered over it.
     private SpanData modify(SpanData original) {
-        AttributesBuilder modifiedAttributes = original.getAttributes().toBuilder();
+        Attributes originalAttributes = original.getAttributes();
+        AttributesBuilder addedAttributes = Attributes.builder();
 
         // Copy the native session id name into the splunk name
-        String sessionId = original.getAttributes().get(RumConstants.SESSION_ID_KEY);
-        modifiedAttributes.put(StandardAttributes.SESSION_ID_KEY, sessionId);
+        String sessionId = originalAttributes.get(RumConstants.SESSION_ID_KEY);
+        addedAttributes.put(StandardAttributes.SESSION_ID_KEY, sessionId);
 
         // Copy previous session id to splunk name, if applicable.
-        String previousSessionId =
-                original.getAttributes().get(RumConstants.PREVIOUS_SESSION_ID_KEY);
+        String previousSessionId = originalAttributes.get(RumConstants.PREVIOUS_SESSION_ID_KEY);
         if (previousSessionId != null) {
-            modifiedAttributes.put(StandardAttributes.PREVIOUS_SESSION_ID_KEY, previousSessionId);
-        }
-
-        SpanContext spanContext;
-        if (reactNativeEnabled) {
-            spanContext = extractReactNativeIdsIfPresent(original);
-            modifiedAttributes.remove(REACT_NATIVE_TRACE_ID_KEY);
-            modifiedAttributes.remove(REACT_NATIVE_SPAN_ID_KEY);
-        } else {
-            spanContext = original.getSpanContext();
+            addedAttributes.put(StandardAttributes.PREVIOUS_SESSION_ID_KEY, previousSessionId);
         }
 
-        // Convert new net semconv to old
-        modifiedAttributes =
-                downgradeNetworkAttrNames(original.getAttributes(), modifiedAttributes);
+        SpanContext spanContext =
+                reactNativeEnabled
+                        ? extractReactNativeIdsIfPresent(original)
+                        : original.getSpanContext();
 
-        List<EventData> modifiedEvents = new ArrayList<>(original.getEvents());
+        List<EventData> modifiedEvents = original.getEvents();
         if (!otlpExportIsEnabled) {
-            modifiedEvents = new ArrayList<>(original.getEvents().size());
             // zipkin eats the event attributes that are recorded by default, so we need to convert
             // the exception event to span attributes
-            for (EventData event : original.getEvents()) {
-                if (event.getName().equals(SemanticAttributes.EXCEPTION_EVENT_NAME)) {
-                    modifiedAttributes.putAll(extractExceptionAttributes(event));
-                } else {
-                    // if it's not an exception, leave the event as it is
-                    modifiedEvents.add(event);
-                }
-            }
+            modifiedEvents = convertExceptionEvents(modifiedEvents, sessionId, addedAttributes);
+        } else if (stackTraceDeduplicator != null) {
+            modifiedEvents = deduplicateStackTraces(modifiedEvents, sessionId);
         }
 
         // set this custom attribute in order to let the CustomZipkinEncoder use it for the span
         // name on the wire.
-        modifiedAttributes.put(SPLUNK_OPERATION_KEY, original.getName());
+        addedAttributes.put(SPLUNK_OPERATION_KEY, original.getName());
 
-        if (!otlpExportIsEnabled) {
+        Attributes modifiedAttributes;
+        if (otlpExportIsEnabled) {
+            modifiedAttributes =
+                    new RewrittenAttributes(
+                            originalAttributes, attributeRules, addedAttributes.build());
+        } else {
             // zipkin does not have resource attributes, we'll need to copy them to span level
-            for (AttributeKey<String> key : resourceAttributesToCopy) {
-                String value = original.getResource().getAttribute(key);
-                if (value != null) {
-                    modifiedAttributes.put(key, value);
+            modifiedAttributes =
+                    new RewrittenAttributes(
+                            originalAttributes,
+                            attributeRules,
+                            addedAttributes.build(),
+                            getCopiedResourceAttributes(original.getResource()));
+        }
+
+        return new SplunkSpan(original, spanContext, modifiedEvents, modifiedAttributes);
+    }
+
+    /**
+     * Moves the attributes of exception events into the added attributes. The events are only
+     * copied if there is an exception among them.
+     */
+    private List<EventData> convertExceptionEvents(
+            List<EventData> events,
+            @Nullable String sessionId,
+            AttributesBuilder addedAttributes) {
+        List<EventData> remainingEvents = events;
+        for (int i = 0; i < events.size(); i++) {
+            EventData event = events.get(i);
+            if (event.getName().equals(SemanticAttributes.EXCEPTION_EVENT_NAME)) {
+                if (remainingEvents == events) {
+                    remainingEvents = new ArrayList<>(events.subList(0, i));
+                }
+                addedAttributes.putAll(extractExceptionAttributes(event, sessionId));
+            } else if (remainingEvents != events) {
+                // if it's not an exception, leave the event as it is
+                remainingEvents.add(event);
+            }
+        }
+        return remainingEvents;
+    }
+
+    /**
+     * Adds the fingerprint and occurrence count to the stack traces of exception events, for the
+     * {@link StackTraceDeduplicatingExporter}. The events are only copied if there is an exception
+     * among them.
+     */
+    private List<EventData> deduplicateStackTraces(
+            List<EventData> events, @Nullable String sessionId) {
+        List<EventData> modifiedEvents = events;
+        for (int i = 0; i < events.size(); i++) {
+            EventData event = events.get(i);
+            String stacktrace = event.getAttributes().get(EXCEPTION_STACKTRACE);
+            if (stacktrace != null
+                    && event.getName().equals(SemanticAttributes.EXCEPTION_EVENT_NAME)) {
+                if (modifiedEvents == events) {
+                    modifiedEvents = new ArrayList<>(events);
                 }
+                AttributesBuilder attributes =
+                        event.getAttributes().toBuilder().remove(EXCEPTION_STACKTRACE);
+                putStackTrace(sessionId, stacktrace, attributes);
+                Attributes modifiedAttributes = attributes.build();
+                modifiedEvents.set(
+                        i,
+                        EventData.create(
+                                event.getEpochNanos(),
+                                event.getName(),
+                                modifiedAttributes,
+                                modifiedAttributes.size()));
             }
         }
+        return modifiedEvents;
+    }
 
-        return new SplunkSpan(original, spanContext, modifiedEvents, modifiedAttributes.build());
+    private void putStackTrace(
+            @Nullable String sessionId, String stacktrace, AttributesBuilder attributes) {
+        if (stackTraceDeduplicator == null) {
+            attributes.put(EXCEPTION_STACKTRACE, stacktrace);
+        } else {
+            stackTraceDeduplicator.putStackTrace(sessionId, stacktrace, attributes);
+        }
     }
 
-    // At least until we can leverage the new names...
-    private AttributesBuilder downgradeNetworkAttrNames(
-            Attributes originalAttributes, AttributesBuilder attributes) {
-        return AttributeReplacer.with(originalAttributes, attributes)
-                .update(NETWORK_CONNECTION_TYPE, NET_HOST_CONNECTION_TYPE)
-                .update(NETWORK_CONNECTION_SUBTYPE, NET_HOST_CONNECTION_SUBTYPE)
-                .update(NETWORK_CARRIER_ICC, NET_HOST_CARRIER_ICC)
-                .update(NETWORK_CARRIER_MCC, NET_HOST_CARRIER_MCC)
-                .update(NETWORK_CARRIER_MNC, NET_HOST_CARRIER_MNC)
-                .update(NETWORK_CARRIER_NAME, NET_HOST_CARRIER_NAME)
-                .finish();
+    private Attributes getCopiedResourceAttributes(Resource resource) {
+        CopiedResourceAttributes cached = copiedResourceAttributes;
+        if (cached == null || cached.resource != resource) {
+            AttributesBuilder attributes = Attributes.builder();
+            for (AttributeKey<String> key : resourceAttributesToCopy) {
+                String value = resource.getAttribute(key);
+                if (value != null) {
+                    attributes.put(key, value);
+                }
+            }
+            // shared by all the spans of the resource, and looked up for each of their attributes
+            cached =
+                    new CopiedResourceAttributes(
+                            resource, RewrittenAttributes.indexed(attributes.build()));
+            copiedResourceAttributes = cached;
+        }
+        return cached.attributes;
     }
 
     private SpanContext extractReactNativeIdsIfPresent(SpanData original) {
@@ -193,7 +291,7 @@ final class SplunkSpanDataModifier implements SpanExporter {
                         originalSpanContext.getTraceState());
     }
 
-    private static Attributes extractExceptionAttributes(EventData event) {
+    private Attributes extractExceptionAttributes(EventData event, @Nullable String sessionId) {
         String type = event.getAttributes().get(EXCEPTION_TYPE);
         String message = event.getAttributes().get(EXCEPTION_MESSAGE);
         String stacktrace = event.getAttributes().get(EXCEPTION_STACKTRACE);
@@ -214,7 +312,7 @@ final class SplunkSpanDataModifier implements SpanExporter {
             builder.put(ERROR_MESSAGE_KEY, message);
         }
         if (stacktrace != null) {
-            builder.put(EXCEPTION_STACKTRACE, stacktrace);
+            putStackTrace(sessionId, stacktrace, builder);
         }
         return builder.build();
     }
@@ -229,6 +327,16 @@ final class SplunkSpanDataModifier implements SpanExporter {
         return delegate.shutdown();
     }
 
+    private static final class CopiedResourceAttributes {
+        private final Resource resource;
+        private final Attributes attributes;
+
+        private CopiedResourceAttributes(Resource resource, Attributes attributes) {
+            this.resource = resource;
+            this.attributes = attributes;
+        }
+    }
+
     private static final class SplunkSpan extends DelegatingSpanData {
 
         private final SpanContext spanContext;
@@ -271,31 +379,4 @@ final class SplunkSpanDataModifier implements SpanExporter {
             return modifiedAttributes.size();
         }
     }
-
-    private static class AttributeReplacer {
-        private final Attributes original;
-        private final AttributesBuilder attributes;
-
-        private static AttributeReplacer with(Attributes original, AttributesBuilder attributes) {
-            return new AttributeReplacer(original, attributes);
-        }
-
-        private AttributeReplacer(Attributes original, AttributesBuilder attributes) {
-            this.original = original;
-            this.attributes = attributes;
-        }
-
-        <T> AttributeReplacer update(AttributeKey<T> currentName, AttributeKey<T> replacementName) {
-            T value = original.get(currentName);
-            if (value != null) {
-                attributes.remove(currentName);
-                attributes.put(replacementName, value);
-            }
-            return this;
-        }
-
-        AttributesBuilder finish() {
-            return attributes;
-        }
-    }
 }
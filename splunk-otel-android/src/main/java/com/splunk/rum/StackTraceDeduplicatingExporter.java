@@ -0,0 +1,162 @@
+/*
+ * Copyright Splunk Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.splunk.rum;
+
+import static com.splunk.rum.StackTraceDeduplicator.FINGERPRINT_KEY;
+import static io.opentelemetry.semconv.SemanticAttributes.EXCEPTION_STACKTRACE;
+
+import androidx.annotation.Nullable;
+import io.opentelemetry.android.RumConstants;
+import io.opentelemetry.api.common.Attributes;
+import io.opentelemetry.sdk.common.CompletableResultCode;
+import io.opentelemetry.sdk.trace.data.DelegatingSpanData;
+import io.opentelemetry.sdk.trace.data.EventData;
+import io.opentelemetry.sdk.trace.data.SpanData;
+import io.opentelemetry.sdk.trace.export.SpanExporter;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * Removes the stack traces that were already exported in the session from the spans, see {@link
+ * StackTraceDeduplicator}. It sits right above the exporter that sends or stores the spans, below
+ * the throttling, the memory buffer and the export queue, which may all drop spans. The stack
+ * traces a batch carries in full only count as exported once the delegate has exported the batch
+ * successfully; a failed batch that is retried still carries them.
+ */
+final class StackTraceDeduplicatingExporter implements SpanExporter {
+
+    private final SpanExporter delegate;
+    private final StackTraceDeduplicator deduplicator;
+
+    StackTraceDeduplicatingExporter(SpanExporter delegate, StackTraceDeduplicator deduplicator) {
+        this.delegate = delegate;
+        this.deduplicator = deduplicator;
+    }
+
+    @Override
+    public CompletableResultCode export(Collection<SpanData> spans) {
+        List<SpanData> deduplicated = new ArrayList<>(spans.size());
+        List<FullStackTrace> fullStackTraces = new ArrayList<>();
+        for (SpanData span : spans) {
+            deduplicated.add(deduplicate(span, fullStackTraces));
+        }
+        CompletableResultCode result = delegate.export(deduplicated);
+        if (!fullStackTraces.isEmpty()) {
+            result.whenComplete(
+                    () -> {
+                        if (result.isSuccess()) {
+                            for (FullStackTrace stackTrace : fullStackTraces) {
+                                deduplicator.markExported(
+                                        stackTrace.sessionId, stackTrace.fingerprint);
+                            }
+                        }
+                    });
+        }
+        return result;
+    }
+
+    // zipkin spans carry the stack trace as a span attribute, OTLP spans in the exception event
+    private SpanData deduplicate(SpanData span, List<FullStackTrace> fullStackTraces) {
+        String sessionId = span.getAttributes().get(RumConstants.SESSION_ID_KEY);
+        Attributes attributes = deduplicate(sessionId, span.getAttributes(), fullStackTraces);
+        List<EventData> events = span.getEvents();
+        List<EventData> modifiedEvents = events;
+        for (int i = 0; i < events.size(); i++) {
+            EventData event = events.get(i);
+            Attributes eventAttributes =
+                    deduplicate(sessionId, event.getAttributes(), fullStackTraces);
+            if (eventAttributes != event.getAttributes()) {
+                if (modifiedEvents == events) {
+                    modifiedEvents = new ArrayList<>(events);
+                }
+                modifiedEvents.set(
+                        i,
+                        EventData.create(
+                                event.getEpochNanos(),
+                                event.getName(),
+                                eventAttributes,
+                                eventAttributes.size()));
+            }
+        }
+        if (attributes == span.getAttributes() && modifiedEvents == events) {
+            return span;
+        }
+        return new DeduplicatedSpan(span, attributes, modifiedEvents);
+    }
+
+    private Attributes deduplicate(
+            @Nullable String sessionId,
+            Attributes attributes,
+            List<FullStackTrace> fullStackTraces) {
+        String fingerprint = attributes.get(FINGERPRINT_KEY);
+        if (fingerprint == null || attributes.get(EXCEPTION_STACKTRACE) == null) {
+            return attributes;
+        }
+        if (deduplicator.isExported(sessionId, fingerprint)) {
+            return attributes.toBuilder().remove(EXCEPTION_STACKTRACE).build();
+        }
+        fullStackTraces.add(new FullStackTrace(sessionId, fingerprint));
+        return attributes;
+    }
+
+    @Override
+    public CompletableResultCode flush() {
+        return delegate.flush();
+    }
+
+    @Override
+    public CompletableResultCode shutdown() {
+        return delegate.shutdown();
+    }
+
+    private static final class FullStackTrace {
+        @Nullable private final String sessionId;
+        private final String fingerprint;
+
+        private FullStackTrace(@Nullable String sessionId, String fingerprint) {
+            this.sessionId = sessionId;
+            this.fingerprint = fingerprint;
+        }
+    }
+
+    private static final class DeduplicatedSpan extends DelegatingSpanData {
+        private final Attributes attributes;
+        private final List<EventData> events;
+
+        private DeduplicatedSpan(SpanData delegate, Attributes attributes, List<EventData> events) {
+            super(delegate);
+            this.attributes = attributes;
+            this.events = events;
+        }
+
+        @Override
+        public Attributes getAttributes() {
+            return attributes;
+        }
+
+        @Override
+        public int getTotalAttributeCount() {
+            return attributes.size();
+        }
+
+        @Override
+        public List<EventData> getEvents() {
+            return events;
+        }
+    }
+}
@@ -0,0 +1,149 @@
+/*
+ * Copyright Splunk Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.splunk.rum;
+
+import static io.opentelemetry.api.common.AttributeKey.longKey;
+import static io.opentelemetry.api.common.AttributeKey.stringKey;
+import static io.opentelemetry.semconv.SemanticAttributes.EXCEPTION_STACKTRACE;
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+import androidx.annotation.Nullable;
+import io.opentelemetry.api.common.AttributeKey;
+import io.opentelemetry.api.common.AttributesBuilder;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Keeps repeated stack traces out of the exported spans. Every occurrence of a stack trace in a
+ * session carries the fingerprint of the stack trace and the number of times it has occurred in
+ * the session. The stack trace itself is exported until a span carrying it has been exported
+ * successfully; after that, the fingerprint is enough to link the later occurrences to it. The
+ * {@link StackTraceDeduplicatingExporter} removes the stack traces that were already exported,
+ * below the stages that may drop spans, so that a dropped first occurrence doesn't keep the stack
+ * trace from ever reaching the backend.
+ *
+ * <p>The fingerprint is the 64-bit FNV-1a hash of the UTF-8 encoded stack trace. The most recently
+ * seen {@value #MAX_STACK_TRACES} stack traces are remembered per session; a stack trace that has
+ * been forgotten is exported in full again.
+ */
+final class StackTraceDeduplicator {
+
+    static final AttributeKey<String> FINGERPRINT_KEY = stringKey("exception.fingerprint");
+    static final AttributeKey<Long> OCCURRENCE_KEY = longKey("exception.occurrence");
+    static final int MAX_STACK_TRACES = 100;
+
+    private static final long FNV_OFFSET_BASIS = 0xcbf29ce484222325L;
+    private static final long FNV_PRIME = 0x100000001b3L;
+
+    // the stack traces seen in the session by fingerprint, in access order
+    private final Map<String, SeenStackTrace> seenStackTraces =
+            new LinkedHashMap<String, SeenStackTrace>(16, 0.75f, true) {
+                @Override
+                protected boolean removeEldestEntry(Map.Entry<String, SeenStackTrace> eldest) {
+                    return size() > MAX_STACK_TRACES;
+                }
+            };
+
+    @Nullable private String sessionId;
+
+    /**
+     * Puts the stack trace attributes of an exception into the builder: the stack trace itself, and
+     * its fingerprint and occurrence count if there is a session.
+     */
+    synchronized void putStackTrace(
+            @Nullable String sessionId, String stackTrace, AttributesBuilder attributes) {
+        if (sessionId == null) {
+            // without a session there is nothing to link the later occurrences to
+            attributes.put(EXCEPTION_STACKTRACE, stackTrace);
+            return;
+        }
+        if (!sessionId.equals(this.sessionId)) {
+            seenStackTraces.clear();
+            this.sessionId = sessionId;
+        }
+        String fingerprint = toHex(fingerprint(stackTrace));
+        SeenStackTrace seen = seenStackTraces.get(fingerprint);
+        if (seen == null) {
+            seen = new SeenStackTrace();
+            seenStackTraces.put(fingerprint, seen);
+        }
+        seen.occurrences++;
+
+        attributes.put(EXCEPTION_STACKTRACE, stackTrace);
+        attributes.put(FINGERPRINT_KEY, fingerprint);
+        attributes.put(OCCURRENCE_KEY, seen.occurrences);
+    }
+
+    /** Returns whether the stack trace has been exported in full in the session. */
+    synchronized boolean isExported(@Nullable String sessionId, String fingerprint) {
+        SeenStackTrace seen = getSeen(sessionId, fingerprint);
+        return seen != null && seen.exported;
+    }
+
+    /** Records that a span carrying the full stack trace has been exported successfully. */
+    synchronized void markExported(@Nullable String sessionId, String fingerprint) {
+        SeenStackTrace seen = getSeen(sessionId, fingerprint);
+        if (seen != null) {
+            seen.exported = true;
+        }
+    }
+
+    @Nullable
+    private SeenStackTrace getSeen(@Nullable String sessionId, String fingerprint) {
+        if (sessionId == null || !sessionId.equals(this.sessionId)) {
+            return null;
+        }
+        return seenStackTraces.get(fingerprint);
+    }
+
+    static long fingerprint(String stackTrace) {
+        long hash = FNV_OFFSET_BASIS;
+        for (int i = 0; i < stackTrace.length(); i++) {
+            char c = stackTrace.charAt(i);
+            if (c >= 0x80) {
+                // stack traces are almost always ASCII, only encode the rare ones that are not
+                return fingerprint(stackTrace.getBytes(UTF_8));
+            }
+            hash ^= c;
+            hash *= FNV_PRIME;
+        }
+        return hash;
+    }
+
+    private static long fingerprint(byte[] bytes) {
+        long hash = FNV_OFFSET_BASIS;
+        for (byte b : bytes) {
+            hash ^= b & 0xff;
+            hash *= FNV_PRIME;
+        }
+        return hash;
+    }
+
+    private static String toHex(long fingerprint) {
+        String hex = Long.toHexString(fingerprint);
+        StringBuilder padded = new StringBuilder(16);
+        for (int i = hex.length(); i < 16; i++) {
+            padded.append('0');
+        }
+        return padded.append(hex).toString();
+    }
+
+    private static final class SeenStackTrace {
+        private long occurrences;
+        private boolean exported;
+    }
+}
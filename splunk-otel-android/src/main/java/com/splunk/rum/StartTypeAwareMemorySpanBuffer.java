@@ -18,25 +18,45 @@ package com.splunk.rum;
 
 import io.opentelemetry.android.instrumentation.activity.VisibleScreenTracker;
 import io.opentelemetry.sdk.trace.data.SpanData;
-import java.util.ArrayDeque;
-import java.util.ArrayList;
 import java.util.Collection;
 import java.util.List;
-import java.util.Queue;
 
 public class StartTypeAwareMemorySpanBuffer implements MemorySpanBuffer {
 
+    // the share of the byte budget that spans recorded in the background may use
+    private static final int BACKGROUND_BUDGET_DIVISOR = 4;
+
     private final VisibleScreenTracker visibleScreenTracker;
 
-    private final Queue<SpanData> backlog = new ArrayDeque<>();
+    private final BoundedSpanQueue backlog;
 
     /**
      * backgroundSpanBacklog will never get sent if last visible screen is null until process kill.
+     * It gets its own part of the byte budget, so that spans recorded in the background can't push
+     * out the rest. The two backlogs together never hold more than the configured limit.
      */
-    private final Queue<SpanData> backgroundSpanBacklog = new ArrayDeque<>();
+    private final BoundedSpanQueue backgroundSpanBacklog;
 
     public StartTypeAwareMemorySpanBuffer(VisibleScreenTracker visibleScreenTracker) {
+        this(
+                visibleScreenTracker,
+                BoundedSpanQueue.DEFAULT_MAX_BYTES,
+                MemoryBufferEvictionPolicy.OLDEST_FIRST,
+                new DroppedSpanCounter());
+    }
+
+    StartTypeAwareMemorySpanBuffer(
+            VisibleScreenTracker visibleScreenTracker,
+            long maxBytes,
+            MemoryBufferEvictionPolicy evictionPolicy,
+            DroppedSpanCounter droppedSpanCounter) {
         this.visibleScreenTracker = visibleScreenTracker;
+        long backgroundMaxBytes = maxBytes / BACKGROUND_BUDGET_DIVISOR;
+        this.backlog =
+                new BoundedSpanQueue(
+                        maxBytes - backgroundMaxBytes, evictionPolicy, droppedSpanCounter);
+        this.backgroundSpanBacklog =
+                new BoundedSpanQueue(backgroundMaxBytes, evictionPolicy, droppedSpanCounter);
     }
 
     @Override
@@ -44,8 +64,7 @@ public class StartTypeAwareMemorySpanBuffer implements MemorySpanBuffer {
         if (!isAppForeground()) {
             backgroundSpanBacklog.addAll(spans);
         } else {
-            backlog.addAll(backgroundSpanBacklog);
-            backgroundSpanBacklog.clear();
+            backlog.addAll(backgroundSpanBacklog.drain());
             backlog.addAll(spans);
         }
     }
@@ -61,16 +80,14 @@ public class StartTypeAwareMemorySpanBuffer implements MemorySpanBuffer {
 
     @Override
     public List<SpanData> drain() {
-        List<SpanData> retries = new ArrayList<>(backlog);
-        backlog.clear();
+        List<SpanData> retries = backlog.drain();
         drainBackgroundBacklogIfAppIsForeground(retries);
         return retries;
     }
 
     private void drainBackgroundBacklogIfAppIsForeground(List<SpanData> retries) {
         if (isAppForeground()) {
-            retries.addAll(backgroundSpanBacklog);
-            backgroundSpanBacklog.clear();
+            retries.addAll(backgroundSpanBacklog.drain());
         }
     }
 
@@ -94,6 +111,10 @@ public class StartTypeAwareMemorySpanBuffer implements MemorySpanBuffer {
         }
     }
 
+    long estimatedBytes() {
+        return backlog.estimatedBytes() + backgroundSpanBacklog.estimatedBytes();
+    }
+
     private boolean isAppForeground() {
         return (visibleScreenTracker.getCurrentlyVisibleScreen() != null
                         && !visibleScreenTracker.getCurrentlyVisibleScreen().equals("unknown"))
@@ -37,6 +37,7 @@ class StartTypeAwareSpanStorage implements SpanStorage {
     private final String uniqueId;
     private final File rootDir;
     private final File spanDir;
+    private final SpanFileManifest manifest;
 
     static StartTypeAwareSpanStorage create(
             VisibleScreenTracker visibleScreenTracker, FileUtils fileUtils, File rootDir) {
@@ -71,16 +72,17 @@ class StartTypeAwareSpanStorage implements SpanStorage {
         this.rootDir = rootDir;
         this.spanDir = spansDir;
         this.uniqueId = uniqueId;
+        this.manifest = new SpanFileManifest(fileUtils, spansDir);
     }
 
     @Override
     public long getTotalFileSizeInBytes() {
-        return fileUtils.getTotalFileSizeInBytesRecursively(spanDir);
+        return manifest.getTotalSizeInBytes();
     }
 
     @Override
     public Stream<File> getAllSpanFiles() {
-        return fileUtils.listFilesRecursively(spanDir);
+        return manifest.getFiles().stream();
     }
 
     @Override
@@ -88,7 +90,29 @@ class StartTypeAwareSpanStorage implements SpanStorage {
         if (isAppForeground()) {
             moveBackgroundSpanToPendingSpan();
         }
-        return fileUtils.listSpanFiles(spanDir);
+        return listSpanFiles(spanDir);
+    }
+
+    @Override
+    public void recordWrite(File file, long bytesWritten) {
+        manifest.recordWrite(file, bytesWritten);
+    }
+
+    @Override
+    public void recordRename(File from, File to) {
+        manifest.recordRename(from, to);
+    }
+
+    @Override
+    public long delete(File file) {
+        fileUtils.safeDelete(file);
+        return manifest.remove(file);
+    }
+
+    private Stream<File> listSpanFiles(File directory) {
+        return getAllSpanFiles()
+                .filter(file -> directory.equals(file.getParentFile()))
+                .filter(file -> file.getName().endsWith(SpanJournal.SEGMENT_SUFFIX));
     }
 
     private boolean isAppForeground() {
@@ -98,12 +122,14 @@ class StartTypeAwareSpanStorage implements SpanStorage {
     }
 
     private void moveBackgroundSpanToPendingSpan() {
-        fileUtils
-                .listSpanFiles(getCurrentSessionBackgroundDirectory())
+        listSpanFiles(getCurrentSessionBackgroundDirectory())
                 .forEach(
                         file -> {
                             File destinationFile = new File(spanDir, file.getName());
                             boolean isMoved = file.renameTo(destinationFile);
+                            if (isMoved) {
+                                manifest.recordRename(file, destinationFile);
+                            }
                             Log.d(
                                     LOG_TAG,
                                     "Moved background span "
@@ -155,7 +181,7 @@ class StartTypeAwareSpanStorage implements SpanStorage {
                 .forEach(
                         dir -> {
                             Log.d(SplunkRum.LOG_TAG, "Cleaning up " + dir.getPath());
-                            fileUtils.listFilesRecursively(dir).forEach(fileUtils::safeDelete);
+                            fileUtils.listFilesRecursively(dir).forEach(this::delete);
                             fileUtils.safeDelete(dir);
                         });
         File backgroundDir = getCurrentSessionBackgroundDirectory();
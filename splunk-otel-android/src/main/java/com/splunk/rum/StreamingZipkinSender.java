@@ -0,0 +1,133 @@
+/*
+ * Copyright Splunk Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.splunk.rum;
+
+import io.opentelemetry.sdk.common.CompletableResultCode;
+import java.io.IOException;
+import java.util.List;
+import okhttp3.MediaType;
+import okhttp3.RequestBody;
+import okio.BufferedSink;
+import okio.GzipSink;
+import okio.Okio;
+import zipkin2.reporter.BytesMessageSender;
+import zipkin2.reporter.Encoding;
+
+/**
+ * Sends zipkin JSON spans without concatenating them first. The request body writes the encoded
+ * spans straight into the connection, through gzip if compression is enabled, so a batch only
+ * exists in memory once: as the list of encoded spans that the exporter passes in.
+ */
+class StreamingZipkinSender implements BytesMessageSender {
+
+    // the same limit as the default OkHttpSender
+    private static final int MESSAGE_MAX_BYTES = 5 * 1024 * 1024;
+
+    private final PayloadSender payloadSender;
+    private final boolean compressed;
+
+    StreamingZipkinSender(PayloadSender payloadSender, boolean compressed) {
+        this.payloadSender = payloadSender;
+        this.compressed = compressed;
+    }
+
+    @Override
+    public Encoding encoding() {
+        return Encoding.JSON;
+    }
+
+    @Override
+    public int messageMaxBytes() {
+        return MESSAGE_MAX_BYTES;
+    }
+
+    @Override
+    public int messageSizeInBytes(List<byte[]> encodedSpans) {
+        return Encoding.JSON.listSizeInBytes(encodedSpans);
+    }
+
+    @Override
+    public int messageSizeInBytes(int encodedSizeInBytes) {
+        return Encoding.JSON.listSizeInBytes(encodedSizeInBytes);
+    }
+
+    @Override
+    public void send(List<byte[]> encodedSpans) throws IOException {
+        if (encodedSpans.isEmpty()) {
+            return;
+        }
+        payloadSender.send(new SpansRequestBody(encodedSpans, compressed), compressed);
+    }
+
+    /**
+     * Posts the spans without blocking. The returned result is completed once the backend has
+     * responded.
+     */
+    CompletableResultCode sendAsync(List<byte[]> encodedSpans) {
+        if (encodedSpans.isEmpty()) {
+            return CompletableResultCode.ofSuccess();
+        }
+        return payloadSender.sendAsync(new SpansRequestBody(encodedSpans, compressed), compressed);
+    }
+
+    @Override
+    public void close() {}
+
+    /** Writes the spans as a JSON list. It can be written again if the request is retried. */
+    private static final class SpansRequestBody extends RequestBody {
+        private final List<byte[]> encodedSpans;
+        private final boolean compressed;
+
+        private SpansRequestBody(List<byte[]> encodedSpans, boolean compressed) {
+            this.encodedSpans = encodedSpans;
+            this.compressed = compressed;
+        }
+
+        @Override
+        public MediaType contentType() {
+            return PayloadSender.JSON;
+        }
+
+        @Override
+        public long contentLength() {
+            // the compressed length is only known once it has been written
+            return compressed ? -1 : Encoding.JSON.listSizeInBytes(encodedSpans);
+        }
+
+        @Override
+        public void writeTo(BufferedSink sink) throws IOException {
+            if (!compressed) {
+                writeSpans(sink);
+                return;
+            }
+            BufferedSink gzipSink = Okio.buffer(new GzipSink(sink));
+            writeSpans(gzipSink);
+            gzipSink.close();
+        }
+
+        private void writeSpans(BufferedSink sink) throws IOException {
+            sink.writeByte('[');
+            for (int i = 0; i < encodedSpans.size(); i++) {
+                if (i > 0) {
+                    sink.writeByte(',');
+                }
+                sink.write(encodedSpans.get(i));
+            }
+            sink.writeByte(']');
+        }
+    }
+}
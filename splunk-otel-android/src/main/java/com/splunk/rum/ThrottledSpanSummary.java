@@ -0,0 +1,252 @@
+/*
+ * Copyright Splunk Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.splunk.rum;
+
+import static io.opentelemetry.api.common.AttributeKey.booleanKey;
+import static io.opentelemetry.api.common.AttributeKey.longKey;
+
+import androidx.annotation.Nullable;
+import io.opentelemetry.api.common.AttributeKey;
+import io.opentelemetry.api.common.Attributes;
+import io.opentelemetry.api.common.AttributesBuilder;
+import io.opentelemetry.api.trace.SpanContext;
+import io.opentelemetry.api.trace.SpanKind;
+import io.opentelemetry.api.trace.TraceFlags;
+import io.opentelemetry.api.trace.TraceState;
+import io.opentelemetry.sdk.trace.IdGenerator;
+import io.opentelemetry.sdk.trace.data.DelegatingSpanData;
+import io.opentelemetry.sdk.trace.data.EventData;
+import io.opentelemetry.sdk.trace.data.LinkData;
+import io.opentelemetry.sdk.trace.data.SpanData;
+import io.opentelemetry.sdk.trace.data.StatusData;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+
+/**
+ * Aggregates the spans dropped by throttling into counters keyed by category and span name, and
+ * turns them into one summary span per key. A summary span has the name of the spans it
+ * summarizes, covers the time from the earliest start to the latest end among them, and carries
+ * the attributes they all share, along with their count and their minimum, maximum and total
+ * duration in nanoseconds. Summary spans are marked with {@code splunk.synthetic=true}, so they can
+ * be told apart from the spans they stand for.
+ *
+ * <p>At most {@value #MAX_GROUPS} keys are summarized at once; spans with other keys are not
+ * summarized.
+ */
+final class ThrottledSpanSummary {
+
+    static final AttributeKey<Boolean> SYNTHETIC_KEY = booleanKey("splunk.synthetic");
+    static final AttributeKey<Long> COUNT_KEY = longKey("throttled.span_count");
+    static final AttributeKey<Long> MIN_DURATION_KEY = longKey("throttled.duration_min_ns");
+    static final AttributeKey<Long> MAX_DURATION_KEY = longKey("throttled.duration_max_ns");
+    static final AttributeKey<Long> SUM_DURATION_KEY = longKey("throttled.duration_sum_ns");
+    static final int MAX_GROUPS = 100;
+
+    private final IdGenerator idGenerator;
+    // the implementation here needs to support null categories
+    private final Map<String, Map<String, Group>> categoryToGroups = new HashMap<>();
+    private int groupCount;
+
+    ThrottledSpanSummary() {
+        this(IdGenerator.random());
+    }
+
+    // Visible for testing
+    ThrottledSpanSummary(IdGenerator idGenerator) {
+        this.idGenerator = idGenerator;
+    }
+
+    void add(@Nullable String category, SpanData span) {
+        Map<String, Group> groups = categoryToGroups.get(category);
+        if (groups == null) {
+            groups = new HashMap<>();
+            categoryToGroups.put(category, groups);
+        }
+        Group group = groups.get(span.getName());
+        if (group == null) {
+            if (groupCount >= MAX_GROUPS) {
+                return;
+            }
+            group = new Group(span);
+            groups.put(span.getName(), group);
+            groupCount++;
+        }
+        group.add(span);
+    }
+
+    boolean isEmpty() {
+        return groupCount == 0;
+    }
+
+    /** Returns one summary span per key, and resets the counters. */
+    List<SpanData> drain() {
+        List<SpanData> summaries = new ArrayList<>(groupCount);
+        for (Map<String, Group> groups : categoryToGroups.values()) {
+            for (Group group : groups.values()) {
+                summaries.add(group.toSpanData(idGenerator));
+            }
+        }
+        categoryToGroups.clear();
+        groupCount = 0;
+        return summaries;
+    }
+
+    private static final class Group {
+        private final SpanData template;
+        private final Map<AttributeKey<?>, Object> commonAttributes = new HashMap<>();
+        private long count;
+        private long minDurationNanos = Long.MAX_VALUE;
+        private long maxDurationNanos = Long.MIN_VALUE;
+        private long sumDurationNanos;
+        private long startEpochNanos = Long.MAX_VALUE;
+        private long endEpochNanos = Long.MIN_VALUE;
+
+        private Group(SpanData template) {
+            this.template = template;
+            template.getAttributes().forEach(commonAttributes::put);
+        }
+
+        private void add(SpanData span) {
+            long duration = span.getEndEpochNanos() - span.getStartEpochNanos();
+            count++;
+            minDurationNanos = Math.min(minDurationNanos, duration);
+            maxDurationNanos = Math.max(maxDurationNanos, duration);
+            sumDurationNanos += duration;
+            startEpochNanos = Math.min(startEpochNanos, span.getStartEpochNanos());
+            endEpochNanos = Math.max(endEpochNanos, span.getEndEpochNanos());
+
+            if (span == template) {
+                return;
+            }
+            Attributes attributes = span.getAttributes();
+            Iterator<Map.Entry<AttributeKey<?>, Object>> it =
+                    commonAttributes.entrySet().iterator();
+            while (it.hasNext()) {
+                Map.Entry<AttributeKey<?>, Object> entry = it.next();
+                if (!Objects.equals(entry.getValue(), attributes.get(entry.getKey()))) {
+                    it.remove();
+                }
+            }
+        }
+
+        @SuppressWarnings("unchecked")
+        private SpanData toSpanData(IdGenerator idGenerator) {
+            AttributesBuilder attributes = Attributes.builder();
+            for (Map.Entry<AttributeKey<?>, Object> entry : commonAttributes.entrySet()) {
+                attributes.put((AttributeKey<Object>) entry.getKey(), entry.getValue());
+            }
+            attributes.put(SYNTHETIC_KEY, true);
+            attributes.put(COUNT_KEY, count);
+            attributes.put(MIN_DURATION_KEY, minDurationNanos);
+            attributes.put(MAX_DURATION_KEY, maxDurationNanos);
+            attributes.put(SUM_DURATION_KEY, sumDurationNanos);
+            SpanContext spanContext =
+                    SpanContext.create(
+                            idGenerator.generateTraceId(),
+                            idGenerator.generateSpanId(),
+                            TraceFlags.getSampled(),
+                            TraceState.getDefault());
+            return new SummarySpan(
+                    template, spanContext, startEpochNanos, endEpochNanos, attributes.build());
+        }
+    }
+
+    private static final class SummarySpan extends DelegatingSpanData {
+        private final SpanContext spanContext;
+        private final long startEpochNanos;
+        private final long endEpochNanos;
+        private final Attributes attributes;
+
+        private SummarySpan(
+                SpanData template,
+                SpanContext spanContext,
+                long startEpochNanos,
+                long endEpochNanos,
+                Attributes attributes) {
+            super(template);
+            this.spanContext = spanContext;
+            this.startEpochNanos = startEpochNanos;
+            this.endEpochNanos = endEpochNanos;
+            this.attributes = attributes;
+        }
+
+        @Override
+        public SpanContext getSpanContext() {
+            return spanContext;
+        }
+
+        @Override
+        public SpanContext getParentSpanContext() {
+            return SpanContext.getInvalid();
+        }
+
+        @Override
+        public SpanKind getKind() {
+            return SpanKind.INTERNAL;
+        }
+
+        @Override
+        public long getStartEpochNanos() {
+            return startEpochNanos;
+        }
+
+        @Override
+        public long getEndEpochNanos() {
+            return endEpochNanos;
+        }
+
+        @Override
+        public Attributes getAttributes() {
+            return attributes;
+        }
+
+        @Override
+        public int getTotalAttributeCount() {
+            return attributes.size();
+        }
+
+        @Override
+        public List<EventData> getEvents() {
+            return Collections.emptyList();
+        }
+
+        @Override
+        public int getTotalRecordedEvents() {
+            return 0;
+        }
+
+        @Override
+        public List<LinkData> getLinks() {
+            return Collections.emptyList();
+        }
+
+        @Override
+        public int getTotalRecordedLinks() {
+            return 0;
+        }
+
+        @Override
+        public StatusData getStatus() {
+            return StatusData.unset();
+        }
+    }
+}
@@ -17,27 +17,45 @@
 package com.splunk.rum;
 
 import android.util.Log;
+import androidx.annotation.Nullable;
 import io.opentelemetry.api.common.AttributeKey;
+import io.opentelemetry.sdk.common.Clock;
 import io.opentelemetry.sdk.common.CompletableResultCode;
 import io.opentelemetry.sdk.trace.data.SpanData;
 import io.opentelemetry.sdk.trace.export.SpanExporter;
 import java.time.Duration;
-import java.util.ArrayDeque;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
-import java.util.Deque;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.TimeUnit;
 import java.util.function.Function;
 
+/**
+ * Drops the spans of a category that exceed its budget, i.e. more than a maximum number of spans
+ * ending within a sliding time window. Spans are counted in one-second buckets, so the window has a
+ * resolution of one second. Spans don't need to arrive in the order of their end times.
+ *
+ * <p>In summary mode the dropped spans are not lost entirely: they are aggregated by a {@link
+ * ThrottledSpanSummary}. The summary spans are exported along with the spans of the first export
+ * that happens at least one default window after the first span was dropped, or when the exporter
+ * is flushed or shut down. There is no timer of its own, as the export chain is never called
+ * concurrently; a summary may therefore cover more than one window if no spans are exported.
+ */
 class ThrottlingExporter implements SpanExporter {
+    private static final long NANOS_PER_SECOND = TimeUnit.SECONDS.toNanos(1);
+
     private final SpanExporter delegate;
     private final Function<SpanData, String> categoryFunction;
-    private final long windowSizeInNanos;
-    private final int maxSpansInWindow;
-    // note: no need to make this thread-safe since it will only ever be called from the
-    // BatchSpanProcessor worker thread.
+    private final Budget defaultBudget;
+    private final Map<String, Budget> budgets;
+    private final Clock clock;
+    @Nullable private final ThrottledSpanSummary summary;
+    private long summaryStartNanos;
+    // note: no need to make this thread-safe since the InFlightLimitingExporter never calls the
+    // export chain concurrently.
     // the implementation here needs to support null keys, or we'd need to use a default component
     // value.
     private final Map<String, Window> categoryToWindow = new HashMap<>();
@@ -45,8 +63,10 @@ class ThrottlingExporter implements SpanExporter {
     private ThrottlingExporter(Builder builder) {
         this.delegate = builder.delegate;
         this.categoryFunction = builder.categoryFunction;
-        this.windowSizeInNanos = builder.windowSize.toNanos();
-        this.maxSpansInWindow = builder.maxSpansInWindow;
+        this.defaultBudget = new Budget(builder.maxSpansInWindow, builder.windowSize);
+        this.budgets = new HashMap<>(builder.budgets);
+        this.clock = builder.clock;
+        this.summary = builder.summarizeDroppedSpans ? new ThrottledSpanSummary() : null;
     }
 
     static Builder newBuilder(SpanExporter delegate) {
@@ -55,68 +75,175 @@ class ThrottlingExporter implements SpanExporter {
 
     @Override
     public CompletableResultCode export(Collection<SpanData> spans) {
-        List<SpanData> spansBelowLimit = new ArrayList<>();
+        List<SpanData> spansBelowLimit = new ArrayList<>(spans.size());
         for (SpanData span : spans) {
             String category = categoryFunction.apply(span);
-            Window window = categoryToWindow.computeIfAbsent(category, k -> new Window());
-            if (!window.aboveLimit(span)) {
+            Window window = categoryToWindow.get(category);
+            if (window == null) {
+                Budget budget = budgets.get(category);
+                window = new Window(budget == null ? defaultBudget : budget);
+                categoryToWindow.put(category, window);
+            }
+            if (!window.aboveLimit(span.getEndEpochNanos())) {
                 spansBelowLimit.add(span);
+            } else if (summary != null) {
+                if (summary.isEmpty()) {
+                    summaryStartNanos = clock.nanoTime();
+                }
+                summary.add(category, span);
             }
         }
         int dropped = spans.size() - spansBelowLimit.size();
         if (dropped > 0) {
             Log.d(SplunkRum.LOG_TAG, "Dropped " + dropped + " spans because of throttling");
         }
+        if (summary != null
+                && !summary.isEmpty()
+                && clock.nanoTime() - summaryStartNanos >= defaultBudget.windowSize.toNanos()) {
+            spansBelowLimit.addAll(summary.drain());
+        }
         return delegate.export(spansBelowLimit);
     }
 
     @Override
     public CompletableResultCode flush() {
-        return delegate.flush();
+        CompletableResultCode summaryResult = exportPendingSummary();
+        return withSummaryResult(summaryResult, delegate.flush());
     }
 
     @Override
     public CompletableResultCode shutdown() {
-        return delegate.shutdown();
+        CompletableResultCode summaryResult = exportPendingSummary();
+        return withSummaryResult(summaryResult, delegate.shutdown());
     }
 
-    class Window {
-        private final Deque<Long> timestamps = new ArrayDeque<>();
-
-        // this function assumes that spans are always sorted by their end time (ascending)
-        boolean aboveLimit(SpanData spanData) {
-            long endNanos = spanData.getEndEpochNanos();
-            timestamps.addLast(endNanos);
-
-            // remove oldest entries until the window shrinks to the configured size
-            while (true) {
-                Long first = timestamps.peekFirst();
-                // this shouldn't happen, due to the single-threaded nature of things here, but
-                // just to be on the safe side, don't blow up if something has cleared out the
-                // window.
-                if (first == null) {
-                    break;
+    @Nullable
+    private CompletableResultCode exportPendingSummary() {
+        if (summary == null || summary.isEmpty()) {
+            return null;
+        }
+        return delegate.export(summary.drain());
+    }
+
+    // fails if the summary could not be exported
+    private static CompletableResultCode withSummaryResult(
+            @Nullable CompletableResultCode summaryResult, CompletableResultCode result) {
+        if (summaryResult == null) {
+            return result;
+        }
+        return CompletableResultCode.ofAll(Arrays.asList(summaryResult, result));
+    }
+
+    /** The maximum number of spans of a category that may end within a time window. */
+    static final class Budget {
+        final int maxSpansInWindow;
+        final Duration windowSize;
+
+        Budget(int maxSpansInWindow, Duration windowSize) {
+            this.maxSpansInWindow = maxSpansInWindow;
+            this.windowSize = windowSize;
+        }
+    }
+
+    /**
+     * Counts the spans accepted in each second. The ring covers twice the window, so that every
+     * window containing the second of a span that is not older than the newest span by more than
+     * the window is complete. Older spans are counted in the oldest second the ring still covers,
+     * which keeps a late burst of spans from bypassing the limit.
+     *
+     * <p>A span is accepted only if none of the windows that contain its second is full, including
+     * the windows ending after it. The count of the window ending at the newest second is kept up
+     * to date, so a span that arrives in order is checked in constant time; the windows of a late
+     * span are counted by sliding back from the newest one.
+     */
+    static final class Window {
+        private final int maxSpans;
+        private final int windowSeconds;
+        private final long[] bucketSeconds;
+        private final int[] bucketCounts;
+        private long newestSecond = Long.MIN_VALUE;
+        // the number of spans accepted in the window ending at the newest second
+        private int newestWindowCount;
+
+        Window(Budget budget) {
+            this.maxSpans = budget.maxSpansInWindow;
+            long nanos = budget.windowSize.toNanos();
+            this.windowSeconds =
+                    (int) Math.max(1, (nanos + NANOS_PER_SECOND - 1) / NANOS_PER_SECOND);
+            this.bucketSeconds = new long[2 * windowSeconds];
+            this.bucketCounts = new int[2 * windowSeconds];
+            Arrays.fill(bucketSeconds, Long.MIN_VALUE);
+        }
+
+        boolean aboveLimit(long endNanos) {
+            long second = Math.floorDiv(endNanos, NANOS_PER_SECOND);
+            if (second > newestSecond) {
+                advanceTo(second);
+            }
+            long oldestSecond = newestSecond - bucketSeconds.length + 1;
+            if (second < oldestSecond) {
+                second = oldestSecond;
+            }
+
+            // don't count spans that were throttled
+            long lastWindowEnd = Math.min(second + windowSeconds - 1, newestSecond);
+            int windowCount = newestWindowCount;
+            for (long windowEnd = newestSecond; ; windowEnd--) {
+                if (windowEnd <= lastWindowEnd && windowCount >= maxSpans) {
+                    return true;
                 }
-                if (endNanos - first < windowSizeInNanos) {
+                if (windowEnd == second) {
                     break;
                 }
-                timestamps.removeFirst();
+                windowCount += count(windowEnd - windowSeconds) - count(windowEnd);
             }
 
-            boolean aboveLimit = timestamps.size() > maxSpansInWindow;
-            // don't count spans that were throttled
-            if (aboveLimit) {
-                timestamps.removeLast();
+            int index = bucketIndex(second);
+            if (bucketSeconds[index] != second) {
+                bucketSeconds[index] = second;
+                bucketCounts[index] = 0;
+            }
+            bucketCounts[index]++;
+            if (newestSecond - second < windowSeconds) {
+                newestWindowCount++;
+            }
+            return false;
+        }
+
+        private void advanceTo(long second) {
+            if (newestSecond == Long.MIN_VALUE || second - newestSecond >= windowSeconds) {
+                newestWindowCount = 0;
+            } else {
+                for (long s = newestSecond + 1; s <= second; s++) {
+                    newestWindowCount -= count(s - windowSeconds);
+                }
+            }
+            newestSecond = second;
+        }
+
+        // the buckets of the seconds that left the ring may not have been reused yet
+        private int count(long second) {
+            int index = bucketIndex(second);
+            if (bucketSeconds[index] != second
+                    || second < newestSecond - bucketSeconds.length + 1) {
+                return 0;
             }
-            return aboveLimit;
+            return bucketCounts[index];
+        }
+
+        private int bucketIndex(long second) {
+            return (int) Math.floorMod(second, (long) bucketSeconds.length);
         }
     }
 
     static class Builder {
         final SpanExporter delegate;
+        final Map<String, Budget> budgets = new HashMap<>();
         Function<SpanData, String> categoryFunction = span -> "default";
         Duration windowSize = Duration.ofSeconds(30);
         int maxSpansInWindow = 100;
+        boolean summarizeDroppedSpans = false;
+        Clock clock = Clock.getDefault();
 
         private Builder(SpanExporter delegate) {
             this.delegate = delegate;
@@ -137,6 +264,32 @@ class ThrottlingExporter implements SpanExporter {
             return this;
         }
 
+        /**
+         * Sets the budget of a category. Categories without a budget share the limits set by
+         * {@link #maxSpansInWindow(int)} and {@link #windowSize(Duration)}.
+         */
+        Builder budget(String category, Budget budget) {
+            budgets.put(category, budget);
+            return this;
+        }
+
+        /** Sets the budgets of several categories. */
+        Builder budgets(Map<String, Budget> budgets) {
+            this.budgets.putAll(budgets);
+            return this;
+        }
+
+        /** Exports summaries of the dropped spans, once per window. */
+        Builder summarizeDroppedSpans(boolean summarizeDroppedSpans) {
+            this.summarizeDroppedSpans = summarizeDroppedSpans;
+            return this;
+        }
+
+        Builder clock(Clock clock) {
+            this.clock = clock;
+            return this;
+        }
+
         ThrottlingExporter build() {
             return new ThrottlingExporter(this);
         }
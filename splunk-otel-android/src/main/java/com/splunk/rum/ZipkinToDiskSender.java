@@ -20,8 +20,6 @@ import static java.util.Objects.requireNonNull;
 
 import android.util.Log;
 import androidx.annotation.Nullable;
-import io.opentelemetry.sdk.common.Clock;
-import java.io.File;
 import java.io.IOException;
 import java.util.List;
 import zipkin2.reporter.BytesMessageSender;
@@ -29,21 +27,21 @@ import zipkin2.reporter.Encoding;
 
 class ZipkinToDiskSender implements BytesMessageSender {
 
-    private final SpanStorage spanStorage;
-    private final FileUtils fileUtils;
-    private final Clock clock;
+    private final SpanJournal journal;
     private final DeviceSpanStorageLimiter storageLimiter;
+    private final SpanPriority priority;
+    private final Encoding encoding;
 
     private ZipkinToDiskSender(Builder builder) {
-        this.spanStorage = requireNonNull(builder.fileProvider);
-        this.fileUtils = builder.fileUtils;
-        this.clock = builder.clock;
+        this.journal = requireNonNull(builder.journal);
         this.storageLimiter = requireNonNull(builder.storageLimiter);
+        this.priority = builder.priority;
+        this.encoding = builder.encoding;
     }
 
     @Override
     public Encoding encoding() {
-        return Encoding.JSON;
+        return encoding;
     }
 
     @Override
@@ -53,9 +51,16 @@ class ZipkinToDiskSender implements BytesMessageSender {
 
     @Override
     public int messageSizeInBytes(List<byte[]> encodedSpans) {
-        return encodedSpans.stream().reduce(0, (acc, cur) -> acc + cur.length + 1, Integer::sum);
+        // json spans are stored with a separator, proto3 spans carry their own framing
+        int separatorBytes = encoding == Encoding.JSON ? 1 : 0;
+        return encodedSpans.stream()
+                .reduce(0, (acc, cur) -> acc + cur.length + separatorBytes, Integer::sum);
     }
 
+    /**
+     * Appends the spans to the journal. Throws if they can't be stored, which fails the export, so
+     * that the spans are not considered exported.
+     */
     @Override
     public void send(List<byte[]> encodedSpans) throws IOException {
         if (encodedSpans.isEmpty()) {
@@ -67,14 +72,13 @@ class ZipkinToDiskSender implements BytesMessageSender {
                     "Dropping "
                             + encodedSpans.size()
                             + " spans: Too much telemetry has been buffered or not enough space on device.");
-            return;
+            throw new IOException("Not enough space to store spans");
         }
-        long now = clock.now();
-        File filename = createFilename(now);
         try {
-            fileUtils.writeAsLines(filename, encodedSpans);
+            journal.append(priority, encodedSpans);
         } catch (IOException e) {
             Log.e(SplunkRum.LOG_TAG, "Error writing spans to storage", e);
+            throw e;
         }
     }
 
@@ -83,40 +87,40 @@ class ZipkinToDiskSender implements BytesMessageSender {
         return encoding().listSizeInBytes(encodedSizeInBytes);
     }
 
-    private File createFilename(long now) {
-        return new File(spanStorage.provideSpansDirectory(), now + ".spans");
-    }
-
     static Builder builder() {
         return new Builder();
     }
 
     @Override
-    public void close() throws IOException {}
+    public void close() throws IOException {
+        journal.seal();
+    }
 
     static class Builder {
-        @Nullable private SpanStorage fileProvider;
-        private FileUtils fileUtils = new FileUtils();
-        private Clock clock = Clock.getDefault();
+        @Nullable private SpanJournal journal;
         @Nullable private DeviceSpanStorageLimiter storageLimiter;
+        private SpanPriority priority = SpanPriority.UI;
+        private Encoding encoding = Encoding.JSON;
 
-        Builder spanFileProvider(SpanStorage spanStorage) {
-            this.fileProvider = spanStorage;
+        Builder journal(SpanJournal journal) {
+            this.journal = journal;
             return this;
         }
 
-        Builder fileUtils(FileUtils fileUtils) {
-            this.fileUtils = fileUtils;
+        Builder storageLimiter(DeviceSpanStorageLimiter limiter) {
+            this.storageLimiter = limiter;
             return this;
         }
 
-        Builder clock(Clock clock) {
-            this.clock = clock;
+        /** Sets the priority class of the spans sent through this sender. */
+        Builder priority(SpanPriority priority) {
+            this.priority = priority;
             return this;
         }
 
-        Builder storageLimiter(DeviceSpanStorageLimiter limiter) {
-            this.storageLimiter = limiter;
+        /** Sets the encoding of the spans sent through this sender. */
+        Builder encoding(Encoding encoding) {
+            this.encoding = encoding;
             return this;
         }
 
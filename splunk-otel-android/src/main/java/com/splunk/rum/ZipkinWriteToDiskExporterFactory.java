@@ -17,32 +17,44 @@
 package com.splunk.rum;
 
 import io.opentelemetry.exporter.zipkin.ZipkinSpanExporter;
+import io.opentelemetry.sdk.trace.export.SpanExporter;
 import zipkin2.reporter.BytesMessageSender;
+import zipkin2.reporter.Encoding;
 
 /**
- * Creates a ZipkinSpanExporter that is configured with an instance of a ZipkinToDiskSender that
- * writes telemetry to disk.
+ * Creates an exporter that writes telemetry to disk. Spans are split by priority class, and each
+ * class gets a ZipkinSpanExporter that is configured with its own ZipkinToDiskSender. Spans are
+ * encoded as JSON, or as {@code proto3} when the binary format is enabled.
  */
 class ZipkinWriteToDiskExporterFactory {
 
     private ZipkinWriteToDiskExporterFactory() {}
 
-    static ZipkinSpanExporter create(int maxUsageMegabytes, SpanStorage spanStorage) {
-        FileUtils fileUtils = new FileUtils();
+    static SpanExporter create(
+            int maxUsageMegabytes, SpanStorage spanStorage, SpanJournal journal, boolean binary) {
         DeviceSpanStorageLimiter limiter =
                 DeviceSpanStorageLimiter.builder()
-                        .fileUtils(fileUtils)
                         .fileProvider(spanStorage)
                         .maxStorageUseMb(maxUsageMegabytes)
                         .build();
+        return new PriorityPartitioningExporter(
+                priority -> createForPriority(priority, limiter, journal, binary));
+    }
+
+    private static ZipkinSpanExporter createForPriority(
+            SpanPriority priority,
+            DeviceSpanStorageLimiter limiter,
+            SpanJournal journal,
+            boolean binary) {
         BytesMessageSender sender =
                 ZipkinToDiskSender.builder()
-                        .spanFileProvider(spanStorage)
-                        .fileUtils(fileUtils)
+                        .journal(journal)
                         .storageLimiter(limiter)
+                        .priority(priority)
+                        .encoding(binary ? Encoding.PROTO3 : Encoding.JSON)
                         .build();
         return ZipkinSpanExporter.builder()
-                .setEncoder(new CustomZipkinEncoder())
+                .setEncoder(binary ? new CustomZipkinProto3Encoder() : new CustomZipkinEncoder())
                 .setSender(sender)
                 // remove the local IP address
                 .setLocalIpAddressSupplier(() -> null)
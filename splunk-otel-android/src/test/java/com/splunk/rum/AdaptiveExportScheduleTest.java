@@ -0,0 +1,100 @@
+/*
+ * Copyright Splunk Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.splunk.rum;
+
+import static com.splunk.rum.AdaptiveExportSchedule.settingsFor;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.when;
+
+import io.opentelemetry.android.instrumentation.activity.VisibleScreenTracker;
+import io.opentelemetry.android.instrumentation.network.CurrentNetwork;
+import io.opentelemetry.android.instrumentation.network.CurrentNetworkProvider;
+import io.opentelemetry.android.instrumentation.network.NetworkState;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+@ExtendWith(MockitoExtension.class)
+class AdaptiveExportScheduleTest {
+
+    @Mock private VisibleScreenTracker visibleScreenTracker;
+    @Mock private CurrentNetworkProvider currentNetworkProvider;
+    @Mock private CurrentNetwork currentNetwork;
+    @Mock private BatteryMonitor batteryMonitor;
+
+    @Test
+    void exportsPromptlyInTheForegroundOnUnmeteredNetworks() {
+        assertThat(settingsFor(true, true, NetworkState.TRANSPORT_WIFI, null, false))
+                .isSameAs(AdaptiveExportSchedule.FOREGROUND_UNMETERED);
+        assertThat(settingsFor(true, true, NetworkState.TRANSPORT_WIRED, null, false))
+                .isSameAs(AdaptiveExportSchedule.FOREGROUND_UNMETERED);
+    }
+
+    @Test
+    void batchesMoreOnCellularNetworks() {
+        assertThat(settingsFor(true, true, NetworkState.TRANSPORT_CELLULAR, "LTE", false))
+                .isSameAs(AdaptiveExportSchedule.FOREGROUND_METERED);
+        assertThat(settingsFor(true, true, NetworkState.TRANSPORT_CELLULAR, "EDGE", false))
+                .isSameAs(AdaptiveExportSchedule.BACKGROUND);
+    }
+
+    @Test
+    void batchesMostInTheBackgroundAndOffline() {
+        assertThat(settingsFor(false, true, NetworkState.TRANSPORT_WIFI, null, false))
+                .isSameAs(AdaptiveExportSchedule.BACKGROUND);
+        assertThat(settingsFor(true, false, NetworkState.NO_NETWORK_AVAILABLE, null, false))
+                .isSameAs(AdaptiveExportSchedule.OFFLINE);
+    }
+
+    @Test
+    void doublesTheDelayWhenTheBatteryIsConstrained() {
+        AdaptiveExportSchedule.Settings settings =
+                settingsFor(true, true, NetworkState.TRANSPORT_WIFI, null, true);
+
+        assertThat(settings.delayNanos)
+                .isEqualTo(2 * AdaptiveExportSchedule.FOREGROUND_UNMETERED.delayNanos);
+        assertThat(settings.maxBatchSize)
+                .isEqualTo(AdaptiveExportSchedule.FOREGROUND_UNMETERED.maxBatchSize);
+    }
+
+    @Test
+    void readsTheCurrentState() {
+        when(currentNetworkProvider.getCurrentNetwork()).thenReturn(currentNetwork);
+        when(currentNetwork.isOnline()).thenReturn(true);
+        when(currentNetwork.getState()).thenReturn(NetworkState.TRANSPORT_WIFI);
+        AdaptiveExportSchedule schedule =
+                new AdaptiveExportSchedule(
+                        visibleScreenTracker, currentNetworkProvider, batteryMonitor);
+
+        assertThat(schedule.current(true)).isSameAs(AdaptiveExportSchedule.FOREGROUND_UNMETERED);
+        assertThat(schedule.current(false)).isSameAs(AdaptiveExportSchedule.BACKGROUND);
+    }
+
+    @Test
+    void isInTheForegroundWhileAScreenIsVisible() {
+        AdaptiveExportSchedule schedule =
+                new AdaptiveExportSchedule(
+                        visibleScreenTracker, currentNetworkProvider, batteryMonitor);
+
+        when(visibleScreenTracker.getCurrentlyVisibleScreen()).thenReturn("MainActivity");
+        assertThat(schedule.isForeground()).isTrue();
+
+        when(visibleScreenTracker.getCurrentlyVisibleScreen()).thenReturn("unknown");
+        assertThat(schedule.isForeground()).isFalse();
+    }
+}
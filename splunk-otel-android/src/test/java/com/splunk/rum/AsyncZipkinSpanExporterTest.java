@@ -0,0 +1,137 @@
+/*
+ * Copyright Splunk Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.splunk.rum;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import io.opentelemetry.api.trace.SpanKind;
+import io.opentelemetry.exporter.zipkin.ZipkinSpanExporter;
+import io.opentelemetry.sdk.common.CompletableResultCode;
+import io.opentelemetry.sdk.testing.trace.TestSpanData;
+import io.opentelemetry.sdk.trace.data.SpanData;
+import io.opentelemetry.sdk.trace.data.StatusData;
+import java.util.Collections;
+import java.util.List;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Captor;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+@ExtendWith(MockitoExtension.class)
+class AsyncZipkinSpanExporterTest {
+
+    @Mock private StreamingZipkinSender sender;
+    @Captor private ArgumentCaptor<List<byte[]>> encodedSpans;
+
+    private AsyncZipkinSpanExporter underTest;
+
+    @BeforeEach
+    void setUp() {
+        underTest =
+                new AsyncZipkinSpanExporter(
+                        ZipkinSpanExporter.builder()
+                                .setEncoder(new CustomZipkinEncoder())
+                                .setLocalIpAddressSupplier(() -> null),
+                        sender);
+    }
+
+    @Test
+    void returnsTheResultOfTheAsyncSend() {
+        CompletableResultCode pending = new CompletableResultCode();
+        when(sender.sendAsync(any())).thenReturn(pending);
+
+        CompletableResultCode result = underTest.export(Collections.singletonList(span()));
+
+        assertThat(result).isSameAs(pending);
+        verify(sender).sendAsync(encodedSpans.capture());
+        assertThat(encodedSpans.getValue()).hasSize(1);
+        assertThat(new String(encodedSpans.getValue().get(0), UTF_8))
+                .contains("\"name\":\"myspan\"");
+    }
+
+    @Test
+    void encodesEachBatchSeparately() {
+        when(sender.sendAsync(any())).thenReturn(CompletableResultCode.ofSuccess());
+
+        underTest.export(Collections.singletonList(span()));
+        underTest.export(Collections.singletonList(span()));
+
+        verify(sender, times(2)).sendAsync(encodedSpans.capture());
+        assertThat(encodedSpans.getAllValues()).allSatisfy(spans -> assertThat(spans).hasSize(1));
+    }
+
+    @Test
+    void flushWaitsForTheRequestsInFlight() {
+        CompletableResultCode first = new CompletableResultCode();
+        CompletableResultCode second = new CompletableResultCode();
+        when(sender.sendAsync(any())).thenReturn(first, second);
+        underTest.export(Collections.singletonList(span()));
+        underTest.export(Collections.singletonList(span()));
+
+        CompletableResultCode flushed = underTest.flush();
+        first.succeed();
+        assertThat(flushed.isDone()).isFalse();
+
+        second.succeed();
+        assertThat(flushed.isSuccess()).isTrue();
+        assertThat(underTest.flush().isSuccess()).isTrue();
+    }
+
+    @Test
+    void shutdownWaitsForTheRequestsInFlight() {
+        CompletableResultCode pending = new CompletableResultCode();
+        when(sender.sendAsync(any())).thenReturn(pending);
+        underTest.export(Collections.singletonList(span()));
+
+        CompletableResultCode shutDown = underTest.shutdown();
+        assertThat(shutDown.isDone()).isFalse();
+
+        pending.fail();
+        assertThat(shutDown.isDone()).isTrue();
+        assertThat(shutDown.isSuccess()).isFalse();
+    }
+
+    @Test
+    void doesNotSendAfterShutdown() {
+        underTest.shutdown();
+
+        CompletableResultCode result = underTest.export(Collections.singletonList(span()));
+
+        assertThat(result.isSuccess()).isFalse();
+        verify(sender, never()).sendAsync(any());
+    }
+
+    private static SpanData span() {
+        return TestSpanData.builder()
+                .setName("MySpan")
+                .setKind(SpanKind.INTERNAL)
+                .setStatus(StatusData.unset())
+                .setHasEnded(true)
+                .setStartEpochNanos(0)
+                .setEndEpochNanos(1)
+                .build();
+    }
+}
@@ -0,0 +1,124 @@
+/*
+ * Copyright Splunk Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.splunk.rum;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.Mockito.when;
+
+import io.opentelemetry.android.instrumentation.network.NetworkState;
+import io.opentelemetry.sdk.common.Clock;
+import java.util.concurrent.TimeUnit;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+@ExtendWith(MockitoExtension.class)
+class BandwidthLimiterTest {
+
+    private static final BandwidthLimiter.Budget CELLULAR_BUDGET =
+            new BandwidthLimiter.Budget(100, 1000);
+
+    @Mock private Clock clock;
+
+    private long nowNanos;
+
+    @BeforeEach
+    void setup() {
+        nowNanos = 0;
+        when(clock.nanoTime()).thenAnswer(invocation -> nowNanos);
+    }
+
+    @Test
+    void startsWithFullBurst() {
+        BandwidthLimiter limiter = cellularLimiter();
+
+        limiter.consume(999);
+        assertTrue(limiter.hasCapacity());
+        limiter.consume(1);
+        assertFalse(limiter.hasCapacity());
+    }
+
+    @Test
+    void refillsAtBudgetRate() {
+        BandwidthLimiter limiter = cellularLimiter();
+        limiter.consume(1000 + 250);
+        assertFalse(limiter.hasCapacity());
+        assertEquals(2501, limiter.getMillisUntilCapacity());
+
+        advanceMillis(2000);
+        assertFalse(limiter.hasCapacity());
+        assertEquals(501, limiter.getMillisUntilCapacity());
+
+        advanceMillis(501);
+        assertTrue(limiter.hasCapacity());
+        assertEquals(0, limiter.getMillisUntilCapacity());
+    }
+
+    @Test
+    void refillIsCappedAtBurst() {
+        BandwidthLimiter limiter = cellularLimiter();
+        advanceMillis(TimeUnit.HOURS.toMillis(1));
+
+        limiter.consume(1000);
+        assertFalse(limiter.hasCapacity());
+    }
+
+    @Test
+    void switchingNetworksCapsToNewBurst() {
+        BandwidthLimiter limiter =
+                BandwidthLimiter.builder()
+                        .clock(clock)
+                        .budget(NetworkState.TRANSPORT_CELLULAR, CELLULAR_BUDGET)
+                        .build();
+        limiter.setNetworkState(NetworkState.TRANSPORT_WIFI);
+        limiter.consume(BandwidthLimiter.UNMETERED_BUDGET.burstBytes - 5000);
+
+        limiter.setNetworkState(NetworkState.TRANSPORT_CELLULAR);
+        limiter.consume(1000);
+        assertFalse(limiter.hasCapacity());
+    }
+
+    @Test
+    void unknownNetworksUseDefaultBudget() {
+        BandwidthLimiter limiter = BandwidthLimiter.builder().clock(clock).build();
+        limiter.setNetworkState(NetworkState.TRANSPORT_UNKNOWN);
+
+        BandwidthLimiter.Budget budget = BandwidthLimiter.DEFAULT_BUDGET;
+        // a second's worth of debt
+        limiter.consume(budget.burstBytes + budget.bytesPerSecond);
+        assertFalse(limiter.hasCapacity());
+        assertEquals(1001, limiter.getMillisUntilCapacity());
+    }
+
+    private BandwidthLimiter cellularLimiter() {
+        BandwidthLimiter limiter =
+                BandwidthLimiter.builder()
+                        .clock(clock)
+                        .budget(NetworkState.TRANSPORT_CELLULAR, CELLULAR_BUDGET)
+                        .build();
+        limiter.setNetworkState(NetworkState.TRANSPORT_CELLULAR);
+        return limiter;
+    }
+
+    private void advanceMillis(long millis) {
+        nowNanos += TimeUnit.MILLISECONDS.toNanos(millis);
+    }
+}
@@ -0,0 +1,105 @@
+/*
+ * Copyright Splunk Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.splunk.rum;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.ArgumentMatchers.isNull;
+import static org.mockito.Mockito.lenient;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import android.content.Context;
+import android.content.Intent;
+import android.os.BatteryManager;
+import android.os.PowerManager;
+import io.opentelemetry.sdk.common.Clock;
+import java.util.concurrent.TimeUnit;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+@ExtendWith(MockitoExtension.class)
+class BatteryMonitorTest {
+
+    @Mock private Context context;
+    @Mock private PowerManager powerManager;
+    @Mock private Intent battery;
+    @Mock private Clock clock;
+
+    private BatteryMonitor underTest;
+
+    @BeforeEach
+    void setUp() {
+        lenient().when(context.getSystemService(Context.POWER_SERVICE)).thenReturn(powerManager);
+        lenient().when(context.registerReceiver(isNull(), any())).thenReturn(battery);
+        underTest = new BatteryMonitor(context, clock);
+    }
+
+    @Test
+    void constrainedInBatterySaver() {
+        when(powerManager.isPowerSaveMode()).thenReturn(true);
+
+        assertThat(underTest.isConstrained()).isTrue();
+    }
+
+    @Test
+    void constrainedWhenLowAndDischarging() {
+        givenBattery(BatteryManager.BATTERY_STATUS_DISCHARGING, 10);
+
+        assertThat(underTest.isConstrained()).isTrue();
+    }
+
+    @Test
+    void notConstrainedWhenLowAndCharging() {
+        when(battery.getIntExtra(BatteryManager.EXTRA_STATUS, -1))
+                .thenReturn(BatteryManager.BATTERY_STATUS_CHARGING);
+
+        assertThat(underTest.isConstrained()).isFalse();
+    }
+
+    @Test
+    void notConstrainedWhenCharged() {
+        givenBattery(BatteryManager.BATTERY_STATUS_DISCHARGING, 80);
+
+        assertThat(underTest.isConstrained()).isFalse();
+    }
+
+    @Test
+    void refreshesAtMostOnceAMinute() {
+        givenBattery(BatteryManager.BATTERY_STATUS_DISCHARGING, 80);
+        when(clock.nanoTime())
+                .thenReturn(0L, TimeUnit.SECONDS.toNanos(59), TimeUnit.MINUTES.toNanos(1));
+
+        underTest.isConstrained();
+        underTest.isConstrained();
+        verify(context, times(1)).registerReceiver(isNull(), any());
+
+        underTest.isConstrained();
+        verify(context, times(2)).registerReceiver(isNull(), any());
+    }
+
+    private void givenBattery(int status, int percent) {
+        when(battery.getIntExtra(BatteryManager.EXTRA_STATUS, -1)).thenReturn(status);
+        when(battery.getIntExtra(BatteryManager.EXTRA_LEVEL, -1)).thenReturn(percent);
+        when(battery.getIntExtra(eq(BatteryManager.EXTRA_SCALE), eq(-1))).thenReturn(100);
+    }
+}
@@ -0,0 +1,137 @@
+/*
+ * Copyright Splunk Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.splunk.rum;
+
+import static com.splunk.rum.SplunkRum.COMPONENT_ERROR;
+import static com.splunk.rum.SplunkRum.COMPONENT_KEY;
+import static org.assertj.core.api.Assertions.assertThat;
+
+import io.opentelemetry.api.common.Attributes;
+import io.opentelemetry.api.trace.SpanKind;
+import io.opentelemetry.sdk.testing.trace.TestSpanData;
+import io.opentelemetry.sdk.trace.data.SpanData;
+import io.opentelemetry.sdk.trace.data.StatusData;
+import java.util.Arrays;
+import org.junit.jupiter.api.Test;
+
+class BoundedSpanQueueTest {
+
+    private final DroppedSpanCounter droppedSpanCounter = new DroppedSpanCounter();
+
+    @Test
+    void drainsInOrderAcrossPriorities() {
+        BoundedSpanQueue queue = queue(Long.MAX_VALUE, MemoryBufferEvictionPolicy.OLDEST_FIRST);
+        SpanData first = span("first", "ui");
+        SpanData second = span("second", COMPONENT_ERROR);
+        SpanData third = span("third", "http");
+        SpanData fourth = span("fourth", "ui");
+
+        queue.addAll(Arrays.asList(first, second, third, fourth));
+
+        assertThat(queue.size()).isEqualTo(4);
+        assertThat(queue.drain()).containsExactly(first, second, third, fourth);
+        assertThat(queue.isEmpty()).isTrue();
+        assertThat(queue.estimatedBytes()).isZero();
+    }
+
+    @Test
+    void evictsOldestFirst() {
+        SpanData first = span("first", COMPONENT_ERROR);
+        SpanData second = span("second", "ui");
+        SpanData third = span("third", "http");
+        SpanData fourth = span("fourth", "ui");
+        BoundedSpanQueue queue =
+                queue(bytes(second, third, fourth), MemoryBufferEvictionPolicy.OLDEST_FIRST);
+
+        queue.addAll(Arrays.asList(first, second, third, fourth));
+
+        assertThat(queue.drain()).containsExactly(second, third, fourth);
+        assertThat(droppedSpanCounter.get()).isEqualTo(1);
+    }
+
+    @Test
+    void evictsLowestPriorityFirst() {
+        SpanData first = span("first", COMPONENT_ERROR);
+        SpanData second = span("second", "ui");
+        SpanData third = span("third", "http");
+        SpanData fourth = span("fourth", COMPONENT_ERROR);
+        BoundedSpanQueue queue =
+                queue(
+                        bytes(first, third, fourth),
+                        MemoryBufferEvictionPolicy.LOWEST_PRIORITY_FIRST);
+
+        queue.addAll(Arrays.asList(first, second, third, fourth));
+
+        assertThat(queue.drain()).containsExactly(first, third, fourth);
+        assertThat(droppedSpanCounter.get()).isEqualTo(1);
+        assertThat(droppedSpanCounter.get(SpanPriority.UI)).isEqualTo(1);
+        assertThat(droppedSpanCounter.get(SpanPriority.ERROR)).isZero();
+    }
+
+    @Test
+    void dropsSpanLargerThanLimit() {
+        SpanData small = span("small", "ui");
+        SpanData large = span("a much larger span", "ui");
+        BoundedSpanQueue queue = queue(bytes(small), MemoryBufferEvictionPolicy.OLDEST_FIRST);
+
+        queue.add(small);
+        queue.add(large);
+
+        assertThat(queue.drain()).containsExactly(small);
+        assertThat(droppedSpanCounter.get()).isEqualTo(1);
+    }
+
+    @Test
+    void tracksEstimatedBytes() {
+        SpanData first = span("first", "ui");
+        SpanData second = span("second", "http");
+        BoundedSpanQueue queue = queue(Long.MAX_VALUE, MemoryBufferEvictionPolicy.OLDEST_FIRST);
+
+        queue.add(first);
+        queue.add(second);
+        assertThat(queue.estimatedBytes()).isEqualTo(bytes(first, second));
+
+        queue.clear();
+        assertThat(queue.isEmpty()).isTrue();
+        assertThat(queue.estimatedBytes()).isZero();
+        assertThat(droppedSpanCounter.get()).isZero();
+    }
+
+    private BoundedSpanQueue queue(long maxBytes, MemoryBufferEvictionPolicy evictionPolicy) {
+        return new BoundedSpanQueue(maxBytes, evictionPolicy, droppedSpanCounter);
+    }
+
+    private static long bytes(SpanData... spans) {
+        long bytes = 0;
+        for (SpanData span : spans) {
+            bytes += SpanSizeEstimator.estimateRetainedBytes(span);
+        }
+        return bytes;
+    }
+
+    private static SpanData span(String name, String component) {
+        return TestSpanData.builder()
+                .setName(name)
+                .setKind(SpanKind.INTERNAL)
+                .setStatus(StatusData.unset())
+                .setStartEpochNanos(0)
+                .setEndEpochNanos(1)
+                .setHasEnded(true)
+                .setAttributes(Attributes.of(COMPONENT_KEY, component))
+                .build();
+    }
+}
@@ -16,18 +16,25 @@
 
 package com.splunk.rum;
 
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
 import static org.junit.jupiter.api.Assertions.assertEquals;
 
 import io.opentelemetry.api.trace.SpanId;
 import io.opentelemetry.api.trace.TraceId;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.HashSet;
 import org.junit.jupiter.api.Test;
+import zipkin2.Endpoint;
 import zipkin2.Span;
+import zipkin2.codec.SpanBytesEncoder;
 
 class CustomZipkinEncoderTest {
 
+    private final CustomZipkinEncoder encoder = new CustomZipkinEncoder();
+
     @Test
     void nameReplacement() {
-        CustomZipkinEncoder encoder = new CustomZipkinEncoder();
         Span span =
                 Span.newBuilder()
                         .name("lowercase")
@@ -36,10 +43,67 @@ class CustomZipkinEncoderTest {
                         .putTag(SplunkSpanDataModifier.SPLUNK_OPERATION_KEY.getKey(), "UpperCase")
                         .build();
         byte[] bytes = encoder.encode(span);
-        // this assertion verifies that we changed the name
+        // this assertion verifies that we changed the name, and dropped the tag carrying it
         assertEquals(
-                "{\"traceId\":\"00000000000000010000000000000002\",\"id\":\"0000000000000001\",\"name\":\"UpperCase\",\"tags\":{\"_splunk_operation\":\"UpperCase\"}}",
-                new String(bytes));
+                "{\"traceId\":\"00000000000000010000000000000002\",\"id\":\"0000000000000001\",\"name\":\"UpperCase\"}",
+                new String(bytes, StandardCharsets.UTF_8));
+        assertEquals(bytes.length, encoder.sizeInBytes(span));
+    }
+
+    @Test
+    void constantTagsMatchZipkinEncoding() {
+        CustomZipkinEncoder encoder =
+                new CustomZipkinEncoder(new HashSet<>(Arrays.asList("os.name", "os.version")));
+        Span span =
+                Span.newBuilder()
+                        .traceId(TraceId.fromLongs(1, 2))
+                        .id(SpanId.fromLong(1))
+                        .name("span")
+                        .putTag("component", "ui")
+                        .putTag("os.name", "Andr\u00f6id \"\u2028\"")
+                        .putTag("os.version", "14")
+                        .putTag("screen.name", "MainActivity")
+                        .build();
+        Span updated = span.toBuilder().putTag("os.version", "15").build();
+
+        // the second encoding reuses the encoded tags of the first one
+        for (Span s : Arrays.asList(span, span, updated)) {
+            byte[] bytes = encoder.encode(s);
+            assertArrayEquals(SpanBytesEncoder.JSON_V2.encode(s), bytes);
+            assertEquals(bytes.length, encoder.sizeInBytes(s));
+        }
+    }
+
+    @Test
+    void otherwiseMatchesZipkinEncoding() {
+        Span span =
+                Span.newBuilder()
+                        .traceId(TraceId.fromLongs(1, 2))
+                        .parentId(SpanId.fromLong(2))
+                        .id(SpanId.fromLong(3))
+                        .kind(Span.Kind.CLIENT)
+                        .name("get /p\u00e4th")
+                        .timestamp(1_700_000_000_000_000L)
+                        .duration(1234)
+                        .localEndpoint(Endpoint.newBuilder().serviceName("my-app").build())
+                        .remoteEndpoint(
+                                Endpoint.newBuilder()
+                                        .serviceName("backend")
+                                        .ip("10.1.2.3")
+                                        .port(8080)
+                                        .build())
+                        .addAnnotation(1_700_000_000_000_001L, "\"quoted\" \\ \n\t\u0001")
+                        .putTag(
+                                "http.url",
+                                "https://example.com/\u00fcn\u00efc\u00f6d\u00e9/\ud83d\ude00")
+                        .putTag("line", "a\u2028b")
+                        .debug(true)
+                        .shared(true)
+                        .build();
+
+        byte[] bytes = encoder.encode(span);
+
+        assertArrayEquals(SpanBytesEncoder.JSON_V2.encode(span), bytes);
         assertEquals(bytes.length, encoder.sizeInBytes(span));
     }
 }
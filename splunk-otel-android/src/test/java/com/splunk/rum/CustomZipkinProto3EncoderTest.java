@@ -0,0 +1,104 @@
+/*
+ * Copyright Splunk Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.splunk.rum;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import io.opentelemetry.api.trace.SpanId;
+import io.opentelemetry.api.trace.TraceId;
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import org.junit.jupiter.api.Test;
+import zipkin2.Endpoint;
+import zipkin2.Span;
+import zipkin2.codec.SpanBytesDecoder;
+import zipkin2.codec.SpanBytesEncoder;
+
+class CustomZipkinProto3EncoderTest {
+
+    private final CustomZipkinProto3Encoder encoder = new CustomZipkinProto3Encoder();
+
+    @Test
+    void nameReplacement() {
+        Span span =
+                Span.newBuilder()
+                        .name("lowercase")
+                        .traceId(TraceId.fromLongs(1, 2))
+                        .id(SpanId.fromLong(1))
+                        .putTag(SplunkSpanDataModifier.SPLUNK_OPERATION_KEY.getKey(), "UpperCase")
+                        .putTag("other", "value")
+                        .build();
+        byte[] bytes = encoder.encode(span);
+
+        assertThat(new String(bytes, StandardCharsets.UTF_8))
+                .contains("UpperCase")
+                .doesNotContain(SplunkSpanDataModifier.SPLUNK_OPERATION_KEY.getKey());
+        // the zipkin decoder lowercases the name again
+        Span decoded = SpanBytesDecoder.PROTO3.decodeOne(bytes);
+        assertEquals(
+                span.toBuilder().clearTags().putTag("other", "value").name("uppercase").build(),
+                decoded);
+        assertEquals(bytes.length, encoder.sizeInBytes(span));
+    }
+
+    @Test
+    void otherwiseMatchesZipkinEncoding() {
+        Span span =
+                Span.newBuilder()
+                        .traceId(TraceId.fromLongs(1, 2))
+                        .parentId(SpanId.fromLong(2))
+                        .id(SpanId.fromLong(3))
+                        .kind(Span.Kind.CLIENT)
+                        .name("get /p\u00e4th")
+                        .timestamp(1_700_000_000_000_000L)
+                        .duration(1234)
+                        .localEndpoint(Endpoint.newBuilder().serviceName("my-app").build())
+                        .remoteEndpoint(
+                                Endpoint.newBuilder()
+                                        .serviceName("backend")
+                                        .ip("2001:db8::c001")
+                                        .port(8080)
+                                        .build())
+                        .addAnnotation(1_700_000_000_000_001L, "event")
+                        .putTag("http.url", "https://example.com/\ud83d\ude00")
+                        .debug(true)
+                        .shared(true)
+                        .build();
+
+        byte[] bytes = encoder.encode(span);
+
+        assertArrayEquals(SpanBytesEncoder.PROTO3.encode(span), bytes);
+        assertEquals(bytes.length, encoder.sizeInBytes(span));
+    }
+
+    @Test
+    void encodedSpansConcatenateToListOfSpans() throws Exception {
+        Span first = Span.newBuilder().traceId(TraceId.fromLongs(1, 2)).id("1").build();
+        Span second =
+                Span.newBuilder().traceId(TraceId.fromLongs(1, 2)).id("2").name("second").build();
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        out.write(encoder.encode(first));
+        out.write(encoder.encode(second));
+        List<Span> decoded = SpanBytesDecoder.PROTO3.decodeList(out.toByteArray());
+
+        assertThat(decoded).containsExactly(first, second);
+    }
+}
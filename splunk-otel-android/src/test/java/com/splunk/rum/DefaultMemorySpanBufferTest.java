@@ -17,9 +17,11 @@
 package com.splunk.rum;
 
 import static org.junit.jupiter.api.Assertions.assertTrue;
-import static org.mockito.Mockito.mock;
 
+import io.opentelemetry.api.trace.SpanKind;
+import io.opentelemetry.sdk.testing.trace.TestSpanData;
 import io.opentelemetry.sdk.trace.data.SpanData;
+import io.opentelemetry.sdk.trace.data.StatusData;
 import java.util.ArrayList;
 import java.util.List;
 import org.junit.jupiter.api.Test;
@@ -32,7 +34,7 @@ class DefaultMemorySpanBufferTest {
     void fillFromBacklog_shouldEmptiesBacklog() {
         List<SpanData> spans = new ArrayList<>();
         for (int i = 0; i < 20; i++) {
-            spans.add(mock(SpanData.class));
+            spans.add(span());
         }
 
         backlogProvider.addAll(spans);
@@ -40,4 +42,15 @@ class DefaultMemorySpanBufferTest {
 
         assertTrue(backlogProvider.isEmpty());
     }
+
+    private static SpanData span() {
+        return TestSpanData.builder()
+                .setName("span")
+                .setKind(SpanKind.INTERNAL)
+                .setStatus(StatusData.unset())
+                .setStartEpochNanos(0)
+                .setEndEpochNanos(1)
+                .setHasEnded(true)
+                .build();
+    }
 }
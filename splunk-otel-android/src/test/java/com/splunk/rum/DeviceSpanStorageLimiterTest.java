@@ -20,6 +20,7 @@ import static org.junit.jupiter.api.Assertions.assertFalse;
 import static org.junit.jupiter.api.Assertions.assertTrue;
 import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.ArgumentMatchers.isA;
+import static org.mockito.Mockito.inOrder;
 import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.verify;
@@ -30,6 +31,7 @@ import java.util.stream.Stream;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InOrder;
 import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
 
@@ -38,7 +40,6 @@ class DeviceSpanStorageLimiterTest {
 
     private static final int MAX_STORAGE_USE_MB = 3;
     private static final long MAX_STORAGE_USE_BYTES = MAX_STORAGE_USE_MB * 1024 * 1024;
-    @Mock private FileUtils fileUtils;
     @Mock private SpanStorage spanStorage;
     private DeviceSpanStorageLimiter limiter;
 
@@ -46,7 +47,6 @@ class DeviceSpanStorageLimiterTest {
     void setup() {
         limiter =
                 DeviceSpanStorageLimiter.builder()
-                        .fileUtils(fileUtils)
                         .fileProvider(spanStorage)
                         .maxStorageUseMb(MAX_STORAGE_USE_MB)
                         .build();
@@ -59,7 +59,7 @@ class DeviceSpanStorageLimiterTest {
         when(spanStorage.provideSpansDirectory()).thenReturn(mockFile);
         when(mockFile.getFreeSpace()).thenReturn(99L); // Disk is very full
         assertFalse(limiter.ensureFreeSpace());
-        verify(fileUtils, never()).safeDelete(any());
+        verify(spanStorage, never()).delete(any());
     }
 
     @Test
@@ -69,7 +69,7 @@ class DeviceSpanStorageLimiterTest {
         when(spanStorage.provideSpansDirectory()).thenReturn(mockFile);
         when(mockFile.getFreeSpace()).thenReturn(MAX_STORAGE_USE_BYTES * 99); // lots of room
         assertTrue(limiter.ensureFreeSpace());
-        verify(fileUtils, never()).safeDelete(any());
+        verify(spanStorage, never()).delete(any());
     }
 
     @Test
@@ -81,7 +81,7 @@ class DeviceSpanStorageLimiterTest {
         when(mockFile.getFreeSpace()).thenReturn(MAX_STORAGE_USE_BYTES + 1);
         boolean result = limiter.ensureFreeSpace();
         assertTrue(result);
-        verify(fileUtils, never()).safeDelete(any());
+        verify(spanStorage, never()).delete(any());
     }
 
     @Test
@@ -93,17 +93,55 @@ class DeviceSpanStorageLimiterTest {
         File mockFile = mock(File.class);
         when(spanStorage.provideSpansDirectory()).thenReturn(mockFile);
         when(spanStorage.getTotalFileSizeInBytes()).thenReturn(MAX_STORAGE_USE_BYTES + 1);
-        when(fileUtils.getModificationTime(file1)).thenReturn(1000L);
-        when(fileUtils.getModificationTime(file2)).thenReturn(1001L);
-        when(fileUtils.getModificationTime(file3)).thenReturn(1002L);
-        when(fileUtils.getFileSize(isA(File.class))).thenReturn(1L);
-        when(spanStorage.getAllSpanFiles()).thenReturn(Stream.of(file3, file1, file2));
+        when(spanStorage.delete(isA(File.class))).thenReturn(1L);
+        when(spanStorage.getAllSpanFiles()).thenReturn(Stream.of(file1, file2, file3));
         when(mockFile.getFreeSpace()).thenReturn(MAX_STORAGE_USE_BYTES + 1);
         boolean result = limiter.ensureFreeSpace();
 
-        verify(fileUtils).safeDelete(file1);
-        verify(fileUtils).safeDelete(file2);
-        verify(fileUtils, never()).safeDelete(file3);
+        verify(spanStorage).delete(file1);
+        verify(spanStorage).delete(file2);
+        verify(spanStorage, never()).delete(file3);
+        assertTrue(result);
+    }
+
+    @Test
+    void ensureFreeSpace_overLimitSkipsActiveSegments() {
+        File active = new File("100.spans.part");
+        File sealed = new File("200.spans");
+
+        File mockFile = mock(File.class);
+        when(spanStorage.provideSpansDirectory()).thenReturn(mockFile);
+        when(spanStorage.getTotalFileSizeInBytes()).thenReturn(MAX_STORAGE_USE_BYTES + 1);
+        when(spanStorage.delete(sealed)).thenReturn(10L);
+        when(spanStorage.getAllSpanFiles()).thenReturn(Stream.of(active, sealed));
+        when(mockFile.getFreeSpace()).thenReturn(MAX_STORAGE_USE_BYTES + 1);
+        boolean result = limiter.ensureFreeSpace();
+
+        verify(spanStorage).delete(sealed);
+        verify(spanStorage, never()).delete(active);
+        assertTrue(result);
+    }
+
+    @Test
+    void ensureFreeSpace_overLimitEvictsLowestPriorityFirst() {
+        File oldError = new File("100.p3.spans");
+        File oldUi = new File("200.p0.spans");
+        File http = new File("300.p1.spans");
+        File newUi = new File("400.p0.spans");
+
+        File mockFile = mock(File.class);
+        when(spanStorage.provideSpansDirectory()).thenReturn(mockFile);
+        when(spanStorage.getTotalFileSizeInBytes()).thenReturn(MAX_STORAGE_USE_BYTES + 2);
+        when(spanStorage.delete(isA(File.class))).thenReturn(1L);
+        when(spanStorage.getAllSpanFiles()).thenReturn(Stream.of(oldError, oldUi, http, newUi));
+        when(mockFile.getFreeSpace()).thenReturn(MAX_STORAGE_USE_BYTES + 1);
+        boolean result = limiter.ensureFreeSpace();
+
+        InOrder inOrder = inOrder(spanStorage);
+        inOrder.verify(spanStorage).delete(oldUi);
+        inOrder.verify(spanStorage).delete(newUi);
+        inOrder.verify(spanStorage).delete(http);
+        verify(spanStorage, never()).delete(oldError);
         assertTrue(result);
     }
 }
@@ -16,21 +16,50 @@
 
 package com.splunk.rum;
 
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
 import static org.mockito.ArgumentMatchers.any;
-import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.anyBoolean;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.doReturn;
+import static org.mockito.Mockito.inOrder;
+import static org.mockito.Mockito.lenient;
 import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.verifyNoMoreInteractions;
 import static org.mockito.Mockito.when;
 
+import com.google.mockwebserver.Dispatcher;
+import com.google.mockwebserver.MockResponse;
+import com.google.mockwebserver.MockWebServer;
+import com.google.mockwebserver.RecordedRequest;
 import io.opentelemetry.android.instrumentation.network.CurrentNetwork;
 import io.opentelemetry.android.instrumentation.network.CurrentNetworkProvider;
+import io.opentelemetry.android.instrumentation.network.NetworkChangeListener;
+import io.opentelemetry.android.instrumentation.network.NetworkState;
+import io.opentelemetry.sdk.common.CompletableResultCode;
 import java.io.File;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.stream.Stream;
+import okhttp3.OkHttpClient;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.InOrder;
 import org.mockito.Mock;
 import org.mockito.Mockito;
 import org.mockito.junit.jupiter.MockitoExtension;
@@ -38,18 +67,21 @@ import org.mockito.junit.jupiter.MockitoExtension;
 @ExtendWith(MockitoExtension.class)
 class DiskToZipkinExporterTest {
 
-    static final int BANDWIDTH_LIMIT = 20 * 1024;
     static final File spanFilesPath = new File("/path/to/thing");
     static final SpanStorage SPAN_STORAGE = mock(SpanStorage.class);
     private File file1 = null;
     private File file2 = null;
     private File imposter = null;
+    private final List<File> attemptedFiles = new ArrayList<>();
 
     @Mock private CurrentNetworkProvider currentNetworkProvider;
     @Mock private FileUtils fileUtils;
     @Mock private CurrentNetwork currentNetwork;
     @Mock FileSender sender;
-    @Mock private BandwidthTracker bandwidthTracker;
+    @Mock private BandwidthLimiter bandwidthLimiter;
+    @Mock private SpanJournal journal;
+    @Mock private RetrySchedule retrySchedule;
+    @Mock private ScheduledExecutorService threadPool;
 
     @BeforeEach
     void setup() throws Exception {
@@ -63,36 +95,203 @@ class DiskToZipkinExporterTest {
                                 + File.separator
                                 + "someImposterFile.dll");
 
-        when(currentNetworkProvider.refreshNetworkStatus()).thenReturn(currentNetwork);
-        when(currentNetwork.isOnline()).thenReturn(true);
-        Stream<File> files = Stream.of(file1, imposter, file2);
+        // the wakeup tests never run an export cycle
+        lenient().when(currentNetworkProvider.refreshNetworkStatus()).thenReturn(currentNetwork);
+        lenient().when(currentNetwork.isOnline()).thenReturn(true);
+        lenient().when(bandwidthLimiter.hasCapacity()).thenReturn(true);
+        // the storage lists the files oldest first
+        Stream<File> files = Stream.of(file1, file2, imposter);
         when(SPAN_STORAGE.getPendingFiles()).thenReturn(files);
     }
 
     @Test
     void testHappyPathExport() {
-        when(sender.handleFileOnDisk(file1)).thenReturn(true);
-        when(sender.handleFileOnDisk(file2)).thenReturn(true);
+        stubFileSender(file1, file2);
 
         DiskToZipkinExporter exporter = buildExporter();
 
         exporter.doExportCycle();
-        verify(sender).handleFileOnDisk(file1);
-        verify(sender).handleFileOnDisk(file2);
-        verify(bandwidthTracker, never()).tick(anyList());
+        assertEquals(Arrays.asList(file1, file2, imposter), attemptedFiles);
+    }
+
+    @Test
+    void sealsExpiredSegmentBeforeListingFiles() {
+        stubFileSender(file1, file2);
+
+        DiskToZipkinExporter exporter = buildExporter();
+
+        exporter.doExportCycle();
+
+        InOrder inOrder = inOrder(journal, SPAN_STORAGE);
+        inOrder.verify(journal).sealIfExpired();
+        inOrder.verify(SPAN_STORAGE).getPendingFiles();
     }
 
     @Test
     void fileFailureSkipsSubsequentFiles() {
 
-        when(sender.handleFileOnDisk(file1)).thenReturn(false);
+        stubFileSender();
+
+        DiskToZipkinExporter exporter = buildExporter();
+
+        exporter.doExportCycle();
+
+        assertEquals(Collections.singletonList(file1), attemptedFiles);
+    }
+
+    @Test
+    void filesWaitingForRetryDoNotBlockOthers() {
+        when(journal.getMillisUntilActiveSegmentExpires()).thenReturn(Long.MAX_VALUE);
+        when(retrySchedule.getMillisUntilNextAttempt(file1)).thenReturn(1000L);
+        stubFileSender(file2);
 
         DiskToZipkinExporter exporter = buildExporter();
 
+        long nextCycleDelay = exporter.doExportCycle();
+
+        assertEquals(Arrays.asList(file2, imposter), attemptedFiles);
+        assertEquals(1000L, nextCycleDelay);
+    }
+
+    @Test
+    void retriesDueAfterPollingIntervalKeepRegularDelay() {
+        when(journal.getMillisUntilActiveSegmentExpires()).thenReturn(Long.MAX_VALUE);
+        when(retrySchedule.getMillisUntilNextAttempt(file1)).thenReturn(60_000L);
+        when(retrySchedule.getMillisUntilNextAttempt(file2)).thenReturn(60_000L);
+        when(retrySchedule.getMillisUntilNextAttempt(imposter)).thenReturn(60_000L);
+
+        DiskToZipkinExporter exporter = buildExporter();
+
+        long nextCycleDelay = exporter.doExportCycle();
+
+        verify(sender, never()).nextBatch(any());
+        assertEquals(DiskToZipkinExporter.POLLING_INTERVAL_MILLIS, nextCycleDelay);
+    }
+
+    @Test
+    void uploadsConcurrentlyToTheServer() throws Exception {
+        int fileCount = 8;
+        int maxInFlightUploads = 4;
+        long responseDelayMillis = 250;
+        AtomicInteger inFlight = new AtomicInteger();
+        AtomicInteger maxObservedInFlight = new AtomicInteger();
+        MockWebServer server = new MockWebServer();
+        server.setDispatcher(
+                new Dispatcher() {
+                    @Override
+                    public MockResponse dispatch(RecordedRequest request)
+                            throws InterruptedException {
+                        maxObservedInFlight.accumulateAndGet(inFlight.incrementAndGet(), Math::max);
+                        Thread.sleep(responseDelayMillis);
+                        inFlight.decrementAndGet();
+                        return new MockResponse();
+                    }
+                });
+        server.play();
+
+        // compressed segments are each sent in a request of their own
+        List<File> files = new ArrayList<>();
+        for (int i = 0; i < fileCount; i++) {
+            files.add(new File(spanFilesPath, i + SpanJournal.COMPRESSED_SEGMENT_SUFFIX));
+        }
+        when(SPAN_STORAGE.getPendingFiles()).thenReturn(files.stream());
+        when(fileUtils.readFileBytes(any())).thenReturn(new byte[] {1, 2, 3});
+        PayloadSender payloadSender =
+                new PayloadSender(new OkHttpClient(), server.getUrl("/v1/rum").toString());
+        FileSender fileSender =
+                FileSender.builder()
+                        .sender(new StreamingZipkinSender(payloadSender, true))
+                        .payloadSender(payloadSender)
+                        .fileUtils(fileUtils)
+                        .spanStorage(SPAN_STORAGE)
+                        .bandwidthLimiter(bandwidthLimiter)
+                        .retrySchedule(retrySchedule)
+                        .build();
+        DiskToZipkinExporter exporter =
+                DiskToZipkinExporter.builder()
+                        .threadPool(threadPool)
+                        .fileSender(fileSender)
+                        .bandwidthLimiter(bandwidthLimiter)
+                        .spanFileProvider(SPAN_STORAGE)
+                        .journal(journal)
+                        .retrySchedule(retrySchedule)
+                        .connectionUtil(currentNetworkProvider)
+                        .maxInFlightUploads(maxInFlightUploads)
+                        .build();
+
+        long startNanos = System.nanoTime();
         exporter.doExportCycle();
+        long elapsedMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startNanos);
+        server.shutdown();
 
-        verify(sender).handleFileOnDisk(file1);
-        verify(sender, never()).handleFileOnDisk(file2);
+        assertEquals(fileCount, server.getRequestCount());
+        for (File file : files) {
+            verify(SPAN_STORAGE).delete(file);
+        }
+        verify(retrySchedule, never()).trackFailure(any());
+        assertEquals(maxInFlightUploads, maxObservedInFlight.get());
+        // one request at a time would take fileCount * responseDelayMillis
+        assertTrue(
+                elapsedMillis < fileCount * responseDelayMillis / 2,
+                "uploading took " + elapsedMillis + " ms");
+    }
+
+    @Test
+    void backsOffWhileIdle() {
+        when(SPAN_STORAGE.getPendingFiles()).thenAnswer(invocation -> Stream.empty());
+        when(journal.getMillisUntilActiveSegmentExpires())
+                .thenReturn(Long.MAX_VALUE, 7_000L, Long.MAX_VALUE);
+
+        DiskToZipkinExporter exporter = buildExporter();
+
+        assertEquals(5_000L, exporter.doExportCycle());
+        // an active segment is sealed on time
+        assertEquals(7_000L, exporter.doExportCycle());
+        assertEquals(20_000L, exporter.doExportCycle());
+        for (int i = 0; i < 10; i++) {
+            exporter.doExportCycle();
+        }
+        assertEquals(DiskToZipkinExporter.MAX_IDLE_INTERVAL_MILLIS, exporter.doExportCycle());
+    }
+
+    @Test
+    void wakesUpWhenSegmentIsSealed() {
+        ScheduledFuture<?> scheduled = mock(ScheduledFuture.class);
+        doReturn(scheduled).when(threadPool).schedule(any(Runnable.class), anyLong(), any());
+        DiskToZipkinExporter exporter = buildExporter(threadPool);
+
+        exporter.start();
+        verify(journal).setListener(exporter);
+        verify(threadPool)
+                .schedule(
+                        any(Runnable.class),
+                        eq(DiskToZipkinExporter.POLLING_INTERVAL_MILLIS),
+                        eq(TimeUnit.MILLISECONDS));
+
+        // a cycle is already scheduled to run sooner
+        exporter.onSegmentStarted(60_000L);
+        verify(scheduled, never()).cancel(anyBoolean());
+
+        exporter.onSegmentSealed();
+        verify(scheduled).cancel(false);
+        verify(threadPool).schedule(any(Runnable.class), eq(0L), eq(TimeUnit.MILLISECONDS));
+    }
+
+    @Test
+    void wakesUpWhenBackOnline() {
+        DiskToZipkinExporter exporter = buildExporter(threadPool);
+        exporter.start();
+        ArgumentCaptor<NetworkChangeListener> listener =
+                ArgumentCaptor.forClass(NetworkChangeListener.class);
+        verify(currentNetworkProvider).addNetworkChangeListener(listener.capture());
+
+        when(currentNetwork.isOnline()).thenReturn(false);
+        listener.getValue().onNetworkChange(currentNetwork);
+        verify(threadPool, never()).schedule(any(Runnable.class), eq(0L), any());
+
+        when(currentNetwork.isOnline()).thenReturn(true);
+        listener.getValue().onNetworkChange(currentNetwork);
+        verify(threadPool).schedule(any(Runnable.class), eq(0L), eq(TimeUnit.MILLISECONDS));
     }
 
     @Test
@@ -104,19 +303,38 @@ class DiskToZipkinExporterTest {
 
         exporter.doExportCycle();
 
+        verify(journal).sealIfExpired();
         verifyNoMoreInteractions(SPAN_STORAGE);
         verifyNoMoreInteractions(sender);
     }
 
     @Test
     void testSkipsWhenOverBandwidth() {
-        when(bandwidthTracker.totalSustainedRate()).thenReturn(BANDWIDTH_LIMIT + 1.0);
+        when(journal.getMillisUntilActiveSegmentExpires()).thenReturn(Long.MAX_VALUE);
+        when(bandwidthLimiter.hasCapacity()).thenReturn(false);
+        when(bandwidthLimiter.getMillisUntilCapacity()).thenReturn(2500L);
+
+        DiskToZipkinExporter exporter = buildExporter();
+
+        long nextCycleDelay = exporter.doExportCycle();
+
+        verify(sender, never()).nextBatch(any());
+        // resumes as soon as the budget allows
+        assertEquals(2500L, nextCycleDelay);
+    }
+
+    @Test
+    void usesBudgetOfCurrentNetwork() {
+        stubFileSender(file1, file2, imposter);
+        when(currentNetwork.getState()).thenReturn(NetworkState.TRANSPORT_WIFI);
 
         DiskToZipkinExporter exporter = buildExporter();
 
         exporter.doExportCycle();
 
-        verify(sender, never()).handleFileOnDisk(any());
+        InOrder inOrder = inOrder(bandwidthLimiter, sender);
+        inOrder.verify(bandwidthLimiter).setNetworkState(NetworkState.TRANSPORT_WIFI);
+        inOrder.verify(sender).nextBatch(any());
     }
 
     @Test
@@ -125,16 +343,45 @@ class DiskToZipkinExporterTest {
         DiskToZipkinExporter exporter = buildExporter();
 
         exporter.doExportCycle();
-        verify(sender, never()).handleFileOnDisk(any());
+        verify(sender, never()).nextBatch(any());
+    }
+
+    // the mocked sender sends one file per request, and only succeeds for the given files
+    private void stubFileSender(File... successfulFiles) {
+        List<File> successful = Arrays.asList(successfulFiles);
+        Map<FileSender.Batch, File> batchFiles = new ConcurrentHashMap<>();
+        when(sender.nextBatch(any()))
+                .thenAnswer(
+                        invocation -> {
+                            Deque<File> files = invocation.getArgument(0);
+                            File file = files.poll();
+                            attemptedFiles.add(file);
+                            FileSender.Batch batch = mock(FileSender.Batch.class);
+                            batchFiles.put(batch, file);
+                            return batch;
+                        });
+        when(sender.sendAsync(any()))
+                .thenAnswer(
+                        invocation ->
+                                successful.contains(batchFiles.get(invocation.getArgument(0)))
+                                        ? CompletableResultCode.ofSuccess()
+                                        : CompletableResultCode.ofFailure());
     }
 
     private DiskToZipkinExporter buildExporter() {
+        return buildExporter(Executors.newSingleThreadScheduledExecutor());
+    }
+
+    private DiskToZipkinExporter buildExporter(ScheduledExecutorService threadPool) {
         return DiskToZipkinExporter.builder()
+                .threadPool(threadPool)
                 .fileSender(sender)
-                .bandwidthLimit(BANDWIDTH_LIMIT)
-                .bandwidthTracker(bandwidthTracker)
+                .bandwidthLimiter(bandwidthLimiter)
                 .spanFileProvider(SPAN_STORAGE)
+                .journal(journal)
+                .retrySchedule(retrySchedule)
                 .connectionUtil(currentNetworkProvider)
+                .maxInFlightUploads(1)
                 .build();
     }
 }
@@ -0,0 +1,58 @@
+/*
+ * Copyright Splunk Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.splunk.rum;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import org.junit.jupiter.api.Test;
+
+class ExportMetricsTest {
+
+    private final ExportMetrics metrics = new ExportMetrics();
+
+    @Test
+    void tracksQueueDepth() {
+        metrics.setQueueDepth(3, 2);
+
+        assertThat(metrics.getQueuedBatches()).isEqualTo(3);
+        assertThat(metrics.getInFlightBatches()).isEqualTo(2);
+    }
+
+    @Test
+    void tracksLatency() {
+        assertThat(metrics.getAverageLatencyNanos()).isZero();
+
+        metrics.recordExport(100);
+        metrics.recordExport(300);
+        metrics.recordExport(200);
+
+        assertThat(metrics.getExportedBatches()).isEqualTo(3);
+        assertThat(metrics.getAverageLatencyNanos()).isEqualTo(200);
+        assertThat(metrics.getMaxLatencyNanos()).isEqualTo(300);
+    }
+
+    @Test
+    void tracksSpanQueueHighWatermarkAndDrops() {
+        metrics.recordSpanQueueDepth(5);
+        metrics.recordSpanQueueDepth(9);
+        metrics.recordSpanQueueDepth(2);
+        metrics.recordSpanQueueDrop();
+
+        assertThat(metrics.getSpanQueueHighWatermark()).isEqualTo(9);
+        assertThat(metrics.getSpanQueueDrops()).isEqualTo(1);
+    }
+}
@@ -17,22 +17,28 @@
 package com.splunk.rum;
 
 import static java.util.Collections.emptyList;
+import static java.util.Collections.singletonList;
+import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertFalse;
 import static org.junit.jupiter.api.Assertions.assertTrue;
 import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.eq;
 import static org.mockito.Mockito.doThrow;
 import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.verifyNoMoreInteractions;
 import static org.mockito.Mockito.when;
 
+import io.opentelemetry.sdk.common.CompletableResultCode;
 import java.io.File;
 import java.io.IOException;
 import java.nio.charset.StandardCharsets;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Deque;
 import java.util.List;
-import java.util.function.Consumer;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
@@ -51,9 +57,11 @@ class FileSenderTest {
     private final List<byte[]> fileSpans = Arrays.asList(span1, span2, span3);
 
     @Mock private FileUtils fileUtils;
-    @Mock private BandwidthTracker bandwidthTracker;
+    @Mock private BandwidthLimiter bandwidthLimiter;
     @Mock private BytesMessageSender delegate;
-    @Mock private Consumer<Integer> backoff;
+    @Mock private PayloadSender payloadSender;
+    @Mock private SpanStorage spanStorage;
+    @Mock private RetrySchedule retrySchedule;
 
     @BeforeEach
     void setup() throws Exception {
@@ -67,45 +75,252 @@ class FileSenderTest {
         File file = new File("/asdflkajsdfoij");
         when(fileUtils.readFileCompletely(file)).thenReturn(emptyList());
         FileSender sender = buildFileSender();
-        boolean result = sender.handleFileOnDisk(file);
+        boolean result = sender.handleFilesOnDisk(queue(file));
         assertFalse(result);
-        verify(fileUtils).safeDelete(file);
+        verify(spanStorage).delete(file);
     }
 
     @Test
     void happyPathSendSpans() {
         FileSender sender = buildFileSender();
-        boolean result = sender.handleFileOnDisk(file);
+        boolean result = sender.handleFilesOnDisk(queue(file));
         assertTrue(result);
-        verify(bandwidthTracker).tick(fileSpans);
+        // the spans are sent as a json list: two brackets and two commas
+        verify(bandwidthLimiter).consume(span1.length + span2.length + span3.length + 4);
+        verify(spanStorage).delete(file);
     }
 
     @Test
-    void sendFailsButNotExceeded() throws Exception {
+    void sendFailureScheduledForRetry() throws Exception {
         doThrow(new IOException("boom")).when(delegate).send(anyList());
         FileSender sender = buildFileSender();
-        boolean result = sender.handleFileOnDisk(file);
+        boolean result = sender.handleFilesOnDisk(queue(file));
         assertFalse(result);
-        verify(fileUtils, never()).safeDelete(any());
-        verify(backoff).accept(1);
+        verify(spanStorage, never()).delete(any());
+        verify(retrySchedule).trackFailure(file);
     }
 
     @Test
-    void senderFailureRetriesExhausted() throws Exception {
+    void coalescesFilesIntoOneRequest() throws Exception {
+        File file2 = new File("meep2");
+        byte[] span4 = "span4".getBytes(StandardCharsets.UTF_8);
+        when(fileUtils.readFileCompletely(file2)).thenReturn(singletonList(span4));
+        when(delegate.messageMaxBytes()).thenReturn(1024);
+        Deque<File> files = queue(file, file2);
+        FileSender sender = buildFileSender();
+
+        boolean result = sender.handleFilesOnDisk(files);
+
+        assertTrue(result);
+        assertTrue(files.isEmpty());
+        verify(delegate).send(Arrays.asList(span1, span2, span3, span4));
+        verify(spanStorage).delete(file);
+        verify(spanStorage).delete(file2);
+    }
+
+    @Test
+    void batchStopsAtMessageSizeLimit() throws Exception {
+        File file2 = new File("meep2");
+        when(fileUtils.getFileSize(file)).thenReturn(18L);
+        when(fileUtils.getFileSize(file2)).thenReturn(6L);
+        when(delegate.messageMaxBytes()).thenReturn(24);
+        Deque<File> files = queue(file, file2);
+        FileSender sender = buildFileSender();
+
+        boolean result = sender.handleFilesOnDisk(files);
+
+        assertTrue(result);
+        verify(delegate).send(fileSpans);
+        assertEquals(singletonList(file2), new ArrayList<>(files));
+        verify(fileUtils, never()).readFileCompletely(file2);
+    }
+
+    @Test
+    void failedBatchRetriesEveryFile() throws Exception {
+        File file2 = new File("meep2");
+        when(fileUtils.readFileCompletely(file2)).thenReturn(singletonList(span1));
+        when(delegate.messageMaxBytes()).thenReturn(1024);
         doThrow(new IOException("boom")).when(delegate).send(anyList());
-        FileSender sender = buildFileSender(3);
-        boolean result = sender.handleFileOnDisk(file);
-        assertFalse(result);
-        verify(fileUtils, never()).safeDelete(any());
-        verify(backoff).accept(1);
-        result = sender.handleFileOnDisk(file);
+        FileSender sender = buildFileSender();
+
+        boolean result = sender.handleFilesOnDisk(queue(file, file2));
+
         assertFalse(result);
-        verify(fileUtils, never()).safeDelete(any());
-        verify(backoff).accept(2);
-        result = sender.handleFileOnDisk(file);
+        verify(retrySchedule).trackFailure(file);
+        verify(retrySchedule).trackFailure(file2);
+        verify(spanStorage, never()).delete(any());
+    }
+
+    @Test
+    void compressedFileEndsBatch() throws Exception {
+        File compressed = new File("123.gz.spans");
+        Deque<File> files = queue(file, compressed);
+        FileSender sender = buildFileSender();
+
+        boolean result = sender.handleFilesOnDisk(files);
+
+        assertTrue(result);
+        verify(delegate).send(fileSpans);
+        assertEquals(singletonList(compressed), new ArrayList<>(files));
+        verifyNoMoreInteractions(payloadSender);
+    }
+
+    @Test
+    void compressedFileSentAsIs() throws Exception {
+        Mockito.reset(fileUtils);
+        File compressed = new File("123.gz.spans");
+        byte[] payload = {1, 2, 3};
+        when(fileUtils.readFileBytes(compressed)).thenReturn(payload);
+        FileSender sender = buildFileSender();
+
+        boolean result = sender.handleFilesOnDisk(queue(compressed));
+
+        assertTrue(result);
+        verify(payloadSender).send(eq(payload), eq(PayloadSender.JSON), eq(true));
+        verify(bandwidthLimiter).consume(payload.length);
+        verify(spanStorage).delete(compressed);
+        verifyNoMoreInteractions(delegate);
+        verifyNoMoreInteractions(retrySchedule);
+    }
+
+    @Test
+    void compressedFileSentAsynchronously() throws Exception {
+        Mockito.reset(fileUtils);
+        File compressed = new File("123.gz.spans");
+        File failed = new File("456.gz.spans");
+        when(fileUtils.readFileBytes(any())).thenReturn(new byte[] {1, 2, 3});
+        CompletableResultCode sent = new CompletableResultCode();
+        CompletableResultCode notSent = new CompletableResultCode();
+        when(payloadSender.sendAsync(any(), eq(true))).thenReturn(sent, notSent);
+        FileSender sender = buildFileSender();
+        Deque<File> files = queue(compressed, failed);
+
+        CompletableResultCode result = sender.sendAsync(sender.nextBatch(files));
+        CompletableResultCode failedResult = sender.sendAsync(sender.nextBatch(files));
+        verify(spanStorage, never()).delete(any());
+
+        sent.succeed();
+        notSent.fail();
+        assertTrue(result.isSuccess());
+        assertFalse(failedResult.isSuccess());
+        verify(spanStorage).delete(compressed);
+        verify(retrySchedule).trackFailure(failed);
+        verifyNoMoreInteractions(delegate);
+    }
+
+    @Test
+    void compressedFileFailureRetried() throws Exception {
+        Mockito.reset(fileUtils);
+        File compressed = new File("123.gz.spans");
+        byte[] payload = {1, 2, 3};
+        when(fileUtils.readFileBytes(compressed)).thenReturn(payload);
+        doThrow(new IOException("boom"))
+                .when(payloadSender)
+                .send(payload, PayloadSender.JSON, true);
+        FileSender sender = buildFileSender();
+
+        boolean result = sender.handleFilesOnDisk(queue(compressed));
+
         assertFalse(result);
-        verify(fileUtils).safeDelete(file);
-        verifyNoMoreInteractions(backoff);
+        verify(spanStorage, never()).delete(any());
+        verify(retrySchedule).trackFailure(compressed);
+    }
+
+    @Test
+    void binaryFilesSentBackToBack() throws Exception {
+        Mockito.reset(fileUtils);
+        File binary1 = new File("100.pb.spans");
+        File binary2 = new File("200.pb.spans");
+        File binary3 = new File("300.pb.spans");
+        when(fileUtils.readFileBytes(binary1)).thenReturn(new byte[] {1, 2});
+        when(fileUtils.readFileBytes(binary2)).thenReturn(new byte[] {3});
+        when(fileUtils.getFileSize(binary2)).thenReturn(1L);
+        when(fileUtils.getFileSize(binary3)).thenReturn(2L);
+        when(delegate.messageMaxBytes()).thenReturn(4);
+        Deque<File> files = queue(binary1, binary2, binary3);
+        FileSender sender = buildFileSender();
+
+        boolean result = sender.handleFilesOnDisk(files);
+
+        assertTrue(result);
+        verify(payloadSender)
+                .send(eq(new byte[] {1, 2, 3}), eq(PayloadSender.PROTOBUF), eq(false));
+        verify(bandwidthLimiter).consume(3);
+        verify(spanStorage).delete(binary1);
+        verify(spanStorage).delete(binary2);
+        assertEquals(singletonList(binary3), new ArrayList<>(files));
+        verifyNoMoreInteractions(delegate);
+    }
+
+    @Test
+    void binaryFileEndsJsonBatch() throws Exception {
+        File binary = new File("123.pb.spans");
+        Deque<File> files = queue(file, binary);
+        FileSender sender = buildFileSender();
+
+        boolean result = sender.handleFilesOnDisk(files);
+
+        assertTrue(result);
+        verify(delegate).send(fileSpans);
+        assertEquals(singletonList(binary), new ArrayList<>(files));
+        verifyNoMoreInteractions(payloadSender);
+    }
+
+    @Test
+    void compressedBinaryFileSentAsIs() throws Exception {
+        Mockito.reset(fileUtils);
+        File compressed = new File("123.pb.gz.spans");
+        byte[] payload = {1, 2, 3};
+        when(fileUtils.readFileBytes(compressed)).thenReturn(payload);
+        FileSender sender = buildFileSender();
+
+        boolean result = sender.handleFilesOnDisk(queue(compressed));
+
+        assertTrue(result);
+        verify(payloadSender).send(eq(payload), eq(PayloadSender.PROTOBUF), eq(true));
+        verify(spanStorage).delete(compressed);
+    }
+
+    @Test
+    void otlpFilesSentToOtlpEndpoint() throws Exception {
+        Mockito.reset(fileUtils);
+        File zipkinFile = new File("100.spans");
+        File otlpFile = new File("200.otlp.spans");
+        when(fileUtils.readFileBytes(otlpFile)).thenReturn(new byte[] {1, 2, 3});
+        FileSender sender =
+                FileSender.builder()
+                        .retrySchedule(retrySchedule)
+                        .bandwidthLimiter(bandwidthLimiter)
+                        .sender(delegate)
+                        .payloadSender(payloadSender)
+                        .fileUtils(fileUtils)
+                        .spanStorage(spanStorage)
+                        .otlp(true)
+                        .build();
+
+        boolean result = sender.handleFilesOnDisk(queue(zipkinFile, otlpFile));
+
+        assertTrue(result);
+        // the zipkin file was left by an earlier configuration, and can't be sent anymore
+        verify(spanStorage).delete(zipkinFile);
+        verify(payloadSender)
+                .send(eq(new byte[] {1, 2, 3}), eq(PayloadSender.PROTOBUF), eq(false));
+        verify(spanStorage).delete(otlpFile);
+        verifyNoMoreInteractions(delegate);
+    }
+
+    @Test
+    void otlpFilesDroppedForZipkinEndpoint() throws Exception {
+        File otlpFile = new File("100.otlp.gz.spans");
+        Deque<File> files = queue(otlpFile, file);
+        FileSender sender = buildFileSender();
+
+        boolean result = sender.handleFilesOnDisk(files);
+
+        assertTrue(result);
+        verify(spanStorage).delete(otlpFile);
+        verify(delegate).send(fileSpans);
+        verifyNoMoreInteractions(payloadSender);
     }
 
     @Test
@@ -114,23 +329,24 @@ class FileSenderTest {
         Mockito.reset(delegate);
         when(fileUtils.readFileCompletely(file)).thenThrow(new IOException("boom"));
         FileSender sender = buildFileSender();
-        boolean result = sender.handleFileOnDisk(file);
+        boolean result = sender.handleFilesOnDisk(queue(file));
         assertFalse(result);
-        verifyNoMoreInteractions(bandwidthTracker);
+        verifyNoMoreInteractions(bandwidthLimiter);
         verifyNoMoreInteractions(delegate);
     }
 
     private FileSender buildFileSender() {
-        return buildFileSender(10);
-    }
-
-    private FileSender buildFileSender(int maxRetries) {
         return FileSender.builder()
-                .backoff(backoff)
-                .bandwidthTracker(bandwidthTracker)
-                .maxRetries(maxRetries)
+                .retrySchedule(retrySchedule)
+                .bandwidthLimiter(bandwidthLimiter)
                 .sender(delegate)
+                .payloadSender(payloadSender)
                 .fileUtils(fileUtils)
+                .spanStorage(spanStorage)
                 .build();
     }
+
+    private static Deque<File> queue(File... files) {
+        return new ArrayDeque<>(Arrays.asList(files));
+    }
 }
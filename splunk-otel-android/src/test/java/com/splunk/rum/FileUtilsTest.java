@@ -0,0 +1,97 @@
+/*
+ * Copyright Splunk Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.splunk.rum;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class FileUtilsTest {
+
+    @TempDir File tempDir;
+
+    private final FileUtils fileUtils = new FileUtils();
+
+    @Test
+    void appendAndReadBack() throws Exception {
+        File file = new File(tempDir, "1.spans");
+        byte[] span1 = "{\"name\":\"span1\"}".getBytes(StandardCharsets.UTF_8);
+        byte[] span2 = "{\"name\":\"spän2\"}".getBytes(StandardCharsets.UTF_8);
+        byte[] span3 = "{\"name\":\"span3\"}".getBytes(StandardCharsets.UTF_8);
+
+        long written = fileUtils.appendAsLines(file, Arrays.asList(span1, span2));
+        written += fileUtils.appendAsLines(file, Collections.singletonList(span3));
+
+        assertThat(written).isEqualTo(file.length());
+        List<byte[]> result = fileUtils.readFileCompletely(file);
+        assertThat(result).containsExactly(span1, span2, span3);
+    }
+
+    @Test
+    void readSkipsEmptyLinesAndKeepsUnterminatedRecord() throws Exception {
+        File file = new File(tempDir, "2.spans");
+        Files.write(file.toPath(), "one\n\ntwo\nthree".getBytes(StandardCharsets.UTF_8));
+
+        List<byte[]> result = fileUtils.readFileCompletely(file);
+
+        assertThat(result)
+                .containsExactly(
+                        "one".getBytes(StandardCharsets.UTF_8),
+                        "two".getBytes(StandardCharsets.UTF_8),
+                        "three".getBytes(StandardCharsets.UTF_8));
+    }
+
+    @Test
+    void readEmptyFile() throws Exception {
+        File file = new File(tempDir, "3.spans");
+        Files.write(file.toPath(), new byte[0]);
+
+        assertThat(fileUtils.readFileCompletely(file)).isEmpty();
+    }
+
+    @Test
+    void appendCompressedReturnsCompressedSize() throws Exception {
+        File file = new File(tempDir, "4.gz.spans");
+        byte[] span = "{\"name\":\"span1\"}".getBytes(StandardCharsets.UTF_8);
+
+        long written = fileUtils.appendCompressed(file, Collections.singletonList(span));
+        written += fileUtils.appendCompressed(file, Collections.singletonList(span));
+
+        assertThat(written).isEqualTo(file.length());
+    }
+
+    @Test
+    void appendBytesWritesRecordsBackToBack() throws Exception {
+        File file = new File(tempDir, "5.pb.spans");
+        byte[] record1 = {0x0a, 0x01, 0x00};
+        byte[] record2 = {0x0a, 0x02, '\n', 0x00};
+
+        long written = fileUtils.appendBytes(file, Collections.singletonList(record1));
+        written += fileUtils.appendBytes(file, Collections.singletonList(record2));
+
+        assertThat(written).isEqualTo(file.length());
+        assertThat(fileUtils.readFileBytes(file))
+                .containsExactly(0x0a, 0x01, 0x00, 0x0a, 0x02, '\n', 0x00);
+    }
+}
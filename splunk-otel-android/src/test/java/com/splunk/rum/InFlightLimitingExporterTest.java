@@ -0,0 +1,246 @@
+/*
+ * Copyright Splunk Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.splunk.rum;
+
+import static java.util.Collections.singletonList;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.lenient;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import io.opentelemetry.api.trace.SpanKind;
+import io.opentelemetry.sdk.common.Clock;
+import io.opentelemetry.sdk.common.CompletableResultCode;
+import io.opentelemetry.sdk.testing.trace.TestSpanData;
+import io.opentelemetry.sdk.trace.data.SpanData;
+import io.opentelemetry.sdk.trace.data.StatusData;
+import io.opentelemetry.sdk.trace.export.SpanExporter;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+@ExtendWith(MockitoExtension.class)
+class InFlightLimitingExporterTest {
+
+    @Mock private Clock clock;
+    @Mock private ExecutorService exportExecutor;
+
+    private final RecordingExporter delegate = new RecordingExporter();
+    private final DroppedSpanCounter droppedSpanCounter = new DroppedSpanCounter();
+    private final ExportMetrics metrics = new ExportMetrics();
+
+    private InFlightLimitingExporter underTest;
+
+    @BeforeEach
+    void setUp() {
+        lenient()
+                .doAnswer(
+                        invocation -> {
+                            invocation.getArgument(0, Runnable.class).run();
+                            return null;
+                        })
+                .when(exportExecutor)
+                .execute(any());
+        underTest =
+                InFlightLimitingExporter.builder()
+                        .delegate(delegate)
+                        .maxInFlightBatches(2)
+                        .maxQueuedBatches(2)
+                        .clock(clock)
+                        .droppedSpanCounter(droppedSpanCounter)
+                        .metrics(metrics)
+                        .exportExecutor(exportExecutor)
+                        .build();
+    }
+
+    @Test
+    void handsOffWithoutWaitingForTheExport() {
+        CompletableResultCode result = underTest.export(batch("a"));
+
+        assertThat(result.isSuccess()).isTrue();
+        assertThat(delegate.exported).hasSize(1);
+        assertThat(metrics.getInFlightBatches()).isEqualTo(1);
+    }
+
+    @Test
+    void exportsOnTheExportThread() {
+        List<Runnable> tasks = new ArrayList<>();
+        doAnswer(invocation -> tasks.add(invocation.getArgument(0, Runnable.class)))
+                .when(exportExecutor)
+                .execute(any());
+
+        assertThat(underTest.export(batch("a")).isSuccess()).isTrue();
+        assertThat(delegate.exported).isEmpty();
+
+        tasks.get(0).run();
+        assertThat(delegate.exported).hasSize(1);
+    }
+
+    @Test
+    void copiesTheBatchBeforeReturning() {
+        List<SpanData> spans = new ArrayList<>();
+        spans.addAll(batch("a"));
+        spans.addAll(batch("b"));
+        underTest.export(batch("in-flight"));
+        underTest.export(batch("in-flight"));
+
+        underTest.export(spans);
+        // the BatchSpanProcessor clears and refills its batch after each export
+        spans.clear();
+        spans.addAll(batch("c"));
+        delegate.results.get(0).succeed();
+
+        assertThat(delegate.exported.get(2))
+                .extracting(SpanData::getName)
+                .containsExactly("a", "b");
+    }
+
+    @Test
+    void queuesBatchesOverTheInFlightLimit() {
+        underTest.export(batch("a"));
+        underTest.export(batch("b"));
+        underTest.export(batch("c"));
+
+        assertThat(delegate.exported).hasSize(2);
+        assertThat(metrics.getInFlightBatches()).isEqualTo(2);
+        assertThat(metrics.getQueuedBatches()).isEqualTo(1);
+
+        when(clock.nanoTime()).thenReturn(1_000L);
+        delegate.results.get(0).succeed();
+
+        assertThat(delegate.exported).hasSize(3);
+        assertThat(delegate.exported.get(2).iterator().next().getName()).isEqualTo("c");
+        assertThat(metrics.getQueuedBatches()).isEqualTo(0);
+        assertThat(metrics.getExportedBatches()).isEqualTo(1);
+        assertThat(metrics.getAverageLatencyNanos()).isEqualTo(1_000L);
+    }
+
+    @Test
+    void dropsTheOldestQueuedBatchWhenTheQueueIsFull() {
+        underTest.export(batch("a"));
+        underTest.export(batch("b"));
+        underTest.export(batch("c"));
+        underTest.export(batch("d"));
+        underTest.export(batch("e"));
+
+        assertThat(droppedSpanCounter.get()).isEqualTo(1);
+        assertThat(metrics.getQueuedBatches()).isEqualTo(2);
+
+        delegate.results.get(0).succeed();
+        delegate.results.get(1).fail();
+
+        assertThat(delegate.exported)
+                .extracting(spans -> spans.iterator().next().getName())
+                .containsExactly("a", "b", "d", "e");
+    }
+
+    @Test
+    void flushWaitsForPendingBatches() {
+        underTest.export(batch("a"));
+        underTest.export(batch("b"));
+        underTest.export(batch("c"));
+
+        CompletableResultCode flushed = underTest.flush();
+        assertThat(flushed.isDone()).isFalse();
+
+        delegate.results.get(0).succeed();
+        delegate.results.get(1).succeed();
+        assertThat(flushed.isDone()).isFalse();
+
+        delegate.results.get(2).succeed();
+        assertThat(flushed.isSuccess()).isTrue();
+        assertThat(delegate.flushed).isTrue();
+    }
+
+    @Test
+    void flushFailsWhenAPendingBatchFails() {
+        underTest.export(batch("a"));
+        underTest.export(batch("b"));
+
+        CompletableResultCode flushed = underTest.flush();
+        delegate.results.get(0).fail();
+        assertThat(flushed.isDone()).isFalse();
+
+        delegate.results.get(1).succeed();
+        assertThat(flushed.isDone()).isTrue();
+        assertThat(flushed.isSuccess()).isFalse();
+        assertThat(delegate.flushed).isTrue();
+    }
+
+    @Test
+    void rejectsBatchesAfterShutdown() {
+        SpanExporter exporter = mock(SpanExporter.class);
+        when(exporter.shutdown()).thenReturn(CompletableResultCode.ofSuccess());
+        InFlightLimitingExporter underTest =
+                InFlightLimitingExporter.builder()
+                        .delegate(exporter)
+                        .exportExecutor(exportExecutor)
+                        .build();
+
+        assertThat(underTest.shutdown().isSuccess()).isTrue();
+        assertThat(underTest.export(batch("a")).isSuccess()).isFalse();
+        verify(exporter, never()).export(any());
+        verify(exportExecutor).shutdown();
+    }
+
+    private static List<SpanData> batch(String name) {
+        return singletonList(
+                TestSpanData.builder()
+                        .setName(name)
+                        .setKind(SpanKind.INTERNAL)
+                        .setStatus(StatusData.unset())
+                        .setHasEnded(true)
+                        .setStartEpochNanos(0)
+                        .setEndEpochNanos(1)
+                        .build());
+    }
+
+    private static final class RecordingExporter implements SpanExporter {
+        private final List<Collection<SpanData>> exported = new ArrayList<>();
+        private final List<CompletableResultCode> results = new ArrayList<>();
+        private boolean flushed;
+
+        @Override
+        public CompletableResultCode export(Collection<SpanData> spans) {
+            CompletableResultCode result = new CompletableResultCode();
+            exported.add(spans);
+            results.add(result);
+            return result;
+        }
+
+        @Override
+        public CompletableResultCode flush() {
+            flushed = true;
+            return CompletableResultCode.ofSuccess();
+        }
+
+        @Override
+        public CompletableResultCode shutdown() {
+            return CompletableResultCode.ofSuccess();
+        }
+    }
+}
@@ -28,8 +28,11 @@ import static org.mockito.Mockito.when;
 
 import io.opentelemetry.android.instrumentation.network.CurrentNetwork;
 import io.opentelemetry.android.instrumentation.network.CurrentNetworkProvider;
+import io.opentelemetry.api.trace.SpanKind;
 import io.opentelemetry.sdk.common.CompletableResultCode;
+import io.opentelemetry.sdk.testing.trace.TestSpanData;
 import io.opentelemetry.sdk.trace.data.SpanData;
+import io.opentelemetry.sdk.trace.data.StatusData;
 import io.opentelemetry.sdk.trace.export.SpanExporter;
 import java.util.ArrayList;
 import java.util.Arrays;
@@ -45,6 +48,7 @@ class MemoryBufferingExporterTest {
     private final CurrentNetwork currentNetwork = mock(CurrentNetwork.class);
 
     private final MemorySpanBuffer backlogProvider = mock(MemorySpanBuffer.class);
+    private final DroppedSpanCounter droppedSpanCounter = new DroppedSpanCounter();
 
     @BeforeEach
     void setUp() {
@@ -59,7 +63,8 @@ class MemoryBufferingExporterTest {
 
         SpanExporter delegate = mock(SpanExporter.class);
         MemoryBufferingExporter bufferingExporter =
-                new MemoryBufferingExporter(currentNetworkProvider, delegate, backlogProvider);
+                new MemoryBufferingExporter(
+                        currentNetworkProvider, delegate, backlogProvider, droppedSpanCounter);
 
         when(delegate.export(spans)).thenReturn(CompletableResultCode.ofSuccess());
 
@@ -78,7 +83,8 @@ class MemoryBufferingExporterTest {
 
         SpanExporter delegate = mock(SpanExporter.class);
         MemoryBufferingExporter bufferingExporter =
-                new MemoryBufferingExporter(currentNetworkProvider, delegate, backlogProvider);
+                new MemoryBufferingExporter(
+                        currentNetworkProvider, delegate, backlogProvider, droppedSpanCounter);
 
         CompletableResultCode result = bufferingExporter.export(spans);
         assertTrue(result.isSuccess());
@@ -105,7 +111,8 @@ class MemoryBufferingExporterTest {
 
         SpanExporter delegate = mock(SpanExporter.class);
         MemoryBufferingExporter bufferingExporter =
-                new MemoryBufferingExporter(currentNetworkProvider, delegate, backlogProvider);
+                new MemoryBufferingExporter(
+                        currentNetworkProvider, delegate, backlogProvider, droppedSpanCounter);
 
         when(delegate.export(spans)).thenReturn(CompletableResultCode.ofFailure());
         when(delegate.export(secondSpans)).thenReturn(CompletableResultCode.ofSuccess());
@@ -128,7 +135,8 @@ class MemoryBufferingExporterTest {
 
         SpanExporter delegate = mock(SpanExporter.class);
         MemoryBufferingExporter bufferingExporter =
-                new MemoryBufferingExporter(currentNetworkProvider, delegate, backlogProvider);
+                new MemoryBufferingExporter(
+                        currentNetworkProvider, delegate, backlogProvider, droppedSpanCounter);
 
         when(delegate.export(spans))
                 .thenReturn(CompletableResultCode.ofFailure())
@@ -150,7 +158,8 @@ class MemoryBufferingExporterTest {
 
         SpanExporter delegate = mock(SpanExporter.class);
         MemoryBufferingExporter bufferingExporter =
-                new MemoryBufferingExporter(currentNetworkProvider, delegate, backlogProvider);
+                new MemoryBufferingExporter(
+                        currentNetworkProvider, delegate, backlogProvider, droppedSpanCounter);
         when(delegate.flush()).thenReturn(CompletableResultCode.ofSuccess());
 
         CompletableResultCode secondResult = bufferingExporter.flush();
@@ -163,11 +172,11 @@ class MemoryBufferingExporterTest {
     void maxBacklog() {
         List<SpanData> firstSet = new ArrayList<>();
         for (int i = 0; i < 110; i++) {
-            firstSet.add(mock(SpanData.class));
+            firstSet.add(span());
         }
         List<SpanData> secondSet = new ArrayList<>();
         for (int i = 0; i < 20; i++) {
-            secondSet.add(mock(SpanData.class));
+            secondSet.add(span());
         }
 
         when(currentNetwork.isOnline()).thenReturn(true);
@@ -176,7 +185,10 @@ class MemoryBufferingExporterTest {
         SpanExporter delegate = mock(SpanExporter.class);
         MemoryBufferingExporter bufferingExporter =
                 new MemoryBufferingExporter(
-                        currentNetworkProvider, delegate, new DefaultMemorySpanBuffer());
+                        currentNetworkProvider,
+                        delegate,
+                        new DefaultMemorySpanBuffer(),
+                        droppedSpanCounter);
 
         when(delegate.export(firstSet)).thenReturn(CompletableResultCode.ofFailure());
 
@@ -193,15 +205,29 @@ class MemoryBufferingExporterTest {
         List<SpanData> value = argumentCaptor.getValue();
         // we keep only 100 of the first 110 that failed.
         assertEquals(120, value.size());
+        assertEquals(10, droppedSpanCounter.get());
+        assertEquals(10, droppedSpanCounter.get(SpanPriority.UI));
     }
 
     @Test
     void shutdown() {
         SpanExporter delegate = mock(SpanExporter.class);
         MemoryBufferingExporter bufferingExporter =
-                new MemoryBufferingExporter(currentNetworkProvider, delegate, backlogProvider);
+                new MemoryBufferingExporter(
+                        currentNetworkProvider, delegate, backlogProvider, droppedSpanCounter);
 
         bufferingExporter.shutdown();
         verify(delegate).shutdown();
     }
+
+    private static SpanData span() {
+        return TestSpanData.builder()
+                .setName("span")
+                .setKind(SpanKind.INTERNAL)
+                .setStatus(StatusData.unset())
+                .setStartEpochNanos(0)
+                .setEndEpochNanos(1)
+                .setHasEnded(true)
+                .build();
+    }
 }
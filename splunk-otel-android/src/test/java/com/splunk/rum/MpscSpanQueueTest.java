@@ -0,0 +1,131 @@
+/*
+ * Copyright Splunk Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.splunk.rum;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.Mockito.mock;
+
+import io.opentelemetry.sdk.trace.ReadableSpan;
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import org.junit.jupiter.api.Test;
+
+class MpscSpanQueueTest {
+
+    @Test
+    void takesSpansOutInOrder() {
+        MpscSpanQueue queue = new MpscSpanQueue(4);
+        ReadableSpan first = mock(ReadableSpan.class);
+        ReadableSpan second = mock(ReadableSpan.class);
+
+        assertThat(queue.offer(first)).isEqualTo(1);
+        assertThat(queue.offer(second)).isEqualTo(2);
+        assertThat(queue.size()).isEqualTo(2);
+
+        assertThat(queue.poll()).isSameAs(first);
+        assertThat(queue.poll()).isSameAs(second);
+        assertThat(queue.poll()).isNull();
+        assertThat(queue.size()).isZero();
+    }
+
+    @Test
+    void rejectsSpansOverTheCapacity() {
+        // not a power of two, so the queue has more slots than its capacity
+        MpscSpanQueue queue = new MpscSpanQueue(3);
+        ReadableSpan span = mock(ReadableSpan.class);
+
+        assertThat(queue.offer(span)).isEqualTo(1);
+        assertThat(queue.offer(span)).isEqualTo(2);
+        assertThat(queue.offer(span)).isEqualTo(3);
+        assertThat(queue.offer(span)).isZero();
+
+        queue.poll();
+        assertThat(queue.offer(span)).isEqualTo(3);
+    }
+
+    @Test
+    void reusesSlotsAfterWrappingAround() {
+        MpscSpanQueue queue = new MpscSpanQueue(2);
+
+        for (int i = 0; i < 10; i++) {
+            ReadableSpan span = mock(ReadableSpan.class);
+            assertThat(queue.offer(span)).isEqualTo(1);
+            assertThat(queue.poll()).isSameAs(span);
+        }
+    }
+
+    @Test
+    void rejectsInvalidCapacity() {
+        assertThatThrownBy(() -> new MpscSpanQueue(0))
+                .isInstanceOf(IllegalArgumentException.class);
+    }
+
+    @Test
+    void deliversEverySpanOnceWithConcurrentProducers() throws InterruptedException {
+        int producers = 8;
+        int spansPerProducer = 1000;
+        MpscSpanQueue queue = new MpscSpanQueue(64);
+        List<ReadableSpan> spans = new ArrayList<>();
+        for (int i = 0; i < producers * spansPerProducer; i++) {
+            spans.add(mock(ReadableSpan.class));
+        }
+        CountDownLatch start = new CountDownLatch(1);
+        ExecutorService executor = Executors.newFixedThreadPool(producers);
+        for (int p = 0; p < producers; p++) {
+            List<ReadableSpan> own =
+                    spans.subList(p * spansPerProducer, (p + 1) * spansPerProducer);
+            executor.execute(
+                    () -> {
+                        awaitQuietly(start);
+                        for (ReadableSpan span : own) {
+                            while (queue.offer(span) == 0) {
+                                Thread.yield();
+                            }
+                        }
+                    });
+        }
+
+        start.countDown();
+        Map<ReadableSpan, Boolean> received = new IdentityHashMap<>();
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+        while (received.size() < spans.size() && System.nanoTime() < deadline) {
+            ReadableSpan span = queue.poll();
+            if (span != null) {
+                assertThat(received.put(span, true)).isNull();
+            }
+        }
+        executor.shutdown();
+
+        assertThat(received).hasSize(spans.size());
+        assertThat(queue.poll()).isNull();
+    }
+
+    private static void awaitQuietly(CountDownLatch latch) {
+        try {
+            latch.await();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
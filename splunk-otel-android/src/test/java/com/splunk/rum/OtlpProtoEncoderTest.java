@@ -0,0 +1,146 @@
+/*
+ * Copyright Splunk Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.splunk.rum;
+
+import static io.opentelemetry.api.common.AttributeKey.booleanKey;
+import static io.opentelemetry.api.common.AttributeKey.doubleKey;
+import static io.opentelemetry.api.common.AttributeKey.longKey;
+import static io.opentelemetry.api.common.AttributeKey.stringArrayKey;
+import static io.opentelemetry.api.common.AttributeKey.stringKey;
+import static java.util.Collections.singletonList;
+import static org.assertj.core.api.Assertions.assertThat;
+
+import io.opentelemetry.api.common.Attributes;
+import io.opentelemetry.api.trace.SpanContext;
+import io.opentelemetry.api.trace.SpanKind;
+import io.opentelemetry.api.trace.TraceFlags;
+import io.opentelemetry.api.trace.TraceState;
+import io.opentelemetry.sdk.resources.Resource;
+import io.opentelemetry.sdk.testing.trace.TestSpanData;
+import io.opentelemetry.sdk.trace.data.SpanData;
+import io.opentelemetry.sdk.trace.data.StatusData;
+import java.util.Arrays;
+import org.junit.jupiter.api.Test;
+
+class OtlpProtoEncoderTest {
+
+    private static final String TRACE_ID = "0102030405060708090a0b0c0d0e0f10";
+    private static final String SPAN_ID = "1112131415161718";
+
+    @Test
+    void encodesRequest() {
+        SpanData span = span(Attributes.of(stringKey("k"), "v"));
+
+        byte[] encoded = OtlpProtoEncoder.encode(singletonList(span));
+
+        assertThat(encoded)
+                .isEqualTo(
+                        hex(
+                                // ResourceSpans, with an empty resource
+                                "0a4a"
+                                        + "0a00"
+                                        // ScopeSpans, with an empty scope
+                                        + "1246"
+                                        + "0a00"
+                                        // Span
+                                        + "1242"
+                                        + "0a10"
+                                        + TRACE_ID
+                                        + "1208"
+                                        + SPAN_ID
+                                        // name, kind, start and end time
+                                        + "2a04"
+                                        + "7370616e"
+                                        + "3001"
+                                        + "396400000000000000"
+                                        + "41c800000000000000"
+                                        // attribute k=v
+                                        + "4a08"
+                                        + "0a016b"
+                                        + "1203"
+                                        + "0a0176"
+                                        // empty status
+                                        + "7a00"));
+    }
+
+    @Test
+    void encodesAttributeValues() {
+        SpanData span =
+                span(
+                        Attributes.builder()
+                                .put(longKey("l"), -1L)
+                                .put(doubleKey("d"), 1.5)
+                                .put(booleanKey("b"), true)
+                                .put(stringArrayKey("a"), Arrays.asList("x", "y"))
+                                .build());
+
+        byte[] encoded = OtlpProtoEncoder.encode(singletonList(span));
+
+        // negative ints take ten bytes
+        assertThat(encoded).containsSequence(hex("0a016c120b18ffffffffffffffffff01"));
+        assertThat(encoded).containsSequence(hex("0a0164120921000000000000f83f"));
+        assertThat(encoded).containsSequence(hex("0a016212021001"));
+        assertThat(encoded).containsSequence(hex("0a0161120c2a0a0a030a01780a030a0179"));
+    }
+
+    @Test
+    void groupsSpansByResource() {
+        Resource resource = Resource.create(Attributes.of(stringKey("service.name"), "app"));
+        SpanData first = span(Attributes.empty(), resource);
+        SpanData second = span(Attributes.empty(), Resource.empty());
+
+        byte[] encoded = OtlpProtoEncoder.encode(Arrays.asList(first, second, first));
+
+        byte[] firstGroup = OtlpProtoEncoder.encode(Arrays.asList(first, first));
+        byte[] secondGroup = OtlpProtoEncoder.encode(singletonList(second));
+        assertThat(encoded).hasSize(firstGroup.length + secondGroup.length);
+        assertThat(encoded).containsSequence(firstGroup);
+        assertThat(encoded).containsSequence(secondGroup);
+    }
+
+    private static SpanData span(Attributes attributes) {
+        return span(attributes, Resource.empty());
+    }
+
+    private static SpanData span(Attributes attributes, Resource resource) {
+        return TestSpanData.builder()
+                .setSpanContext(
+                        SpanContext.create(
+                                TRACE_ID,
+                                SPAN_ID,
+                                TraceFlags.getSampled(),
+                                TraceState.getDefault()))
+                .setName("span")
+                .setKind(SpanKind.INTERNAL)
+                .setStatus(StatusData.unset())
+                .setStartEpochNanos(100)
+                .setEndEpochNanos(200)
+                .setHasEnded(true)
+                .setAttributes(attributes)
+                .setTotalAttributeCount(attributes.size())
+                .setResource(resource)
+                .build();
+    }
+
+    private static byte[] hex(String hex) {
+        byte[] bytes = new byte[hex.length() / 2];
+        for (int i = 0; i < bytes.length; i++) {
+            bytes[i] = (byte) Integer.parseInt(hex.substring(2 * i, 2 * i + 2), 16);
+        }
+        return bytes;
+    }
+}
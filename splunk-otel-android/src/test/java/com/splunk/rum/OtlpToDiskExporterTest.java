@@ -0,0 +1,112 @@
+/*
+ * Copyright Splunk Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.splunk.rum;
+
+import static java.util.Collections.emptyList;
+import static java.util.Collections.singletonList;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.lenient;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyNoInteractions;
+import static org.mockito.Mockito.when;
+
+import io.opentelemetry.api.trace.SpanKind;
+import io.opentelemetry.sdk.common.CompletableResultCode;
+import io.opentelemetry.sdk.testing.trace.TestSpanData;
+import io.opentelemetry.sdk.trace.data.SpanData;
+import io.opentelemetry.sdk.trace.data.StatusData;
+import java.io.IOException;
+import java.util.List;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+@ExtendWith(MockitoExtension.class)
+class OtlpToDiskExporterTest {
+
+    private final SpanData span =
+            TestSpanData.builder()
+                    .setName("span")
+                    .setKind(SpanKind.INTERNAL)
+                    .setStatus(StatusData.unset())
+                    .setStartEpochNanos(100)
+                    .setEndEpochNanos(200)
+                    .setHasEnded(true)
+                    .build();
+
+    @Mock private SpanJournal journal;
+    @Mock private DeviceSpanStorageLimiter limiter;
+
+    private OtlpToDiskExporter exporter;
+
+    @BeforeEach
+    void setup() {
+        lenient().when(limiter.ensureFreeSpace()).thenReturn(true);
+        exporter =
+                OtlpToDiskExporter.builder()
+                        .journal(journal)
+                        .storageLimiter(limiter)
+                        .priority(SpanPriority.HTTP)
+                        .build();
+    }
+
+    @Test
+    void writesSerializedRequest() throws Exception {
+        CompletableResultCode result = exporter.export(singletonList(span));
+
+        assertThat(result.isSuccess()).isTrue();
+        @SuppressWarnings("unchecked")
+        ArgumentCaptor<List<byte[]>> records = ArgumentCaptor.forClass(List.class);
+        verify(journal).append(eq(SpanPriority.HTTP), records.capture());
+        assertThat(records.getValue())
+                .containsExactly(OtlpProtoEncoder.encode(singletonList(span)));
+    }
+
+    @Test
+    void emptyBatchNotWritten() {
+        assertThat(exporter.export(emptyList()).isSuccess()).isTrue();
+        verifyNoInteractions(journal);
+    }
+
+    @Test
+    void dropsSpansWhenStorageIsFull() {
+        when(limiter.ensureFreeSpace()).thenReturn(false);
+
+        assertThat(exporter.export(singletonList(span)).isSuccess()).isFalse();
+        verifyNoInteractions(journal);
+    }
+
+    @Test
+    void writeFailure() throws Exception {
+        doThrow(new IOException("boom")).when(journal).append(any(), anyList());
+
+        assertThat(exporter.export(singletonList(span)).isSuccess()).isFalse();
+    }
+
+    @Test
+    void shutdownSealsJournal() {
+        exporter.shutdown();
+        verify(journal).seal();
+    }
+}
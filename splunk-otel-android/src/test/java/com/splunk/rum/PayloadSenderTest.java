@@ -0,0 +1,164 @@
+/*
+ * Copyright Splunk Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.splunk.rum;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import io.opentelemetry.sdk.common.CompletableResultCode;
+import java.io.IOException;
+import java.util.Collections;
+import okhttp3.Call;
+import okhttp3.Callback;
+import okhttp3.Protocol;
+import okhttp3.Request;
+import okhttp3.RequestBody;
+import okhttp3.Response;
+import okio.Buffer;
+import okio.ByteString;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+@ExtendWith(MockitoExtension.class)
+class PayloadSenderTest {
+
+    private static final String ENDPOINT = "https://example.com/v1/rum?auth=token";
+
+    private final byte[] payload = {1, 2, 3};
+
+    @Mock private Call.Factory callFactory;
+    @Mock private Call call;
+
+    private PayloadSender sender;
+
+    @BeforeEach
+    void setup() {
+        when(callFactory.newCall(any())).thenReturn(call);
+        sender = new PayloadSender(callFactory, ENDPOINT);
+    }
+
+    @Test
+    void sendsCompressedPayload() throws Exception {
+        when(call.execute()).thenAnswer(invocation -> response(200));
+
+        sender.send(payload, PayloadSender.JSON, true);
+
+        Request request = captureRequest();
+        assertEquals(ENDPOINT, request.url().toString());
+        assertEquals("POST", request.method());
+        assertEquals("gzip", request.header("Content-Encoding"));
+        Buffer body = new Buffer();
+        request.body().writeTo(body);
+        assertEquals(ByteString.of(payload), body.readByteString());
+    }
+
+    @Test
+    void sendsHeaders() throws Exception {
+        when(call.execute()).thenAnswer(invocation -> response(200));
+        PayloadSender sender =
+                new PayloadSender(
+                        callFactory, ENDPOINT, Collections.singletonMap("X-SF-Token", "token"));
+
+        sender.send(payload, PayloadSender.PROTOBUF, false);
+
+        Request request = captureRequest();
+        assertEquals("token", request.header("X-SF-Token"));
+        assertEquals(PayloadSender.PROTOBUF, request.body().contentType());
+    }
+
+    @Test
+    void sendsUncompressedPayload() throws Exception {
+        when(call.execute()).thenAnswer(invocation -> response(200));
+
+        sender.send(payload, PayloadSender.JSON, false);
+
+        assertNull(captureRequest().header("Content-Encoding"));
+    }
+
+    @Test
+    void failsOnUnsuccessfulResponse() throws Exception {
+        when(call.execute()).thenAnswer(invocation -> response(503));
+
+        assertThrows(IOException.class, () -> sender.send(payload, PayloadSender.JSON, true));
+    }
+
+    @Test
+    void completesAsyncSendFromCallback() throws Exception {
+        CompletableResultCode result =
+                sender.sendAsync(RequestBody.create(PayloadSender.JSON, payload), true);
+
+        assertFalse(result.isDone());
+        captureCallback().onResponse(call, response(200));
+
+        assertTrue(result.isSuccess());
+        assertEquals("gzip", captureRequest().header("Content-Encoding"));
+    }
+
+    @Test
+    void failsAsyncSendOnUnsuccessfulResponse() throws Exception {
+        CompletableResultCode result =
+                sender.sendAsync(RequestBody.create(PayloadSender.JSON, payload), false);
+
+        captureCallback().onResponse(call, response(503));
+
+        assertTrue(result.isDone());
+        assertFalse(result.isSuccess());
+    }
+
+    @Test
+    void failsAsyncSendOnError() {
+        CompletableResultCode result =
+                sender.sendAsync(RequestBody.create(PayloadSender.JSON, payload), false);
+
+        captureCallback().onFailure(call, new IOException("boom"));
+
+        assertTrue(result.isDone());
+        assertFalse(result.isSuccess());
+    }
+
+    private Callback captureCallback() {
+        ArgumentCaptor<Callback> captor = ArgumentCaptor.forClass(Callback.class);
+        verify(call).enqueue(captor.capture());
+        return captor.getValue();
+    }
+
+    private Request captureRequest() {
+        ArgumentCaptor<Request> captor = ArgumentCaptor.forClass(Request.class);
+        verify(callFactory).newCall(captor.capture());
+        return captor.getValue();
+    }
+
+    private Response response(int code) {
+        return new Response.Builder()
+                .request(new Request.Builder().url(ENDPOINT).build())
+                .protocol(Protocol.HTTP_1_1)
+                .code(code)
+                .message("status " + code)
+                .build();
+    }
+}
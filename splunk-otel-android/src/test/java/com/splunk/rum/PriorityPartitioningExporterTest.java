@@ -0,0 +1,150 @@
+/*
+ * Copyright Splunk Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.splunk.rum;
+
+import static com.splunk.rum.SplunkRum.COMPONENT_KEY;
+import static java.util.Arrays.asList;
+import static java.util.Collections.singletonList;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.Mockito.inOrder;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyNoInteractions;
+import static org.mockito.Mockito.when;
+
+import androidx.annotation.Nullable;
+import io.opentelemetry.api.common.Attributes;
+import io.opentelemetry.api.trace.SpanKind;
+import io.opentelemetry.sdk.common.CompletableResultCode;
+import io.opentelemetry.sdk.testing.trace.TestSpanData;
+import io.opentelemetry.sdk.trace.data.SpanData;
+import io.opentelemetry.sdk.trace.data.StatusData;
+import io.opentelemetry.sdk.trace.export.SpanExporter;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InOrder;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+@ExtendWith(MockitoExtension.class)
+class PriorityPartitioningExporterTest {
+
+    @Mock private SpanExporter uiExporter;
+    @Mock private SpanExporter httpExporter;
+    @Mock private SpanExporter appStartExporter;
+    @Mock private SpanExporter errorExporter;
+
+    @Test
+    void spanPriorities() {
+        assertEquals(SpanPriority.ERROR, SpanPriority.of(span("crash")));
+        assertEquals(SpanPriority.ERROR, SpanPriority.of(span("error")));
+        assertEquals(SpanPriority.APPSTART, SpanPriority.of(span("appstart")));
+        assertEquals(SpanPriority.HTTP, SpanPriority.of(span("http")));
+        assertEquals(SpanPriority.UI, SpanPriority.of(span("ui")));
+        assertEquals(SpanPriority.UI, SpanPriority.of(span("custom")));
+        assertEquals(SpanPriority.UI, SpanPriority.of(span(null)));
+
+        assertEquals(SpanPriority.ERROR, SpanPriority.fromFileName("100.p3.spans"));
+        assertEquals(SpanPriority.HTTP, SpanPriority.fromFileName("100.r2-1234.p1.gz.spans"));
+        assertEquals(SpanPriority.UI, SpanPriority.fromFileName("100.spans"));
+    }
+
+    @Test
+    void splitsSpansByPriority() {
+        SpanData crash = span("crash");
+        SpanData click = span("ui");
+        SpanData request = span("http");
+        SpanData otherClick = span("ui");
+        when(errorExporter.export(singletonList(crash)))
+                .thenReturn(CompletableResultCode.ofSuccess());
+        when(httpExporter.export(singletonList(request)))
+                .thenReturn(CompletableResultCode.ofSuccess());
+        when(uiExporter.export(asList(click, otherClick)))
+                .thenReturn(CompletableResultCode.ofSuccess());
+
+        CompletableResultCode result =
+                buildExporter().export(asList(click, crash, request, otherClick));
+
+        assertTrue(result.isSuccess());
+        // the most valuable spans are written first
+        InOrder inOrder = inOrder(errorExporter, httpExporter, uiExporter);
+        inOrder.verify(errorExporter).export(singletonList(crash));
+        inOrder.verify(httpExporter).export(singletonList(request));
+        inOrder.verify(uiExporter).export(asList(click, otherClick));
+        verifyNoInteractions(appStartExporter);
+    }
+
+    @Test
+    void failsWhenAnyDelegateFails() {
+        SpanData crash = span("crash");
+        SpanData click = span("ui");
+        when(errorExporter.export(singletonList(crash)))
+                .thenReturn(CompletableResultCode.ofSuccess());
+        when(uiExporter.export(singletonList(click)))
+                .thenReturn(CompletableResultCode.ofFailure());
+
+        CompletableResultCode result = buildExporter().export(asList(click, crash));
+
+        assertTrue(result.isDone());
+        assertFalse(result.isSuccess());
+    }
+
+    @Test
+    void shutsDownAllDelegates() {
+        when(uiExporter.shutdown()).thenReturn(CompletableResultCode.ofSuccess());
+        when(httpExporter.shutdown()).thenReturn(CompletableResultCode.ofSuccess());
+        when(appStartExporter.shutdown()).thenReturn(CompletableResultCode.ofSuccess());
+        when(errorExporter.shutdown()).thenReturn(CompletableResultCode.ofSuccess());
+
+        assertTrue(buildExporter().shutdown().isSuccess());
+
+        verify(uiExporter).shutdown();
+        verify(errorExporter).shutdown();
+    }
+
+    private PriorityPartitioningExporter buildExporter() {
+        return new PriorityPartitioningExporter(
+                priority -> {
+                    switch (priority) {
+                        case ERROR:
+                            return errorExporter;
+                        case APPSTART:
+                            return appStartExporter;
+                        case HTTP:
+                            return httpExporter;
+                        default:
+                            return uiExporter;
+                    }
+                });
+    }
+
+    private static SpanData span(@Nullable String component) {
+        return TestSpanData.builder()
+                .setName("test")
+                .setKind(SpanKind.INTERNAL)
+                .setStatus(StatusData.unset())
+                .setHasEnded(true)
+                .setStartEpochNanos(0)
+                .setEndEpochNanos(1)
+                .setAttributes(
+                        component == null
+                                ? Attributes.empty()
+                                : Attributes.of(COMPONENT_KEY, component))
+                .build();
+    }
+}
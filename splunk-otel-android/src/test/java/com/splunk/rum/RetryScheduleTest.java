@@ -0,0 +1,110 @@
+/*
+ * Copyright Splunk Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.splunk.rum;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.lenient;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import io.opentelemetry.sdk.common.Clock;
+import java.io.File;
+import java.util.concurrent.TimeUnit;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+@ExtendWith(MockitoExtension.class)
+class RetryScheduleTest {
+
+    private static final long NOW_MILLIS = 1_000_000;
+
+    private final File spansDir = new File("/my/spans");
+
+    @Mock private SpanStorage spanStorage;
+    @Mock private FileUtils fileUtils;
+    @Mock private Clock clock;
+
+    private RetrySchedule retrySchedule;
+
+    @BeforeEach
+    void setup() {
+        lenient().when(clock.now()).thenReturn(TimeUnit.MILLISECONDS.toNanos(NOW_MILLIS));
+        lenient().when(fileUtils.rename(any(), any())).thenReturn(true);
+        retrySchedule =
+                RetrySchedule.builder()
+                        .spanStorage(spanStorage)
+                        .fileUtils(fileUtils)
+                        .clock(clock)
+                        .maxRetries(3)
+                        .retryDelayMillis(attempts -> attempts * 100L)
+                        .build();
+    }
+
+    @Test
+    void newFilesAreDue() {
+        assertTrue(retrySchedule.getMillisUntilNextAttempt(new File(spansDir, "100.spans")) <= 0);
+    }
+
+    @Test
+    void failureSchedulesNextAttemptInFileName() {
+        File file = new File(spansDir, "100.spans");
+        File renamed = new File(spansDir, "100.r1-1000100.spans");
+
+        retrySchedule.trackFailure(file);
+
+        verify(fileUtils).rename(file, renamed);
+        verify(spanStorage).recordRename(file, renamed);
+        assertEquals(100, retrySchedule.getMillisUntilNextAttempt(renamed));
+    }
+
+    @Test
+    void attemptsCarryOverAndKeepSuffix() {
+        File file = new File(spansDir, "100.r1-999999.gz.spans");
+
+        assertTrue(retrySchedule.getMillisUntilNextAttempt(file) <= 0);
+        retrySchedule.trackFailure(file);
+
+        verify(fileUtils).rename(file, new File(spansDir, "100.r2-1000200.gz.spans"));
+    }
+
+    @Test
+    void dropsFileWhenRetriesExhausted() {
+        File file = new File(spansDir, "100.r2-999999.spans");
+
+        retrySchedule.trackFailure(file);
+
+        verify(spanStorage).delete(file);
+        verify(fileUtils, never()).rename(any(), any());
+    }
+
+    @Test
+    void defaultDelayIsJitteredAndCapped() {
+        RetrySchedule.DefaultRetryDelay delay = new RetrySchedule.DefaultRetryDelay();
+        for (int i = 0; i < 100; i++) {
+            long first = delay.applyAsLong(1);
+            assertTrue(first >= 2_500 && first <= 5_000);
+            long late = delay.applyAsLong(50);
+            assertTrue(late >= 30_000 && late <= 60_000);
+        }
+    }
+}
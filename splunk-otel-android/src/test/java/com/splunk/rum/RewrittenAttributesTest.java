@@ -0,0 +1,116 @@
+/*
+ * Copyright Splunk Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.splunk.rum;
+
+import static io.opentelemetry.api.common.AttributeKey.longKey;
+import static io.opentelemetry.api.common.AttributeKey.stringKey;
+import static org.assertj.core.api.Assertions.assertThat;
+
+import io.opentelemetry.api.common.AttributeKey;
+import io.opentelemetry.api.common.Attributes;
+import org.junit.jupiter.api.Test;
+
+class RewrittenAttributesTest {
+
+    private static final AttributeKey<String> OLD_NAME = stringKey("old.name");
+    private static final AttributeKey<String> NEW_NAME = stringKey("new.name");
+    private static final AttributeKey<String> HIDDEN = stringKey("hidden");
+    private static final AttributeKey<String> KEPT = stringKey("kept");
+    private static final AttributeKey<Long> COUNT = longKey("count");
+
+    private final RewrittenAttributes.Rules rules =
+            RewrittenAttributes.Rules.builder().rename(OLD_NAME, NEW_NAME).remove(HIDDEN).build();
+
+    @Test
+    void appliesRules() {
+        Attributes original =
+                Attributes.of(OLD_NAME, "value", HIDDEN, "secret", KEPT, "kept", COUNT, 3L);
+
+        Attributes attributes = new RewrittenAttributes(original, rules);
+
+        Attributes expected = Attributes.of(NEW_NAME, "value", KEPT, "kept", COUNT, 3L);
+        assertThat(attributes.asMap()).isEqualTo(expected.asMap());
+        assertThat(attributes.get(NEW_NAME)).isEqualTo("value");
+        assertThat(attributes.get(OLD_NAME)).isNull();
+        assertThat(attributes.get(HIDDEN)).isNull();
+        assertThat(attributes.get(COUNT)).isEqualTo(3L);
+        assertThat(attributes.size()).isEqualTo(3);
+        assertThat(attributes).isEqualTo(expected);
+        assertThat(attributes.toBuilder().build()).isEqualTo(expected);
+    }
+
+    @Test
+    void renamedAttributeReplacesExistingOne() {
+        Attributes original = Attributes.of(OLD_NAME, "renamed", NEW_NAME, "existing");
+
+        Attributes attributes = new RewrittenAttributes(original, rules);
+
+        assertThat(attributes.get(NEW_NAME)).isEqualTo("renamed");
+        assertThat(attributes).isEqualTo(Attributes.of(NEW_NAME, "renamed"));
+    }
+
+    @Test
+    void keepsNewNameWithoutOriginal() {
+        Attributes original = Attributes.of(NEW_NAME, "existing");
+
+        Attributes attributes = new RewrittenAttributes(original, rules);
+
+        assertThat(attributes.get(NEW_NAME)).isEqualTo("existing");
+        assertThat(attributes.size()).isEqualTo(1);
+    }
+
+    @Test
+    void laterOverlaysWin() {
+        Attributes original = Attributes.of(KEPT, "original", OLD_NAME, "renamed");
+        Attributes first = Attributes.of(KEPT, "first", NEW_NAME, "first", COUNT, 1L);
+        Attributes second = Attributes.of(COUNT, 2L);
+
+        Attributes attributes = new RewrittenAttributes(original, rules, first, second);
+
+        assertThat(attributes.get(KEPT)).isEqualTo("first");
+        assertThat(attributes.get(NEW_NAME)).isEqualTo("first");
+        assertThat(attributes.get(COUNT)).isEqualTo(2L);
+        assertThat(attributes)
+                .isEqualTo(Attributes.of(KEPT, "first", NEW_NAME, "first", COUNT, 2L));
+        assertThat(attributes.size()).isEqualTo(3);
+    }
+
+    @Test
+    void indexedOverlayTakesPrecedenceLikeAnyOther() {
+        Attributes original = Attributes.of(KEPT, "original", OLD_NAME, "renamed");
+        Attributes overlay =
+                RewrittenAttributes.indexed(Attributes.of(KEPT, "overlay", COUNT, 1L));
+
+        Attributes attributes = new RewrittenAttributes(original, rules, overlay);
+
+        assertThat(overlay.get(COUNT)).isEqualTo(1L);
+        assertThat(overlay.get(HIDDEN)).isNull();
+        assertThat(overlay).isEqualTo(Attributes.of(KEPT, "overlay", COUNT, 1L));
+        assertThat(attributes.get(KEPT)).isEqualTo("overlay");
+        assertThat(attributes)
+                .isEqualTo(Attributes.of(KEPT, "overlay", COUNT, 1L, NEW_NAME, "renamed"));
+        assertThat(attributes.size()).isEqualTo(3);
+    }
+
+    @Test
+    void empty() {
+        Attributes attributes = new RewrittenAttributes(Attributes.empty(), rules);
+
+        assertThat(attributes.isEmpty()).isTrue();
+        assertThat(attributes.asMap()).isEmpty();
+    }
+}
@@ -114,7 +114,12 @@ class RumInitializerTest {
         assertEquals("SplunkRum.initialize", initSpan.getName());
         assertEquals("appstart", initSpan.getAttributes().get(COMPONENT_KEY));
         assertEquals(
-                "[debug:false,crashReporting:true,anrReporting:true,slowRenderingDetector:true,networkMonitor:true]",
+                "[debug:false,crashReporting:true,anrReporting:true,slowRenderingDetector:true,"
+                        + "networkMonitor:true,diskBuffering:false,diskBufferingCompression:false,"
+                        + "diskBufferingBinaryFormat:false,diskBufferingSpillover:false,"
+                        + "otlpExporter:false,stackTraceDeduplication:true,"
+                        + "throttledSpanSummary:false,adaptiveBatching:false,"
+                        + "lockFreeSpanProcessor:false]",
                 initSpan.getAttributes().get(stringKey("config_settings")));
 
         List<EventData> events = initSpan.getEvents();
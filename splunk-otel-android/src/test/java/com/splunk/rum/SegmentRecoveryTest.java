@@ -0,0 +1,105 @@
+/*
+ * Copyright Splunk Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.splunk.rum;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.zip.GZIPOutputStream;
+import org.junit.jupiter.api.Test;
+
+class SegmentRecoveryTest {
+
+    @Test
+    void jsonSegmentEndsAfterLastNewline() {
+        byte[] content = bytes("{\"a\":1}\n{\"b\":2}\n{\"c\"");
+
+        assertThat(SegmentRecovery.completeRecordsLength("1.spans.part", content)).isEqualTo(16);
+        assertThat(SegmentRecovery.completeRecordsLength("1.spans.part", bytes("{\"c\"")))
+                .isZero();
+    }
+
+    @Test
+    void compressedSegmentEndsAfterLastCompleteGzipMember() throws Exception {
+        byte[] first = gzip("[{\"a\":1}");
+        byte[] second = gzip(",{\"b\":2}");
+        byte[] content = concat(first, second);
+
+        for (int length = 0; length <= content.length; length++) {
+            int expected = length < first.length ? 0 : first.length;
+            if (length == content.length) {
+                expected = length;
+            }
+            assertThat(
+                            SegmentRecovery.completeRecordsLength(
+                                    "1.gz.spans.part", Arrays.copyOf(content, length)))
+                    .isEqualTo(expected);
+        }
+    }
+
+    @Test
+    void compressedSegmentWithCorruptMember() throws Exception {
+        byte[] first = gzip("[{\"a\":1}");
+        byte[] second = gzip(",{\"b\":2}");
+        // flip a bit of the crc
+        second[second.length - 5] ^= 1;
+
+        assertThat(
+                        SegmentRecovery.completeRecordsLength(
+                                "1.pb.gz.spans.part", concat(first, second)))
+                .isEqualTo(first.length);
+    }
+
+    @Test
+    void binarySegmentEndsAfterLastCompleteField() {
+        byte[] content = {0x0a, 0x02, 0x01, 0x02, 0x0a, 0x03, 0x01, 0x02};
+
+        assertThat(SegmentRecovery.completeRecordsLength("1.pb.spans.part", content)).isEqualTo(4);
+        assertThat(
+                        SegmentRecovery.completeRecordsLength(
+                                "1.otlp.spans.part", Arrays.copyOf(content, 5)))
+                .isEqualTo(4);
+    }
+
+    @Test
+    void binarySegmentStopsAtFieldThatIsNotLengthDelimited() {
+        byte[] content = {0x0a, 0x01, 0x00, 0x08, 0x01};
+
+        assertThat(SegmentRecovery.completeRecordsLength("1.pb.spans.part", content)).isEqualTo(3);
+    }
+
+    private static byte[] gzip(String content) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        try (GZIPOutputStream gzip = new GZIPOutputStream(out)) {
+            gzip.write(bytes(content));
+        }
+        return out.toByteArray();
+    }
+
+    private static byte[] concat(byte[] first, byte[] second) {
+        byte[] result = Arrays.copyOf(first, first.length + second.length);
+        System.arraycopy(second, 0, result, first.length, second.length);
+        return result;
+    }
+
+    private static byte[] bytes(String content) {
+        return content.getBytes(StandardCharsets.UTF_8);
+    }
+}
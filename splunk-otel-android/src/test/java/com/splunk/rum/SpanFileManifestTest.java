@@ -0,0 +1,118 @@
+/*
+ * Copyright Splunk Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.splunk.rum;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.io.File;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.stream.Stream;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+@ExtendWith(MockitoExtension.class)
+class SpanFileManifestTest {
+
+    private final File spansDir = new File("/my/spans");
+    private final File older = new File(spansDir, "100.spans");
+    private final File newer = new File(spansDir, "200.spans");
+    private final File background = new File(spansDir, "background/123/150.spans");
+
+    @Mock private FileUtils fileUtils;
+
+    @Test
+    void loadsFromDiskOnce() {
+        when(fileUtils.listFilesRecursively(spansDir))
+                .thenReturn(Stream.of(newer, background, older));
+        when(fileUtils.getFileSize(older)).thenReturn(1L);
+        when(fileUtils.getFileSize(newer)).thenReturn(2L);
+        when(fileUtils.getFileSize(background)).thenReturn(4L);
+        SpanFileManifest manifest = new SpanFileManifest(fileUtils, spansDir);
+
+        assertEquals(7, manifest.getTotalSizeInBytes());
+        assertEquals(Arrays.asList(older, background, newer), manifest.getFiles());
+        assertEquals(7, manifest.getTotalSizeInBytes());
+        verify(fileUtils).listFilesRecursively(spansDir);
+    }
+
+    @Test
+    void tracksChanges() {
+        File active = new File(spansDir, "300.spans.part");
+        File sealed = new File(spansDir, "300.spans");
+        when(fileUtils.listFilesRecursively(spansDir)).thenReturn(Stream.of(older));
+        when(fileUtils.getFileSize(older)).thenReturn(10L);
+        SpanFileManifest manifest = new SpanFileManifest(fileUtils, spansDir);
+
+        manifest.recordWrite(active, 5);
+        manifest.recordWrite(active, 3);
+        assertEquals(18, manifest.getTotalSizeInBytes());
+
+        manifest.recordRename(active, sealed);
+        assertEquals(Arrays.asList(older, sealed), manifest.getFiles());
+
+        assertEquals(10, manifest.remove(older));
+        assertEquals(0, manifest.remove(older));
+        assertEquals(8, manifest.getTotalSizeInBytes());
+        assertEquals(Collections.singletonList(sealed), manifest.getFiles());
+    }
+
+    @Test
+    void tracksChangesMadeBeforeTheFirstQuery() {
+        when(fileUtils.listFilesRecursively(spansDir)).thenReturn(Stream.of(older));
+        when(fileUtils.getFileSize(older)).thenReturn(10L);
+        SpanFileManifest manifest = new SpanFileManifest(fileUtils, spansDir);
+
+        manifest.recordWrite(newer, 5);
+        assertEquals(10, manifest.remove(older));
+
+        assertEquals(5, manifest.getTotalSizeInBytes());
+        assertEquals(Collections.singletonList(newer), manifest.getFiles());
+    }
+
+    @Test
+    void ordersMillisecondAndNanosecondTimestampsByTime() {
+        // milliseconds, as written by earlier versions
+        File legacy = new File(spansDir, "1700000000500.spans");
+        File legacyRetried = new File(spansDir, "1700000002000.r1-1700000007000.spans");
+        // nanoseconds, as written by the journal
+        File before = new File(spansDir, "1700000000000000000.p1.json.spans");
+        File between = new File(spansDir, "1700000001000000000.p3.json.gz.spans");
+        File after = new File(spansDir, "1700000003000000000.p0.json.spans.part");
+        when(fileUtils.listFilesRecursively(spansDir))
+                .thenReturn(Stream.of(after, legacyRetried, between, legacy, before));
+        SpanFileManifest manifest = new SpanFileManifest(fileUtils, spansDir);
+
+        assertEquals(
+                Arrays.asList(before, legacy, between, legacyRetried, after), manifest.getFiles());
+    }
+
+    @Test
+    void comparesTimestampsAsNumbers() {
+        File early = new File(spansDir, "99.spans");
+        File late = new File(spansDir, "100.spans");
+        File unnamed = new File(spansDir, "unknown.spans");
+        when(fileUtils.listFilesRecursively(spansDir)).thenReturn(Stream.of(late, early, unnamed));
+        SpanFileManifest manifest = new SpanFileManifest(fileUtils, spansDir);
+
+        assertEquals(Arrays.asList(unnamed, early, late), manifest.getFiles());
+    }
+}
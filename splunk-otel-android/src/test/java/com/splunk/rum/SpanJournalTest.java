@@ -0,0 +1,397 @@
+/*
+ * Copyright Splunk Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.splunk.rum;
+
+import static com.splunk.rum.SpanPriority.ERROR;
+import static com.splunk.rum.SpanPriority.HTTP;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.argThat;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.inOrder;
+import static org.mockito.Mockito.lenient;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyNoMoreInteractions;
+import static org.mockito.Mockito.when;
+
+import io.opentelemetry.sdk.common.Clock;
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InOrder;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+@ExtendWith(MockitoExtension.class)
+class SpanJournalTest {
+
+    private static final long MAX_SEGMENT_SIZE = 20;
+    private static final long MAX_SEGMENT_AGE = 1000;
+
+    private final File spansDir = new File("/my/spans");
+    private final List<byte[]> records =
+            Collections.singletonList("0123456789".getBytes(StandardCharsets.UTF_8));
+
+    @Mock private SpanStorage spanStorage;
+    @Mock private FileUtils fileUtils;
+    @Mock private Clock clock;
+
+    private SpanJournal journal;
+
+    @BeforeEach
+    void setup() {
+        lenient().when(spanStorage.provideSpansDirectory()).thenReturn(spansDir);
+        lenient().when(fileUtils.rename(any(), any())).thenReturn(true);
+        journal =
+                SpanJournal.builder()
+                        .spanStorage(spanStorage)
+                        .fileUtils(fileUtils)
+                        .clock(clock)
+                        .maxSegmentSizeBytes(MAX_SEGMENT_SIZE)
+                        .maxSegmentAgeNanos(MAX_SEGMENT_AGE)
+                        .build();
+    }
+
+    @Test
+    void appendsToActiveSegmentUntilSizeLimit() throws Exception {
+        when(clock.now()).thenReturn(100L);
+        File active = new File(spansDir, "100.p1.spans.part");
+        File sealed = new File(spansDir, "100.p1.spans");
+        when(fileUtils.appendAsLines(active, records)).thenReturn(11L);
+
+        journal.append(HTTP, records);
+        verify(fileUtils).appendAsLines(active, records);
+        verify(spanStorage).recordWrite(active, 11L);
+        verify(fileUtils, never()).rename(any(), any());
+
+        journal.append(HTTP, records);
+        verify(fileUtils, times(2)).appendAsLines(active, records);
+        verify(fileUtils).rename(active, sealed);
+        verify(spanStorage).recordRename(active, sealed);
+    }
+
+    @Test
+    void rollsOverByAge() throws Exception {
+        when(clock.now()).thenReturn(100L, 100L + MAX_SEGMENT_AGE);
+
+        journal.append(HTTP, records);
+        journal.append(HTTP, records);
+
+        verify(fileUtils)
+                .rename(
+                        new File(spansDir, "100.p1.spans.part"),
+                        new File(spansDir, "100.p1.spans"));
+        verify(fileUtils).appendAsLines(new File(spansDir, "1100.p1.spans.part"), records);
+    }
+
+    @Test
+    void sealIfExpired() throws Exception {
+        when(clock.now()).thenReturn(100L, 200L, 100L + MAX_SEGMENT_AGE);
+        File active = new File(spansDir, "100.p1.spans.part");
+
+        journal.append(HTTP, records);
+        journal.sealIfExpired();
+        verify(fileUtils, never()).rename(any(), any());
+
+        journal.sealIfExpired();
+        verify(fileUtils).rename(active, new File(spansDir, "100.p1.spans"));
+    }
+
+    @Test
+    void directoryChangeSealsSegment() throws Exception {
+        File backgroundDir = new File(spansDir, "background/123");
+        when(clock.now()).thenReturn(100L, 200L);
+        when(spanStorage.provideSpansDirectory()).thenReturn(backgroundDir, spansDir);
+
+        journal.append(HTTP, records);
+        journal.append(HTTP, records);
+
+        verify(fileUtils)
+                .rename(
+                        new File(backgroundDir, "100.p1.spans.part"),
+                        new File(backgroundDir, "100.p1.spans"));
+        verify(fileUtils).appendAsLines(new File(spansDir, "200.p1.spans.part"), records);
+    }
+
+    @Test
+    void priorityClassesGetSeparateSegments() throws Exception {
+        when(clock.now()).thenReturn(100L, 200L, 300L, 100L + MAX_SEGMENT_AGE);
+        File httpSegment = new File(spansDir, "100.p1.spans.part");
+        File errorSegment = new File(spansDir, "200.p3.spans.part");
+
+        journal.append(HTTP, records);
+        journal.append(ERROR, records);
+        verify(fileUtils).appendAsLines(httpSegment, records);
+        verify(fileUtils).appendAsLines(errorSegment, records);
+        verify(fileUtils, never()).rename(any(), any());
+
+        // the segments are sealed one by one
+        journal.sealIfExpired();
+        verify(fileUtils, never()).rename(any(), any());
+        journal.sealIfExpired();
+        verify(fileUtils).rename(httpSegment, new File(spansDir, "100.p1.spans"));
+        verify(fileUtils, never()).rename(eq(errorSegment), any());
+    }
+
+    @Test
+    void notifiesListener() throws Exception {
+        when(clock.now()).thenReturn(100L);
+        SpanJournal.Listener listener = mock(SpanJournal.Listener.class);
+        journal.setListener(listener);
+
+        journal.append(HTTP, records);
+        verify(listener).onSegmentStarted(TimeUnit.NANOSECONDS.toMillis(MAX_SEGMENT_AGE));
+        verify(listener, never()).onSegmentSealed();
+
+        journal.append(HTTP, records);
+        verify(listener).onSegmentSealed();
+        verifyNoMoreInteractions(listener);
+    }
+
+    @Test
+    void millisUntilActiveSegmentExpires() throws Exception {
+        SpanJournal slowJournal =
+                SpanJournal.builder()
+                        .spanStorage(spanStorage)
+                        .fileUtils(fileUtils)
+                        .clock(clock)
+                        .maxSegmentAgeNanos(TimeUnit.SECONDS.toNanos(15))
+                        .build();
+        assertEquals(Long.MAX_VALUE, slowJournal.getMillisUntilActiveSegmentExpires());
+
+        when(clock.now()).thenReturn(0L, TimeUnit.SECONDS.toNanos(5));
+        slowJournal.append(HTTP, records);
+        assertEquals(10_000L, slowJournal.getMillisUntilActiveSegmentExpires());
+
+        slowJournal.seal();
+        assertEquals(Long.MAX_VALUE, slowJournal.getMillisUntilActiveSegmentExpires());
+    }
+
+    @Test
+    void compressedSegmentsFormAJsonList() throws Exception {
+        SpanJournal compressedJournal =
+                SpanJournal.builder()
+                        .spanStorage(spanStorage)
+                        .fileUtils(fileUtils)
+                        .clock(clock)
+                        .maxSegmentSizeBytes(MAX_SEGMENT_SIZE)
+                        .compressed(true)
+                        .build();
+        when(clock.now()).thenReturn(100L);
+        File active = new File(spansDir, "100.p1.gz.spans.part");
+
+        compressedJournal.append(HTTP, records);
+        compressedJournal.append(HTTP, records);
+
+        InOrder inOrder = inOrder(fileUtils);
+        inOrder.verify(fileUtils).appendCompressed(eq(active), chunk("[0123456789"));
+        inOrder.verify(fileUtils).appendCompressed(eq(active), chunk(",0123456789"));
+        inOrder.verify(fileUtils).appendCompressed(eq(active), chunk("]"));
+        inOrder.verify(fileUtils).rename(active, new File(spansDir, "100.p1.gz.spans"));
+        verify(fileUtils, never()).appendAsLines(any(), any());
+    }
+
+    @Test
+    void binarySegmentsHoldRecordsBackToBack() throws Exception {
+        SpanJournal binaryJournal =
+                SpanJournal.builder()
+                        .spanStorage(spanStorage)
+                        .fileUtils(fileUtils)
+                        .clock(clock)
+                        .maxSegmentSizeBytes(MAX_SEGMENT_SIZE)
+                        .format(SpanFormat.ZIPKIN_PROTO3)
+                        .build();
+        when(clock.now()).thenReturn(100L);
+        File active = new File(spansDir, "100.p1.pb.spans.part");
+
+        binaryJournal.append(HTTP, records);
+        // without separators, two records reach the size limit
+        binaryJournal.append(HTTP, records);
+
+        verify(fileUtils, times(2)).appendBytes(active, records);
+        verify(fileUtils).rename(active, new File(spansDir, "100.p1.pb.spans"));
+        verify(fileUtils, never()).appendAsLines(any(), any());
+    }
+
+    @Test
+    void compressedBinarySegmentsHaveNoListBrackets() throws Exception {
+        SpanJournal binaryJournal =
+                SpanJournal.builder()
+                        .spanStorage(spanStorage)
+                        .fileUtils(fileUtils)
+                        .clock(clock)
+                        .maxSegmentSizeBytes(MAX_SEGMENT_SIZE)
+                        .compressed(true)
+                        .format(SpanFormat.ZIPKIN_PROTO3)
+                        .build();
+        when(clock.now()).thenReturn(100L);
+        File active = new File(spansDir, "100.p1.pb.gz.spans.part");
+
+        binaryJournal.append(HTTP, records);
+        binaryJournal.append(HTTP, records);
+
+        verify(fileUtils, times(2)).appendCompressed(active, records);
+        verify(fileUtils).rename(active, new File(spansDir, "100.p1.pb.gz.spans"));
+    }
+
+    @Test
+    void otlpSegmentsAreMarked() throws Exception {
+        SpanJournal otlpJournal =
+                SpanJournal.builder()
+                        .spanStorage(spanStorage)
+                        .fileUtils(fileUtils)
+                        .clock(clock)
+                        .format(SpanFormat.OTLP)
+                        .build();
+        when(clock.now()).thenReturn(100L);
+        File active = new File(spansDir, "100.p3.otlp.spans.part");
+
+        otlpJournal.append(ERROR, records);
+        otlpJournal.seal();
+
+        verify(fileUtils).appendBytes(active, records);
+        File sealed = new File(spansDir, "100.p3.otlp.spans");
+        verify(fileUtils).rename(active, sealed);
+        assertEquals(SpanFormat.OTLP, SpanFormat.fromFileName(sealed.getName()));
+        assertEquals(SpanFormat.ZIPKIN_PROTO3, SpanFormat.fromFileName("1.p0.pb.gz.spans"));
+        assertEquals(SpanFormat.ZIPKIN_JSON, SpanFormat.fromFileName("1.r2-300.spans"));
+    }
+
+    @Test
+    void sealsSegmentsLeftByPreviousRun() throws Exception {
+        File orphan = new File(spansDir, "50.spans.part");
+        File sealed = new File(spansDir, "40.spans");
+        when(fileUtils.listFiles(spansDir)).thenReturn(Stream.of(orphan, sealed));
+        when(fileUtils.readFileBytes(orphan)).thenReturn(bytes("{}\n"));
+
+        journal.sealIfExpired();
+        journal.sealIfExpired();
+
+        verify(fileUtils).rename(orphan, new File(spansDir, "50.spans"));
+        verify(fileUtils).rename(any(), any());
+        verify(fileUtils).listFiles(spansDir);
+    }
+
+    @Test
+    void truncatesPartiallyWrittenRecordOfPreviousRun() throws Exception {
+        File orphan = new File(spansDir, "50.spans.part");
+        when(fileUtils.listFiles(spansDir)).thenReturn(Stream.of(orphan));
+        when(fileUtils.readFileBytes(orphan)).thenReturn(bytes("{\"a\":1}\n{\"b\""));
+
+        journal.sealIfExpired();
+
+        InOrder inOrder = inOrder(fileUtils, spanStorage);
+        inOrder.verify(fileUtils).truncate(orphan, 8);
+        inOrder.verify(spanStorage).recordWrite(orphan, -4);
+        inOrder.verify(fileUtils).rename(orphan, new File(spansDir, "50.spans"));
+    }
+
+    @Test
+    void dropsSegmentOfPreviousRunWithoutCompleteRecords() throws Exception {
+        File orphan = new File(spansDir, "50.spans.part");
+        when(fileUtils.listFiles(spansDir)).thenReturn(Stream.of(orphan));
+        when(fileUtils.readFileBytes(orphan)).thenReturn(bytes("{\"a\""));
+
+        journal.sealIfExpired();
+
+        verify(spanStorage).delete(orphan);
+        verify(fileUtils, never()).rename(any(), any());
+    }
+
+    @Test
+    void cutsOffPartiallyAppendedRecords() throws Exception {
+        when(clock.now()).thenReturn(100L);
+        File active = new File(spansDir, "100.p1.spans.part");
+        when(fileUtils.appendAsLines(active, records))
+                .thenReturn(5L)
+                .thenThrow(new IOException("disk full"))
+                .thenReturn(5L);
+
+        journal.append(HTTP, records);
+        assertThrows(IOException.class, () -> journal.append(HTTP, records));
+        journal.append(HTTP, records);
+
+        InOrder inOrder = inOrder(fileUtils, spanStorage);
+        inOrder.verify(spanStorage).recordWrite(active, 5L);
+        inOrder.verify(fileUtils).truncate(active, 5L);
+        inOrder.verify(spanStorage).recordWrite(active, 5L);
+        verify(spanStorage, never()).delete(any());
+    }
+
+    @Test
+    void dropsSegmentWhenItsFirstAppendFails() throws Exception {
+        when(clock.now()).thenReturn(100L, 200L);
+        File failed = new File(spansDir, "100.p1.spans.part");
+        // the second append goes to another segment
+        when(fileUtils.appendAsLines(any(), eq(records)))
+                .thenThrow(new IOException("disk full"))
+                .thenReturn(11L);
+
+        assertThrows(IOException.class, () -> journal.append(HTTP, records));
+        journal.append(HTTP, records);
+
+        verify(spanStorage).delete(failed);
+        verify(fileUtils, never()).truncate(any(), anyLong());
+        verify(fileUtils).appendAsLines(new File(spansDir, "200.p1.spans.part"), records);
+    }
+
+    @Test
+    void dropsSegmentThatCannotBeTruncatedAfterAFailedAppend() throws Exception {
+        when(clock.now()).thenReturn(100L, 100L, 200L);
+        File failed = new File(spansDir, "100.p1.spans.part");
+        when(fileUtils.appendAsLines(any(), eq(records)))
+                .thenReturn(5L)
+                .thenThrow(new IOException("disk full"))
+                .thenReturn(5L);
+        doThrow(new IOException("read-only")).when(fileUtils).truncate(failed, 5L);
+
+        journal.append(HTTP, records);
+        assertThrows(IOException.class, () -> journal.append(HTTP, records));
+        journal.append(HTTP, records);
+
+        verify(spanStorage).delete(failed);
+        verify(fileUtils).appendAsLines(new File(spansDir, "200.p1.spans.part"), records);
+    }
+
+    private static byte[] bytes(String content) {
+        return content.getBytes(StandardCharsets.UTF_8);
+    }
+
+    private static List<byte[]> chunk(String expected) {
+        return argThat(
+                parts -> {
+                    StringBuilder actual = new StringBuilder();
+                    for (byte[] part : parts) {
+                        actual.append(new String(part, StandardCharsets.UTF_8));
+                    }
+                    return expected.contentEquals(actual);
+                });
+    }
+}
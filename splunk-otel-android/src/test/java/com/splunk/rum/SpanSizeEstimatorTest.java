@@ -0,0 +1,101 @@
+/*
+ * Copyright Splunk Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.splunk.rum;
+
+import static io.opentelemetry.api.common.AttributeKey.stringKey;
+import static org.assertj.core.api.Assertions.assertThat;
+
+import io.opentelemetry.api.common.Attributes;
+import io.opentelemetry.api.trace.SpanContext;
+import io.opentelemetry.api.trace.SpanKind;
+import io.opentelemetry.sdk.testing.trace.TestSpanData;
+import io.opentelemetry.sdk.trace.data.EventData;
+import io.opentelemetry.sdk.trace.data.LinkData;
+import io.opentelemetry.sdk.trace.data.StatusData;
+import java.util.Arrays;
+import java.util.Collections;
+import org.junit.jupiter.api.Test;
+
+class SpanSizeEstimatorTest {
+
+    private static final Attributes LARGE_ATTRIBUTES =
+            Attributes.of(stringKey("exception.stacktrace"), repeat('x', 1000));
+
+    @Test
+    void countsAttributes() {
+        long empty = estimate(startBuilder());
+        long withAttributes = estimate(startBuilder().setAttributes(LARGE_ATTRIBUTES));
+
+        assertThat(withAttributes - empty).isGreaterThanOrEqualTo(2000);
+    }
+
+    @Test
+    void countsEvents() {
+        long empty = estimate(startBuilder());
+        long withEvent =
+                estimate(
+                        startBuilder()
+                                .setEvents(
+                                        Collections.singletonList(
+                                                EventData.create(1, "event", LARGE_ATTRIBUTES))));
+
+        assertThat(withEvent - empty).isGreaterThanOrEqualTo(2000);
+    }
+
+    @Test
+    void countsLinks() {
+        long empty = estimate(startBuilder());
+        long withLink =
+                estimate(
+                        startBuilder()
+                                .setLinks(
+                                        Collections.singletonList(
+                                                LinkData.create(
+                                                        SpanContext.getInvalid(),
+                                                        LARGE_ATTRIBUTES))));
+
+        assertThat(withLink - empty).isGreaterThanOrEqualTo(2000);
+    }
+
+    @Test
+    void countsName() {
+        long shortName = estimate(startBuilder());
+        long longName = estimate(startBuilder().setName(repeat('n', 100)));
+
+        assertThat(longName - shortName).isEqualTo(2 * (100 - "span".length()));
+    }
+
+    private static long estimate(TestSpanData.Builder builder) {
+        return SpanSizeEstimator.estimateRetainedBytes(builder.build());
+    }
+
+    private static String repeat(char c, int count) {
+        char[] chars = new char[count];
+        Arrays.fill(chars, c);
+        return new String(chars);
+    }
+
+    private static TestSpanData.Builder startBuilder() {
+        return TestSpanData.builder()
+                .setName("span")
+                .setKind(SpanKind.INTERNAL)
+                .setStatus(StatusData.unset())
+                .setStartEpochNanos(0)
+                .setEndEpochNanos(1)
+                .setHasEnded(true);
+    }
+}
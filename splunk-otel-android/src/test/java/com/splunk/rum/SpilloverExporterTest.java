@@ -0,0 +1,193 @@
+/*
+ * Copyright Splunk Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.splunk.rum;
+
+import static java.util.Collections.singletonList;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.lenient;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import android.content.ComponentCallbacks2;
+import io.opentelemetry.android.instrumentation.network.CurrentNetwork;
+import io.opentelemetry.android.instrumentation.network.CurrentNetworkProvider;
+import io.opentelemetry.api.trace.SpanKind;
+import io.opentelemetry.sdk.common.Clock;
+import io.opentelemetry.sdk.common.CompletableResultCode;
+import io.opentelemetry.sdk.testing.trace.TestSpanData;
+import io.opentelemetry.sdk.trace.data.SpanData;
+import io.opentelemetry.sdk.trace.data.StatusData;
+import io.opentelemetry.sdk.trace.export.SpanExporter;
+import java.util.Arrays;
+import java.util.concurrent.ExecutorService;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+@ExtendWith(MockitoExtension.class)
+class SpilloverExporterTest {
+
+    private static final long RETRY_DELAY_NANOS = 1000;
+
+    private final SpanData first = span("first");
+    private final SpanData second = span("second");
+
+    @Mock private CurrentNetworkProvider currentNetworkProvider;
+    @Mock private CurrentNetwork currentNetwork;
+    @Mock private SpanExporter delegate;
+    @Mock private SpanExporter diskExporter;
+    @Mock private ExecutorService spillExecutor;
+    @Mock private Clock clock;
+
+    @BeforeEach
+    void setUp() {
+        lenient().when(currentNetworkProvider.refreshNetworkStatus()).thenReturn(currentNetwork);
+        lenient()
+                .when(delegate.export(anyList()))
+                .thenReturn(CompletableResultCode.ofSuccess());
+        lenient()
+                .when(diskExporter.export(anyList()))
+                .thenReturn(CompletableResultCode.ofSuccess());
+    }
+
+    @Test
+    void exportsFromMemoryWhileOnline() {
+        when(currentNetwork.isOnline()).thenReturn(true);
+
+        CompletableResultCode result = exporter(Long.MAX_VALUE).export(singletonList(first));
+
+        assertThat(result.isSuccess()).isTrue();
+        verify(delegate).export(singletonList(first));
+        verify(diskExporter, never()).export(anyList());
+    }
+
+    @Test
+    void keepsSpansInMemoryWhileOffline() {
+        when(currentNetwork.isOnline()).thenReturn(false, true);
+        SpilloverExporter exporter = exporter(Long.MAX_VALUE);
+
+        assertThat(exporter.export(singletonList(first)).isSuccess()).isTrue();
+        verify(delegate, never()).export(anyList());
+
+        exporter.export(singletonList(second));
+
+        verify(delegate).export(Arrays.asList(first, second));
+        verify(diskExporter, never()).export(anyList());
+    }
+
+    @Test
+    void spillsBacklogOverThreshold() {
+        when(currentNetwork.isOnline()).thenReturn(false);
+
+        exporter(1).export(Arrays.asList(first, second));
+
+        verify(diskExporter).export(Arrays.asList(first, second));
+        verify(delegate, never()).export(anyList());
+    }
+
+    @Test
+    void spillsAfterFailedExport() {
+        when(currentNetwork.isOnline()).thenReturn(true);
+        when(delegate.export(singletonList(first))).thenReturn(CompletableResultCode.ofFailure());
+        when(clock.nanoTime()).thenReturn(0L, 0L, RETRY_DELAY_NANOS);
+        SpilloverExporter exporter = exporter(Long.MAX_VALUE);
+
+        // the spans that failed are written to disk instead
+        assertThat(exporter.export(singletonList(first)).isSuccess()).isTrue();
+        verify(diskExporter).export(singletonList(first));
+
+        // and so are the next ones, until the backend is tried again
+        exporter.export(singletonList(second));
+        verify(diskExporter).export(singletonList(second));
+
+        SpanData third = span("third");
+        exporter.export(singletonList(third));
+        verify(delegate).export(singletonList(third));
+    }
+
+    @Test
+    void failsIfSpillingFails() {
+        when(currentNetwork.isOnline()).thenReturn(true);
+        when(delegate.export(anyList())).thenReturn(CompletableResultCode.ofFailure());
+        when(diskExporter.export(anyList())).thenReturn(CompletableResultCode.ofFailure());
+
+        CompletableResultCode result = exporter(Long.MAX_VALUE).export(singletonList(first));
+
+        assertThat(result.isSuccess()).isFalse();
+    }
+
+    @Test
+    void spillsBacklogWhenTrimmingMemory() {
+        when(currentNetwork.isOnline()).thenReturn(false);
+        doAnswer(
+                        invocation -> {
+                            invocation.getArgument(0, Runnable.class).run();
+                            return null;
+                        })
+                .when(spillExecutor)
+                .execute(any());
+        SpilloverExporter exporter = exporter(Long.MAX_VALUE);
+        exporter.export(singletonList(first));
+
+        exporter.componentCallbacks().onTrimMemory(ComponentCallbacks2.TRIM_MEMORY_UI_HIDDEN);
+
+        verify(diskExporter).export(singletonList(first));
+    }
+
+    @Test
+    void shutdownSpillsBacklog() {
+        when(currentNetwork.isOnline()).thenReturn(false);
+        when(delegate.shutdown()).thenReturn(CompletableResultCode.ofSuccess());
+        when(diskExporter.shutdown()).thenReturn(CompletableResultCode.ofSuccess());
+        SpilloverExporter exporter = exporter(Long.MAX_VALUE);
+        exporter.export(singletonList(first));
+
+        assertThat(exporter.shutdown().isSuccess()).isTrue();
+
+        verify(diskExporter).export(singletonList(first));
+        verify(spillExecutor).shutdown();
+    }
+
+    private SpilloverExporter exporter(long spillThresholdBytes) {
+        return SpilloverExporter.builder()
+                .currentNetworkProvider(currentNetworkProvider)
+                .delegate(delegate)
+                .diskExporter(diskExporter)
+                .spillExecutor(spillExecutor)
+                .clock(clock)
+                .spillThresholdBytes(spillThresholdBytes)
+                .backendRetryDelayNanos(RETRY_DELAY_NANOS)
+                .build();
+    }
+
+    private static SpanData span(String name) {
+        return TestSpanData.builder()
+                .setName(name)
+                .setKind(SpanKind.INTERNAL)
+                .setStatus(StatusData.unset())
+                .setStartEpochNanos(0)
+                .setEndEpochNanos(1)
+                .setHasEnded(true)
+                .build();
+    }
+}
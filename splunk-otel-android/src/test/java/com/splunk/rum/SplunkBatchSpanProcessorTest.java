@@ -0,0 +1,282 @@
+/*
+ * Copyright Splunk Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.splunk.rum;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.anyBoolean;
+import static org.mockito.Mockito.lenient;
+import static org.mockito.Mockito.atMost;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+
+import io.opentelemetry.api.trace.SpanContext;
+import io.opentelemetry.api.trace.SpanKind;
+import io.opentelemetry.api.trace.TraceFlags;
+import io.opentelemetry.api.trace.TraceState;
+import io.opentelemetry.sdk.common.CompletableResultCode;
+import io.opentelemetry.sdk.testing.trace.TestSpanData;
+import io.opentelemetry.sdk.trace.ReadableSpan;
+import io.opentelemetry.sdk.trace.data.SpanData;
+import io.opentelemetry.sdk.trace.data.StatusData;
+import io.opentelemetry.sdk.trace.export.SpanExporter;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+@ExtendWith(MockitoExtension.class)
+class SplunkBatchSpanProcessorTest {
+
+    private static final AdaptiveExportSchedule.Settings HOURLY =
+            new AdaptiveExportSchedule.Settings(TimeUnit.HOURS.toNanos(1), 100);
+
+    @Mock private AdaptiveExportSchedule schedule;
+
+    private final RecordingExporter exporter = new RecordingExporter();
+    private final DroppedSpanCounter droppedSpanCounter = new DroppedSpanCounter();
+    private final ExportMetrics metrics = new ExportMetrics();
+
+    private SplunkBatchSpanProcessor underTest;
+
+    @BeforeEach
+    void setUp() {
+        lenient().when(schedule.isForeground()).thenReturn(false);
+        lenient().when(schedule.current(anyBoolean())).thenReturn(HOURLY);
+    }
+
+    @AfterEach
+    void tearDown() {
+        if (underTest != null) {
+            underTest.shutdown().join(5, TimeUnit.SECONDS);
+        }
+    }
+
+    @Test
+    void forceFlushExportsQueuedSpans() {
+        underTest = build(SplunkBatchSpanProcessor.DEFAULT_MAX_QUEUE_SIZE);
+
+        underTest.onEnd(span("a", true));
+        underTest.onEnd(span("b", true));
+        CompletableResultCode result = underTest.forceFlush().join(5, TimeUnit.SECONDS);
+
+        assertThat(result.isSuccess()).isTrue();
+        assertThat(exporter.spanNames()).containsExactly("a", "b");
+    }
+
+    @Test
+    void exportsInBatchesOfTheScheduledSize() {
+        lenient()
+                .when(schedule.current(anyBoolean()))
+                .thenReturn(new AdaptiveExportSchedule.Settings(TimeUnit.HOURS.toNanos(1), 2));
+        underTest = build(SplunkBatchSpanProcessor.DEFAULT_MAX_QUEUE_SIZE);
+
+        for (int i = 0; i < 5; i++) {
+            underTest.onEnd(span("span" + i, true));
+        }
+        underTest.forceFlush().join(5, TimeUnit.SECONDS);
+
+        assertThat(exporter.spanNames()).hasSize(5);
+        assertThat(exporter.batchSizes()).allSatisfy(size -> assertThat(size).isLessThan(3));
+    }
+
+    @Test
+    void exportsAFullBatchWithoutWaitingForTheDelay() throws InterruptedException {
+        lenient()
+                .when(schedule.current(anyBoolean()))
+                .thenReturn(new AdaptiveExportSchedule.Settings(TimeUnit.HOURS.toNanos(1), 2));
+        underTest = build(SplunkBatchSpanProcessor.DEFAULT_MAX_QUEUE_SIZE);
+
+        underTest.onEnd(span("a", true));
+        underTest.onEnd(span("b", true));
+
+        assertThat(exporter.awaitSpans(2)).isTrue();
+    }
+
+    @Test
+    void exportsPromptlyWhenTheAppComesToTheForeground() throws InterruptedException {
+        // the worker thread reads the state while the test changes it, so don't re-stub
+        AtomicBoolean foreground = new AtomicBoolean();
+        lenient().when(schedule.isForeground()).thenAnswer(invocation -> foreground.get());
+        lenient()
+                .when(schedule.current(true))
+                .thenReturn(new AdaptiveExportSchedule.Settings(0, 100));
+        underTest = build(SplunkBatchSpanProcessor.DEFAULT_MAX_QUEUE_SIZE);
+        underTest.onEnd(span("background", true));
+        assertThat(underTest.forceFlush().join(5, TimeUnit.SECONDS).isSuccess()).isTrue();
+
+        foreground.set(true);
+        underTest.onEnd(span("foreground", true));
+
+        assertThat(exporter.awaitSpans(2)).isTrue();
+    }
+
+    @Test
+    void doesNotWakeUpWhileTheQueueIsEmpty() throws InterruptedException {
+        long delayNanos = TimeUnit.MILLISECONDS.toNanos(1);
+        lenient()
+                .when(schedule.current(anyBoolean()))
+                .thenReturn(new AdaptiveExportSchedule.Settings(delayNanos, 100));
+        underTest = build(SplunkBatchSpanProcessor.DEFAULT_MAX_QUEUE_SIZE);
+
+        Thread.sleep(100);
+        verify(schedule, atMost(1)).current(anyBoolean());
+
+        underTest.onEnd(span("a", true));
+        assertThat(exporter.awaitSpans(1)).isTrue();
+    }
+
+    @Test
+    void dropsSpansWhenTheQueueIsFull() {
+        underTest = build(2);
+
+        underTest.onEnd(span("a", true));
+        underTest.onEnd(span("b", true));
+        underTest.onEnd(span("c", true));
+
+        assertThat(droppedSpanCounter.get()).isEqualTo(1);
+        assertThat(metrics.getSpanQueueDrops()).isEqualTo(1);
+        assertThat(metrics.getSpanQueueHighWatermark()).isEqualTo(2);
+        underTest.forceFlush().join(5, TimeUnit.SECONDS);
+        assertThat(exporter.spanNames()).containsExactly("a", "b");
+    }
+
+    @Test
+    void exportsOnAFixedScheduleWithoutAnAdaptiveOne() {
+        underTest = SplunkBatchSpanProcessor.builder().exporter(exporter).metrics(metrics).build();
+
+        underTest.onEnd(span("a", true));
+        underTest.forceFlush().join(5, TimeUnit.SECONDS);
+
+        assertThat(exporter.spanNames()).containsExactly("a");
+        assertThat(metrics.getSpanQueueHighWatermark()).isEqualTo(1);
+    }
+
+    @Test
+    void ignoresUnsampledSpans() {
+        underTest = build(SplunkBatchSpanProcessor.DEFAULT_MAX_QUEUE_SIZE);
+
+        underTest.onEnd(span("unsampled", false));
+        underTest.forceFlush().join(5, TimeUnit.SECONDS);
+
+        assertThat(exporter.spanNames()).isEmpty();
+    }
+
+    @Test
+    void shutdownExportsRemainingSpans() {
+        underTest = build(SplunkBatchSpanProcessor.DEFAULT_MAX_QUEUE_SIZE);
+
+        underTest.onEnd(span("a", true));
+        CompletableResultCode result = underTest.shutdown().join(5, TimeUnit.SECONDS);
+
+        assertThat(result.isSuccess()).isTrue();
+        assertThat(exporter.spanNames()).containsExactly("a");
+        assertThat(exporter.shutdown).isTrue();
+    }
+
+    private SplunkBatchSpanProcessor build(int maxQueueSize) {
+        return SplunkBatchSpanProcessor.builder()
+                .exporter(exporter)
+                .schedule(schedule)
+                .droppedSpanCounter(droppedSpanCounter)
+                .metrics(metrics)
+                .maxQueueSize(maxQueueSize)
+                .build();
+    }
+
+    private static ReadableSpan span(String name, boolean sampled) {
+        SpanContext spanContext =
+                SpanContext.create(
+                        "00000000000000000000000000000001",
+                        "0000000000000001",
+                        sampled ? TraceFlags.getSampled() : TraceFlags.getDefault(),
+                        TraceState.getDefault());
+        SpanData spanData =
+                TestSpanData.builder()
+                        .setName(name)
+                        .setSpanContext(spanContext)
+                        .setKind(SpanKind.INTERNAL)
+                        .setStatus(StatusData.unset())
+                        .setHasEnded(true)
+                        .setStartEpochNanos(0)
+                        .setEndEpochNanos(1)
+                        .build();
+        ReadableSpan span = mock(ReadableSpan.class);
+        lenient().when(span.getSpanContext()).thenReturn(spanContext);
+        lenient().when(span.toSpanData()).thenReturn(spanData);
+        return span;
+    }
+
+    private static final class RecordingExporter implements SpanExporter {
+        private final List<List<SpanData>> batches = new ArrayList<>();
+        private volatile boolean shutdown;
+
+        @Override
+        public synchronized CompletableResultCode export(Collection<SpanData> spans) {
+            batches.add(new ArrayList<>(spans));
+            notifyAll();
+            return CompletableResultCode.ofSuccess();
+        }
+
+        @Override
+        public CompletableResultCode flush() {
+            return CompletableResultCode.ofSuccess();
+        }
+
+        @Override
+        public CompletableResultCode shutdown() {
+            shutdown = true;
+            return CompletableResultCode.ofSuccess();
+        }
+
+        synchronized List<String> spanNames() {
+            List<String> names = new ArrayList<>();
+            for (List<SpanData> batch : batches) {
+                for (SpanData span : batch) {
+                    names.add(span.getName());
+                }
+            }
+            return names;
+        }
+
+        synchronized List<Integer> batchSizes() {
+            List<Integer> sizes = new ArrayList<>();
+            for (List<SpanData> batch : batches) {
+                sizes.add(batch.size());
+            }
+            return sizes;
+        }
+
+        synchronized boolean awaitSpans(int count) throws InterruptedException {
+            long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+            while (spanNames().size() < count) {
+                long remainingMillis = TimeUnit.NANOSECONDS.toMillis(deadline - System.nanoTime());
+                if (remainingMillis <= 0) {
+                    return false;
+                }
+                wait(remainingMillis);
+            }
+            return true;
+        }
+    }
+}
@@ -106,13 +106,15 @@ class SplunkRumBuilderTest {
     }
 
     @Test
-    void otlpFailsWhenDiskBufferingEnabled() {
+    void otlpWithDiskBufferingEnabled() {
         SplunkRumBuilder builder =
                 SplunkRum.builder()
                         .setRealm("us0")
                         .enableDiskBuffering()
                         .enableExperimentalOtlpExporter();
-        assertThat(builder.getConfigFlags().shouldUseOtlpExporter()).isFalse();
+        assertThat(builder.getConfigFlags().shouldUseOtlpExporter()).isTrue();
+        assertThat(builder.isDiskBufferingEnabled()).isTrue();
+        assertEquals("https://rum-ingest.us0.signalfx.com/v1/rumotlp", builder.beaconEndpoint);
     }
 
     @Test
@@ -122,6 +124,7 @@ class SplunkRumBuilderTest {
                         .setRealm("us0")
                         .enableExperimentalOtlpExporter()
                         .enableDiskBuffering();
-        assertThat(builder.getConfigFlags().shouldUseOtlpExporter()).isFalse();
+        assertThat(builder.getConfigFlags().shouldUseOtlpExporter()).isTrue();
+        assertThat(builder.isDiskBufferingEnabled()).isTrue();
     }
 }
@@ -122,6 +122,32 @@ class SplunkSpanDataModifierTest {
                 .isEqualTo(previousSessionId);
     }
 
+    @Test
+    void downgradesNetworkAttrNames() {
+        Attributes attrs =
+                Attributes.of(
+                        SemanticAttributes.NETWORK_CONNECTION_TYPE,
+                        "cell",
+                        SemanticAttributes.NETWORK_CARRIER_NAME,
+                        "carrier",
+                        stringKey("other"),
+                        "value");
+        SpanData original = startBuilder().setAttributes(attrs).build();
+
+        CompletableResultCode exportResult = CompletableResultCode.ofSuccess();
+        when(delegate.export(exportedSpansCaptor.capture())).thenReturn(exportResult);
+
+        SplunkSpanDataModifier underTest = new SplunkSpanDataModifier(delegate, false);
+        underTest.export(singletonList(original));
+
+        assertThat(exportedSpansCaptor.getValue().iterator().next())
+                .hasAttributesSatisfyingExactly(
+                        equalTo(SemanticAttributes.NET_HOST_CONNECTION_TYPE, "cell"),
+                        equalTo(SemanticAttributes.NET_HOST_CARRIER_NAME, "carrier"),
+                        equalTo(stringKey("other"), "value"),
+                        equalTo(SPLUNK_OPERATION_KEY, "test"));
+    }
+
     @Test
     void shouldConvertExceptionEventsToSpanAttributes() {
         SpanData original =
@@ -191,6 +217,70 @@ class SplunkSpanDataModifierTest {
                 .hasTotalAttributeCount(2);
     }
 
+    @Test
+    void shouldFingerprintRepeatedStackTraces() {
+        SpanData original =
+                startBuilder()
+                        .setEvents(singletonList(EXCEPTION_EVENT))
+                        .setAttributes(Attributes.of(RumConstants.SESSION_ID_KEY, "session"))
+                        .build();
+
+        when(delegate.export(exportedSpansCaptor.capture()))
+                .thenReturn(CompletableResultCode.ofSuccess());
+
+        SpanExporter underTest =
+                new SplunkSpanDataModifier(delegate, false, false, new StackTraceDeduplicator());
+        underTest.export(singleton(original));
+        SpanData first = exportedSpansCaptor.getValue().iterator().next();
+        underTest.export(singleton(original));
+        SpanData second = exportedSpansCaptor.getValue().iterator().next();
+
+        String fingerprint = first.getAttributes().get(StackTraceDeduplicator.FINGERPRINT_KEY);
+        assertThat(fingerprint).isNotNull();
+        assertThat(first)
+                .hasAttributesSatisfying(
+                        equalTo(SemanticAttributes.EXCEPTION_STACKTRACE, "<stacktrace>"),
+                        equalTo(StackTraceDeduplicator.OCCURRENCE_KEY, 1L));
+        // the stack trace is only removed once it has been exported, further down the chain
+        assertThat(second)
+                .hasAttributesSatisfying(
+                        equalTo(SemanticAttributes.EXCEPTION_TYPE, "Error"),
+                        equalTo(SemanticAttributes.EXCEPTION_STACKTRACE, "<stacktrace>"),
+                        equalTo(StackTraceDeduplicator.FINGERPRINT_KEY, fingerprint),
+                        equalTo(StackTraceDeduplicator.OCCURRENCE_KEY, 2L));
+    }
+
+    @Test
+    void otlpFingerprintsRepeatedStackTraces() {
+        SpanData original =
+                startBuilder()
+                        .setEvents(Arrays.asList(BASIC_EVENT, EXCEPTION_EVENT))
+                        .setAttributes(Attributes.of(RumConstants.SESSION_ID_KEY, "session"))
+                        .build();
+
+        when(delegate.export(exportedSpansCaptor.capture()))
+                .thenReturn(CompletableResultCode.ofSuccess());
+
+        SpanExporter underTest =
+                new SplunkSpanDataModifier(delegate, false, true, new StackTraceDeduplicator());
+        underTest.export(singleton(original));
+        underTest.export(singleton(original));
+
+        SpanData second = exportedSpansCaptor.getValue().iterator().next();
+        assertThat(second.getEvents()).hasSize(2);
+        assertThat(second.getEvents().get(0)).isSameAs(BASIC_EVENT);
+        EventData exceptionEvent = second.getEvents().get(1);
+        assertThat(exceptionEvent.getName()).isEqualTo(SemanticAttributes.EXCEPTION_EVENT_NAME);
+        assertThat(exceptionEvent.getEpochNanos()).isEqualTo(456);
+        assertThat(exceptionEvent.getAttributes())
+                .hasSize(5)
+                .containsEntry(SemanticAttributes.EXCEPTION_TYPE, "com.example.Error")
+                .containsEntry(SemanticAttributes.EXCEPTION_MESSAGE, "failed")
+                .containsEntry(SemanticAttributes.EXCEPTION_STACKTRACE, "<stacktrace>")
+                .containsEntry(StackTraceDeduplicator.OCCURRENCE_KEY, 2L)
+                .containsKey(StackTraceDeduplicator.FINGERPRINT_KEY);
+    }
+
     @Test
     void shouldSetCaseSensitiveSpanNameToAttribute() {
         SpanData original = startBuilder("SplunkRumSpan").build();
@@ -247,6 +337,28 @@ class SplunkSpanDataModifierTest {
                         equalTo(SplunkRum.RUM_VERSION_KEY, "1.0.0"));
     }
 
+    @Test
+    void shouldFollowResourceChanges() {
+        Resource updatedResource =
+                RESOURCE.merge(Resource.create(Attributes.of(ResourceAttributes.OS_VERSION, "14")));
+        SpanData original = startBuilder().setResource(RESOURCE).build();
+        SpanData updated = startBuilder().setResource(updatedResource).build();
+        when(delegate.export(exportedSpansCaptor.capture()))
+                .thenReturn(CompletableResultCode.ofSuccess());
+
+        SpanExporter underTest = new SplunkSpanDataModifier(delegate, false);
+        underTest.export(singleton(original));
+        underTest.export(singleton(original));
+        underTest.export(singleton(updated));
+
+        assertThat(exportedSpansCaptor.getAllValues()).hasSize(3);
+        assertThat(exportedSpansCaptor.getAllValues().get(1).iterator().next())
+                .hasAttribute(ResourceAttributes.OS_VERSION, "13");
+        assertThat(exportedSpansCaptor.getAllValues().get(2).iterator().next())
+                .hasAttribute(ResourceAttributes.OS_VERSION, "14")
+                .hasAttribute(ResourceAttributes.OS_NAME, "Android");
+    }
+
     @Test
     void otlpDoesNotMessWithResourceAttributes() {
 
@@ -0,0 +1,182 @@
+/*
+ * Copyright Splunk Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.splunk.rum;
+
+import static com.splunk.rum.SplunkRum.COMPONENT_KEY;
+import static io.opentelemetry.semconv.SemanticAttributes.EXCEPTION_STACKTRACE;
+import static org.assertj.core.api.Assertions.assertThat;
+
+import io.opentelemetry.android.RumConstants;
+import io.opentelemetry.api.common.Attributes;
+import io.opentelemetry.api.common.AttributesBuilder;
+import io.opentelemetry.api.trace.SpanKind;
+import io.opentelemetry.sdk.common.CompletableResultCode;
+import io.opentelemetry.sdk.testing.trace.TestSpanData;
+import io.opentelemetry.sdk.trace.data.EventData;
+import io.opentelemetry.sdk.trace.data.SpanData;
+import io.opentelemetry.sdk.trace.data.StatusData;
+import io.opentelemetry.sdk.trace.export.SpanExporter;
+import io.opentelemetry.semconv.SemanticAttributes;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import org.junit.jupiter.api.Test;
+
+class StackTraceDeduplicatingExporterTest {
+
+    private final StackTraceDeduplicator deduplicator = new StackTraceDeduplicator();
+    private final RecordingExporter delegate = new RecordingExporter();
+    private final StackTraceDeduplicatingExporter underTest =
+            new StackTraceDeduplicatingExporter(delegate, deduplicator);
+
+    @Test
+    void removesStackTracesOnceExported() {
+        underTest.export(Collections.singletonList(spanWithException(1)));
+        underTest.export(Collections.singletonList(spanWithException(2)));
+
+        assertThat(delegate.lastSpan().getAttributes().get(EXCEPTION_STACKTRACE)).isNull();
+        assertThat(delegate.lastSpan().getAttributes().get(StackTraceDeduplicator.FINGERPRINT_KEY))
+                .isNotNull();
+    }
+
+    @Test
+    void keepsStackTraceUntilAnExportSucceeds() {
+        delegate.nextResult = CompletableResultCode.ofFailure();
+        underTest.export(Collections.singletonList(spanWithException(1)));
+
+        underTest.export(Collections.singletonList(spanWithException(2)));
+        assertThat(delegate.lastSpan().getAttributes().get(EXCEPTION_STACKTRACE))
+                .isEqualTo("<stacktrace>");
+
+        underTest.export(Collections.singletonList(spanWithException(3)));
+        assertThat(delegate.lastSpan().getAttributes().get(EXCEPTION_STACKTRACE)).isNull();
+    }
+
+    @Test
+    void keepsStackTraceWhenTheFirstOccurrenceIsThrottled() {
+        SpanExporter chain =
+                new SplunkSpanDataModifier(
+                        ThrottlingExporter.newBuilder(underTest)
+                                .categorizeByAttribute(COMPONENT_KEY)
+                                .maxSpansInWindow(1)
+                                .windowSize(Duration.ofSeconds(30))
+                                .build(),
+                        false,
+                        false,
+                        deduplicator);
+
+        chain.export(Arrays.asList(span(1, Collections.emptyList()), exceptionSpan(2)));
+        assertThat(delegate.exported).hasSize(1);
+        assertThat(delegate.lastSpan().getAttributes().get(EXCEPTION_STACKTRACE)).isNull();
+
+        chain.export(Collections.singletonList(exceptionSpan(100)));
+        assertThat(delegate.lastSpan().getAttributes().get(EXCEPTION_STACKTRACE))
+                .isEqualTo("<stacktrace>");
+        assertThat(delegate.lastSpan().getAttributes().get(StackTraceDeduplicator.OCCURRENCE_KEY))
+                .isEqualTo(2L);
+    }
+
+    @Test
+    void removesStackTracesFromExceptionEvents() {
+        underTest.export(Collections.singletonList(spanWithExceptionEvent(1)));
+        underTest.export(Collections.singletonList(spanWithExceptionEvent(2)));
+
+        EventData event = delegate.lastSpan().getEvents().get(0);
+        assertThat(event.getAttributes().get(EXCEPTION_STACKTRACE)).isNull();
+        assertThat(event.getAttributes().get(StackTraceDeduplicator.FINGERPRINT_KEY)).isNotNull();
+    }
+
+    private SpanData spanWithException(long endSeconds) {
+        AttributesBuilder attributes =
+                Attributes.builder().put(RumConstants.SESSION_ID_KEY, "session");
+        deduplicator.putStackTrace("session", "<stacktrace>", attributes);
+        return span(endSeconds, attributes.build(), Collections.emptyList());
+    }
+
+    private SpanData spanWithExceptionEvent(long endSeconds) {
+        AttributesBuilder eventAttributes = Attributes.builder();
+        deduplicator.putStackTrace("session", "<stacktrace>", eventAttributes);
+        EventData event =
+                EventData.create(
+                        0, SemanticAttributes.EXCEPTION_EVENT_NAME, eventAttributes.build());
+        return span(
+                endSeconds,
+                Attributes.of(RumConstants.SESSION_ID_KEY, "session"),
+                Collections.singletonList(event));
+    }
+
+    private static SpanData exceptionSpan(long endSeconds) {
+        EventData event =
+                EventData.create(
+                        0,
+                        SemanticAttributes.EXCEPTION_EVENT_NAME,
+                        Attributes.of(EXCEPTION_STACKTRACE, "<stacktrace>"));
+        return span(endSeconds, Collections.singletonList(event));
+    }
+
+    private static SpanData span(long endSeconds, List<EventData> events) {
+        return span(
+                endSeconds,
+                Attributes.of(RumConstants.SESSION_ID_KEY, "session", COMPONENT_KEY, "error"),
+                events);
+    }
+
+    private static SpanData span(long endSeconds, Attributes attributes, List<EventData> events) {
+        return TestSpanData.builder()
+                .setName("span")
+                .setKind(SpanKind.INTERNAL)
+                .setStatus(StatusData.unset())
+                .setHasEnded(true)
+                .setStartEpochNanos(0)
+                .setEndEpochNanos(TimeUnit.SECONDS.toNanos(endSeconds))
+                .setAttributes(attributes)
+                .setEvents(events)
+                .setTotalRecordedEvents(events.size())
+                .build();
+    }
+
+    private static final class RecordingExporter implements SpanExporter {
+        private final List<SpanData> exported = new ArrayList<>();
+        private CompletableResultCode nextResult = CompletableResultCode.ofSuccess();
+
+        @Override
+        public CompletableResultCode export(Collection<SpanData> spans) {
+            exported.addAll(spans);
+            CompletableResultCode result = nextResult;
+            nextResult = CompletableResultCode.ofSuccess();
+            return result;
+        }
+
+        @Override
+        public CompletableResultCode flush() {
+            return CompletableResultCode.ofSuccess();
+        }
+
+        @Override
+        public CompletableResultCode shutdown() {
+            return CompletableResultCode.ofSuccess();
+        }
+
+        private SpanData lastSpan() {
+            return exported.get(exported.size() - 1);
+        }
+    }
+}
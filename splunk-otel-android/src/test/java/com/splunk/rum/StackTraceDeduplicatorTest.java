@@ -0,0 +1,123 @@
+/*
+ * Copyright Splunk Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.splunk.rum;
+
+import static com.splunk.rum.StackTraceDeduplicator.FINGERPRINT_KEY;
+import static com.splunk.rum.StackTraceDeduplicator.MAX_STACK_TRACES;
+import static com.splunk.rum.StackTraceDeduplicator.OCCURRENCE_KEY;
+import static io.opentelemetry.sdk.testing.assertj.OpenTelemetryAssertions.assertThat;
+import static io.opentelemetry.semconv.SemanticAttributes.EXCEPTION_STACKTRACE;
+
+import io.opentelemetry.api.common.Attributes;
+import io.opentelemetry.api.common.AttributesBuilder;
+import org.junit.jupiter.api.Test;
+
+class StackTraceDeduplicatorTest {
+
+    private static final String FOOBAR_FINGERPRINT = "85944171f73967e8";
+
+    private final StackTraceDeduplicator underTest = new StackTraceDeduplicator();
+
+    @Test
+    void fingerprintIsFnv1aOfUtf8() {
+        assertThat(StackTraceDeduplicator.fingerprint("")).isEqualTo(0xcbf29ce484222325L);
+        assertThat(StackTraceDeduplicator.fingerprint("a")).isEqualTo(0xaf63dc4c8601ec8cL);
+        assertThat(StackTraceDeduplicator.fingerprint("foobar")).isEqualTo(0x85944171f73967e8L);
+        assertThat(StackTraceDeduplicator.fingerprint("caf\u00e9")).isEqualTo(0x48e8823acfa40d89L);
+    }
+
+    @Test
+    void countsOccurrences() {
+        assertThat(putStackTrace("session", "foobar"))
+                .isEqualTo(
+                        Attributes.of(
+                                EXCEPTION_STACKTRACE, "foobar",
+                                FINGERPRINT_KEY, FOOBAR_FINGERPRINT,
+                                OCCURRENCE_KEY, 1L));
+        assertThat(putStackTrace("session", "foobar").get(OCCURRENCE_KEY)).isEqualTo(2L);
+        assertThat(putStackTrace("session", "a"))
+                .isEqualTo(
+                        Attributes.of(
+                                EXCEPTION_STACKTRACE, "a",
+                                FINGERPRINT_KEY, "af63dc4c8601ec8c",
+                                OCCURRENCE_KEY, 1L));
+        assertThat(putStackTrace("session", "foobar").get(OCCURRENCE_KEY)).isEqualTo(3L);
+    }
+
+    @Test
+    void stackTraceIsExportedOnceMarked() {
+        putStackTrace("session", "foobar");
+        assertThat(underTest.isExported("session", FOOBAR_FINGERPRINT)).isFalse();
+
+        underTest.markExported("session", FOOBAR_FINGERPRINT);
+
+        assertThat(underTest.isExported("session", FOOBAR_FINGERPRINT)).isTrue();
+        assertThat(underTest.isExported("other session", FOOBAR_FINGERPRINT)).isFalse();
+        assertThat(underTest.isExported(null, FOOBAR_FINGERPRINT)).isFalse();
+    }
+
+    @Test
+    void newSessionStartsOver() {
+        putStackTrace("session", "foobar");
+        underTest.markExported("session", FOOBAR_FINGERPRINT);
+
+        assertThat(putStackTrace("other session", "foobar"))
+                .isEqualTo(
+                        Attributes.of(
+                                EXCEPTION_STACKTRACE, "foobar",
+                                FINGERPRINT_KEY, FOOBAR_FINGERPRINT,
+                                OCCURRENCE_KEY, 1L));
+        assertThat(underTest.isExported("other session", FOOBAR_FINGERPRINT)).isFalse();
+    }
+
+    @Test
+    void noDeduplicationWithoutSession() {
+        putStackTrace("session", "foobar");
+
+        assertThat(putStackTrace(null, "foobar"))
+                .isEqualTo(Attributes.of(EXCEPTION_STACKTRACE, "foobar"));
+        assertThat(putStackTrace("session", "foobar").get(OCCURRENCE_KEY)).isEqualTo(2L);
+    }
+
+    @Test
+    void forgetsLeastRecentlySeenStackTraces() {
+        putStackTrace("session", "first");
+        putStackTrace("session", "second");
+        underTest.markExported("session", fingerprint("second"));
+        for (int i = 0; i < MAX_STACK_TRACES - 2; i++) {
+            putStackTrace("session", "stacktrace " + i);
+        }
+        putStackTrace("session", "first");
+        putStackTrace("session", "one too many");
+
+        assertThat(putStackTrace("session", "first").get(OCCURRENCE_KEY)).isEqualTo(3L);
+        assertThat(underTest.isExported("session", fingerprint("second"))).isFalse();
+        assertThat(putStackTrace("session", "second").get(OCCURRENCE_KEY)).isEqualTo(1L);
+    }
+
+    private Attributes putStackTrace(String sessionId, String stackTrace) {
+        AttributesBuilder attributes = Attributes.builder();
+        underTest.putStackTrace(sessionId, stackTrace, attributes);
+        return attributes.build();
+    }
+
+    private static String fingerprint(String stackTrace) {
+        AttributesBuilder attributes = Attributes.builder();
+        new StackTraceDeduplicator().putStackTrace("session", stackTrace, attributes);
+        return attributes.build().get(FINGERPRINT_KEY);
+    }
+}
@@ -21,7 +21,10 @@ import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.when;
 
 import io.opentelemetry.android.instrumentation.activity.VisibleScreenTracker;
+import io.opentelemetry.api.trace.SpanKind;
+import io.opentelemetry.sdk.testing.trace.TestSpanData;
 import io.opentelemetry.sdk.trace.data.SpanData;
+import io.opentelemetry.sdk.trace.data.StatusData;
 import java.util.ArrayList;
 import java.util.List;
 import org.junit.jupiter.api.Test;
@@ -37,7 +40,7 @@ public class StartTypeAwareMemorySpanBufferTest {
     void fillFromBacklog_givenInBackground_shouldReturnForegroundSpansOnly() {
         List<SpanData> spans = new ArrayList<>();
         for (int i = 0; i < 10; i++) {
-            spans.add(mock(SpanData.class));
+            spans.add(span());
         }
         when(visibleScreenTracker.getPreviouslyVisibleScreen()).thenReturn(null);
         when(visibleScreenTracker.getCurrentlyVisibleScreen()).thenReturn(null);
@@ -53,7 +56,7 @@ public class StartTypeAwareMemorySpanBufferTest {
             fillFromBacklog_givenPreviouslyInBackgroundThenMoveToForeground_shouldAddBackgroundSpansToBacklog() {
         List<SpanData> spans = new ArrayList<>();
         for (int i = 0; i < 10; i++) {
-            spans.add(mock(SpanData.class));
+            spans.add(span());
         }
         when(visibleScreenTracker.getPreviouslyVisibleScreen())
                 .thenReturn(null, null, "MainActivity");
@@ -73,7 +76,7 @@ public class StartTypeAwareMemorySpanBufferTest {
         when(visibleScreenTracker.getPreviouslyVisibleScreen()).thenReturn(null);
         when(visibleScreenTracker.getCurrentlyVisibleScreen()).thenReturn(null);
 
-        memorySpanBuffer.addFailedSpansToBacklog(mock(SpanData.class));
+        memorySpanBuffer.addFailedSpansToBacklog(span());
 
         assertEquals(0, memorySpanBuffer.drain().size());
     }
@@ -82,7 +85,7 @@ public class StartTypeAwareMemorySpanBufferTest {
     void addFailedSpansToBacklog_givenInForeground_shouldAddFailedSpanToBacklog() {
         List<SpanData> spans = new ArrayList<>();
         for (int i = 0; i < 10; i++) {
-            spans.add(mock(SpanData.class));
+            spans.add(span());
         }
         when(visibleScreenTracker.getPreviouslyVisibleScreen()).thenReturn(null, "MainActivity");
         when(visibleScreenTracker.getCurrentlyVisibleScreen()).thenReturn(null, "MainFragment");
@@ -91,4 +94,43 @@ public class StartTypeAwareMemorySpanBufferTest {
 
         assertEquals(10, memorySpanBuffer.drain().size());
     }
+
+    @Test
+    void backlogsShareTheByteBudget() {
+        long spanBytes = SpanSizeEstimator.estimateRetainedBytes(span());
+        long maxBytes = 40 * spanBytes;
+        DroppedSpanCounter droppedSpanCounter = new DroppedSpanCounter();
+        StartTypeAwareMemorySpanBuffer buffer =
+                new StartTypeAwareMemorySpanBuffer(
+                        visibleScreenTracker,
+                        maxBytes,
+                        MemoryBufferEvictionPolicy.OLDEST_FIRST,
+                        droppedSpanCounter);
+
+        when(visibleScreenTracker.getPreviouslyVisibleScreen()).thenReturn("MainActivity");
+        for (int i = 0; i < 100; i++) {
+            buffer.addFailedSpansToBacklog(span());
+        }
+        when(visibleScreenTracker.getPreviouslyVisibleScreen()).thenReturn(null);
+        when(visibleScreenTracker.getCurrentlyVisibleScreen()).thenReturn(null);
+        for (int i = 0; i < 100; i++) {
+            buffer.addFailedSpansToBacklog(span());
+        }
+
+        assertTrue(buffer.estimatedBytes() <= maxBytes);
+        assertEquals(30, buffer.drain().size());
+        assertEquals(10, buffer.size());
+        assertEquals(160, droppedSpanCounter.get());
+    }
+
+    private static SpanData span() {
+        return TestSpanData.builder()
+                .setName("span")
+                .setKind(SpanKind.INTERNAL)
+                .setStatus(StatusData.unset())
+                .setStartEpochNanos(0)
+                .setEndEpochNanos(1)
+                .setHasEnded(true)
+                .build();
+    }
 }
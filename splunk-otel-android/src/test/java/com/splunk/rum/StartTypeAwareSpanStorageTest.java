@@ -28,7 +28,8 @@ import static org.mockito.Mockito.when;
 
 import io.opentelemetry.android.instrumentation.activity.VisibleScreenTracker;
 import java.io.File;
-import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.List;
 import java.util.UUID;
 import java.util.stream.Collectors;
@@ -124,27 +125,54 @@ class StartTypeAwareSpanStorageTest {
         when(visibleScreenTracker.getPreviouslyVisibleScreen()).thenReturn("LauncherActivity");
         when(visibleScreenTracker.getCurrentlyVisibleScreen()).thenReturn("MainActivity");
 
-        List<File> backgroundFiles = new ArrayList<>();
+        String uniqueId = UUID.randomUUID().toString();
+        File spansDir = new File("files/spans");
+        File backgroundDir = new File(spansDir, "background/" + uniqueId);
         File fileToMove = mock();
         ArgumentCaptor<File> fileDestinationCaptor = ArgumentCaptor.forClass(File.class);
         when(fileToMove.renameTo(fileDestinationCaptor.capture())).thenReturn(true);
-        when(fileToMove.getName()).thenReturn("tosend.span");
-        backgroundFiles.add(fileToMove);
-
-        ArgumentCaptor<File> fileSourceCaptor = ArgumentCaptor.forClass(File.class);
-        when(fileUtils.listSpanFiles(fileSourceCaptor.capture()))
-                .thenReturn(backgroundFiles.stream(), backgroundFiles.stream());
+        when(fileToMove.getName()).thenReturn("tosend.spans");
+        when(fileToMove.getPath()).thenReturn(backgroundDir.getPath() + "/tosend.spans");
+        when(fileToMove.getParentFile()).thenReturn(backgroundDir);
+        when(fileUtils.listFilesRecursively(spansDir)).thenReturn(Stream.of(fileToMove));
+        fileProvider =
+                StartTypeAwareSpanStorage.create(
+                        visibleScreenTracker, fileUtils, rootDir, spansDir, uniqueId);
 
         List<File> spans = fileProvider.getPendingFiles().collect(Collectors.toList());
 
         verify(fileToMove).renameTo(any());
 
         String destinationPath = fileDestinationCaptor.getValue().getPath();
-        assertEquals("files/spans/tosend.span", destinationPath);
+        assertEquals("files/spans/tosend.spans", destinationPath);
+        assertEquals(Collections.singletonList(fileDestinationCaptor.getValue()), spans);
+    }
+
+    @Test
+    void tracksStorageUsage() {
+        fileUtils = mock(FileUtils.class);
+        File spansDir = new File("files/spans");
+        File existing = new File(spansDir, "100.spans");
+        File written = new File(spansDir, "200.spans.part");
+        File sealed = new File(spansDir, "200.spans");
+        when(fileUtils.listFilesRecursively(spansDir)).thenReturn(Stream.of(existing));
+        when(fileUtils.getFileSize(existing)).thenReturn(10L);
+        fileProvider =
+                StartTypeAwareSpanStorage.create(
+                        visibleScreenTracker, fileUtils, rootDir, spansDir, "123");
+        assertEquals(10, fileProvider.getTotalFileSizeInBytes());
+
+        fileProvider.recordWrite(written, 5);
+        fileProvider.recordRename(written, sealed);
+        assertEquals(15, fileProvider.getTotalFileSizeInBytes());
+        assertEquals(
+                Arrays.asList(existing, sealed),
+                fileProvider.getAllSpanFiles().collect(Collectors.toList()));
 
-        String sourcePath = fileSourceCaptor.getAllValues().get(0).getPath();
-        assertTrue(sourcePath.startsWith("files/spans/background"));
-        assertEquals(backgroundFiles.size(), spans.size());
+        assertEquals(10, fileProvider.delete(existing));
+        verify(fileUtils).safeDelete(existing);
+        assertEquals(5, fileProvider.getTotalFileSizeInBytes());
+        verify(fileUtils).listFilesRecursively(spansDir);
     }
 
     @Test
@@ -0,0 +1,122 @@
+/*
+ * Copyright Splunk Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.splunk.rum;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyBoolean;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import io.opentelemetry.sdk.common.CompletableResultCode;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import okhttp3.RequestBody;
+import okio.Buffer;
+import okio.GzipSource;
+import okio.Okio;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import zipkin2.reporter.Encoding;
+
+@ExtendWith(MockitoExtension.class)
+class StreamingZipkinSenderTest {
+
+    private final List<byte[]> encodedSpans =
+            Arrays.asList("{\"id\":\"1\"}".getBytes(UTF_8), "{\"id\":\"2\"}".getBytes(UTF_8));
+
+    @Mock private PayloadSender payloadSender;
+
+    @Test
+    void streamsSpansAsJsonList() throws Exception {
+        StreamingZipkinSender sender = new StreamingZipkinSender(payloadSender, false);
+
+        sender.send(encodedSpans);
+
+        ArgumentCaptor<RequestBody> body = ArgumentCaptor.forClass(RequestBody.class);
+        verify(payloadSender).send(body.capture(), eq(false));
+        assertEquals(PayloadSender.JSON, body.getValue().contentType());
+        assertEquals(sender.messageSizeInBytes(encodedSpans), body.getValue().contentLength());
+        Buffer written = new Buffer();
+        body.getValue().writeTo(written);
+        assertEquals("[{\"id\":\"1\"},{\"id\":\"2\"}]", written.readUtf8());
+    }
+
+    @Test
+    void streamsSpansThroughGzip() throws Exception {
+        StreamingZipkinSender sender = new StreamingZipkinSender(payloadSender, true);
+
+        sender.send(encodedSpans);
+
+        ArgumentCaptor<RequestBody> body = ArgumentCaptor.forClass(RequestBody.class);
+        verify(payloadSender).send(body.capture(), eq(true));
+        assertEquals(-1, body.getValue().contentLength());
+        // the body can be written again when the request is retried
+        for (int i = 0; i < 2; i++) {
+            Buffer written = new Buffer();
+            body.getValue().writeTo(written);
+            assertEquals(
+                    "[{\"id\":\"1\"},{\"id\":\"2\"}]",
+                    Okio.buffer(new GzipSource(written)).readUtf8());
+        }
+    }
+
+    @Test
+    void sendsNothingWithoutSpans() throws Exception {
+        new StreamingZipkinSender(payloadSender, true).send(Collections.emptyList());
+
+        verify(payloadSender, never()).send(any(RequestBody.class), anyBoolean());
+    }
+
+    @Test
+    void sendsAsynchronously() throws Exception {
+        CompletableResultCode pending = new CompletableResultCode();
+        when(payloadSender.sendAsync(any(RequestBody.class), eq(true))).thenReturn(pending);
+        StreamingZipkinSender sender = new StreamingZipkinSender(payloadSender, true);
+
+        CompletableResultCode result = sender.sendAsync(encodedSpans);
+
+        assertSame(pending, result);
+        verify(payloadSender, never()).send(any(RequestBody.class), anyBoolean());
+    }
+
+    @Test
+    void sendsNothingAsynchronouslyWithoutSpans() {
+        CompletableResultCode result =
+                new StreamingZipkinSender(payloadSender, true).sendAsync(Collections.emptyList());
+
+        assertTrue(result.isSuccess());
+        verify(payloadSender, never()).sendAsync(any(RequestBody.class), anyBoolean());
+    }
+
+    @Test
+    void sizesMessagesAsJsonLists() {
+        StreamingZipkinSender sender = new StreamingZipkinSender(payloadSender, true);
+
+        assertEquals(Encoding.JSON, sender.encoding());
+        assertEquals(23, sender.messageSizeInBytes(encodedSpans));
+    }
+}
@@ -0,0 +1,116 @@
+/*
+ * Copyright Splunk Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.splunk.rum;
+
+import static com.splunk.rum.SplunkRum.COMPONENT_KEY;
+import static io.opentelemetry.api.common.AttributeKey.stringKey;
+import static org.assertj.core.api.Assertions.assertThat;
+
+import io.opentelemetry.api.common.AttributeKey;
+import io.opentelemetry.api.common.Attributes;
+import io.opentelemetry.api.trace.SpanKind;
+import io.opentelemetry.sdk.testing.trace.TestSpanData;
+import io.opentelemetry.sdk.trace.data.SpanData;
+import io.opentelemetry.sdk.trace.data.StatusData;
+import java.util.Comparator;
+import java.util.List;
+import org.junit.jupiter.api.Test;
+
+class ThrottledSpanSummaryTest {
+
+    private static final AttributeKey<String> SCREEN_KEY = stringKey("screen.name");
+
+    private final ThrottledSpanSummary underTest = new ThrottledSpanSummary();
+
+    @Test
+    void summarizesSpansByCategoryAndName() {
+        underTest.add("ui", span("click", "ui", "Main", 100, 130));
+        underTest.add("ui", span("click", "ui", "Main", 110, 120));
+        underTest.add("ui", span("scroll", "ui", "Main", 200, 250));
+        underTest.add("error", span("click", "error", "Main", 300, 301));
+
+        List<SpanData> summaries = underTest.drain();
+        summaries.sort(Comparator.comparing(SpanData::getStartEpochNanos));
+
+        assertThat(summaries).hasSize(3);
+        SpanData clicks = summaries.get(0);
+        assertThat(clicks.getName()).isEqualTo("click");
+        assertThat(clicks.getStartEpochNanos()).isEqualTo(100);
+        assertThat(clicks.getEndEpochNanos()).isEqualTo(130);
+        assertThat(clicks.getAttributes().get(COMPONENT_KEY)).isEqualTo("ui");
+        assertThat(clicks.getAttributes().get(ThrottledSpanSummary.SYNTHETIC_KEY)).isTrue();
+        assertThat(clicks.getAttributes().get(ThrottledSpanSummary.COUNT_KEY)).isEqualTo(2L);
+        assertThat(clicks.getAttributes().get(ThrottledSpanSummary.MIN_DURATION_KEY))
+                .isEqualTo(10L);
+        assertThat(clicks.getAttributes().get(ThrottledSpanSummary.MAX_DURATION_KEY))
+                .isEqualTo(30L);
+        assertThat(clicks.getAttributes().get(ThrottledSpanSummary.SUM_DURATION_KEY))
+                .isEqualTo(40L);
+        assertThat(clicks.getSpanContext().isValid()).isTrue();
+        assertThat(clicks.getParentSpanContext().isValid()).isFalse();
+        assertThat(clicks.getEvents()).isEmpty();
+
+        assertThat(summaries.get(1).getName()).isEqualTo("scroll");
+        assertThat(summaries.get(1).getAttributes().get(ThrottledSpanSummary.COUNT_KEY))
+                .isEqualTo(1L);
+        assertThat(summaries.get(2).getAttributes().get(COMPONENT_KEY)).isEqualTo("error");
+    }
+
+    @Test
+    void keepsOnlyTheAttributesSharedByAllSpans() {
+        underTest.add("ui", span("click", "ui", "Main", 0, 1));
+        underTest.add("ui", span("click", "ui", "Settings", 0, 1));
+
+        SpanData summary = underTest.drain().get(0);
+
+        assertThat(summary.getAttributes().get(COMPONENT_KEY)).isEqualTo("ui");
+        assertThat(summary.getAttributes().get(SCREEN_KEY)).isNull();
+        assertThat(summary.getTotalAttributeCount()).isEqualTo(6);
+    }
+
+    @Test
+    void drainResetsTheCounters() {
+        underTest.add("ui", span("click", "ui", "Main", 0, 1));
+
+        assertThat(underTest.isEmpty()).isFalse();
+        assertThat(underTest.drain()).hasSize(1);
+        assertThat(underTest.isEmpty()).isTrue();
+        assertThat(underTest.drain()).isEmpty();
+    }
+
+    @Test
+    void limitsTheNumberOfKeys() {
+        for (int i = 0; i <= ThrottledSpanSummary.MAX_GROUPS; i++) {
+            underTest.add(null, span("span " + i, "ui", "Main", 0, 1));
+        }
+
+        assertThat(underTest.drain()).hasSize(ThrottledSpanSummary.MAX_GROUPS);
+    }
+
+    private static SpanData span(
+            String name, String component, String screen, long startNanos, long endNanos) {
+        return TestSpanData.builder()
+                .setName(name)
+                .setKind(SpanKind.INTERNAL)
+                .setStatus(StatusData.unset())
+                .setHasEnded(true)
+                .setStartEpochNanos(startNanos)
+                .setEndEpochNanos(endNanos)
+                .setAttributes(Attributes.of(COMPONENT_KEY, component, SCREEN_KEY, screen))
+                .build();
+    }
+}
@@ -18,10 +18,16 @@ package com.splunk.rum;
 
 import static com.splunk.rum.SplunkRum.COMPONENT_KEY;
 import static java.util.Arrays.asList;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
 
 import io.opentelemetry.api.common.Attributes;
 import io.opentelemetry.api.trace.SpanKind;
+import io.opentelemetry.sdk.common.Clock;
+import io.opentelemetry.sdk.common.CompletableResultCode;
 import io.opentelemetry.sdk.testing.trace.TestSpanData;
 import io.opentelemetry.sdk.trace.data.SpanData;
 import io.opentelemetry.sdk.trace.data.StatusData;
@@ -29,16 +35,22 @@ import io.opentelemetry.sdk.trace.export.SpanExporter;
 import java.time.Duration;
 import java.time.Instant;
 import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.Collection;
 import java.util.List;
 import java.util.concurrent.TimeUnit;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Captor;
 import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
 
 @ExtendWith(MockitoExtension.class)
 class ThrottlingExporterTest {
     @Mock private SpanExporter delegate;
+    @Mock private Clock clock;
+    @Captor private ArgumentCaptor<Collection<SpanData>> exported;
 
     @Test
     void shouldExportAllSpansBelowLimit() {
@@ -196,6 +208,238 @@ class ThrottlingExporterTest {
                                 spanData.get(3)));
     }
 
+    @Test
+    void shouldCountSpansOutOfOrder() {
+        // given
+        SpanExporter underTest =
+                ThrottlingExporter.newBuilder(delegate)
+                        .maxSpansInWindow(2)
+                        .windowSize(Duration.ofSeconds(15))
+                        .build();
+
+        Instant now = Instant.ofEpochMilli(100_000);
+
+        List<SpanData> spanData =
+                asList(
+                        span("ui", now.plus(20, ChronoUnit.SECONDS)),
+                        // long spans that ended before the previous one
+                        span("ui", now),
+                        span("ui", now.plus(5, ChronoUnit.SECONDS)),
+                        span("ui", now.plus(8, ChronoUnit.SECONDS)),
+                        span("ui", now.plus(30, ChronoUnit.SECONDS)));
+
+        // when
+        underTest.export(spanData);
+
+        // then
+        verify(delegate)
+                .export(
+                        asList(
+                                spanData.get(0),
+                                spanData.get(1),
+                                spanData.get(2),
+                                // idx=3 will be skipped because idx=1 and idx=2 ended in the 15
+                                // secs before it
+                                spanData.get(4)));
+    }
+
+    @Test
+    void shouldCountLateSpansInTheWindowsEndingAfterThem() {
+        // given
+        SpanExporter underTest =
+                ThrottlingExporter.newBuilder(delegate)
+                        .maxSpansInWindow(2)
+                        .windowSize(Duration.ofSeconds(30))
+                        .build();
+
+        Instant now = Instant.ofEpochMilli(100_000);
+
+        List<SpanData> spanData =
+                asList(
+                        span("ui", now),
+                        span("ui", now),
+                        // the window ending a second earlier is empty, but the one ending at `now`
+                        // is full
+                        span("ui", now.minus(1, ChronoUnit.SECONDS)),
+                        span("ui", now.minus(1, ChronoUnit.SECONDS)),
+                        span("ui", now.plus(30, ChronoUnit.SECONDS)));
+
+        // when
+        underTest.export(spanData);
+
+        // then
+        verify(delegate).export(asList(spanData.get(0), spanData.get(1), spanData.get(4)));
+    }
+
+    @Test
+    void shouldCountSpansOlderThanTheWindowInTheOldestBucket() {
+        // given
+        SpanExporter underTest =
+                ThrottlingExporter.newBuilder(delegate)
+                        .maxSpansInWindow(2)
+                        .windowSize(Duration.ofSeconds(15))
+                        .build();
+
+        Instant now = Instant.ofEpochMilli(1_000_000);
+
+        List<SpanData> spanData =
+                asList(
+                        span("ui", now),
+                        span("ui", now.minus(10, ChronoUnit.MINUTES)),
+                        span("ui", now.minus(11, ChronoUnit.MINUTES)),
+                        span("ui", now.minus(12, ChronoUnit.MINUTES)));
+
+        // when
+        underTest.export(spanData);
+
+        // then
+        verify(delegate)
+                .export(
+                        asList(
+                                spanData.get(0),
+                                spanData.get(1),
+                                spanData.get(2)
+                                // idx=3 will be skipped because the late spans share one bucket
+                                ));
+    }
+
+    @Test
+    void shouldApplyCategoryBudgets() {
+        // given
+        SpanExporter underTest =
+                ThrottlingExporter.newBuilder(delegate)
+                        .categorizeByAttribute(COMPONENT_KEY)
+                        .maxSpansInWindow(1)
+                        .windowSize(Duration.ofSeconds(15))
+                        .budget("ui", new ThrottlingExporter.Budget(3, Duration.ofSeconds(5)))
+                        .build();
+
+        Instant now = Instant.ofEpochMilli(10_000);
+
+        List<SpanData> spanData =
+                asList(
+                        span("ui", now),
+                        span("ui", now.plus(1, ChronoUnit.SECONDS)),
+                        span("ui", now.plus(2, ChronoUnit.SECONDS)),
+                        span("ui", now.plus(3, ChronoUnit.SECONDS)),
+                        span("ui", now.plus(5, ChronoUnit.SECONDS)),
+                        span("error", now),
+                        span("error", now.plus(10, ChronoUnit.SECONDS)));
+
+        // when
+        underTest.export(spanData);
+
+        // then
+        verify(delegate)
+                .export(
+                        asList(
+                                spanData.get(0),
+                                spanData.get(1),
+                                spanData.get(2),
+                                // idx=3 will be skipped because it's the 4th component=ui span in
+                                // the last 5 secs
+                                spanData.get(4),
+                                spanData.get(5)
+                                // idx=6 will be skipped because the default budget allows 1 span
+                                // in 15 secs
+                                ));
+    }
+
+    @Test
+    void shouldForgetBucketsThatLeftTheWindow() {
+        // given
+        SpanExporter underTest =
+                ThrottlingExporter.newBuilder(delegate)
+                        .maxSpansInWindow(1)
+                        .windowSize(Duration.ofSeconds(2))
+                        .build();
+
+        Instant now = Instant.ofEpochMilli(10_000);
+
+        List<SpanData> spanData =
+                asList(
+                        span("ui", now),
+                        // lands in the bucket of the same index after the ring wrapped around
+                        span("ui", now.plus(4, ChronoUnit.SECONDS)),
+                        span("ui", now.plus(8, ChronoUnit.SECONDS)));
+
+        // when
+        underTest.export(spanData);
+
+        // then
+        verify(delegate).export(spanData);
+    }
+
+    @Test
+    void shouldExportSummaryOfDroppedSpansOncePerWindow() {
+        // given
+        SpanExporter underTest =
+                ThrottlingExporter.newBuilder(delegate)
+                        .maxSpansInWindow(1)
+                        .windowSize(Duration.ofSeconds(15))
+                        .summarizeDroppedSpans(true)
+                        .clock(clock)
+                        .build();
+
+        Instant now = Instant.ofEpochMilli(10_000);
+        when(clock.nanoTime()).thenReturn(0L, 0L, TimeUnit.SECONDS.toNanos(15));
+
+        List<SpanData> firstBatch =
+                asList(
+                        span("ui", now),
+                        span("ui", now.plus(1, ChronoUnit.SECONDS)),
+                        span("ui", now.plus(2, ChronoUnit.SECONDS)));
+        List<SpanData> secondBatch = asList(span("ui", now.plus(20, ChronoUnit.SECONDS)));
+
+        // when
+        underTest.export(firstBatch);
+        underTest.export(secondBatch);
+
+        // then
+        verify(delegate, times(2)).export(exported.capture());
+        assertThat(exported.getAllValues().get(0)).containsExactly(firstBatch.get(0));
+        List<SpanData> second = new ArrayList<>(exported.getAllValues().get(1));
+        assertThat(second).hasSize(2).startsWith(secondBatch.get(0));
+        SpanData summary = second.get(1);
+        assertThat(summary.getName()).isEqualTo("test");
+        assertThat(summary.getAttributes().get(COMPONENT_KEY)).isEqualTo("ui");
+        assertThat(summary.getAttributes().get(ThrottledSpanSummary.SYNTHETIC_KEY)).isTrue();
+        assertThat(summary.getAttributes().get(ThrottledSpanSummary.COUNT_KEY)).isEqualTo(2L);
+    }
+
+    @Test
+    void shouldExportPendingSummaryOnFlush() {
+        // given
+        SpanExporter underTest =
+                ThrottlingExporter.newBuilder(delegate)
+                        .maxSpansInWindow(1)
+                        .summarizeDroppedSpans(true)
+                        .clock(clock)
+                        .build();
+
+        Instant now = Instant.ofEpochMilli(10_000);
+        when(delegate.export(any()))
+                .thenReturn(CompletableResultCode.ofSuccess(), CompletableResultCode.ofFailure());
+        when(delegate.flush()).thenReturn(CompletableResultCode.ofSuccess());
+        underTest.export(asList(span("ui", now), span("ui", now)));
+
+        // when
+        CompletableResultCode result = underTest.flush();
+
+        // then
+        assertThat(result.isSuccess()).isFalse();
+        verify(delegate, times(2)).export(exported.capture());
+        assertThat(exported.getAllValues().get(1))
+                .singleElement()
+                .satisfies(
+                        summary ->
+                                assertThat(
+                                                summary.getAttributes()
+                                                        .get(ThrottledSpanSummary.COUNT_KEY))
+                                        .isEqualTo(1L));
+        verify(delegate).flush();
+    }
+
     @Test
     void shouldDelegateFlushCall() {
         // given
@@ -17,16 +17,14 @@
 package com.splunk.rum;
 
 import static java.util.Collections.emptyList;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
 import static org.mockito.Mockito.doThrow;
 import static org.mockito.Mockito.lenient;
-import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.verifyNoInteractions;
-import static org.mockito.Mockito.verifyNoMoreInteractions;
 import static org.mockito.Mockito.when;
 
-import io.opentelemetry.sdk.common.Clock;
-import java.io.File;
 import java.io.IOException;
 import java.nio.charset.StandardCharsets;
 import java.util.Arrays;
@@ -35,93 +33,99 @@ import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
 import org.mockito.Mock;
-import org.mockito.Mockito;
 import org.mockito.junit.jupiter.MockitoExtension;
+import zipkin2.reporter.Encoding;
 
 @ExtendWith(MockitoExtension.class)
 class ZipkinToDiskSenderTest {
 
-    private final long now = System.currentTimeMillis();
-    private final File path = new File("/my/great/storage/location");
-    private final SpanStorage spanStorage = mock(SpanStorage.class);
-
-    private final String finalFile = "/my/great/storage/location/" + now + ".spans";
-    private final File finalPath = new File(finalFile);
     private final byte[] span1 = "span one".getBytes(StandardCharsets.UTF_8);
     private final byte[] span2 = "span one".getBytes(StandardCharsets.UTF_8);
     private final List<byte[]> spans = Arrays.asList(span1, span2);
 
-    @Mock private FileUtils fileUtils;
-    @Mock private Clock clock;
+    @Mock private SpanJournal journal;
     @Mock private DeviceSpanStorageLimiter limiter;
 
     @BeforeEach
     void setup() {
-        lenient().when(clock.now()).thenReturn(now);
         lenient().when(limiter.ensureFreeSpace()).thenReturn(true);
     }
 
     @Test
     void testHappyPath() throws Exception {
-        when(spanStorage.provideSpansDirectory()).thenReturn(path);
+        ZipkinToDiskSender sender = buildSender();
+        sender.send(spans);
+
+        verify(journal).append(SpanPriority.UI, spans);
+    }
 
+    @Test
+    void appendsWithPriority() throws Exception {
         ZipkinToDiskSender sender =
                 ZipkinToDiskSender.builder()
-                        .spanFileProvider(spanStorage)
-                        .fileUtils(fileUtils)
-                        .clock(clock)
+                        .journal(journal)
                         .storageLimiter(limiter)
+                        .priority(SpanPriority.ERROR)
                         .build();
         sender.send(spans);
 
-        verify(fileUtils).writeAsLines(finalPath, spans);
+        verify(journal).append(SpanPriority.ERROR, spans);
     }
 
     @Test
-    void testEmptyListDoesNotWriteFile() throws Exception {
-        ZipkinToDiskSender sender =
+    void messageSizeDependsOnEncoding() {
+        ZipkinToDiskSender jsonSender = buildSender();
+        ZipkinToDiskSender protoSender =
                 ZipkinToDiskSender.builder()
-                        .spanFileProvider(spanStorage)
-                        .fileUtils(fileUtils)
+                        .journal(journal)
                         .storageLimiter(limiter)
+                        .encoding(Encoding.PROTO3)
                         .build();
+
+        assertEquals(Encoding.JSON, jsonSender.encoding());
+        assertEquals(Encoding.PROTO3, protoSender.encoding());
+        // json spans take a separator each, proto3 spans are only prefixed with their length
+        assertEquals(18, jsonSender.messageSizeInBytes(spans));
+        assertEquals(16, protoSender.messageSizeInBytes(spans));
+    }
+
+    @Test
+    void testEmptyListDoesNotWriteFile() throws Exception {
+        ZipkinToDiskSender sender = buildSender();
         sender.send(emptyList());
-        verifyNoInteractions(fileUtils);
+        verifyNoInteractions(journal);
     }
 
     @Test
     void testWriteFails() throws Exception {
-        when(spanStorage.provideSpansDirectory()).thenReturn(path);
-        doThrow(new IOException("boom")).when(fileUtils).writeAsLines(finalPath, spans);
+        doThrow(new IOException("boom")).when(journal).append(SpanPriority.UI, spans);
 
-        ZipkinToDiskSender sender =
-                ZipkinToDiskSender.builder()
-                        .spanFileProvider(spanStorage)
-                        .fileUtils(fileUtils)
-                        .clock(clock)
-                        .storageLimiter(limiter)
-                        .build();
+        ZipkinToDiskSender sender = buildSender();
 
-        sender.send(spans);
-        // Exception not thrown
+        assertThrows(IOException.class, () -> sender.send(spans));
     }
 
     @Test
     void testLimitExceeded() throws Exception {
-        Mockito.reset(clock);
         when(limiter.ensureFreeSpace()).thenReturn(false);
 
-        ZipkinToDiskSender sender =
-                ZipkinToDiskSender.builder()
-                        .spanFileProvider(spanStorage)
-                        .fileUtils(fileUtils)
-                        .clock(clock)
-                        .storageLimiter(limiter)
-                        .build();
+        ZipkinToDiskSender sender = buildSender();
 
-        sender.send(spans);
+        assertThrows(IOException.class, () -> sender.send(spans));
+
+        verifyNoInteractions(journal);
+    }
+
+    @Test
+    void closeSealsActiveSegment() throws Exception {
+        ZipkinToDiskSender sender = buildSender();
+
+        sender.close();
+
+        verify(journal).seal();
+    }
 
-        verifyNoMoreInteractions(clock);
-        verifyNoMoreInteractions(fileUtils);
+    private ZipkinToDiskSender buildSender() {
+        return ZipkinToDiskSender.builder().journal(journal).storageLimiter(limiter).build();
     }
 }